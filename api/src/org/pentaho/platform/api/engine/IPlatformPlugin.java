@@ -159,6 +159,14 @@ public interface IPlatformPlugin extends IPluginLifecycleListener {
    */
   public ClassLoaderType getLoaderType();
 
+  /**
+   * Returns the ids of the plugins this plugin depends on. The plugin manager registers a plugin only after the plugins
+   * it depends on.
+   * 
+   * @return the ids of the plugins this plugin depends on, or an empty list
+   */
+  public List<String> getDependencies();
+
   /**
    * Return a List of scripts registered for a given context.
    * 
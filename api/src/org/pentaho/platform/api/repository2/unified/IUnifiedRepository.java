@@ -663,6 +663,43 @@ public interface IUnifiedRepository {
    */
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  /**
+   * Gets the metadata of multiple files at once.
+   * 
+   * @param files
+   *          Repository files to fetch metadata for. Only {@link RepositoryFile#getId()} is used to identify the
+   *          metadata to return.
+   * @return Map<String, Serializable> of all the metadata for every file provided, in the same order
+   */
+  List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files );
+
+  /**
+   * Returns the children according to the specifications of the RepositoryRequest object, together with all their
+   * metadata. This saves calling {@link #getFileMetadata(Serializable)} for every child.
+   * 
+   * @param repositoryRequest
+   *          See {@link RepositoryRequest} class
+   * @return Map<String, Serializable> of all the metadata for every child, by child, in the order in which
+   *         {@link #getChildren(RepositoryRequest)} returns the children (never {@code null})
+   */
+  Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata( RepositoryRequest repositoryRequest );
+
+  /**
+   * Returns the non-hidden immediate children of a folder which have the given metadata value, such as the files
+   * whose {@code contentCreator} is a given report. Implementations may answer this from an index rather than by
+   * reading the metadata of every child.
+   * 
+   * @param folderId
+   *          id of folder whose children to search
+   * @param metadataKey
+   *          metadata item to compare
+   * @param metadataValue
+   *          value the metadata item must be equal to
+   * @return list of children (never {@code null})
+   */
+  List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue );
+
   /**
    * Returns a list of characters which cannot be used in file/folder names. These characters must be escaped using
    * percent-encoding. Callers may safely cache this value. Note that it is the responsibility of the
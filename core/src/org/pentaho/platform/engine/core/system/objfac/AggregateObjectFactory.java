@@ -23,26 +23,34 @@ import org.pentaho.platform.api.engine.IPentahoObjectReference;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ObjectFactoryException;
 import org.pentaho.platform.engine.core.messages.Messages;
+import org.pentaho.platform.engine.core.system.objfac.references.SingletonPentahoObjectReference;
+import org.pentaho.platform.engine.core.system.objfac.spring.SpringPentahoObjectReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * AggregateObectFactory holds a collection of IPentahoObjectFactory implementations, delegating calls to each and
  * collecting the results. Results are ordered by "priority" attribute if present, with the highest priority object
  * returned in the calls to retrieve a single object.
  * <p/>
+ * Lookups are answered from a snapshot of the registered factories which is replaced whenever a factory is registered
+ * or de-registered, so reads never lock. Each snapshot caches which of its Spring factories define a given type or key,
+ * along with the resolved references when those do not depend on the session (singletons). Other factories, such as
+ * the runtime and OSGI factories, can change what they define at any time and are always consulted directly.
+ * <p/>
  * {@inheritDoc}
  * <p/>
  * User: nbaker Date: 1/15/13
@@ -52,20 +60,21 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   protected IPentahoObjectFactory primaryFactory;
   private Logger logger = LoggerFactory.getLogger( AggregateObjectFactory.class );
 
-  private final ReadWriteLock factoryLock = new ReentrantReadWriteLock( false ); // we're not fair
-  private Lock writeLock = factoryLock.writeLock();
-  private Lock readLock = factoryLock.readLock();
+  /**
+   * Resolutions are not cached once this many have been, to bound the memory used by lookups with arbitrary properties.
+   */
+  private static final int MAX_RESOLUTIONS = 2000;
+
+  private volatile Snapshot snapshot = new Snapshot( Collections.<IPentahoObjectFactory>emptySet() );
 
   public AggregateObjectFactory() {
 
   }
 
   public void registerObjectFactory( IPentahoObjectFactory fact, boolean primary ) {
-    writeLock.lock();
-    try{
+    synchronized ( factories ) {
       factories.add( fact );
-    } finally {
-      writeLock.unlock();
+      snapshot = new Snapshot( factories );
     }
     if ( primary ) {
       primaryFactory = fact;
@@ -84,11 +93,10 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
    * @return true if the factory was registered and successfully removed.
    */
   public boolean deregisterObjectFactory( IPentahoObjectFactory factory ) {
-    writeLock.lock();
-    try {
-      return factories.remove( factory );
-    } finally {
-      writeLock.unlock();
+    synchronized ( factories ) {
+      boolean removed = factories.remove( factory );
+      snapshot = new Snapshot( factories );
+      return removed;
     }
   }
 
@@ -104,17 +112,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public <T> T get( Class<T> interfaceClass, String key, IPentahoSession session ) throws ObjectFactoryException {
     // if they want it by id, check for that first
     if ( key != null ) {
-      readLock.lock();
-      try {
-        for ( IPentahoObjectFactory fact : factories ) {
-          if ( fact.objectDefined( key ) ) {
-            T object = fact.get( interfaceClass, key, session );
-            logger.debug( MessageFormat.format( "Found object for key: {0} in factory: {1}", key, fact.getName() ) );
-            return object;
-          }
-        }
-      } finally {
-        readLock.unlock();
+      List<IPentahoObjectFactory> defining = snapshot.getFactoriesDefining( key );
+      if ( !defining.isEmpty() ) {
+        IPentahoObjectFactory fact = defining.get( 0 );
+        T object = fact.get( interfaceClass, key, session );
+        logger.debug( MessageFormat.format( "Found object for key: {0} in factory: {1}", key, fact.getName() ) );
+        return object;
       }
     }
 
@@ -155,17 +158,11 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined( String key ) {
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( key ) ) {
-          logger.debug( MessageFormat.format( "Object defined for key: {0} in factory: {1}", key, fact.getName() ) );
-          return true;
-        }
-      }
-
-    } finally {
-      readLock.unlock();
+    List<IPentahoObjectFactory> defining = snapshot.getFactoriesDefining( key );
+    if ( !defining.isEmpty() ) {
+      logger.debug( MessageFormat.format( "Object defined for key: {0} in factory: {1}", key, defining.get( 0 )
+        .getName() ) );
+      return true;
     }
     return false;
   }
@@ -177,17 +174,12 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
    */
   @Override
   public Class<?> getImplementingClass( String key ) {
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( key ) ) {
-          logger.debug( MessageFormat.format( "Found implementing class for key: {0} in factory: {1}", key, fact
-            .getName() ) );
-          return fact.getImplementingClass( key );
-        }
-      }
-    } finally {
-      readLock.unlock();
+    List<IPentahoObjectFactory> defining = snapshot.getFactoriesDefining( key );
+    if ( !defining.isEmpty() ) {
+      IPentahoObjectFactory fact = defining.get( 0 );
+      logger.debug( MessageFormat.format( "Found implementing class for key: {0} in factory: {1}", key, fact
+        .getName() ) );
+      return fact.getImplementingClass( key );
     }
     return null;
   }
@@ -208,18 +200,11 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
     List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>();
 
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> refs = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( refs != null ) {
-            referenceList.addAll( refs );
-          }
-        }
+    for ( IPentahoObjectFactory fact : snapshot.getFactoriesDefining( interfaceClass ) ) {
+      List<IPentahoObjectReference<T>> refs = fact.getObjectReferences( interfaceClass, curSession, properties );
+      if ( refs != null ) {
+        referenceList.addAll( refs );
       }
-    } finally {
-      readLock.unlock();
     }
 
     Collections.sort( referenceList, referencePriorityComparitor );
@@ -237,33 +222,7 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public <T> IPentahoObjectReference<T> getObjectReference( Class<T> clazz, IPentahoSession curSession )
     throws ObjectFactoryException {
 
-    Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
-
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz ) ) {
-          IPentahoObjectReference<T> found = fact.getObjectReference( clazz, curSession );
-          if ( found != null ) {
-            references.add( found );
-          }
-
-        }
-      }
-    } finally {
-      readLock.unlock();
-    }
-    IPentahoObjectReference<T> highestRef = null;
-    int highestRefPriority = -1;
-    for ( IPentahoObjectReference<T> ref : references ) {
-      int pri = computePriority( ref );
-      if ( pri > highestRefPriority ) {
-        highestRef = ref;
-        highestRefPriority = pri;
-      }
-    }
-
-    return highestRef;
+    return getObjectReference( clazz, curSession, null );
   }
 
   @Override
@@ -275,16 +234,9 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
     if ( highestRef != null ) {
       return highestRef.getObject();
     }
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz.getSimpleName() ) ) {
-          T object = fact.get( clazz, clazz.getSimpleName(), session );
-          return object;
-        }
-      }
-    } finally {
-      readLock.unlock();
+    List<IPentahoObjectFactory> defining = snapshot.getFactoriesDefining( clazz.getSimpleName() );
+    if ( !defining.isEmpty() ) {
+      return defining.get( 0 ).get( clazz, clazz.getSimpleName(), session );
     }
     String msg =
       Messages.getInstance().getString( "AbstractSpringPentahoObjectFactory.WARN_FAILED_TO_RETRIEVE_OBJECT",
@@ -295,41 +247,54 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
 
   @Override
   public boolean objectDefined( Class<?> clazz ) {
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( clazz ) ) {
-
-          logger.debug( MessageFormat.format( "Found object for class: {0} in factory: {1}", clazz.getName(), fact
-            .getName() ) );
-          return true;
-        }
-      }
-    } finally {
-      readLock.unlock();
+    List<IPentahoObjectFactory> defining = snapshot.getFactoriesDefining( clazz );
+    if ( !defining.isEmpty() ) {
+      logger.debug( MessageFormat.format( "Found object for class: {0} in factory: {1}", clazz.getName(), defining
+        .get( 0 ).getName() ) );
+      return true;
     }
     return false;
   }
 
   @Override
+  @SuppressWarnings( "unchecked" )
   public <T> IPentahoObjectReference<T> getObjectReference( Class<T> interfaceClass, IPentahoSession curSession,
                                                             Map<String, String> properties )
     throws ObjectFactoryException {
 
+    Snapshot current = snapshot;
     Set<IPentahoObjectReference<T>> references = new HashSet<IPentahoObjectReference<T>>();
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          IPentahoObjectReference<T> found = fact.getObjectReference( interfaceClass, curSession, properties );
-          if ( found != null ) {
-            references.add( found );
-          }
+
+    Resolution key = new Resolution( Resolution.REFERENCE, interfaceClass, properties );
+    IPentahoObjectReference<T> held = (IPentahoObjectReference<T>) current.resolutions.get( key );
+    if ( held != null ) {
+      references.add( held );
+    } else {
+      Set<IPentahoObjectReference<T>> cacheable = new HashSet<IPentahoObjectReference<T>>();
+      for ( IPentahoObjectFactory fact : current.getCacheableFactoriesDefining( interfaceClass ) ) {
+        IPentahoObjectReference<T> found = fact.getObjectReference( interfaceClass, curSession, properties );
+        if ( found != null ) {
+          cacheable.add( found );
         }
       }
-    } finally {
-      readLock.unlock();
+      IPentahoObjectReference<T> highestCacheable = getHighestPriority( cacheable );
+      if ( highestCacheable != null && isSessionIndependent( cacheable ) ) {
+        current.putResolution( key, highestCacheable );
+      }
+      references.addAll( cacheable );
+    }
+
+    for ( IPentahoObjectFactory fact : current.getLiveFactoriesDefining( interfaceClass ) ) {
+      IPentahoObjectReference<T> found = fact.getObjectReference( interfaceClass, curSession, properties );
+      if ( found != null ) {
+        references.add( found );
+      }
     }
+
+    return getHighestPriority( references );
+  }
+
+  private <T> IPentahoObjectReference<T> getHighestPriority( Set<IPentahoObjectReference<T>> references ) {
     IPentahoObjectReference<T> highestRef = null;
     int highestRefPriority = -1;
     for ( IPentahoObjectReference<T> ref : references ) {
@@ -339,16 +304,30 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
         highestRefPriority = pri;
       }
     }
-
     return highestRef;
   }
 
+  /**
+   * References may only be held across calls if they resolve to the same object whatever session they are used in.
+   */
+  private boolean isSessionIndependent( Collection<? extends IPentahoObjectReference<?>> references ) {
+    for ( IPentahoObjectReference<?> ref : references ) {
+      if ( ref instanceof SingletonPentahoObjectReference ) {
+        continue;
+      }
+      if ( ref instanceof SpringPentahoObjectReference && ( (SpringPentahoObjectReference<?>) ref )
+        .isSessionIndependent() ) {
+        continue;
+      }
+      return false;
+    }
+    return true;
+  }
+
   public void clear() {
-    writeLock.lock();
-    try {
+    synchronized ( factories ) {
       this.factories.clear();
-    } finally {
-      writeLock.unlock();
+      snapshot = new Snapshot( factories );
     }
   }
 
@@ -394,30 +373,45 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   }
 
   @Override
+  @SuppressWarnings( "unchecked" )
   public <T> List<IPentahoObjectReference<T>> getObjectReferences( Class<T> interfaceClass, IPentahoSession curSession,
                                                                    Map<String, String> properties )
     throws ObjectFactoryException {
-    // Use a set to avoid duplicates
-    Set<IPentahoObjectReference<T>> referenceSet = new HashSet<IPentahoObjectReference<T>>();
 
-    readLock.lock();
-    try{
-      for ( IPentahoObjectFactory fact : factories ) {
-        if ( fact.objectDefined( interfaceClass ) ) {
-          List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
-          if ( found != null ) {
-            referenceSet.addAll( found );
-          }
+    Snapshot current = snapshot;
+    Resolution key = new Resolution( Resolution.REFERENCES, interfaceClass, properties );
+    List<IPentahoObjectReference<T>> held = (List<IPentahoObjectReference<T>>) current.resolutions.get( key );
+    if ( held == null ) {
+      // Use a set to avoid duplicates
+      Set<IPentahoObjectReference<T>> referenceSet = new HashSet<IPentahoObjectReference<T>>();
+      for ( IPentahoObjectFactory fact : current.getCacheableFactoriesDefining( interfaceClass ) ) {
+        List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
+        if ( found != null ) {
+          referenceSet.addAll( found );
         }
       }
-    } finally {
-      readLock.unlock();
+      held = new ArrayList<IPentahoObjectReference<T>>( referenceSet );
+      Collections.sort( held, referencePriorityComparitor );
+      if ( isSessionIndependent( held ) ) {
+        current.putResolution( key, Collections.unmodifiableList( held ) );
+      }
+    }
+
+    Set<IPentahoObjectReference<T>> liveSet = new HashSet<IPentahoObjectReference<T>>();
+    for ( IPentahoObjectFactory fact : current.getLiveFactoriesDefining( interfaceClass ) ) {
+      List<IPentahoObjectReference<T>> found = fact.getObjectReferences( interfaceClass, curSession, properties );
+      if ( found != null ) {
+        liveSet.addAll( found );
+      }
     }
 
     // transform to a list to sort
-    List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>();
-    referenceList.addAll( referenceSet );
-    Collections.sort( referenceList, referencePriorityComparitor );
+    List<IPentahoObjectReference<T>> referenceList = new ArrayList<IPentahoObjectReference<T>>( held );
+    if ( !liveSet.isEmpty() ) {
+      liveSet.removeAll( held );
+      referenceList.addAll( liveSet );
+      Collections.sort( referenceList, referencePriorityComparitor );
+    }
     return referenceList;
   }
 
@@ -425,4 +419,134 @@ public class AggregateObjectFactory implements IPentahoObjectFactory {
   public String getName() {
     return getClass().getSimpleName();
   }
+
+  /**
+   * The factories registered at some point in time, and what has been resolved against them.
+   */
+  private static class Snapshot {
+    /**
+     * Spring factories, whose definitions do not change once they are registered
+     */
+    private final List<IPentahoObjectFactory> cacheable = new ArrayList<IPentahoObjectFactory>();
+
+    private final List<IPentahoObjectFactory> live = new ArrayList<IPentahoObjectFactory>();
+
+    private final ConcurrentMap<Resolution, Object> resolutions = new ConcurrentHashMap<Resolution, Object>();
+
+    Snapshot( Collection<IPentahoObjectFactory> factories ) {
+      for ( IPentahoObjectFactory fact : factories ) {
+        if ( fact instanceof AbstractSpringPentahoObjectFactory ) {
+          cacheable.add( fact );
+        } else {
+          live.add( fact );
+        }
+      }
+    }
+
+    void putResolution( Resolution key, Object value ) {
+      if ( resolutions.size() < MAX_RESOLUTIONS ) {
+        resolutions.put( key, value );
+      }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    List<IPentahoObjectFactory> getCacheableFactoriesDefining( Class<?> clazz ) {
+      Resolution key = new Resolution( Resolution.DEFINED_TYPE, clazz, null );
+      List<IPentahoObjectFactory> defining = (List<IPentahoObjectFactory>) resolutions.get( key );
+      if ( defining == null ) {
+        defining = new ArrayList<IPentahoObjectFactory>();
+        for ( IPentahoObjectFactory fact : cacheable ) {
+          if ( fact.objectDefined( clazz ) ) {
+            defining.add( fact );
+          }
+        }
+        putResolution( key, defining );
+      }
+      return defining;
+    }
+
+    List<IPentahoObjectFactory> getLiveFactoriesDefining( Class<?> clazz ) {
+      List<IPentahoObjectFactory> defining = new ArrayList<IPentahoObjectFactory>();
+      for ( IPentahoObjectFactory fact : live ) {
+        if ( fact.objectDefined( clazz ) ) {
+          defining.add( fact );
+        }
+      }
+      return defining;
+    }
+
+    List<IPentahoObjectFactory> getFactoriesDefining( Class<?> clazz ) {
+      List<IPentahoObjectFactory> defining =
+        new ArrayList<IPentahoObjectFactory>( getCacheableFactoriesDefining( clazz ) );
+      defining.addAll( getLiveFactoriesDefining( clazz ) );
+      return defining;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    List<IPentahoObjectFactory> getFactoriesDefining( String key ) {
+      Resolution resolution = new Resolution( Resolution.DEFINED_KEY, key, null );
+      List<IPentahoObjectFactory> defining = (List<IPentahoObjectFactory>) resolutions.get( resolution );
+      if ( defining == null ) {
+        defining = new ArrayList<IPentahoObjectFactory>();
+        for ( IPentahoObjectFactory fact : cacheable ) {
+          if ( fact.objectDefined( key ) ) {
+            defining.add( fact );
+          }
+        }
+        putResolution( resolution, defining );
+      }
+      List<IPentahoObjectFactory> all = defining;
+      for ( IPentahoObjectFactory fact : live ) {
+        if ( fact.objectDefined( key ) ) {
+          if ( all == defining ) {
+            all = new ArrayList<IPentahoObjectFactory>( defining );
+          }
+          all.add( fact );
+        }
+      }
+      return all;
+    }
+  }
+
+  /**
+   * Cache key of a lookup: what was looked up, by type or key, and the properties it was filtered with.
+   */
+  private static class Resolution {
+    static final int DEFINED_TYPE = 0;
+    static final int DEFINED_KEY = 1;
+    static final int REFERENCE = 2;
+    static final int REFERENCES = 3;
+
+    private final int kind;
+    private final Object target;
+    private final Map<String, String> properties;
+
+    Resolution( int kind, Object target, Map<String, String> properties ) {
+      this.kind = kind;
+      this.target = target;
+      this.properties =
+        properties == null || properties.isEmpty() ? null : new HashMap<String, String>( properties );
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( this == o ) {
+        return true;
+      }
+      if ( !( o instanceof Resolution ) ) {
+        return false;
+      }
+      Resolution that = (Resolution) o;
+      return kind == that.kind && target.equals( that.target )
+        && ( properties == null ? that.properties == null : properties.equals( that.properties ) );
+    }
+
+    @Override
+    public int hashCode() {
+      int result = kind;
+      result = 31 * result + target.hashCode();
+      result = 31 * result + ( properties != null ? properties.hashCode() : 0 );
+      return result;
+    }
+  }
 }
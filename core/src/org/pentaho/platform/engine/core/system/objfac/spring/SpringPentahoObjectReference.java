@@ -22,6 +22,7 @@ import org.pentaho.platform.api.engine.IPentahoInitializer;
 import org.pentaho.platform.api.engine.IPentahoObjectFactory;
 import org.pentaho.platform.api.engine.IPentahoObjectReference;
 import org.pentaho.platform.api.engine.IPentahoSession;
+import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.context.ConfigurableApplicationContext;
 
@@ -47,6 +48,8 @@ public class SpringPentahoObjectReference<T> implements IPentahoObjectReference<
 
   private final SpringBeanAttributes attributes;
 
+  private final boolean sessionIndependent;
+
   private static String PRIORITY = "priority";
 
   public SpringPentahoObjectReference( ConfigurableApplicationContext context, String name, Class<T> clazz,
@@ -54,8 +57,31 @@ public class SpringPentahoObjectReference<T> implements IPentahoObjectReference<
     this.context = context;
     this.name = name;
     this.clazz = clazz;
-    this.session = session;
     this.attributes = new SpringBeanAttributes( beanDef );
+    this.sessionIndependent = isSessionIndependent( context, name, beanDef );
+    // the session plays no part in resolving such a bean, so do not keep it reachable
+    this.session = sessionIndependent ? null : session;
+  }
+
+  private static boolean isSessionIndependent( ConfigurableApplicationContext context, String name,
+                                               BeanDefinition beanDef ) {
+    if ( !beanDef.isSingleton() ) {
+      return false;
+    }
+    try {
+      Class<?> type = context.getBeanFactory().getType( name );
+      return type != null && !IPentahoInitializer.class.isAssignableFrom( type );
+    } catch ( BeansException e ) {
+      return false;
+    }
+  }
+
+  /**
+   * @return true if this references a singleton which is not initialized with the session it is requested in, so the
+   *         same object is returned whatever the session
+   */
+  public boolean isSessionIndependent() {
+    return sessionIndependent;
   }
 
   @Override public Class<?> getObjectClass() {
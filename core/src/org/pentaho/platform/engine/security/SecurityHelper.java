@@ -19,7 +19,11 @@
 package org.pentaho.platform.engine.security;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -47,11 +51,21 @@ import org.springframework.security.userdetails.User;
 import org.springframework.security.userdetails.UserDetailsService;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A utility class with several methods that are used to either bind the <tt>Authentication</tt> to the
  * <tt>IPentahoSession</tt>, retrieve the <tt>Authentication</tt> from the <tt>IPentahoSession</tt>, and other various
  * helper functions.
+ * <p/>
+ * The users built by {@link #createAuthentication(String)} are cached by tenant and name for
+ * <code>authentication-cache/ttl-seconds</code> (60 by default, 0 to disable), up to
+ * <code>authentication-cache/max-entries</code> users, so that jobs run as the same user do not look up its roles
+ * every time. Concurrent lookups for the same user share one call to the {@link IUserRoleListService}.
  *
  * @author mbatchel
  */
@@ -71,6 +85,44 @@ public class SecurityHelper implements ISecurityHelper {
   private UserDetailsService userDetailsService;
   private IUserRoleListService userRoleListService;
 
+  private static final String AUTHENTICATION_CACHE_TTL_SETTING = "authentication-cache/ttl-seconds"; //$NON-NLS-1$
+  private static final String AUTHENTICATION_CACHE_SIZE_SETTING = "authentication-cache/max-entries"; //$NON-NLS-1$
+
+  /**
+   * Key: tenant id and principal name; value: the user built for them. Guarded by itself, and kept in access order so
+   * that the least recently used user is evicted first.
+   */
+  private final Map<List<String>, CachedUser> userCache =
+      new LinkedHashMap<List<String>, CachedUser>( 16, 0.75f, true );
+
+  /**
+   * Key: tenant id and principal name; value: the lookup in progress for them
+   */
+  private final ConcurrentMap<List<String>, FutureTask<User>> userLoads =
+      new ConcurrentHashMap<List<String>, FutureTask<User>>();
+
+  /**
+   * Incremented by {@link #invalidateAuthentication(String)}, so that lookups started before are not cached
+   */
+  private final AtomicLong userCacheGeneration = new AtomicLong();
+
+  /**
+   * Read from the system settings on first use, while holding {@link #userCache}
+   */
+  private volatile long userCacheTtl = -1;
+  private int userCacheMaxEntries;
+
+  private static class CachedUser {
+    private final User user;
+
+    private final long loadTime;
+
+    CachedUser( User user, long loadTime ) {
+      this.user = user;
+      this.loadTime = loadTime;
+    }
+  }
+
   /**
    * Returns the default instance, if the test instance is not null return the test instance
    */
@@ -296,6 +348,117 @@ public class SecurityHelper implements ISecurityHelper {
    */
   @Override
   public Authentication createAuthentication( String principalName ) {
+    User user = getUser( principalName );
+    // the user is shared, but not the token, which callers may modify
+    return new UsernamePasswordAuthenticationToken( user, null, user.getAuthorities() );
+  }
+
+  /**
+   * Forgets the roles looked up for a user by {@link #createAuthentication(String)}, e.g. because its role memberships
+   * have changed.
+   *
+   * @param principalName the user, with or without its tenant; null to forget all users
+   */
+  public void invalidateAuthentication( String principalName ) {
+    userCacheGeneration.incrementAndGet();
+    ITenantedPrincipleNameResolver nameResolver = principalName != null ? getTenantedUserNameUtils() : null;
+    synchronized ( userCache ) {
+      if ( principalName == null ) {
+        userCache.clear();
+        return;
+      }
+      for ( Iterator<List<String>> keys = userCache.keySet().iterator(); keys.hasNext(); ) {
+        String cachedName = keys.next().get( 1 );
+        if ( principalName.equals( cachedName )
+            || ( nameResolver != null && principalName.equals( nameResolver.getPrincipleName( cachedName ) ) ) ) {
+          keys.remove();
+        }
+      }
+    }
+  }
+
+  private User getUser( final String principalName ) {
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    String tenantId = session != null ? (String) session.getAttribute( IPentahoSession.TENANT_ID_KEY ) : null;
+    final List<String> key = Arrays.asList( tenantId, principalName );
+    synchronized ( userCache ) {
+      if ( userCacheTtl < 0 ) {
+        readUserCacheSettings();
+      }
+      CachedUser cached = userCache.get( key );
+      if ( cached != null ) {
+        if ( System.currentTimeMillis() - cached.loadTime < userCacheTtl ) {
+          return cached.user;
+        }
+        userCache.remove( key );
+      }
+    }
+    if ( userCacheTtl == 0 ) {
+      return loadUser( principalName );
+    }
+
+    FutureTask<User> load = new FutureTask<User>( new Callable<User>() {
+      @Override
+      public User call() {
+        long generation = userCacheGeneration.get();
+        long loadTime = System.currentTimeMillis();
+        User user = loadUser( principalName );
+        synchronized ( userCache ) {
+          if ( generation == userCacheGeneration.get() ) {
+            userCache.put( key, new CachedUser( user, loadTime ) );
+            Iterator<CachedUser> eldest = userCache.values().iterator();
+            while ( userCache.size() > userCacheMaxEntries && eldest.hasNext() ) {
+              eldest.next();
+              eldest.remove();
+            }
+          }
+        }
+        return user;
+      }
+    } );
+    FutureTask<User> current = userLoads.putIfAbsent( key, load );
+    if ( current == null ) {
+      current = load;
+      try {
+        load.run();
+      } finally {
+        userLoads.remove( key, load );
+      }
+    }
+    try {
+      return current.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      if ( e.getCause() instanceof Error ) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  private void readUserCacheSettings() {
+    long ttlSeconds = 60;
+    int maxEntries = 1000;
+    try {
+      ttlSeconds =
+          Long.parseLong( PentahoSystem.getSystemSetting( AUTHENTICATION_CACHE_TTL_SETTING,
+              String.valueOf( ttlSeconds ) ).trim() );
+      maxEntries =
+          Integer.parseInt( PentahoSystem.getSystemSetting( AUTHENTICATION_CACHE_SIZE_SETTING,
+              String.valueOf( maxEntries ) ).trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid authentication-cache setting", e ); //$NON-NLS-1$
+    }
+    userCacheTtl = Math.max( 0, ttlSeconds * 1000 );
+    userCacheMaxEntries = maxEntries;
+  }
+
+  private User loadUser( String principalName ) {
 
     //get 'anonymousUser' defined name from pentaho.xml's <anonymous-authentication> block
     String anonymousUser = PentahoSystem
@@ -331,9 +494,7 @@ public class SecurityHelper implements ISecurityHelper {
       grantedAuthorities[ i ] = new GrantedAuthorityImpl( roles.get( i ) );
     }
 
-    User user = new User( principalName, "", true, true, true, true, grantedAuthorities );
-    Authentication auth = new UsernamePasswordAuthenticationToken( user, null, grantedAuthorities );
-    return auth;
+    return new User( principalName, "", true, true, true, true, grantedAuthorities );
 
   }
 
@@ -0,0 +1,232 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.dom4j.Document;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parsed and localized action sequence documents, so that executing an action sequence does not read and parse its
+ * file, and read its message bundles, every time.
+ * <p/>
+ * Entries are keyed by file id and locale and are only returned while the file's version and last modified date are
+ * those of the cached document. Message bundles are not tracked, so entries also expire after
+ * <code>action-sequence-cache/ttl-seconds</code> to pick up changed translations. Cached documents are shared by all
+ * callers and must not be modified; a caller that modifies a document works on a copy of it.
+ * <p/>
+ * Configured in pentaho.xml:
+ *
+ * <pre>
+ * &lt;action-sequence-cache&gt;
+ *   &lt;max-entries&gt;500&lt;/max-entries&gt;
+ *   &lt;ttl-seconds&gt;300&lt;/ttl-seconds&gt;
+ * &lt;/action-sequence-cache&gt;
+ * </pre>
+ *
+ * A <code>max-entries</code> of 0 disables the cache.
+ */
+public class ActionSequenceDocumentCache {
+
+  private static final Log logger = LogFactory.getLog( ActionSequenceDocumentCache.class );
+
+  private static ActionSequenceDocumentCache instance;
+
+  private final int maxEntries;
+
+  private final long ttl;
+
+  private final Map<Key, Entry> entries;
+
+  private long hits;
+
+  private long misses;
+
+  private long evictions;
+
+  private static class Key {
+    private final Serializable fileId;
+
+    private final Locale locale;
+
+    Key( Serializable fileId, Locale locale ) {
+      this.fileId = fileId;
+      this.locale = locale;
+    }
+
+    @Override
+    public boolean equals( Object o ) {
+      if ( !( o instanceof Key ) ) {
+        return false;
+      }
+      Key that = (Key) o;
+      return fileId.equals( that.fileId ) && ( locale == null ? that.locale == null : locale.equals( that.locale ) );
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * fileId.hashCode() + ( locale != null ? locale.hashCode() : 0 );
+    }
+  }
+
+  private static class Entry {
+    private final Serializable versionId;
+
+    private final Date lastModified;
+
+    private final Document document;
+
+    private final long created = System.currentTimeMillis();
+
+    Entry( RepositoryFile file, Document document ) {
+      this.versionId = file.getVersionId();
+      this.lastModified = file.getLastModifiedDate();
+      this.document = document;
+    }
+
+    boolean isCurrent( RepositoryFile file, long ttl ) {
+      return equal( versionId, file.getVersionId() ) && equal( lastModified, file.getLastModifiedDate() )
+          && created + ttl > System.currentTimeMillis();
+    }
+
+    private static boolean equal( Object o1, Object o2 ) {
+      return o1 == null ? o2 == null : o1.equals( o2 );
+    }
+  }
+
+  public static synchronized ActionSequenceDocumentCache getInstance() {
+    if ( instance == null ) {
+      int maxEntries = 500;
+      long ttlSeconds = 300;
+      try {
+        maxEntries =
+            Integer.parseInt( PentahoSystem.getSystemSetting( "action-sequence-cache/max-entries", //$NON-NLS-1$
+                String.valueOf( maxEntries ) ).trim() );
+        ttlSeconds =
+            Long.parseLong( PentahoSystem.getSystemSetting( "action-sequence-cache/ttl-seconds", //$NON-NLS-1$
+                String.valueOf( ttlSeconds ) ).trim() );
+      } catch ( NumberFormatException e ) {
+        logger.warn( "Invalid action-sequence-cache setting", e ); //$NON-NLS-1$
+      }
+      instance = new ActionSequenceDocumentCache( maxEntries, ttlSeconds * 1000 );
+    }
+    return instance;
+  }
+
+  public ActionSequenceDocumentCache( final int maxEntries, final long ttl ) {
+    this.maxEntries = maxEntries;
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<Key, Entry>( 16, 0.75f, true ) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry( Map.Entry<Key, Entry> eldest ) {
+        if ( size() > ActionSequenceDocumentCache.this.maxEntries ) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * @return the document cached for this version of <code>file</code>, or null. It must not be modified.
+   */
+  public Document get( final RepositoryFile file, final Locale locale ) {
+    if ( maxEntries <= 0 || file.getId() == null ) {
+      return null;
+    }
+    Entry entry;
+    synchronized ( this ) {
+      Key key = new Key( file.getId(), locale );
+      entry = entries.get( key );
+      if ( entry != null && !entry.isCurrent( file, ttl ) ) {
+        entries.remove( key );
+        entry = null;
+      }
+      if ( entry == null ) {
+        misses++;
+      } else {
+        hits++;
+      }
+      if ( logger.isDebugEnabled() && ( hits + misses ) % 1000 == 0 ) {
+        logger.debug( getStatistics() );
+      }
+    }
+    return entry != null ? entry.document : null;
+  }
+
+  /**
+   * Caches <code>document</code>, which must not be modified afterwards.
+   */
+  public void put( final RepositoryFile file, final Locale locale, final Document document ) {
+    if ( maxEntries <= 0 || file.getId() == null ) {
+      return;
+    }
+    Entry entry = new Entry( file, document );
+    synchronized ( this ) {
+      entries.put( new Key( file.getId(), locale ), entry );
+    }
+  }
+
+  /**
+   * Removes all cached documents. Called when the solution repository is refreshed.
+   */
+  public synchronized void clear() {
+    logger.info( getStatistics() );
+    entries.clear();
+  }
+
+  public synchronized int getSize() {
+    return entries.size();
+  }
+
+  public synchronized long getHitCount() {
+    return hits;
+  }
+
+  public synchronized long getMissCount() {
+    return misses;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictions;
+  }
+
+  public synchronized double getHitRatio() {
+    long requests = hits + misses;
+    return requests == 0 ? 0 : (double) hits / requests;
+  }
+
+  private synchronized String getStatistics() {
+    return MessageFormat.format(
+        "Action sequence cache: {0} entries, {1} hits, {2} misses, hit ratio {3}, {4} evictions", //$NON-NLS-1$
+        entries.size(), hits, misses, getHitRatio(), evictions );
+  }
+
+}
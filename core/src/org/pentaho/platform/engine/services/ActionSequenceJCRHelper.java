@@ -92,9 +92,10 @@ public class ActionSequenceJCRHelper {
     if ( actionSequenceDocument == null ) {
       return null;
     }
+    // the action sequence and its components modify the document, which may be cached
     IActionSequence actionSequence =
-        SequenceDefinition.ActionSequenceFactory( actionSequenceDocument, actionPath, pentahoSession, PentahoSystem
-            .getApplicationContext(), loggingLevel );
+        SequenceDefinition.ActionSequenceFactory( (Document) actionSequenceDocument.clone(), actionPath, pentahoSession,
+            PentahoSystem.getApplicationContext(), loggingLevel );
     if ( actionSequence == null ) {
       return null;
     }
@@ -102,6 +103,10 @@ public class ActionSequenceJCRHelper {
     return actionSequence;
   }
 
+  /**
+   * @return the parsed and localized document, which may be cached and shared with other callers. It must not be
+   *         modified; copy it first.
+   */
   public Document getSolutionDocument( final String documentPath, final RepositoryFilePermission actionOperation ) {
 
     RepositoryFile file = repository.getFile( documentPath );
@@ -109,6 +114,11 @@ public class ActionSequenceJCRHelper {
     Document document = null;
     SimpleRepositoryFileData data = null;
     if ( file != null ) {
+      ActionSequenceDocumentCache cache = ActionSequenceDocumentCache.getInstance();
+      document = cache.get( file, getLocale() );
+      if ( document != null ) {
+        return document;
+      }
       data = repository.getDataForRead( file.getId(), SimpleRepositoryFileData.class );
       if ( data != null ) {
         try {
@@ -130,6 +140,7 @@ public class ActionSequenceJCRHelper {
         return null;
       }
       localizeDoc( document, file );
+      cache.put( file, getLocale(), document );
     }
 
     return document;
@@ -49,6 +49,8 @@ public class ActionParameter implements IActionParameter {
 
   private boolean isOutputParameter = true;
 
+  private boolean ownsValue = true;
+
   private static final Log logger = LogFactory.getLog( ActionParameter.class );
 
   // should we force this to String for serialization?
@@ -100,6 +102,23 @@ public class ActionParameter implements IActionParameter {
     }
   }
 
+  /**
+   * Creates a copy of a parameter for use in another scope, such as an iteration of a parallel loop. The copy shares
+   * the value of the original but does not dispose it; a value set on the copy belongs to the copy.
+   */
+  public ActionParameter( final ActionParameter parameter ) {
+    this.name = parameter.name;
+    this.type = parameter.type;
+    this.value = parameter.value;
+    this.variables = parameter.variables;
+    this.defaultValue = parameter.defaultValue;
+    this.paramSelections = parameter.paramSelections;
+    this.promptType = parameter.promptType;
+    this.saveLocations = parameter.saveLocations;
+    this.isOutputParameter = parameter.isOutputParameter;
+    this.ownsValue = false;
+  }
+
   public List getSaveLocations() {
     return ( saveLocations == null ) ? new ArrayList() : saveLocations;
   }
@@ -166,6 +185,7 @@ public class ActionParameter implements IActionParameter {
     if ( this.value != value ) {
       dispose();
       this.value = value;
+      ownsValue = true;
     }
   }
 
@@ -186,7 +206,7 @@ public class ActionParameter implements IActionParameter {
   }
 
   public void dispose() {
-    if ( ( value != null ) && ( value instanceof IDisposable ) ) {
+    if ( ownsValue && ( value != null ) && ( value instanceof IDisposable ) ) {
       ( (IDisposable) value ).dispose();
     }
   }
@@ -18,14 +18,19 @@
 
 package org.pentaho.platform.engine.services.actionsequence;
 
+import org.dom4j.Node;
 import org.pentaho.platform.api.engine.IActionSequence;
 import org.pentaho.platform.api.engine.IConditionalExecution;
+import org.pentaho.platform.api.engine.ILogger;
 import org.pentaho.platform.api.engine.ISequenceDefinition;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.util.List;
 import java.util.Map;
 
 public class ActionSequence implements IActionSequence {
+  private static final int DEFAULT_MAX_LOOP_PARALLELISM = 8;
+
   private ISequenceDefinition sequenceDefinition;
 
   private String loopParameter;
@@ -36,6 +41,16 @@ public class ActionSequence implements IActionSequence {
 
   private boolean loopUsingPeek;
 
+  private int loopParallelism = 1;
+
+  private Node actionsNode;
+
+  private String solutionPath;
+
+  private ILogger logger;
+
+  private int loggingLevel;
+
   protected ActionSequence( final String loopParameter, final ISequenceDefinition sequenceDefinition,
       final List actionDefinitions, boolean loopUsingPeek ) {
     this.loopParameter = loopParameter;
@@ -128,4 +143,55 @@ public class ActionSequence implements IActionSequence {
     return loopUsingPeek;
   }
 
+  /**
+   * Returns how many iterations of the loop may execute at the same time, as declared by the
+   * <code>loop-parallelism</code> attribute of the actions element.
+   *
+   * @return the number of concurrent iterations, 1 if iterations must execute one after the other
+   */
+  public int getLoopParallelism() {
+    return loopParallelism;
+  }
+
+  public void setLoopParallelism( final int loopParallelism ) {
+    this.loopParallelism = loopParallelism;
+  }
+
+  /**
+   * Returns the largest <code>loop-parallelism</code> honored, from the
+   * <code>action-sequence-loop/max-parallelism</code> system setting. It is also the number of threads shared by the
+   * parallel loops of all action sequences.
+   */
+  public static int getMaxLoopParallelism() {
+    String maxParallelism =
+        PentahoSystem.getSystemSetting( "action-sequence-loop/max-parallelism", //$NON-NLS-1$
+            String.valueOf( DEFAULT_MAX_LOOP_PARALLELISM ) );
+    try {
+      return Math.max( 1, Integer.parseInt( maxParallelism.trim() ) );
+    } catch ( NumberFormatException e ) {
+      return DEFAULT_MAX_LOOP_PARALLELISM;
+    }
+  }
+
+  void setSource( final Node actionsNode, final String solutionPath, final ILogger logger, final int loggingLevel ) {
+    this.actionsNode = actionsNode;
+    this.solutionPath = solutionPath;
+    this.logger = logger;
+    this.loggingLevel = loggingLevel;
+  }
+
+  /**
+   * Creates another instance of this sequence, with action definitions of its own so that it can execute alongside
+   * this one.
+   *
+   * @return the new instance, or null if this sequence was not created from an action sequence document
+   */
+  public ActionSequence newInstance() {
+    if ( actionsNode == null ) {
+      return null;
+    }
+    return (ActionSequence) SequenceDefinition.getNextLoopGroup( sequenceDefinition, actionsNode, solutionPath, logger,
+        loggingLevel );
+  }
+
 }
@@ -99,11 +99,27 @@ public class SequenceDefinition implements ISequenceDefinition {
     return ( SequenceDefinition.getNextLoopGroup( seqDef, actionNode, solutionPath, logger, loggingLevel ) );
   }
 
-  private static IActionSequence getNextLoopGroup( final ISequenceDefinition seqDef, final Node actionsNode,
+  static IActionSequence getNextLoopGroup( final ISequenceDefinition seqDef, final Node actionsNode,
       final String solutionPath, final ILogger logger, final int loggingLevel ) {
 
     String loopParameterName = XmlDom4JHelper.getNodeText( "@loop-on", actionsNode ); //$NON-NLS-1$
     boolean loopUsingPeek = "true".equalsIgnoreCase( XmlDom4JHelper.getNodeText( "@peek-only", actionsNode ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    int loopParallelism = 1;
+    String parallelism = XmlDom4JHelper.getNodeText( "@loop-parallelism", actionsNode ); //$NON-NLS-1$
+    if ( parallelism != null ) {
+      try {
+        loopParallelism = Math.max( 1, Integer.parseInt( parallelism.trim() ) );
+      } catch ( NumberFormatException e ) {
+        logger.warn( Messages.getInstance().getString(
+            "SequenceDefinition.WARN_INVALID_LOOP_PARALLELISM", parallelism, solutionPath ) ); //$NON-NLS-1$
+      }
+      int maxParallelism = ActionSequence.getMaxLoopParallelism();
+      if ( loopParallelism > maxParallelism ) {
+        logger.warn( Messages.getInstance().getString( "SequenceDefinition.WARN_LOOP_PARALLELISM_LIMITED", //$NON-NLS-1$
+            parallelism, solutionPath, Integer.toString( maxParallelism ) ) );
+        loopParallelism = maxParallelism;
+      }
+    }
 
     Node actionDefinitionNode;
     ActionDefinition actionDefinition;
@@ -131,6 +147,8 @@ public class SequenceDefinition implements ISequenceDefinition {
     ActionSequence sequence = new ActionSequence( loopParameterName, seqDef, actionDefinitionList, loopUsingPeek );
 
     sequence.setConditionalExecution( conditionalExecution );
+    sequence.setLoopParallelism( loopParallelism );
+    sequence.setSource( actionsNode, solutionPath, logger, loggingLevel );
     return sequence;
   }
 
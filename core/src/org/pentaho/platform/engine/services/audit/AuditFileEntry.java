@@ -22,6 +22,7 @@ import org.pentaho.platform.api.engine.AuditException;
 import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.audit.AuditQueue.AuditRecord;
 import org.pentaho.platform.util.logging.Logger;
 
 import java.io.BufferedWriter;
@@ -31,7 +32,8 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author mbatchel
@@ -52,6 +54,12 @@ public class AuditFileEntry implements IAuditEntry {
   private static final SimpleDateFormat auditDateFormat = new SimpleDateFormat( PentahoSystem.getSystemSetting(
       "audit/auditDateFormat", "yyyy/MM/dd k:mm:ss" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 
+  private static final FileWriterImpl fileWriter = new FileWriterImpl();
+
+  private static AuditQueue queue;
+
+  private static boolean queueCreated;
+
   public AuditFileEntry() {
     File auditDir = new File( PentahoSystem.getApplicationContext().getFileOutputPath( AuditFileEntry.auditDirPath ) );
     if ( !auditDir.exists() ) {
@@ -67,49 +75,99 @@ public class AuditFileEntry implements IAuditEntry {
     }
   }
 
-  public synchronized void auditAll( final String jobId, final String instId, final String objId, final String objType,
+  public void auditAll( final String jobId, final String instId, final String objId, final String objType,
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration ) throws AuditException {
 
     if ( AuditFileEntry.auditFile == null ) {
       return;
     }
-    try {
-      BufferedWriter fw = new BufferedWriter( new FileWriter( AuditFileEntry.auditFile, true ) );
+    AuditRecord record =
+        new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue,
+            messageNumValue, duration );
+    AuditQueue queue = getQueue();
+    if ( queue != null ) {
+      queue.add( record );
+    } else {
+      synchronized ( AuditFileEntry.fileWriter ) {
+        AuditFileEntry.fileWriter.write( Collections.singletonList( record ) );
+      }
+    }
+  }
+
+  /**
+   * @return the queue of records waiting to be written to the audit file, or null if records are written as they
+   *         are audited
+   */
+  public AuditQueue getQueue() {
+    synchronized ( AuditFileEntry.class ) {
+      if ( !AuditFileEntry.queueCreated ) {
+        AuditFileEntry.queue = AuditQueue.create( "AuditFileEntry", AuditFileEntry.fileWriter ); //$NON-NLS-1$
+        AuditFileEntry.queueCreated = true;
+      }
+      return AuditFileEntry.queue;
+    }
+  }
+
+  /**
+   * Appends audit records to the audit file, keeping the file open between batches.
+   */
+  private static class FileWriterImpl implements AuditQueue.Writer {
+    private File file;
+
+    private BufferedWriter fw;
+
+    public void write( final List<AuditRecord> records ) throws AuditException {
       try {
-        Date dt = new Date();
-        fw.write( AuditFileEntry.auditDateFormat.format( dt ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( jobId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( instId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objId ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( objType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( actor ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageType ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageName ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageTxtValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( messageNumValue ) );
-        fw.write( AuditFileEntry.ID_SEPARATOR );
-        fw.write( getWritable( duration ) );
-        fw.newLine();
-      } finally {
+        if ( fw == null || !AuditFileEntry.auditFile.equals( file ) ) {
+          close();
+          file = AuditFileEntry.auditFile;
+          fw = new BufferedWriter( new FileWriter( file, true ) );
+        }
+        for ( AuditRecord record : records ) {
+          fw.write( AuditFileEntry.auditDateFormat.format( record.auditDate ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.jobId ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.instId ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.objId ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.objType ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.actor ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.messageType ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.messageName ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.messageTxtValue ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.messageNumValue ) );
+          fw.write( AuditFileEntry.ID_SEPARATOR );
+          fw.write( getWritable( record.duration ) );
+          fw.newLine();
+        }
         fw.flush();
-        fw.close();
+      } catch ( IOException ex ) {
+        close();
+        throw new AuditException( ex );
+      }
+    }
+
+    public void close() {
+      if ( fw != null ) {
+        try {
+          fw.close();
+        } catch ( IOException ex ) {
+          Logger.error( AuditFileEntry.class.getName(), ex.getMessage(), ex );
+        }
+        fw = null;
       }
-    } catch ( IOException ex ) {
-      throw new AuditException( ex );
     }
   }
 
-  private String getWritable( final Object obj ) {
+  private static String getWritable( final Object obj ) {
     if ( obj instanceof BigDecimal ) {
       DecimalFormat format = new DecimalFormat( "#.###" ); //$NON-NLS-1$
       return format.format( obj );
@@ -0,0 +1,394 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A bounded queue of audit records which are written in batches by a background thread, so that auditing does not
+ * perform I/O on the thread executing the audited action. What happens when the queue is full is decided by the
+ * {@link OverflowPolicy}.
+ *
+ * Asynchronous auditing is off unless enabled in pentaho.xml, since records still queued when the server stops
+ * abnormally are lost:
+ *
+ * <pre>
+ * &lt;audit&gt;
+ *   &lt;queue&gt;
+ *     &lt;enabled&gt;true&lt;/enabled&gt;
+ *     &lt;capacity&gt;10000&lt;/capacity&gt;
+ *     &lt;batchSize&gt;200&lt;/batchSize&gt;
+ *     &lt;overflow&gt;CALLER_RUNS&lt;/overflow&gt;
+ *   &lt;/queue&gt;
+ * &lt;/audit&gt;
+ * </pre>
+ *
+ * Queues are shut down with the platform by {@link AuditQueueSystemListener}, which has to be listed in
+ * systemListeners.xml.
+ */
+public class AuditQueue {
+
+  /**
+   * What to do with a record when the queue is full.
+   */
+  public enum OverflowPolicy {
+    /** wait until the writer has made room */
+    BLOCK,
+    /** discard the record, counting it in {@link AuditQueue#getDroppedCount()} */
+    DROP,
+    /** write the record on the calling thread */
+    CALLER_RUNS
+  }
+
+  /**
+   * Writes a batch of records. Called by a single thread at a time.
+   */
+  public interface Writer {
+    void write( List<AuditRecord> records ) throws AuditException;
+
+    void close();
+  }
+
+  /**
+   * One audited event, with the time at which it was audited.
+   */
+  public static class AuditRecord {
+    final String jobId;
+
+    final String instId;
+
+    final String objId;
+
+    final String objType;
+
+    final String actor;
+
+    final String messageType;
+
+    final String messageName;
+
+    final String messageTxtValue;
+
+    final BigDecimal messageNumValue;
+
+    final double duration;
+
+    final Date auditDate;
+
+    public AuditRecord( final String jobId, final String instId, final String objId, final String objType,
+        final String actor, final String messageType, final String messageName, final String messageTxtValue,
+        final BigDecimal messageNumValue, final double duration ) {
+      this.jobId = jobId;
+      this.instId = instId;
+      this.objId = objId;
+      this.objType = objType;
+      this.actor = actor;
+      this.messageType = messageType;
+      this.messageName = messageName;
+      this.messageTxtValue = messageTxtValue;
+      this.messageNumValue = messageNumValue;
+      this.duration = duration;
+      this.auditDate = new Date();
+    }
+  }
+
+  private static final long POLL_MILLIS = 1000;
+
+  private static final List<AuditQueue> queues = new CopyOnWriteArrayList<AuditQueue>();
+
+  private final String name;
+
+  private final Writer writer;
+
+  private final BlockingQueue<AuditRecord> queue;
+
+  private final int batchSize;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final Thread writerThread;
+
+  private final Object writeLock = new Object();
+
+  /**
+   * Held for reading while a record is queued and for writing while the queue is stopped, so that no record is queued
+   * after {@link #shutdown()} has drained the queue.
+   */
+  private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+  private volatile boolean running = true;
+
+  private final AtomicLong pending = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong written = new AtomicLong();
+
+  private final AtomicLong flushes = new AtomicLong();
+
+  private final AtomicLong totalFlushMillis = new AtomicLong();
+
+  private volatile long lastFlushMillis;
+
+  /**
+   * Creates a queue configured from the <code>audit/queue</code> system settings, or returns null if asynchronous
+   * auditing is not enabled.
+   */
+  public static AuditQueue create( final String name, final Writer writer ) {
+    String enabled = PentahoSystem.getSystemSetting( "audit/queue/enabled", "false" ); //$NON-NLS-1$ //$NON-NLS-2$
+    if ( !Boolean.parseBoolean( enabled.trim() ) ) {
+      return null;
+    }
+    int capacity = getIntSetting( "audit/queue/capacity", 10000 ); //$NON-NLS-1$
+    int batchSize = getIntSetting( "audit/queue/batchSize", 200 ); //$NON-NLS-1$
+    OverflowPolicy policy = OverflowPolicy.CALLER_RUNS;
+    String overflow = PentahoSystem.getSystemSetting( "audit/queue/overflow", policy.name() ); //$NON-NLS-1$
+    try {
+      policy = OverflowPolicy.valueOf( overflow.trim().toUpperCase() );
+    } catch ( IllegalArgumentException e ) {
+      Logger.warn( AuditQueue.class.getName(), "Unknown audit queue overflow policy " + overflow ); //$NON-NLS-1$
+    }
+    return new AuditQueue( name, writer, capacity, batchSize, policy );
+  }
+
+  public AuditQueue( final String name, final Writer writer, final int capacity, final int batchSize,
+      final OverflowPolicy overflowPolicy ) {
+    this.name = name;
+    this.writer = writer;
+    this.queue = new ArrayBlockingQueue<AuditRecord>( Math.max( 1, capacity ) );
+    this.batchSize = Math.max( 1, batchSize );
+    this.overflowPolicy = overflowPolicy;
+
+    writerThread = new Thread( new Runnable() {
+      public void run() {
+        drain();
+      }
+    }, name );
+    writerThread.setDaemon( true );
+    writerThread.start();
+    queues.add( this );
+  }
+
+  /**
+   * Shuts down every queue which is running.
+   */
+  public static void shutdownAll() {
+    for ( AuditQueue queue : queues ) {
+      queue.shutdown();
+    }
+  }
+
+  private static int getIntSetting( final String path, final int defaultValue ) {
+    try {
+      return Integer.parseInt( PentahoSystem.getSystemSetting( path, String.valueOf( defaultValue ) ).trim() );
+    } catch ( NumberFormatException e ) {
+      return defaultValue;
+    }
+  }
+
+  /**
+   * Queues a record for writing, applying the overflow policy if the queue is full.
+   */
+  public void add( final AuditRecord record ) throws AuditException {
+    runningLock.readLock().lock();
+    try {
+      if ( !running ) {
+        write( Collections.singletonList( record ) );
+        return;
+      }
+      pending.incrementAndGet();
+      if ( queue.offer( record ) ) {
+        return;
+      }
+      switch ( overflowPolicy ) {
+        case BLOCK:
+          try {
+            // the writer thread keeps draining until shutdown() gets the write lock
+            queue.put( record );
+          } catch ( InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            completed( 1 );
+            dropped.incrementAndGet();
+          }
+          break;
+        case DROP:
+          completed( 1 );
+          dropped.incrementAndGet();
+          break;
+        default:
+          completed( 1 );
+          write( Collections.singletonList( record ) );
+      }
+    } finally {
+      runningLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Waits until every record queued so far has been written.
+   */
+  public void flush() {
+    synchronized ( pending ) {
+      while ( pending.get() > 0 && writerThread.isAlive() ) {
+        try {
+          pending.wait( POLL_MILLIS );
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes any queued records and stops the writer thread. Records audited afterwards are written on the calling
+   * thread.
+   */
+  public void shutdown() {
+    runningLock.writeLock().lock();
+    try {
+      if ( !running ) {
+        return;
+      }
+      running = false;
+    } finally {
+      runningLock.writeLock().unlock();
+    }
+    queues.remove( this );
+    writerThread.interrupt();
+    try {
+      writerThread.join( POLL_MILLIS * 10 );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+    }
+    List<AuditRecord> remaining = new ArrayList<AuditRecord>();
+    queue.drainTo( remaining );
+    if ( !remaining.isEmpty() ) {
+      try {
+        write( remaining );
+      } catch ( AuditException e ) {
+        Logger.error( AuditQueue.class.getName(), e.getMessage(), e );
+      } finally {
+        completed( remaining.size() );
+      }
+    }
+    synchronized ( writeLock ) {
+      writer.close();
+    }
+  }
+
+  private void drain() {
+    List<AuditRecord> batch = new ArrayList<AuditRecord>( batchSize );
+    while ( running ) {
+      try {
+        AuditRecord record = queue.poll( POLL_MILLIS, TimeUnit.MILLISECONDS );
+        if ( record == null ) {
+          continue;
+        }
+        batch.add( record );
+        queue.drainTo( batch, batchSize - 1 );
+      } catch ( InterruptedException e ) {
+        // shutdown() writes whatever is left in the queue
+        break;
+      }
+      try {
+        write( batch );
+      } catch ( Throwable t ) {
+        Logger.error( AuditQueue.class.getName(), t.getMessage(), t );
+      } finally {
+        completed( batch.size() );
+        batch.clear();
+      }
+    }
+  }
+
+  private void write( final List<AuditRecord> records ) throws AuditException {
+    long start = System.currentTimeMillis();
+    synchronized ( writeLock ) {
+      writer.write( records );
+    }
+    lastFlushMillis = System.currentTimeMillis() - start;
+    totalFlushMillis.addAndGet( lastFlushMillis );
+    flushes.incrementAndGet();
+    written.addAndGet( records.size() );
+  }
+
+  private void completed( final int count ) {
+    if ( pending.addAndGet( -count ) <= 0 ) {
+      synchronized ( pending ) {
+        pending.notifyAll();
+      }
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the number of records waiting to be written
+   */
+  public int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * @return the number of records discarded because the queue was full
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * @return the number of records written
+   */
+  public long getWrittenCount() {
+    return written.get();
+  }
+
+  /**
+   * @return how long the most recent batch took to write, in milliseconds
+   */
+  public long getLastFlushMillis() {
+    return lastFlushMillis;
+  }
+
+  /**
+   * @return the average time taken to write a batch, in milliseconds
+   */
+  public double getAverageFlushMillis() {
+    long count = flushes.get();
+    return count == 0 ? 0 : (double) totalFlushMillis.get() / count;
+  }
+
+}
@@ -23,6 +23,7 @@ import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.messages.Messages;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.engine.services.audit.AuditQueue.AuditRecord;
 import org.pentaho.platform.util.logging.Logger;
 
 import java.math.BigDecimal;
@@ -31,6 +32,8 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.sql.Types;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * @author mbatchel
@@ -47,6 +50,11 @@ public class AuditSQLEntry implements IAuditEntry {
    * attribute value (for backward compatibility).
    */
   private static String INSERT_STMT;
+
+  private static AuditQueue queue;
+
+  private static boolean queueCreated;
+
   static {
 
     String tmp = PentahoSystem.getSystemSetting( "audit_sql.xml", "auditConnection/insertSQL", null ); //$NON-NLS-1$ //$NON-NLS-2$
@@ -116,24 +124,65 @@ public class AuditSQLEntry implements IAuditEntry {
       final String actor, final String messageType, final String messageName, final String messageTxtValue,
       final BigDecimal messageNumValue, final double duration ) throws AuditException {
 
+    AuditRecord record =
+        new AuditRecord( jobId, instId, objId, objType, actor, messageType, messageName, messageTxtValue,
+            messageNumValue, duration );
+    AuditQueue queue = getQueue();
+    if ( queue != null ) {
+      queue.add( record );
+    } else {
+      write( Collections.singletonList( record ) );
+    }
+  }
+
+  /**
+   * @return the queue of records waiting to be inserted, or null if records are inserted as they are audited
+   */
+  public AuditQueue getQueue() {
+    synchronized ( AuditSQLEntry.class ) {
+      if ( !AuditSQLEntry.queueCreated ) {
+        AuditSQLEntry.queue = AuditQueue.create( "AuditSQLEntry", new AuditQueue.Writer() { //$NON-NLS-1$
+            public void write( final List<AuditRecord> records ) throws AuditException {
+              AuditSQLEntry.this.write( records );
+            }
+
+            public void close() {
+            }
+          } );
+        AuditSQLEntry.queueCreated = true;
+      }
+      return AuditSQLEntry.queue;
+    }
+  }
+
+  private void write( final List<AuditRecord> records ) throws AuditException {
     Connection con = null;
     try {
       con = AuditSQLEntry.audc.getAuditConnection();
       try {
         PreparedStatement stmt = con.prepareStatement( AuditSQLEntry.INSERT_STMT );
         try {
-          setString( stmt, 1, jobId );
-          setString( stmt, 2, instId );
-          setString( stmt, 3, objId );
-          setString( stmt, 4, objType );
-          setString( stmt, 5, actor );
-          setString( stmt, 6, messageType );
-          setString( stmt, 7, messageName );
-          setObject( stmt, 8, messageTxtValue );
-          setBigDec( stmt, 9, messageNumValue );
-          setBigDec( stmt, 10, new BigDecimal( duration ) );
-          stmt.setTimestamp( 11, new Timestamp( System.currentTimeMillis() ) );
-          stmt.executeUpdate();
+          for ( AuditRecord record : records ) {
+            setString( stmt, 1, record.jobId );
+            setString( stmt, 2, record.instId );
+            setString( stmt, 3, record.objId );
+            setString( stmt, 4, record.objType );
+            setString( stmt, 5, record.actor );
+            setString( stmt, 6, record.messageType );
+            setString( stmt, 7, record.messageName );
+            setObject( stmt, 8, record.messageTxtValue );
+            setBigDec( stmt, 9, record.messageNumValue );
+            setBigDec( stmt, 10, new BigDecimal( record.duration ) );
+            stmt.setTimestamp( 11, new Timestamp( record.auditDate.getTime() ) );
+            if ( records.size() == 1 ) {
+              stmt.executeUpdate();
+            } else {
+              stmt.addBatch();
+            }
+          }
+          if ( records.size() > 1 ) {
+            stmt.executeBatch();
+          }
         } catch ( SQLException ex ) {
           Logger.error( this.getClass().getName(), ex.getMessage(), ex );
           try {
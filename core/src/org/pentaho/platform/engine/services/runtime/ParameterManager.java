@@ -32,6 +32,7 @@ import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource
 import org.pentaho.platform.engine.services.messages.Messages;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -61,6 +62,8 @@ public class ParameterManager implements IParameterManager {
 
   private Map sequenceOutputDefs;
 
+  private Map inheritedValues;
+
   ParameterManager() {
     allParams = new ListOrderedMap();
     allResources = new ListOrderedMap();
@@ -89,6 +92,60 @@ public class ParameterManager implements IParameterManager {
     sequenceOutputDefs.putAll( actionSequence.getOutputDefinitions() );
   }
 
+  /**
+   * Creates a copy of a parameter manager for one iteration of a parallel loop. The parameters are copied so that the
+   * iteration can change them without affecting other iterations; their values are shared but only disposed by
+   * <code>parameterManager</code>.
+   */
+  @SuppressWarnings( { "all" } )
+  ParameterManager( final ParameterManager parameterManager ) {
+    this();
+    inheritedValues = new HashMap();
+    for ( Iterator it = parameterManager.allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      ActionParameter param = (ActionParameter) entry.getValue();
+      allParams.put( entry.getKey(), ( param != null ) ? new ActionParameter( param ) : null );
+      inheritedValues.put( entry.getKey(), ( param != null ) ? param.getValue() : null );
+    }
+    allResources.putAll( parameterManager.allResources );
+    sequenceInputNames = parameterManager.sequenceInputNames;
+    sequenceResourceNames = parameterManager.sequenceResourceNames;
+    sequenceOutputDefs.putAll( parameterManager.sequenceOutputDefs );
+  }
+
+  /**
+   * Takes the parameters that were added or changed in a copy of this parameter manager, once the loop iteration
+   * using the copy has completed. A parameter replaced here is disposed right away if it was itself taken from an
+   * earlier iteration; otherwise other iterations may still be using its value, so it is disposed with this manager.
+   * 
+   * @param copy
+   *          a parameter manager created with {@link #ParameterManager(ParameterManager)}
+   * @param merged
+   *          the parameters taken from earlier iterations of the same loop, updated by this method
+   */
+  void merge( final ParameterManager copy, final Set<IActionParameter> merged ) {
+    for ( Iterator it = copy.allParams.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry entry = (Map.Entry) it.next();
+      String key = (String) entry.getKey();
+      IActionParameter param = (IActionParameter) entry.getValue();
+      if ( ( param == null ) || ( copy.inheritedValues.containsKey( key )
+          && ( copy.inheritedValues.get( key ) == param.getValue() ) ) ) {
+        continue;
+      }
+      IActionParameter old = (IActionParameter) allParams.get( key );
+      if ( ( old != null ) && merged.remove( old ) ) {
+        allParams.put( key, param );
+        if ( !allParams.containsValue( old ) ) {
+          disposeParameter( (ActionParameter) old );
+        }
+      } else {
+        addToAllInputs( key, param );
+      }
+      merged.add( param );
+    }
+    waitingToDieParams.addAll( copy.waitingToDieParams );
+  }
+
   public Map getAllParameters() {
     return ( allParams );
   }
@@ -38,12 +38,23 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 import java.util.ResourceBundle;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -97,11 +108,13 @@ import org.pentaho.platform.api.util.XmlParseException;
 import org.pentaho.platform.engine.core.audit.AuditHelper;
 import org.pentaho.platform.engine.core.audit.MessageTypes;
 import org.pentaho.platform.engine.core.output.MultiContentItem;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.services.PentahoMessenger;
 import org.pentaho.platform.engine.services.SolutionURIResolver;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
 import org.pentaho.platform.engine.services.actionsequence.ActionParameterSource;
+import org.pentaho.platform.engine.services.actionsequence.ActionSequence;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceParameterMgr;
 import org.pentaho.platform.engine.services.actionsequence.ActionSequenceResourceWrapper;
 import org.pentaho.platform.engine.services.messages.Messages;
@@ -925,101 +938,402 @@ public class RuntimeContext extends PentahoMessenger implements IRuntimeContext
     Object[][] headerSet = loopSet.getMetaData().getColumnHeaders();
     // TODO handle OLAP result sets
     Object[] headers = headerSet[0];
-    while ( row != null ) {
-      loopCount++;
-      if ( RuntimeContext.debug ) {
-        debug( Messages.getInstance()
-            .getString( "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( loopCount ) ) ); //$NON-NLS-1$
-      }
+    ParallelLoop parallelLoop = createParallelLoop( loopParm, sequence, doneListener, execListener, async, peekOnly );
+    try {
+      while ( row != null ) {
+        loopCount++;
+        if ( RuntimeContext.debug ) {
+          debug( Messages.getInstance().getString(
+              "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( loopCount ) ) ); //$NON-NLS-1$
+        }
 
-      if ( execListener != null ) {
-        execListener.loop( this, loopCount );
-      }
-      if ( loopParm != null ) {
-        IActionParameter ap;
-        for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
-          String name = headers[columnNo].toString();
-          Object value = row[columnNo];
-          String type = null;
-          if ( value instanceof String ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value instanceof Date ) {
-            type = IActionParameter.TYPE_DATE;
-          } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
-            type = IActionParameter.TYPE_INTEGER;
-          } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
-            type = IActionParameter.TYPE_DECIMAL;
-          } else if ( value instanceof String[] ) {
-            type = IActionParameter.TYPE_STRING;
-          } else if ( value == null ) {
-            warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
-          } else {
-            type = IActionParameter.TYPE_OBJECT;
-            warn( Messages.getInstance().getString(
-                "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
+        if ( execListener != null ) {
+          execListener.loop( this, loopCount );
+        }
+        if ( parallelLoop != null ) {
+          RuntimeContext iteration = parallelLoop.newIteration();
+          iteration.setLoopRow( headers, row );
+          parallelLoop.submit( iteration, loopCount );
+          if ( parallelLoop.isStopped() ) {
+            return;
           }
-          // TODO make sure any previous loop values are removed
-          ap = paramManager.getInput( name );
-          if ( ap == null ) {
-            ap = new ActionParameter( name, type, value, null, null );
-            addInputParameter( name, ap );
-          } else {
-            ap.dispose();
-            ap.setValue( value );
+        } else {
+          if ( loopParm != null ) {
+            setLoopRow( headers, row );
+          }
+          try {
+            performActions( sequence, doneListener, execListener, async );
+          } catch ( ActionSequenceException e ) {
+            e.setLoopIndex( loopCount );
+            throw e;
           }
         }
+        row = peekOnly ? ( (IPeekable) loopSet ).peek() : loopSet.next();
       }
-      try {
-        performActions( sequence, doneListener, execListener, async );
-      } catch ( ActionSequenceException e ) {
-        e.setLoopIndex( loopCount );
-        throw e;
+      if ( parallelLoop != null ) {
+        parallelLoop.finish();
+        if ( parallelLoop.isStopped() ) {
+          return;
+        }
+      }
+    } finally {
+      if ( parallelLoop != null ) {
+        parallelLoop.shutdown();
       }
-      row = peekOnly ? ( (IPeekable) loopSet ).peek() : loopSet.next();
     }
 
     status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
   }
 
+  private void setLoopRow( final Object[] headers, final Object[] row ) {
+    IActionParameter ap;
+    for ( int columnNo = 0; columnNo < headers.length; columnNo++ ) {
+      String name = headers[columnNo].toString();
+      Object value = row[columnNo];
+      String type = null;
+      if ( value instanceof String ) {
+        type = IActionParameter.TYPE_STRING;
+      } else if ( value instanceof Date ) {
+        type = IActionParameter.TYPE_DATE;
+      } else if ( ( value instanceof Long ) || ( value instanceof Integer ) ) {
+        type = IActionParameter.TYPE_INTEGER;
+      } else if ( ( value instanceof BigDecimal ) || ( value instanceof Double ) || ( value instanceof Float ) ) {
+        type = IActionParameter.TYPE_DECIMAL;
+      } else if ( value instanceof String[] ) {
+        type = IActionParameter.TYPE_STRING;
+      } else if ( value == null ) {
+        warn( Messages.getInstance().getString( "RuntimeContext.WARN_VARIABLE_IN_LOOP_IS_NULL", name ) ); //$NON-NLS-1$
+      } else {
+        type = IActionParameter.TYPE_OBJECT;
+        warn( Messages.getInstance().getString(
+            "RuntimeContext.WARN_VARIABLE_IN_LOOP_NOT_RECOGNIZED", name, value.getClass().toString() ) ); //$NON-NLS-1$
+      }
+      // TODO make sure any previous loop values are removed
+      ap = paramManager.getInput( name );
+      if ( ap == null ) {
+        ap = new ActionParameter( name, type, value, null, null );
+        addInputParameter( name, ap );
+      } else {
+        ap.dispose();
+        ap.setValue( value );
+      }
+    }
+  }
+
   private void executeLoop( final IActionParameter loopParm, final List loopList, final IActionSequence sequence,
       final IActionCompleteListener doneListener, final IExecutionListener execListener, final boolean async )
     throws ActionSequenceException {
 
     // execute the actions
     int loopCount = -1;
-    for ( Iterator it = loopList.iterator(); it.hasNext(); ) {
-      loopCount++;
-      if ( RuntimeContext.debug ) {
-        debug( Messages.getInstance()
-            .getString( "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( loopCount ) ) ); //$NON-NLS-1$
+    ParallelLoop parallelLoop = createParallelLoop( loopParm, sequence, doneListener, execListener, async, false );
+    try {
+      for ( Iterator it = loopList.iterator(); it.hasNext(); ) {
+        loopCount++;
+        if ( RuntimeContext.debug ) {
+          debug( Messages.getInstance().getString(
+              "RuntimeContext.DEBUG_EXECUTING_ACTION", Integer.toString( loopCount ) ) ); //$NON-NLS-1$
+        }
+
+        if ( execListener != null ) {
+          execListener.loop( this, loopCount );
+        }
+        Object loopVar = it.next();
+        if ( parallelLoop != null ) {
+          RuntimeContext iteration = parallelLoop.newIteration();
+          iteration.setLoopListItem( loopParm, loopVar );
+          parallelLoop.submit( iteration, loopCount );
+          if ( parallelLoop.isStopped() ) {
+            return;
+          }
+          continue;
+        }
+        if ( loopParm != null ) {
+          setLoopListItem( loopParm, loopVar );
+        }
+
+        try {
+          performActions( sequence, doneListener, execListener, async );
+        } catch ( ActionSequenceException e ) {
+          e.setLoopIndex( loopCount );
+          throw e;
+        }
+        if ( promptStatus == IRuntimeContext.PROMPT_NOW ) {
+          return;
+        }
+      }
+      if ( parallelLoop != null ) {
+        parallelLoop.finish();
+        if ( parallelLoop.isStopped() ) {
+          return;
+        }
       }
+    } finally {
+      if ( parallelLoop != null ) {
+        parallelLoop.shutdown();
+      }
+    }
+    status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
+  }
 
-      if ( execListener != null ) {
-        execListener.loop( this, loopCount );
+  private void setLoopListItem( final IActionParameter loopParm, final Object loopVar ) {
+    IActionParameter ap;
+    if ( loopVar instanceof Map ) {
+      ap = new ActionParameter( loopParm.getName(), "property-map", loopVar, null, null ); //$NON-NLS-1$
+    } else {
+      ap = new ActionParameter( loopParm.getName(), "string", loopVar, null, null ); //$NON-NLS-1$
+    }
+
+    addInputParameter( loopParm.getName(), ap );
+  }
+
+  /**
+   * Returns the executor for the iterations of a loop which declares a <code>loop-parallelism</code> greater than 1,
+   * or null if the iterations are to execute one after the other. Loops which only peek at their result set always
+   * execute one iteration at a time, as do loops nested in an iteration of a parallel loop, which could otherwise wait
+   * for threads held by the iterations of the outer loop.
+   */
+  private ParallelLoop createParallelLoop( final IActionParameter loopParm, final IActionSequence sequence,
+      final IActionCompleteListener doneListener, final IExecutionListener execListener, final boolean async,
+      final boolean peekOnly ) {
+    if ( ( loopParm == null ) || peekOnly || !( sequence instanceof ActionSequence )
+        || !( paramManager instanceof ParameterManager ) ) {
+      return null;
+    }
+    int parallelism = ( (ActionSequence) sequence ).getLoopParallelism();
+    if ( ( parallelism <= 1 ) || LoopExecutor.isLoopThread() ) {
+      return null;
+    }
+    if ( RuntimeContext.debug ) {
+      debug( Messages.getInstance().getString(
+          "RuntimeContext.DEBUG_EXECUTING_LOOP_IN_PARALLEL", Integer.toString( parallelism ) ) ); //$NON-NLS-1$
+    }
+    return new ParallelLoop( (ActionSequence) sequence, parallelism, doneListener, execListener, async );
+  }
+
+  /**
+   * The threads shared by the parallel loops of all action sequences, as many as
+   * {@link ActionSequence#getMaxLoopParallelism()}.
+   */
+  private static class LoopExecutor {
+
+    private static final ThreadPoolExecutor INSTANCE = create();
+
+    private static ThreadPoolExecutor create() {
+      int threads = ActionSequence.getMaxLoopParallelism();
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor( threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+              new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread( final Runnable runnable ) {
+                  return new LoopThread( runnable, "RuntimeContext-loop-" + count.incrementAndGet() ); //$NON-NLS-1$
+                }
+              } );
+      executor.allowCoreThreadTimeOut( true );
+      return executor;
+    }
+
+    static boolean isLoopThread() {
+      return Thread.currentThread() instanceof LoopThread;
+    }
+
+    private static class LoopThread extends Thread {
+      LoopThread( final Runnable runnable, final String name ) {
+        super( runnable, name );
+        setDaemon( true );
       }
-      Object loopVar = it.next();
-      if ( loopParm != null ) {
-        IActionParameter ap;
-        if ( loopVar instanceof Map ) {
-          ap = new ActionParameter( loopParm.getName(), "property-map", loopVar, null, null ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Executes the iterations of a loop on the threads of the {@link LoopExecutor}. Each iteration executes in a runtime
+   * context of its own, with copies of the loop's parameters and action definitions; the parameters an iteration adds
+   * or changes are merged back into this context in loop order, as if the iterations had executed one after the other.
+   */
+  private class ParallelLoop {
+
+    private final ActionSequence sequence;
+
+    private final IActionCompleteListener doneListener;
+
+    private final IExecutionListener execListener;
+
+    private final boolean async;
+
+    private final ParameterManager loopParameters;
+
+    private final int maxPending;
+
+    private final LinkedList<LoopIteration> pending = new LinkedList<LoopIteration>();
+
+    private final Set<IActionParameter> merged = new HashSet<IActionParameter>();
+
+    private final Locale locale = LocaleHelper.getLocale();
+
+    private boolean stopped;
+
+    ParallelLoop( final ActionSequence sequence, final int parallelism, final IActionCompleteListener doneListener,
+        final IExecutionListener execListener, final boolean async ) {
+      this.sequence = sequence;
+      this.doneListener = doneListener;
+      this.execListener = execListener;
+      this.async = async;
+      this.loopParameters = new ParameterManager( (ParameterManager) paramManager );
+      // the threads are shared, so a loop submits no more iterations than it may execute at a time
+      this.maxPending = parallelism;
+    }
+
+    RuntimeContext newIteration() {
+      RuntimeContext context =
+          new RuntimeContext( instanceId, solutionEngine, sequence.getSolutionName(), runtimeData, session,
+              outputHandler, processId, urlFactory, parameterProviders, new ArrayList(),
+              createFeedbackParameterCallback );
+      context.actionSequence = actionSequence;
+      context.paramManager = new ParameterManager( loopParameters );
+      context.setLoggingLevel( getLoggingLevel() );
+      context.audit = audit;
+      context.status = IRuntimeContext.RUNTIME_STATUS_RUNNING;
+      return context;
+    }
+
+    void submit( final RuntimeContext context, final int loopIndex ) throws ActionSequenceException {
+      while ( pending.size() >= maxPending ) {
+        completeNext();
+      }
+      LoopIteration iteration = new LoopIteration( context, sequence.newInstance(), loopIndex, this );
+      if ( stopped ) {
+        iteration.discard();
+        return;
+      }
+      iteration.future = LoopExecutor.INSTANCE.submit( iteration );
+      pending.add( iteration );
+    }
+
+    boolean isStopped() {
+      return stopped;
+    }
+
+    void finish() throws ActionSequenceException {
+      while ( !pending.isEmpty() ) {
+        completeNext();
+      }
+    }
+
+    /**
+     * Discards the iterations which have not been merged.
+     */
+    void shutdown() {
+      for ( LoopIteration iteration : pending ) {
+        // an iteration which has not started yet returns as soon as it does
+        iteration.discard();
+      }
+      pending.clear();
+    }
+
+    private void completeNext() throws ActionSequenceException {
+      LoopIteration iteration = pending.removeFirst();
+      try {
+        iteration.future.get();
+      } catch ( InterruptedException e ) {
+        iteration.discard();
+        Thread.currentThread().interrupt();
+        throw new ActionExecutionException( Messages.getInstance().getErrorString(
+            "RuntimeContext.ERROR_0037_LOOP_ITERATION_FAILED", Integer.toString( iteration.loopIndex ) ), e, //$NON-NLS-1$
+            session.getName(), instanceId, getActionSequence().getSequenceName(), null );
+      } catch ( ExecutionException e ) {
+        iteration.discard();
+        ActionSequenceException ex;
+        if ( e.getCause() instanceof ActionSequenceException ) {
+          ex = (ActionSequenceException) e.getCause();
         } else {
-          ap = new ActionParameter( loopParm.getName(), "string", loopVar, null, null ); //$NON-NLS-1$
+          ex =
+              new ActionExecutionException( Messages.getInstance().getErrorString(
+                  "RuntimeContext.ERROR_0037_LOOP_ITERATION_FAILED", Integer.toString( iteration.loopIndex ) ), //$NON-NLS-1$
+                  e.getCause(), session.getName(), instanceId, getActionSequence().getSequenceName(), null );
         }
+        ex.setLoopIndex( iteration.loopIndex );
+        throw ex;
+      }
 
-        addInputParameter( loopParm.getName(), ap );
+      RuntimeContext context = iteration.context;
+      ( (ParameterManager) paramManager ).merge( (ParameterManager) context.paramManager, merged );
+      if ( getMessages() != null ) {
+        getMessages().addAll( context.getMessages() );
+      }
+      if ( context.promptStatus == IRuntimeContext.PROMPT_NOW ) {
+        promptStatus = context.promptStatus;
+        stopped = true;
+        shutdown();
       }
+    }
+  }
+
+  /**
+   * One iteration of a {@link ParallelLoop}. An iteration which is discarded rather than merged disposes its
+   * parameters once it is no longer executing.
+   */
+  private static class LoopIteration implements Callable<Object> {
+
+    private final RuntimeContext context;
+
+    private final ActionSequence sequence;
+
+    private final int loopIndex;
+
+    private final ParallelLoop loop;
+
+    private Future<Object> future;
+
+    private boolean finished;
 
+    private boolean discarded;
+
+    LoopIteration( final RuntimeContext context, final ActionSequence sequence, final int loopIndex,
+        final ParallelLoop loop ) {
+      this.context = context;
+      this.sequence = sequence;
+      this.loopIndex = loopIndex;
+      this.loop = loop;
+    }
+
+    public Object call() throws ActionSequenceException {
       try {
-        performActions( sequence, doneListener, execListener, async );
-      } catch ( ActionSequenceException e ) {
-        e.setLoopIndex( loopCount );
-        throw e;
+        if ( !isDiscarded() ) {
+          PentahoSessionHolder.setSession( context.session );
+          LocaleHelper.setLocale( loop.locale );
+          try {
+            context.validateComponents( sequence, null );
+            context.performActions( sequence, loop.doneListener, loop.execListener, loop.async );
+          } finally {
+            PentahoSessionHolder.removeSession();
+          }
+        }
+        return null;
+      } finally {
+        finish();
       }
-      if ( promptStatus == IRuntimeContext.PROMPT_NOW ) {
-        return;
+    }
+
+    private synchronized boolean isDiscarded() {
+      return discarded;
+    }
+
+    private synchronized void finish() {
+      finished = true;
+      if ( discarded ) {
+        context.dispose();
+      }
+    }
+
+    synchronized void discard() {
+      if ( !discarded ) {
+        discarded = true;
+        if ( finished || ( future == null ) ) {
+          context.dispose();
+        }
       }
     }
-    status = IRuntimeContext.RUNTIME_STATUS_SUCCESS;
   }
 
   private void performActions( final IActionSequence sequence, final IActionCompleteListener doneListener,
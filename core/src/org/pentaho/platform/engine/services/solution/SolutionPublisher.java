@@ -22,6 +22,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.BasePublisher;
+import org.pentaho.platform.engine.services.ActionSequenceDocumentCache;
 import org.pentaho.platform.engine.services.messages.Messages;
 
 public class SolutionPublisher extends BasePublisher {
@@ -41,6 +42,7 @@ public class SolutionPublisher extends BasePublisher {
   @Override
   public String publish( final IPentahoSession session ) {
 
+    ActionSequenceDocumentCache.getInstance().clear();
     // TODO put any code in here to validate the solution
     return Messages.getInstance().getString( "SolutionPublisher.USER_SOLUTION_REPOSITORY_UPDATED" ); //$NON-NLS-1$
   }
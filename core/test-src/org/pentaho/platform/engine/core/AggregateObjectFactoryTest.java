@@ -21,11 +21,14 @@ package org.pentaho.platform.engine.core;
 import org.junit.Test;
 import org.pentaho.platform.api.engine.IMimeTypeListener;
 import org.pentaho.platform.api.engine.IPentahoDefinableObjectFactory;
+import org.pentaho.platform.api.engine.IPentahoObjectRegistration;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.core.system.objfac.AggregateObjectFactory;
+import org.pentaho.platform.engine.core.system.objfac.RuntimeObjectFactory;
 import org.pentaho.platform.engine.core.system.objfac.StandaloneObjectFactory;
 import org.pentaho.platform.engine.core.system.objfac.StandaloneSpringPentahoObjectFactory;
+import org.pentaho.platform.engine.core.system.objfac.references.SingletonPentahoObjectReference;
 import org.pentaho.platform.engine.core.system.objfac.spring.PublishedBeanRegistry;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.support.FileSystemXmlApplicationContext;
@@ -34,7 +37,9 @@ import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertSame;
 
 /**
  * User: nbaker Date: 3/3/13
@@ -192,4 +197,40 @@ public class AggregateObjectFactoryTest {
     assertEquals( 0, PublishedBeanRegistry.getRegisteredFactories().size() );
 
   }
+
+  @Test
+  public void testResolutionsFollowRegisteredFactories() throws Exception {
+
+    StandaloneSession session = new StandaloneSession();
+    StandaloneSpringPentahoObjectFactory factory = new StandaloneSpringPentahoObjectFactory();
+    factory.init( "test-res/solution/system/pentahoObjects.spring.xml", null );
+
+    AggregateObjectFactory aggFactory = new AggregateObjectFactory();
+    aggFactory.registerObjectFactory( factory );
+
+    MimeTypeListener info = aggFactory.get( MimeTypeListener.class, session );
+    assertEquals( "Higher Priority MimeTypeListener", info.name );
+    // singletons resolve to the same instance whatever the session
+    assertSame( info, aggFactory.get( MimeTypeListener.class, new StandaloneSession() ) );
+
+    RuntimeObjectFactory runtimeFactory = new RuntimeObjectFactory();
+    aggFactory.registerObjectFactory( runtimeFactory );
+
+    MimeTypeListener runtimeListener = new MimeTypeListener();
+    runtimeListener.name = "Runtime MimeTypeListener";
+    // registered after the factory, and after a resolution has been cached
+    IPentahoObjectRegistration registration = runtimeFactory.registerReference(
+      new SingletonPentahoObjectReference<MimeTypeListener>( MimeTypeListener.class, runtimeListener,
+        Collections.<String, Object>singletonMap( "priority", "50" ), 50 ) );
+
+    assertSame( runtimeListener, aggFactory.get( MimeTypeListener.class, session ) );
+    assertEquals( runtimeListener, aggFactory.getObjectReferences( MimeTypeListener.class, session ).get( 0 )
+      .getObject() );
+
+    registration.remove();
+    assertSame( info, aggFactory.get( MimeTypeListener.class, session ) );
+
+    aggFactory.deregisterObjectFactory( factory );
+    assertFalse( aggFactory.objectDefined( MimeTypeListener.class ) );
+  }
 }
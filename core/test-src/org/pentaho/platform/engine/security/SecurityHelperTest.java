@@ -19,12 +19,15 @@
 package org.pentaho.platform.engine.security;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
@@ -123,6 +126,23 @@ public class SecurityHelperTest {
     assertTrue( "not granted access for anonimous user", roleWasFound );
   }
 
+  @Test
+  public void createAuthentificationIsCachedTest() {
+    SecurityHelper securityHelper = spy( new SecurityHelper() );
+    IUserRoleListService userRoleListServiceMock = getUserRoleListServiceMock( DEF_USERNAME, ALL_ROLES_ARRAY );
+    doReturn( userRoleListServiceMock ).when( securityHelper ).getUserRoleListService();
+
+    Authentication first = securityHelper.createAuthentication( DEF_USERNAME );
+    Authentication second = securityHelper.createAuthentication( DEF_USERNAME );
+    assertNotSame( first, second );
+    assertEquals( ALL_ROLES_ARRAY.length, second.getAuthorities().length );
+    verify( userRoleListServiceMock, times( 1 ) ).getRolesForUser( Matchers.<ITenant>any(), eq( DEF_USERNAME ) );
+
+    securityHelper.invalidateAuthentication( DEF_USERNAME );
+    securityHelper.createAuthentication( DEF_USERNAME );
+    verify( userRoleListServiceMock, times( 2 ) ).getRolesForUser( Matchers.<ITenant>any(), eq( DEF_USERNAME ) );
+  }
+
   @Test
   @SuppressWarnings( "unchecked" )
   public void runAsSystemTest() throws Exception {
@@ -0,0 +1,89 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentHelper;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+
+import java.util.Date;
+import java.util.Locale;
+
+@SuppressWarnings( "nls" )
+public class ActionSequenceDocumentCacheTest {
+
+  private static RepositoryFile file( String id, Date lastModified ) {
+    return new RepositoryFile.Builder( id, "test.xaction" ).path( "/public/test.xaction" ).lastModificationDate(
+        lastModified ).build();
+  }
+
+  private static Document document( String title ) {
+    Document document = DocumentHelper.createDocument();
+    document.addElement( "action-sequence" ).addElement( "title" ).setText( title );
+    return document;
+  }
+
+  @Test
+  public void testCachedByFileVersionAndLocale() {
+    ActionSequenceDocumentCache cache = new ActionSequenceDocumentCache( 10, 60000 );
+    Date modified = new Date( 1000 );
+    Document document = document( "Title" );
+
+    assertNull( cache.get( file( "1", modified ), Locale.US ) );
+    cache.put( file( "1", modified ), Locale.US, document );
+
+    // the cached document is shared, not copied
+    assertSame( document, cache.get( file( "1", modified ), Locale.US ) );
+    assertSame( document, cache.get( file( "1", modified ), Locale.US ) );
+
+    assertNull( cache.get( file( "1", modified ), Locale.GERMANY ) );
+    assertNull( cache.get( file( "1", new Date( 2000 ) ), Locale.US ) );
+    assertEquals( 0, cache.getSize() );
+
+    assertEquals( 2, cache.getHitCount() );
+    assertEquals( 3, cache.getMissCount() );
+    assertEquals( 0.4, cache.getHitRatio(), 0.001 );
+  }
+
+  @Test
+  public void testBoundedSize() {
+    ActionSequenceDocumentCache cache = new ActionSequenceDocumentCache( 2, 60000 );
+    Date modified = new Date( 1000 );
+    cache.put( file( "1", modified ), Locale.US, document( "1" ) );
+    cache.put( file( "2", modified ), Locale.US, document( "2" ) );
+    // keep 1 recently used
+    cache.get( file( "1", modified ), Locale.US );
+    cache.put( file( "3", modified ), Locale.US, document( "3" ) );
+
+    assertEquals( 2, cache.getSize() );
+    assertEquals( 1, cache.getEvictionCount() );
+    assertNotNull( cache.get( file( "1", modified ), Locale.US ) );
+    assertNull( cache.get( file( "2", modified ), Locale.US ) );
+
+    cache.clear();
+    assertEquals( 0, cache.getSize() );
+    assertNull( cache.get( file( "1", modified ), Locale.US ) );
+  }
+
+}
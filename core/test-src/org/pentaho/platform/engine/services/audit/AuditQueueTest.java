@@ -0,0 +1,165 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services.audit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.pentaho.platform.api.engine.AuditException;
+import org.pentaho.platform.engine.services.audit.AuditQueue.AuditRecord;
+import org.pentaho.platform.engine.services.audit.AuditQueue.OverflowPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@SuppressWarnings( "nls" )
+public class AuditQueueTest {
+
+  private static class TestWriter implements AuditQueue.Writer {
+    final List<String> written = new ArrayList<String>();
+
+    final List<Integer> batches = new ArrayList<Integer>();
+
+    final CountDownLatch release;
+
+    boolean closed;
+
+    TestWriter( CountDownLatch release ) {
+      this.release = release;
+    }
+
+    public void write( List<AuditRecord> records ) throws AuditException {
+      try {
+        release.await();
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+      }
+      synchronized ( this ) {
+        batches.add( records.size() );
+        for ( AuditRecord record : records ) {
+          written.add( record.toString() );
+        }
+      }
+    }
+
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static AuditRecord record() {
+    return new AuditRecord( "job", "inst", "obj", "type", "actor", "type", "name", "txt", null, 0 );
+  }
+
+  @Test
+  public void testRecordsAreWrittenInBatches() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    TestWriter writer = new TestWriter( release );
+    AuditQueue queue = new AuditQueue( "test", writer, 100, 10, OverflowPolicy.BLOCK );
+    for ( int i = 0; i < 25; i++ ) {
+      queue.add( record() );
+    }
+    release.countDown();
+    queue.flush();
+
+    assertEquals( 25, writer.written.size() );
+    assertEquals( 25, queue.getWrittenCount() );
+    assertEquals( 0, queue.getQueueDepth() );
+    for ( int size : writer.batches ) {
+      assertTrue( size <= 10 );
+    }
+    queue.shutdown();
+    assertTrue( writer.closed );
+  }
+
+  @Test
+  public void testDropPolicy() throws Exception {
+    CountDownLatch release = new CountDownLatch( 1 );
+    TestWriter writer = new TestWriter( release );
+    AuditQueue queue = new AuditQueue( "test", writer, 2, 1, OverflowPolicy.DROP );
+    for ( int i = 0; i < 10; i++ ) {
+      queue.add( record() );
+    }
+    // the writer holds at most one record while blocked, the queue two more
+    assertTrue( queue.getDroppedCount() >= 7 );
+    release.countDown();
+    queue.flush();
+    assertEquals( 10, writer.written.size() + queue.getDroppedCount() );
+    queue.shutdown();
+  }
+
+  @Test
+  public void testRecordsAuditedAfterShutdownAreWrittenDirectly() throws Exception {
+    TestWriter writer = new TestWriter( new CountDownLatch( 0 ) );
+    AuditQueue queue = new AuditQueue( "test", writer, 10, 10, OverflowPolicy.BLOCK );
+    queue.shutdown();
+    queue.add( record() );
+    assertEquals( 1, writer.written.size() );
+  }
+
+  @Test
+  public void testNoRecordIsLostWhenAuditedDuringShutdown() throws Exception {
+    TestWriter writer = new TestWriter( new CountDownLatch( 0 ) );
+    final AuditQueue queue = new AuditQueue( "test", writer, 10, 5, OverflowPolicy.BLOCK );
+    final int threadCount = 4;
+    final int recordCount = 500;
+    final CountDownLatch started = new CountDownLatch( threadCount );
+    Thread[] threads = new Thread[threadCount];
+    for ( int i = 0; i < threadCount; i++ ) {
+      threads[i] = new Thread() {
+        public void run() {
+          started.countDown();
+          try {
+            for ( int j = 0; j < recordCount; j++ ) {
+              queue.add( record() );
+            }
+          } catch ( AuditException e ) {
+            throw new RuntimeException( e );
+          }
+        }
+      };
+      threads[i].start();
+    }
+    started.await();
+    queue.shutdown();
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+
+    assertEquals( threadCount * recordCount, writer.written.size() );
+    assertEquals( 0, queue.getQueueDepth() );
+  }
+
+  @Test
+  public void testQueuesAreShutDownWithThePlatform() throws Exception {
+    TestWriter writer = new TestWriter( new CountDownLatch( 0 ) );
+    AuditQueue queue = new AuditQueue( "test", writer, 100, 10, OverflowPolicy.BLOCK );
+    for ( int i = 0; i < 25; i++ ) {
+      queue.add( record() );
+    }
+
+    new AuditQueueSystemListener().shutdown();
+
+    assertEquals( 25, writer.written.size() );
+    assertEquals( 0, queue.getQueueDepth() );
+    assertTrue( writer.closed );
+  }
+
+}
@@ -0,0 +1,97 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.engine.services.runtime;
+
+import org.junit.Test;
+import org.pentaho.commons.connection.IDisposable;
+import org.pentaho.platform.api.engine.IActionParameter;
+import org.pentaho.platform.engine.services.actionsequence.ActionParameter;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterManagerTest {
+
+  private static class Disposable implements IDisposable {
+    boolean disposed;
+
+    public void dispose() {
+      disposed = true;
+    }
+  }
+
+  @Test
+  public void testCopyDoesNotDisposeInheritedValues() {
+    Disposable inherited = new Disposable();
+    ParameterManager parent = new ParameterManager();
+    parent.addToAllInputs( "result", new ActionParameter( "result", "object", inherited, null, null ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    ParameterManager copy = new ParameterManager( parent );
+    Disposable produced = new Disposable();
+    copy.getInput( "result" ).setValue( produced ); //$NON-NLS-1$
+    copy.dispose();
+
+    assertFalse( inherited.disposed );
+    assertTrue( produced.disposed );
+    assertSame( inherited, parent.getInput( "result" ).getValue() ); //$NON-NLS-1$
+  }
+
+  @Test
+  public void testMergeInLoopOrder() {
+    Disposable inherited = new Disposable();
+    ParameterManager parent = new ParameterManager();
+    parent.addToAllInputs( "result", new ActionParameter( "result", "object", inherited, null, null ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    parent.addToAllInputs( "unchanged", new ActionParameter( "unchanged", "string", "x", null, null ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    IActionParameter unchanged = parent.getInput( "unchanged" ); //$NON-NLS-1$
+
+    ParameterManager first = new ParameterManager( parent );
+    ParameterManager second = new ParameterManager( parent );
+    Disposable firstResult = new Disposable();
+    Disposable secondResult = new Disposable();
+    first.getInput( "result" ).setValue( firstResult ); //$NON-NLS-1$
+    first.addToAllInputs( "row", new ActionParameter( "row", "string", "1", null, null ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    second.getInput( "result" ).setValue( secondResult ); //$NON-NLS-1$
+    second.addToAllInputs( "row", new ActionParameter( "row", "string", "2", null, null ) ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+    Set<IActionParameter> merged = new HashSet<IActionParameter>();
+    parent.merge( first, merged );
+    assertSame( firstResult, parent.getInput( "result" ).getValue() ); //$NON-NLS-1$
+    assertEquals( "1", parent.getInput( "row" ).getValue() ); //$NON-NLS-1$ //$NON-NLS-2$
+    // other iterations may still be using the value from before the loop
+    assertFalse( inherited.disposed );
+
+    parent.merge( second, merged );
+    assertSame( secondResult, parent.getInput( "result" ).getValue() ); //$NON-NLS-1$
+    assertEquals( "2", parent.getInput( "row" ).getValue() ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertTrue( firstResult.disposed );
+    assertFalse( inherited.disposed );
+    assertSame( unchanged, parent.getInput( "unchanged" ) ); //$NON-NLS-1$
+
+    parent.dispose();
+    assertTrue( inherited.disposed );
+    assertTrue( secondResult.disposed );
+    assertNull( parent.getInput( "missing" ) ); //$NON-NLS-1$
+  }
+
+}
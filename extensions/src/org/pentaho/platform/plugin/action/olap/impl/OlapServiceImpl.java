@@ -27,11 +27,25 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -95,6 +109,21 @@ public class OlapServiceImpl implements IOlapService {
 
   final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
 
+  /**
+   * The catalogs being loaded into the cache, by cache sub-region key
+   * and catalog name.
+   */
+  private final ConcurrentMap<Object, ConcurrentMap<String, FutureTask<Void>>> catalogLoads =
+    new ConcurrentHashMap<Object, ConcurrentMap<String, FutureTask<Void>>>();
+
+  /**
+   * Incremented every time the cache is reset. Loads which started before
+   * a reset do not add their catalog to the new cache.
+   */
+  private final AtomicLong cacheGeneration = new AtomicLong();
+
+  private Executor catalogLoader;
+
   /**
    * This is the default name of an XMLA data source on the server.
    * Mondrian XMLA servers only support a single data source.
@@ -237,6 +266,9 @@ public class OlapServiceImpl implements IOlapService {
       writeLock.lock();
       final ICacheManager cacheMgr = PentahoSystem.getCacheManager( session );
       cacheMgr.clearRegionCache( CATALOG_CACHE_REGION );
+      // Loads still running drop their catalog when they finish.
+      cacheGeneration.incrementAndGet();
+      catalogLoads.clear();
     } finally {
       writeLock.unlock();
     }
@@ -251,8 +283,26 @@ public class OlapServiceImpl implements IOlapService {
    * will be populated.
    */
   protected void initCache( IPentahoSession session ) {
+    initCache( session, null );
+  }
+
+  /**
+   * Initializes the cache for the session's locale, then waits for the
+   * catalogs still being loaded.
+   *
+   * <p>Catalogs are loaded concurrently, outside of the cache lock, so that
+   * catalogs which are already cached can be read while the others load.
+   * The wait for all the catalogs is bounded by
+   * <code>olap-service/catalog-load-timeout-seconds</code>; a catalog which
+   * takes longer is added to the cache when it finishes loading.
+   *
+   * @param catalogName The catalog needed by the caller, which is loaded
+   * first, or null to wait for all catalogs.
+   */
+  private void initCache( IPentahoSession session, String catalogName ) {
 
     final List<Catalog> cache = getCache( session );
+    final Object cacheKey = makeCacheSubRegionKey( getLocale() );
 
     final boolean needUpdate;
     final Lock readLock = cacheLock.readLock();
@@ -270,45 +320,149 @@ public class OlapServiceImpl implements IOlapService {
     }
 
     if ( needUpdate ) {
-      final Lock writeLock = cacheLock.writeLock();
       try {
-        writeLock.lock();
+        startCatalogLoads( session, cacheKey );
+      } catch ( Throwable t ) {
 
-        // First clear the cache
-        cache.clear();
-
-        final Callable<Void> call = new Callable<Void>() {
-          public Void call() throws Exception {
-            // Now build the cache. Use the system session in the holder.
-            for ( String name : getHelper().getHostedCatalogs() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            for ( String name : getHelper().getOlap4jServers() ) {
-              try {
-                addCatalogToCache( PentahoSessionHolder.getSession(), name );
-              } catch ( Throwable t ) {
-                LOG.error(
-                  "Failed to initialize the cache for OLAP connection "
-                  + name,
-                  t );
-              }
-            }
-            return null;
+        LOG.error(
+          "Failed to initialize the connection cache",
+          t );
+
+        throw new IOlapServiceException( t );
+      }
+    }
+
+    final Map<String, FutureTask<Void>> loads = catalogLoads.get( cacheKey );
+    if ( loads == null ) {
+      return;
+    }
+    final long deadline =
+      System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( getCatalogLoadTimeout() );
+    for ( Map.Entry<String, FutureTask<Void>> load : loads.entrySet() ) {
+      if ( catalogName != null && !catalogName.equals( load.getKey() ) ) {
+        continue;
+      }
+      if ( catalogName != null ) {
+        // Load it on this thread if the pool has not got to it yet.
+        load.getValue().run();
+      }
+      try {
+        load.getValue().get(
+          Math.max( 0, deadline - System.currentTimeMillis() ), TimeUnit.MILLISECONDS );
+      } catch ( TimeoutException e ) {
+        LOG.warn(
+          "Timed out waiting for the OLAP connection "
+          + load.getKey()
+          + " to load. It will be available once loaded." );
+      } catch ( ExecutionException e ) {
+        // The load logs its own failures.
+        LOG.debug( "OLAP connection " + load.getKey() + " failed to load", e ); //$NON-NLS-1$
+      } catch ( InterruptedException e ) {
+        Thread.currentThread().interrupt();
+        throw new IOlapServiceException( e );
+      }
+    }
+  }
+
+  /**
+   * Submits the loading of every catalog which is not already being loaded
+   * into the cache of the session's locale.
+   */
+  private void startCatalogLoads( final IPentahoSession session, final Object cacheKey ) throws Exception {
+    final long generation = cacheGeneration.get();
+    final List<String> names = new ArrayList<String>();
+    final Callable<Void> call = new Callable<Void>() {
+      public Void call() throws Exception {
+        // Use the system session in the holder.
+        names.addAll( getHelper().getHostedCatalogs() );
+        names.addAll( getHelper().getOlap4jServers() );
+        return null;
+      }
+    };
+    if ( isSecurityEnabled() ) {
+      SecurityHelper.getInstance().runAsSystem( call );
+    } else {
+      call.call();
+    }
+
+    ConcurrentMap<String, FutureTask<Void>> loads = catalogLoads.get( cacheKey );
+    if ( loads == null ) {
+      catalogLoads.putIfAbsent( cacheKey, new ConcurrentHashMap<String, FutureTask<Void>>() );
+      loads = catalogLoads.get( cacheKey );
+    }
+    final Locale locale = getLocale();
+    for ( final String name : names ) {
+      final ConcurrentMap<String, FutureTask<Void>> pending = loads;
+      final FutureTask<Void> load = new FutureTask<Void>( new Callable<Void>() {
+        public Void call() throws Exception {
+          try {
+            loadCatalog( session, locale, name, generation );
+          } catch ( Throwable t ) {
+            LOG.error(
+              "Failed to initialize the cache for OLAP connection "
+              + name,
+              t );
           }
-        };
+          return null;
+        }
+      } ) {
+        @Override
+        protected void done() {
+          pending.remove( name, this );
+        }
+      };
+      if ( loads.putIfAbsent( name, load ) == null ) {
+        getCatalogLoader().execute( load );
+      }
+    }
+  }
 
-        if ( isSecurityEnabled() ) {
-          SecurityHelper.getInstance().runAsSystem( call );
-        } else {
-          call.call();
+  /**
+   * Loads a catalog and adds it to the cache of the given locale, replacing
+   * any catalog of the same name. Runs on a loader thread, or on the thread
+   * of a caller waiting for this catalog.
+   *
+   * @param generation The cache generation the load started in. The catalog
+   * is dropped if the cache has been reset since.
+   */
+  private void loadCatalog(
+    final IPentahoSession session, final Locale locale, final String catalogName, final long generation )
+    throws Exception {
+    final Locale previousLocale = LocaleHelper.getLocaleOverride();
+    final IPentahoSession previousSession = PentahoSessionHolder.getSession();
+    LocaleHelper.setLocaleOverride( locale );
+    PentahoSessionHolder.setSession( session );
+    try {
+      final Callable<Catalog> call = new Callable<Catalog>() {
+        public Catalog call() throws Exception {
+          // Use the system session in the holder.
+          return makeCatalog( PentahoSessionHolder.getSession(), catalogName );
+        }
+      };
+      final Catalog catalog;
+      if ( isSecurityEnabled() ) {
+        catalog = SecurityHelper.getInstance().runAsSystem( call );
+      } else {
+        catalog = call.call();
+      }
+      if ( catalog == null ) {
+        return;
+      }
+
+      final List<Catalog> cache = getCache( session );
+      final Lock writeLock = cacheLock.writeLock();
+      try {
+        writeLock.lock();
+        if ( generation != cacheGeneration.get() ) {
+          // The cache was flushed during the load, so the catalog may be stale.
+          return;
         }
+        for ( Iterator<Catalog> cached = cache.iterator(); cached.hasNext(); ) {
+          if ( cached.next().name.equals( catalogName ) ) {
+            cached.remove();
+          }
+        }
+        cache.add( catalog );
 
         // Sort it all.
         Collections.sort(
@@ -318,28 +472,21 @@ public class OlapServiceImpl implements IOlapService {
               return o1.name.compareTo( o2.name );
             }
           } );
-
-      } catch ( Throwable t ) {
-
-        LOG.error(
-          "Failed to initialize the connection cache",
-          t );
-
-        throw new IOlapServiceException( t );
-
       } finally {
         writeLock.unlock();
       }
+    } finally {
+      LocaleHelper.setLocaleOverride( previousLocale );
+      PentahoSessionHolder.setSession( previousSession );
     }
   }
 
   /**
-   * Adds a catalog and its children to the cache.
-   * Do not use directly. This must be called with a write lock
-   * on the cache.
-   * @param catalogName The name of the catalog to load in cache.
+   * Creates a catalog and its children by connecting to it.
+   * @param catalogName The name of the catalog to load.
+   * @return The catalog, or null if the connection failed.
    */
-  private void addCatalogToCache( IPentahoSession session, String catalogName ) {
+  protected Catalog makeCatalog( IPentahoSession session, String catalogName ) {
 
     final IOlapService.Catalog catalog =
       new Catalog( catalogName, new ArrayList<IOlapService.Schema>() );
@@ -371,7 +518,7 @@ public class OlapServiceImpl implements IOlapService {
       }
 
       // We're done.
-      getCache( session ).add( catalog );
+      return catalog;
 
     } catch ( OlapException e ) {
 
@@ -380,6 +527,8 @@ public class OlapServiceImpl implements IOlapService {
         + catalogName,
         e );
 
+      return null;
+
     } finally {
       try {
         if ( connection != null ) {
@@ -394,6 +543,46 @@ public class OlapServiceImpl implements IOlapService {
     }
   }
 
+  private synchronized Executor getCatalogLoader() {
+    if ( catalogLoader == null ) {
+      final int threads = getIntSetting( "olap-service/catalog-loader-threads", 4 ); //$NON-NLS-1$
+      final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+          threads, threads, 60, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            public Thread newThread( Runnable r ) {
+              final Thread thread =
+                new Thread( r, "olap-catalog-loader-" + count.incrementAndGet() ); //$NON-NLS-1$
+              thread.setDaemon( true );
+              return thread;
+            }
+          } );
+      executor.allowCoreThreadTimeOut( true );
+      catalogLoader = executor;
+    }
+    return catalogLoader;
+  }
+
+  /**
+   * @return The number of seconds to wait for catalogs to load.
+   */
+  protected long getCatalogLoadTimeout() {
+    return getIntSetting( "olap-service/catalog-load-timeout-seconds", 120 ); //$NON-NLS-1$
+  }
+
+  private static int getIntSetting( final String path, final int defaultValue ) {
+    try {
+      return Math.max(
+        1,
+        Integer.parseInt( PentahoSystem.getSystemSetting( path, String.valueOf( defaultValue ) ).trim() ) );
+    } catch ( NumberFormatException e ) {
+      return defaultValue;
+    }
+  }
+
   public void addHostedCatalog(
     String name,
     String dataSourceInfo,
@@ -492,6 +681,7 @@ public class OlapServiceImpl implements IOlapService {
   }
 
   public void flushAll( IPentahoSession session ) {
+    final boolean wasCached = !getCache( session ).isEmpty();
     final Lock writeLock = cacheLock.writeLock();
     try {
       writeLock.lock();
@@ -505,6 +695,16 @@ public class OlapServiceImpl implements IOlapService {
     } finally {
       writeLock.unlock();
     }
+
+    // Reload the catalogs in the background. Readers only wait for the
+    // catalogs they need which have not been reloaded yet.
+    if ( wasCached ) {
+      try {
+        startCatalogLoads( session, makeCacheSubRegionKey( getLocale() ) );
+      } catch ( Exception e ) {
+        LOG.warn( "Failed to start reloading the connection cache", e ); //$NON-NLS-1$
+      }
+    }
   }
 
   private void flushHostedAndRemote( final IPentahoSession session )
@@ -561,9 +761,21 @@ public class OlapServiceImpl implements IOlapService {
   public List<IOlapService.Catalog> getCatalogs(
     IPentahoSession session )
     throws IOlapServiceException {
+    return getCatalogs( null, session );
+  }
+
+  /**
+   * @param catalogName The catalog the caller is interested in, or null
+   * for all of them. Other catalogs are returned if they are cached, but
+   * are not waited for.
+   */
+  private List<IOlapService.Catalog> getCatalogs(
+    String catalogName,
+    IPentahoSession session )
+    throws IOlapServiceException {
 
     // Make sure the cache is initialized.
-    initCache( session );
+    initCache( session, catalogName );
     final List<Catalog> cache = getCache( session );
 
     final Lock readLock = cacheLock.readLock();
@@ -592,7 +804,7 @@ public class OlapServiceImpl implements IOlapService {
     String parentCatalog,
     IPentahoSession session ) {
     final List<IOlapService.Schema> schemas = new ArrayList<IOlapService.Schema>();
-    for ( IOlapService.Catalog catalog : getCatalogs( session ) ) {
+    for ( IOlapService.Catalog catalog : getCatalogs( parentCatalog, session ) ) {
       if ( parentCatalog == null
         || catalog.name.equals( parentCatalog ) ) {
         schemas.addAll( catalog.schemas );
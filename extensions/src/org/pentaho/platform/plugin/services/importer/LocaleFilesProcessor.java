@@ -58,6 +58,15 @@ public class LocaleFilesProcessor {
     localeFiles = new ArrayList<LocaleFileDescriptor>();
   }
 
+  /**
+   * @param fileName
+   *          the decoded name of a file
+   * @return true if the file may be a locale file, so its content has to be passed to {@link #isLocaleFile}
+   */
+  public boolean hasLocaleExtension( String fileName ) {
+    return fileName.endsWith( PROPERTIES_EXT ) || fileName.endsWith( LOCALE_EXT );
+  }
+
   /**
    * 
    * @param file
@@ -39,7 +39,6 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.plugin.services.importer.mimeType.MimeType;
 import org.pentaho.platform.plugin.services.importexport.ImportSession;
-import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestFormatException;
 import org.pentaho.platform.plugin.services.messages.Messages;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.springframework.util.Assert;
@@ -83,8 +82,12 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
     String repositoryFilePath = RepositoryFilenameUtils.concat( bundle.getPath(), bundle.getName() );
     getLogger().trace( "Processing [" + repositoryFilePath + "]" );
 
-    // Verify if destination already exists in the repository.
-    RepositoryFile file = repository.getFile( repositoryFilePath );
+    // Verify if destination already exists in the repository. Nothing does below a folder this import created.
+    RepositoryFile file = null;
+    if ( !getImportSession().isCreatedPath( RepositoryFilenameUtils.getFullPathNoEndSeparator( repositoryFilePath ) )
+        || getImportSession().isCreatedPath( repositoryFilePath ) ) {
+      file = repository.getFile( repositoryFilePath );
+    }
     if ( file != null ) {
       if ( file.isFolder() && getImportSession().getFoldersCreatedImplicitly().contains( repositoryFilePath ) ) {
         getLogger().trace(
@@ -98,6 +101,7 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
           } else {
             // The folder exists. Possible ACL changes.
             getLogger().trace( "Existing folder [" + repositoryFilePath + "]" );
+            getImportSession().cacheFolderId( repositoryFilePath, file.getId() );
             file = finalAdjustFolder( bundle, file.getId() );
             repository.updateFolder( file, null );
             if ( bundle.getAcl() != null ) {
@@ -124,10 +128,13 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
         bundle.setFile( bundle.getFile() );
         RepositoryFile repoFile = finalAdjustFolder( bundle, null );
         if ( bundle.getAcl() != null ) {
-          repoFile = repository.createFolder( parentId, repoFile, bundle.getAcl(), null );
-          updateAclFromBundle( true, bundle, repoFile );
+          repoFile = repository.createFolder( parentId, repoFile, getNewFileAcl( repoFile, bundle.getAcl() ), null );
         } else {
-          repository.createFolder( parentId, repoFile, null );
+          repoFile = repository.createFolder( parentId, repoFile, null );
+        }
+        if ( repoFile != null ) {
+          getImportSession().cacheFolderId( repositoryFilePath, repoFile.getId() );
+          getImportSession().addCreatedPath( repositoryFilePath );
         }
       } else {
         // The file doesn't exist. Create file.
@@ -197,7 +204,7 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
       if ( null == file ) {
         repositoryFile = createFile( bundle, repositoryPath, data );
         if ( repositoryFile != null ) {
-          updateAclFromBundle( true, bundle, repositoryFile );
+          getImportSession().addCreatedPath( repositoryPath );
         }
 
       } else {
@@ -288,6 +295,41 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
     }
   }
 
+  /**
+   * Computes the <code>RepositoryFileAcl</code> a new file is created with, which is the one
+   * {@link #updateAcl(boolean, RepositoryFile, RepositoryFileAcl)} would set after creating it. This saves updating the
+   * ACL of every new file.
+   * 
+   * @param repositoryFile
+   *          The <code>RepositoryFile</code> about to be created
+   * @param repositoryFileAcl
+   *          The effective Acl as defined in the manifest
+   */
+  private RepositoryFileAcl getNewFileAcl( RepositoryFile repositoryFile, RepositoryFileAcl repositoryFileAcl ) {
+    if ( repositoryFileAcl == null
+        || !( getImportSession().isApplyAclSettings() || getImportSession().isRetainOwnership() ) ) {
+      return repositoryFileAcl;
+    }
+    RepositoryFileSid newOwner;
+    if ( getImportSession().isRetainOwnership() ) {
+      getLogger().debug( "Getting Owner from Session" );
+      newOwner = new RepositoryFileSid( PentahoSessionHolder.getSession().getName(), RepositoryFileSid.Type.USER );
+    } else {
+      getLogger().debug( "Getting Owner from Manifest" );
+      newOwner = repositoryFileAcl.getOwner();
+    }
+    RepositoryFileAcl useAclForPermissions;
+    if ( getImportSession().isApplyAclSettings() ) {
+      getLogger().debug( "Getting permissions from Manifest" );
+      useAclForPermissions = repositoryFileAcl;
+    } else {
+      getLogger().debug( "Getting permissions from Default settings" );
+      useAclForPermissions = getDefaultAcl( repositoryFile );
+    }
+    return new RepositoryFileAcl( null, newOwner, useAclForPermissions.isEntriesInheriting(), useAclForPermissions
+        .getAces() );
+  }
+
   private RepositoryFileAcl getDefaultAcl( RepositoryFile repositoryFile ) {
     // ToDo: call default Acl creator when implemented. For now just return
     // whatever is stored
@@ -314,7 +356,7 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
       if ( null == acl ) {
         return repository.createFile( parentId, file, data, bundle.getComment() );
       } else {
-        return repository.createFile( parentId, file, data, acl, bundle.getComment() );
+        return repository.createFile( parentId, file, data, getNewFileAcl( file, acl ), bundle.getComment() );
       }
     } else {
       getLogger().trace(
@@ -385,12 +427,17 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
   protected Serializable getParentId( final String repositoryPath ) {
     Assert.notNull( repositoryPath );
     final String parentPath = RepositoryFilenameUtils.getFullPathNoEndSeparator( repositoryPath );
+    Serializable parentFileId = getImportSession().getCachedFolderId( parentPath );
+    if ( parentFileId != null ) {
+      return parentFileId;
+    }
     final RepositoryFile parentFile = repository.getFile( parentPath );
     if ( parentFile == null ) {
       return null;
     }
-    Serializable parentFileId = parentFile.getId();
+    parentFileId = parentFile.getId();
     Assert.notNull( parentFileId );
+    getImportSession().cacheFolderId( parentPath, parentFileId );
     return parentFileId;
   }
 
@@ -424,21 +471,13 @@ public class RepositoryFileImportFileHandler implements IPlatformImportHandler {
     RepositoryFile repoFile = builder.build();
     RepositoryFileAcl repoAcl = getImportSession().processAclForFile( manifestKey );
     if ( repoAcl != null ) {
-      repoFile = repository.createFolder( parentId, repoFile, repoAcl, null );
-      RepositoryFileAcl repositoryFileAcl = null;
-      try {
-        repositoryFileAcl =
-            getImportSession().getManifest().getExportManifestEntity( manifestKey ).getRepositoryFileAcl();
-      } catch ( NullPointerException e ) {
-        // If npe then manifest entry is not defined which is likely so just ignore
-      } catch ( ExportManifestFormatException e ) {
-        // Same goes here
-      }
-      updateAcl( true, repoFile, repositoryFileAcl );
+      repoFile = repository.createFolder( parentId, repoFile, getNewFileAcl( repoFile, repoAcl ), null );
     } else {
       repoFile = repository.createFolder( parentId, repoFile, null );
     }
     getImportSession().getFoldersCreatedImplicitly().add( folderPath );
+    getImportSession().cacheFolderId( folderPath, repoFile.getId() );
+    getImportSession().addCreatedPath( folderPath );
     return repoFile;
   }
 
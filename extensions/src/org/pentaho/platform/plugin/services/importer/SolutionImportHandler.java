@@ -17,6 +17,7 @@
 
 package org.pentaho.platform.plugin.services.importer;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.logging.Log;
@@ -50,6 +51,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -136,93 +139,110 @@ public class SolutionImportHandler implements IPlatformImportHandler {
       }
     }
 
-    for ( IRepositoryFileBundle file : importSource.getFiles() ) {
-      String fileName = file.getFile().getName();
-      String actualFilePath = file.getPath();
-      if ( manifestVersion != null ) {
-        fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
-        actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
-      }
-      String repositoryFilePath =
-          RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
-
-      if ( this.cachedImports.containsKey( repositoryFilePath ) ) {
-
-        byte[] bytes = IOUtils.toByteArray( file.getInputStream() );
-        RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
-        builder.input( new ByteArrayInputStream( bytes ) );
-
-        importer.importFile( build( builder ) );
-        continue;
-      }
-      RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
+    // Folders are looked up once, and files below the folders created are known not to exist yet
+    getImportSession().setCachingFolders( true );
+    try {
+      for ( IRepositoryFileBundle file : importSource.getFiles() ) {
+        String fileName = file.getFile().getName();
+        String actualFilePath = file.getPath();
+        if ( manifestVersion != null ) {
+          fileName = ExportFileNameEncoder.decodeZipFileName( fileName );
+          actualFilePath = ExportFileNameEncoder.decodeZipFileName( actualFilePath );
+        }
+        String repositoryFilePath =
+            RepositoryFilenameUtils.concat( PentahoPlatformImporter.computeBundlePath( actualFilePath ), fileName );
 
-      InputStream bundleInputStream = null;
+        if ( this.cachedImports.containsKey( repositoryFilePath ) ) {
 
-      String decodedFilePath = file.getPath();
-      RepositoryFile decodedFile = file.getFile();
-      if ( manifestVersion != null ) {
-        decodedFile = new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName ).build();
-        decodedFilePath = ExportFileNameEncoder.decodeZipFileName( file.getPath() );
-      }
+          InputStream cachedInputStream = file.getInputStream();
+          try {
+            RepositoryFileImportBundle.Builder builder = cachedImports.get( repositoryFilePath );
+            builder.input( cachedInputStream );
 
-      if ( file.getFile().isFolder() ) {
-        bundleBuilder.mime( "text/directory" );
-        bundleBuilder.file( decodedFile );
-        fileName = repositoryFilePath;
-        repositoryFilePath = importBundle.getPath();
-      } else {
-        byte[] bytes = IOUtils.toByteArray( file.getInputStream() );
-        bundleInputStream = new ByteArrayInputStream( bytes );
-        // If is locale file store it for later processing.
-        if ( localeFilesProcessor.isLocaleFile( file, importBundle.getPath(), bytes ) ) {
-          log.trace( "Skipping [" + repositoryFilePath + "], it is a locale property file" );
+            importer.importFile( build( builder ) );
+          } finally {
+            IOUtils.closeQuietly( cachedInputStream );
+          }
           continue;
         }
-        bundleBuilder.input( bundleInputStream );
-        bundleBuilder.mime( solutionHelper.getMime( fileName ) );
+        RepositoryFileImportBundle.Builder bundleBuilder = new RepositoryFileImportBundle.Builder();
 
-        String filePath =
-            ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
-        repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
-      }
+        InputStream bundleInputStream = null;
 
-      bundleBuilder.name( fileName );
-      bundleBuilder.path( repositoryFilePath );
+        String decodedFilePath = file.getPath();
+        RepositoryFile decodedFile = file.getFile();
+        if ( manifestVersion != null ) {
+          decodedFile =
+              new RepositoryFile.Builder( decodedFile ).path( decodedFilePath ).name( fileName ).title( fileName )
+                  .build();
+          decodedFilePath = ExportFileNameEncoder.decodeZipFileName( file.getPath() );
+        }
 
-      String sourcePath;
-      if ( decodedFilePath.startsWith( "/" ) ) {
-        sourcePath = RepositoryFilenameUtils.concat( decodedFilePath.substring( 1 ), fileName );
-      } else {
         if ( file.getFile().isFolder() ) {
-          sourcePath = fileName;
+          bundleBuilder.mime( "text/directory" );
+          bundleBuilder.file( decodedFile );
+          fileName = repositoryFilePath;
+          repositoryFilePath = importBundle.getPath();
         } else {
-          sourcePath = RepositoryFilenameUtils.concat( decodedFilePath, fileName );
+          // Only possible locale files are read into memory, other files are streamed to their import handler
+          if ( localeFilesProcessor.hasLocaleExtension( fileName ) ) {
+            byte[] bytes = toByteArray( file );
+            bundleInputStream = new ByteArrayInputStream( bytes );
+            // If is locale file store it for later processing.
+            if ( localeFilesProcessor.isLocaleFile( file, importBundle.getPath(), bytes ) ) {
+              log.trace( "Skipping [" + repositoryFilePath + "], it is a locale property file" );
+              continue;
+            }
+          } else {
+            bundleInputStream = file.getInputStream();
+          }
+          bundleBuilder.input( bundleInputStream );
+          bundleBuilder.mime( solutionHelper.getMime( fileName ) );
+
+          String filePath =
+              ( decodedFilePath.equals( "/" ) || decodedFilePath.equals( "\\" ) ) ? "" : decodedFilePath;
+          repositoryFilePath = RepositoryFilenameUtils.concat( importBundle.getPath(), filePath );
         }
-      }
 
-      //This clause was added for processing ivb files so that it would not try process acls on folders that the user
-      //may not have rights to such as /home or /public
-      if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && file.getFile().isFolder() ) {
-        continue;
-      }
+        bundleBuilder.name( fileName );
+        bundleBuilder.path( repositoryFilePath );
 
-      getImportSession().setCurrentManifestKey( sourcePath );
-
-      bundleBuilder.charSet( bundle.getCharset() );
-      bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
-      bundleBuilder.hidden( isFileHidden( bundle, sourcePath ) );
-      bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
-      bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
-      bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
-      bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
-      IPlatformImportBundle platformImportBundle = build( bundleBuilder );
-      importer.importFile( platformImportBundle );
-
-      if ( bundleInputStream != null ) {
-        bundleInputStream.close();
-        bundleInputStream = null;
+        String sourcePath;
+        if ( decodedFilePath.startsWith( "/" ) ) {
+          sourcePath = RepositoryFilenameUtils.concat( decodedFilePath.substring( 1 ), fileName );
+        } else {
+          if ( file.getFile().isFolder() ) {
+            sourcePath = fileName;
+          } else {
+            sourcePath = RepositoryFilenameUtils.concat( decodedFilePath, fileName );
+          }
+        }
+
+        //This clause was added for processing ivb files so that it would not try process acls on folders that the user
+        //may not have rights to such as /home or /public
+        if ( manifest != null && manifest.getExportManifestEntity( sourcePath ) == null && file.getFile().isFolder() ) {
+          continue;
+        }
+
+        getImportSession().setCurrentManifestKey( sourcePath );
+
+        bundleBuilder.charSet( bundle.getCharset() );
+        bundleBuilder.overwriteFile( bundle.overwriteInRepository() );
+        bundleBuilder.hidden( isFileHidden( bundle, sourcePath ) );
+        bundleBuilder.applyAclSettings( bundle.isApplyAclSettings() );
+        bundleBuilder.retainOwnership( bundle.isRetainOwnership() );
+        bundleBuilder.overwriteAclSettings( bundle.isOverwriteAclSettings() );
+        bundleBuilder.acl( getImportSession().processAclForFile( sourcePath ) );
+        IPlatformImportBundle platformImportBundle = build( bundleBuilder );
+        try {
+          importer.importFile( platformImportBundle );
+        } finally {
+          IOUtils.closeQuietly( bundleInputStream );
+        }
       }
+    } finally {
+      getImportSession().setCachingFolders( false );
+      importSource.deleteTempFiles();
     }
     if ( manifest != null ) {
       List<JobScheduleRequest> scheduleList = manifest.getScheduleList();
@@ -283,6 +303,15 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     return ( result != null ) ? result : solutionHelper.isInHiddenList( filePath );
   }
 
+  private byte[] toByteArray( IRepositoryFileBundle file ) throws IOException {
+    InputStream in = file.getInputStream();
+    try {
+      return IOUtils.toByteArray( in );
+    } finally {
+      in.close();
+    }
+  }
+
   private boolean isSystemPath( final String bundlePath ) {
     final String[] split = StringUtils.split( bundlePath, RepositoryFile.SEPARATOR );
     return isSystemDir( split, 0 ) || isSystemDir( split, 1 );
@@ -293,13 +322,38 @@ public class SolutionImportHandler implements IPlatformImportHandler {
         .equals( split[index], "admin" ) ) );
   }
 
+  /**
+   * Orders folders before files, and parent folders before their children, so that the folders exist by the time the
+   * files are imported. Files keep their order in the archive.
+   */
+  private static final Comparator<IRepositoryFileBundle> FOLDERS_FIRST = new Comparator<IRepositoryFileBundle>() {
+    public int compare( IRepositoryFileBundle bundle1, IRepositoryFileBundle bundle2 ) {
+      boolean folder1 = bundle1.getFile().isFolder();
+      if ( folder1 != bundle2.getFile().isFolder() ) {
+        return folder1 ? -1 : 1;
+      }
+      return folder1 ? getDepth( bundle1 ) - getDepth( bundle2 ) : 0;
+    }
+
+    private int getDepth( IRepositoryFileBundle bundle ) {
+      return StringUtils.countMatches( StringUtils.removeStart( bundle.getPath(), RepositoryFile.SEPARATOR ),
+          RepositoryFile.SEPARATOR );
+    }
+  };
+
+  /**
+   * Reads the archive once, keeping the content of its files in temporary files, as the export manifest needed to
+   * import them is the last entry of archives exported by the platform.
+   */
   class SolutionRepositoryImportSource {
     private ZipInputStream zipInputStream;
     private List<IRepositoryFileBundle> files;
+    private List<File> tempFiles;
 
     public SolutionRepositoryImportSource( final ZipInputStream zipInputStream ) {
       this.zipInputStream = zipInputStream;
       this.files = new ArrayList<IRepositoryFileBundle>();
+      this.tempFiles = new ArrayList<File>();
       initialize();
     }
 
@@ -316,11 +370,15 @@ public class SolutionImportHandler implements IPlatformImportHandler {
               entry = zipInputStream.getNextEntry();
               continue;
             }
+            // Deleted by deleteTempFiles() once the archive is imported
             tempFile = File.createTempFile( "zip", null );
-            tempFile.deleteOnExit();
+            tempFiles.add( tempFile );
             FileOutputStream fos = new FileOutputStream( tempFile );
-            IOUtils.copy( zipInputStream, fos );
-            fos.close();
+            try {
+              IOUtils.copy( zipInputStream, fos );
+            } finally {
+              fos.close();
+            }
           }
           File file = new File( entryName );
           RepositoryFile repoFile =
@@ -340,6 +398,7 @@ public class SolutionImportHandler implements IPlatformImportHandler {
           entry = zipInputStream.getNextEntry();
         }
         zipInputStream.close();
+        Collections.sort( files, FOLDERS_FIRST );
       } catch ( IOException exception ) {
         final String errorMessage = Messages.getInstance().getErrorString( "", exception.getLocalizedMessage() );
         log.trace( errorMessage );
@@ -359,6 +418,13 @@ public class SolutionImportHandler implements IPlatformImportHandler {
     public List<IRepositoryFileBundle> getFiles() {
       return this.files;
     }
+
+    public void deleteTempFiles() {
+      for ( File tempFile : tempFiles ) {
+        FileUtils.deleteQuietly( tempFile );
+      }
+      tempFiles.clear();
+    }
   }
 
   @Override
@@ -28,9 +28,12 @@ import org.pentaho.platform.plugin.services.importer.RepositoryFileImportFileHan
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifest;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestEntity;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 /**
  * General purpose objects whose lifecycle is that of an formal import session
@@ -50,6 +53,8 @@ public class ImportSession {
   private String currentManifestKey;
   private HashSet<RepositoryFile> importedRepositoryFiles = new HashSet<RepositoryFile>();
   private List<String> importedScheduleJobIds = new ArrayList<String>();
+  private Map<String, Serializable> folderIds; // Folder ids by path, while an archive is being imported
+  private HashSet<String> createdPaths; // Files and folders created, while an archive is being imported
 
   private static ThreadLocal<ImportSession> sessions = new ThreadLocal<ImportSession>();
 
@@ -125,6 +130,51 @@ public class ImportSession {
     return acl;
   }
 
+  /**
+   * Starts or stops remembering the folders looked up and the files and folders created by the import handlers, which
+   * saves repository round trips for every file of an archive. What is remembered is only valid while the archive is
+   * being imported, as the repository may be changed by others afterwards.
+   *
+   * @param cachingFolders true when an archive import starts, false when it ends
+   */
+  public void setCachingFolders( boolean cachingFolders ) {
+    folderIds = cachingFolders ? new HashMap<String, Serializable>() : null;
+    createdPaths = cachingFolders ? new HashSet<String>() : null;
+  }
+
+  /**
+   * @return the id of the folder at <code>path</code>, or null if it is not known
+   */
+  public Serializable getCachedFolderId( String path ) {
+    return folderIds != null ? folderIds.get( path ) : null;
+  }
+
+  /**
+   * Remembers the id of an existing folder, if an archive is being imported.
+   */
+  public void cacheFolderId( String path, Serializable id ) {
+    if ( folderIds != null ) {
+      folderIds.put( path, id );
+    }
+  }
+
+  /**
+   * Remembers that the import created the file or folder at <code>path</code>, if an archive is being imported.
+   */
+  public void addCreatedPath( String path ) {
+    if ( createdPaths != null ) {
+      createdPaths.add( path );
+    }
+  }
+
+  /**
+   * @return true if the archive being imported created the file or folder at <code>path</code>. Nothing can exist
+   *         below such a folder that was not created by the import as well.
+   */
+  public boolean isCreatedPath( String path ) {
+    return createdPaths != null && createdPaths.contains( path );
+  }
+
   /**
    * @return the skippedFiles
    */
@@ -39,8 +39,9 @@ package org.pentaho.platform.plugin.services.importexport;
  * Time: 4:41 PM
  */
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -53,6 +54,12 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -68,6 +75,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifest;
 import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestFormatException;
+import org.pentaho.platform.plugin.services.importexport.exportManifest.ExportManifestWriter;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.unified.webservices.LocaleMapDto;
 
@@ -87,6 +95,24 @@ public class ZipExportProcessor extends BaseExportProcessor {
 
   private List<String> localeExportList;
 
+  /**
+   * The files and folders to write to the manifest. Only their ids are kept, the manifest is written from the
+   * repository once the content has been exported.
+   */
+  private List<Serializable> manifestFileIds = new ArrayList<Serializable>();
+
+  /**
+   * Number of threads reading the content of the files to export ahead of the zip output
+   */
+  private static final int PREFETCH_THREADS = 4;
+
+  /**
+   * Number of files in a folder whose content is read ahead of the zip output
+   */
+  private static final int PREFETCH_SIZE = 8;
+
+  private ExecutorService prefetchExecutor;
+
   /**
    * Encapsulates the logic of registering import handlers, generating the manifest, and performing the export
    */
@@ -125,12 +151,34 @@ public class ZipExportProcessor extends BaseExportProcessor {
    * @throws ExportException indicates an error in import processing
    */
   public File performExport( RepositoryFile exportRepositoryFile ) throws ExportException, IOException {
-    File exportFile = null;
+    // send a response right away if not found
+    if ( exportRepositoryFile == null ) {
+      // todo: add to messages.properties
+      throw new FileNotFoundException( "JCR file not found: " + this.path );
+    }
 
     // create temp file
-    exportFile = File.createTempFile( EXPORT_TEMP_FILENAME_PREFIX, EXPORT_TEMP_FILENAME_EXT );
+    File exportFile = File.createTempFile( EXPORT_TEMP_FILENAME_PREFIX, EXPORT_TEMP_FILENAME_EXT );
     exportFile.deleteOnExit();
 
+    OutputStream outputStream = new FileOutputStream( exportFile );
+    try {
+      performExport( exportRepositoryFile, outputStream );
+    } finally {
+      outputStream.close();
+    }
+    return exportFile;
+  }
+
+  /**
+   * Performs the export process, writing the zip to <code>outputStream</code> as the repository is read. Nothing is
+   * written to disk and the manifest is not held in memory, so the export of a large folder can be sent to a client as
+   * it is produced. The output stream is left open.
+   *
+   * @throws ExportException indicates an error in import processing
+   */
+  public void performExport( RepositoryFile exportRepositoryFile, OutputStream outputStream ) throws ExportException,
+    IOException {
     // get the file path
     String filePath = new File( this.path ).getParent();
     if ( filePath == null ) {
@@ -143,45 +191,64 @@ public class ZipExportProcessor extends BaseExportProcessor {
       throw new FileNotFoundException( "JCR file not found: " + this.path );
     }
 
-    ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( exportFile ) );
+    ZipOutputStream zos = new ZipOutputStream( outputStream );
+    prefetchExecutor = createPrefetchExecutor();
+    try {
+      if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
+        exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
 
-    if ( exportRepositoryFile.isFolder() ) { // Handle recursive export
-      exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
+        // don't zip root folder without name
+        if ( !ClientRepositoryPaths.getRootFolderPath().equals( exportRepositoryFile.getPath() ) ) {
+          zos.putNextEntry( new ZipEntry( ExportFileNameEncoder.encodeZipPathName( getZipEntryName(
+              exportRepositoryFile, filePath ) ) ) );
+        }
+        exportDirectory( exportRepositoryFile, zos, filePath );
 
-      // don't zip root folder without name
-      if ( !ClientRepositoryPaths.getRootFolderPath().equals( exportRepositoryFile.getPath() ) ) {
-        zos.putNextEntry( new ZipEntry( ExportFileNameEncoder.encodeZipPathName( getZipEntryName( exportRepositoryFile, filePath ) ) ) );
+      } else {
+        exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
+        exportFile( exportRepositoryFile, zos, filePath );
       }
-      exportDirectory( exportRepositoryFile, zos, filePath );
-
-    } else {
-      exportManifest.getManifestInformation().setRootFolder( path.substring( 0, path.lastIndexOf( "/" ) + 1 ) );
-      exportFile( exportRepositoryFile, zos, filePath );
+    } finally {
+      prefetchExecutor.shutdownNow();
+      prefetchExecutor = null;
     }
 
     if ( this.withManifest ) {
       // write manifest to zip output stream
       ZipEntry entry = new ZipEntry( EXPORT_MANIFEST_FILENAME );
       zos.putNextEntry( entry );
-
-      // pass output stream to manifest class for writing
-      try {
-        exportManifest.toXml( zos );
-      } catch ( Exception e ) {
-        // todo: add to messages.properties
-        log.error( "Error generating export XML" );
-      }
-
+      writeManifest( zos );
       zos.closeEntry();
     }
 
-    zos.close();
+    zos.finish();
+    zos.flush();
 
     // clean up
     exportManifest = null;
-    zos = null;
+    manifestFileIds = null;
+  }
 
-    return exportFile;
+  /**
+   * Writes the manifest entity of every file and folder exported
+   */
+  private void writeManifest( OutputStream outputStream ) throws ExportException {
+    try {
+      ExportManifestWriter manifestWriter =
+          new ExportManifestWriter( outputStream, exportManifest.getManifestInformation() );
+      for ( Serializable fileId : manifestFileIds ) {
+        RepositoryFile repositoryFile = unifiedRepository.getFileById( fileId );
+        if ( repositoryFile != null ) {
+          manifestWriter.add( repositoryFile, unifiedRepository.getAcl( fileId ) );
+        }
+      }
+      manifestWriter.close();
+    } catch ( ExportManifestFormatException e ) {
+      throw new ExportException( e.getMessage() );
+    } catch ( Exception e ) {
+      // todo: add to messages.properties
+      log.error( "Error generating export XML" );
+    }
   }
 
   /**
@@ -191,14 +258,17 @@ public class ZipExportProcessor extends BaseExportProcessor {
    */
   public void exportFile( RepositoryFile repositoryFile, OutputStream outputStream, String filePath ) throws
       ExportException, IOException {
+    exportFile( repositoryFile, outputStream, filePath, readContent( repositoryFile, filePath ) );
+  }
+
+  private void exportFile( RepositoryFile repositoryFile, OutputStream outputStream, String filePath,
+                           List<InputStream> contents ) throws ExportException, IOException {
 
     // we need a zip
     ZipOutputStream zos = (ZipOutputStream) outputStream;
 
-    // iterate through handlers to perform export
-    for ( ExportHandler exportHandler : exportHandlerList ) {
-
-      InputStream is = exportHandler.doExport( repositoryFile, filePath );
+    // one content stream per export handler
+    for ( InputStream is : contents ) {
 
       // if we don't get a valid input stream back, skip it
       if ( is != null ) {
@@ -214,6 +284,90 @@ public class ZipExportProcessor extends BaseExportProcessor {
     }
   }
 
+  /**
+   * Reads the content of a file from each export handler
+   */
+  private List<InputStream> readContent( RepositoryFile repositoryFile, String filePath ) throws ExportException,
+    IOException {
+    List<InputStream> contents = new ArrayList<InputStream>();
+    try {
+      for ( ExportHandler exportHandler : exportHandlerList ) {
+        contents.add( exportHandler.doExport( repositoryFile, filePath ) );
+      }
+    } catch ( ExportException e ) {
+      close( contents );
+      throw e;
+    } catch ( IOException e ) {
+      close( contents );
+      throw e;
+    }
+    return contents;
+  }
+
+  /**
+   * Starts reading the content of a file on a prefetch thread
+   */
+  private Future<List<InputStream>> prefetchContent( final RepositoryFile repositoryFile, final String filePath ) {
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    return prefetchExecutor.submit( new Callable<List<InputStream>>() {
+      public List<InputStream> call() throws Exception {
+        PentahoSessionHolder.setSession( session );
+        try {
+          return readContent( repositoryFile, filePath );
+        } finally {
+          PentahoSessionHolder.removeSession();
+        }
+      }
+    } );
+  }
+
+  private List<InputStream> getContent( Future<List<InputStream>> content ) throws ExportException, IOException {
+    try {
+      return content.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new ExportException( e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof ExportException ) {
+        throw (ExportException) e.getCause();
+      } else if ( e.getCause() instanceof IOException ) {
+        throw (IOException) e.getCause();
+      }
+      throw new ExportException( e.getCause() );
+    }
+  }
+
+  /**
+   * Closes the content of files read ahead but not exported
+   */
+  private void discardContent( List<Future<List<InputStream>>> contents ) {
+    for ( Future<List<InputStream>> content : contents ) {
+      if ( content != null && !content.cancel( false ) ) {
+        try {
+          close( content.get() );
+        } catch ( Exception e ) {
+          // the export has already failed
+        }
+      }
+    }
+  }
+
+  private void close( List<InputStream> contents ) {
+    for ( InputStream is : contents ) {
+      IOUtils.closeQuietly( is );
+    }
+  }
+
+  private ExecutorService createPrefetchExecutor() {
+    return Executors.newFixedThreadPool( PREFETCH_THREADS, new ThreadFactory() {
+      public Thread newThread( Runnable runnable ) {
+        Thread thread = new Thread( runnable, "ZipExportProcessor-prefetch" );
+        thread.setDaemon( true );
+        return thread;
+      }
+    } );
+  }
+
   /**
    * create an entry in the export manifest for this file or folder
    *
@@ -223,12 +377,7 @@ public class ZipExportProcessor extends BaseExportProcessor {
   private void addToManifest( RepositoryFile repositoryFile ) throws ExportException {
     if ( this.withManifest ) {
       // add this entity to the manifest
-      RepositoryFileAcl fileAcl = unifiedRepository.getAcl( repositoryFile.getId() );
-      try {
-        exportManifest.add( repositoryFile, fileAcl );
-      } catch ( ExportManifestFormatException e ) {
-        throw new ExportException( e.getMessage() );
-      }
+      manifestFileIds.add( repositoryFile.getId() );
     }
   }
 
@@ -242,25 +391,48 @@ public class ZipExportProcessor extends BaseExportProcessor {
     addToManifest( repositoryDir );
     List<RepositoryFile> children = this.unifiedRepository.getChildren( new RepositoryRequest(
         String.valueOf( repositoryDir.getId() ), true, 1, null ) );
-    for ( RepositoryFile repositoryFile : children ) {
-      // exclude 'etc' folder - datasources and etc.
-      if ( !ClientRepositoryPaths.getEtcFolderPath().equals( repositoryFile.getPath() ) ) {
-        if ( repositoryFile.isFolder() ) {
-          if ( outputStream.getClass().isAssignableFrom( ZipOutputStream.class ) ) {
-            ZipOutputStream zos = (ZipOutputStream) outputStream;
-            ZipEntry entry =
-                new ZipEntry( ExportFileNameEncoder.encodeZipPathName( getZipEntryName( repositoryFile, filePath ) ) );
-            zos.putNextEntry( entry );
+
+    // the content of the files which follow the current child, when reading ahead
+    List<Future<List<InputStream>>> contents = new ArrayList<Future<List<InputStream>>>();
+    int prefetched = 0;
+    try {
+      for ( int i = 0; i < children.size(); i++ ) {
+        for ( ; prefetchExecutor != null && prefetched < children.size() && prefetched <= i + PREFETCH_SIZE;
+              prefetched++ ) {
+          RepositoryFile child = children.get( prefetched );
+          contents.add( isExported( child ) && !child.isFolder() ? prefetchContent( child, filePath ) : null );
+        }
+        Future<List<InputStream>> content = prefetchExecutor != null ? contents.set( i, null ) : null;
+
+        RepositoryFile repositoryFile = children.get( i );
+        // exclude 'etc' folder - datasources and etc.
+        if ( isExported( repositoryFile ) ) {
+          if ( repositoryFile.isFolder() ) {
+            if ( outputStream.getClass().isAssignableFrom( ZipOutputStream.class ) ) {
+              ZipOutputStream zos = (ZipOutputStream) outputStream;
+              ZipEntry entry =
+                  new ZipEntry( ExportFileNameEncoder.encodeZipPathName(
+                      getZipEntryName( repositoryFile, filePath ) ) );
+              zos.putNextEntry( entry );
+            }
+            exportDirectory( repositoryFile, outputStream, filePath );
+          } else if ( content != null ) {
+            exportFile( repositoryFile, outputStream, filePath, getContent( content ) );
+          } else {
+            exportFile( repositoryFile, outputStream, filePath );
           }
-          exportDirectory( repositoryFile, outputStream, filePath );
-        } else {
-          exportFile( repositoryFile, outputStream, filePath );
         }
       }
+    } finally {
+      discardContent( contents );
     }
     createLocales( repositoryDir, filePath, repositoryDir.isFolder(), outputStream );
   }
 
+  private boolean isExported( RepositoryFile repositoryFile ) {
+    return !ClientRepositoryPaths.getEtcFolderPath().equals( repositoryFile.getPath() );
+  }
+
   /**
    * Take repository file path and local file path and return computed zip entry path
    *
@@ -387,13 +559,9 @@ public class ZipExportProcessor extends BaseExportProcessor {
   private InputStream createLocaleFile( String name, Properties properties, String locale ) throws IOException {
     InputStream is = null;
     if ( properties != null ) {
-      File localeFile = File.createTempFile( ExportFileNameEncoder.encodeZipFileName( name ), LOCALE_EXT );
-      localeFile.deleteOnExit();
-      FileOutputStream fileOut = new FileOutputStream( localeFile );
-      properties.store( fileOut, "Locale = " + locale );
-      fileOut.close();
-      is = new FileInputStream( localeFile );
-
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      properties.store( out, "Locale = " + locale );
+      is = new ByteArrayInputStream( out.toByteArray() );
     }
     return is;
   }
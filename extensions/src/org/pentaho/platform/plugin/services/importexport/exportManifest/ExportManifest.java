@@ -50,6 +50,10 @@ import java.util.TreeSet;
  * @author tkafalas
  */
 public class ExportManifest {
+  static final String NAMESPACE = "http://www.pentaho.com/schema/";
+
+  private static JAXBContext jaxbContext;
+
   private HashMap<String, ExportManifestEntity> exportManifestEntities;
 
   private ExportManifestDto.ExportManifestInformation manifestInformation;
@@ -126,9 +130,8 @@ public class ExportManifest {
     if ( !isValid() ) {
       throw new ExportManifestFormatException( "Invalid root Folder for manifest" );
     }
-    final JAXBContext jaxbContext = JAXBContext.newInstance( ExportManifestDto.class );
     Marshaller marshaller = getMarshaller();
-    marshaller.marshal( new JAXBElement<ExportManifestDto>( new QName( "http://www.pentaho.com/schema/",
+    marshaller.marshal( new JAXBElement<ExportManifestDto>( new QName( NAMESPACE,
         "ExportManifest" ), ExportManifestDto.class, getExportManifestDto() ), outputStream );
   }
 
@@ -136,14 +139,23 @@ public class ExportManifest {
     StringWriter sw = new StringWriter();
     Marshaller marshaller = getMarshaller();
     marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE );
-    marshaller.marshal( new JAXBElement<ExportManifestDto>( new QName( "http://www.pentaho.com/schema/",
+    marshaller.marshal( new JAXBElement<ExportManifestDto>( new QName( NAMESPACE,
         "ExportManifest" ), ExportManifestDto.class, getExportManifestDto() ), sw );
     return sw.toString();
   }
 
+  /**
+   * The context is thread safe and expensive to create, so it is shared by every manifest
+   */
+  static synchronized JAXBContext getJAXBContext() throws JAXBException {
+    if ( jaxbContext == null ) {
+      jaxbContext = JAXBContext.newInstance( ExportManifestDto.class );
+    }
+    return jaxbContext;
+  }
+
   private Marshaller getMarshaller() throws JAXBException {
-    final JAXBContext jaxbContext = JAXBContext.newInstance( ExportManifestDto.class );
-    Marshaller marshaller = jaxbContext.createMarshaller();
+    Marshaller marshaller = getJAXBContext().createMarshaller();
     marshaller.setProperty( Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE );
     return marshaller;
   }
@@ -0,0 +1,101 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.importexport.exportManifest;
+
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestDto;
+import org.pentaho.platform.plugin.services.importexport.exportManifest.bindings.ExportManifestEntityDto;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.OutputStream;
+
+/**
+ * Writes an export manifest one entity at a time, so that the manifest of a large export does not have to be held in
+ * memory. The XML written is the same as that of {@link ExportManifest#toXml(OutputStream)} for a manifest with no
+ * mondrian, metadata, schedule or datasource entries, and is read with {@link ExportManifest#fromXml}.
+ */
+public class ExportManifestWriter {
+
+  private static final String ENCODING = "UTF-8";
+
+  private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+  private final String rootFolder;
+
+  private final XMLStreamWriter writer;
+
+  private final Marshaller marshaller;
+
+  /**
+   * Writes the start of the manifest, and its information, to <code>outputStream</code>
+   *
+   * @throws ExportManifestFormatException if the manifest information has no root folder
+   */
+  public ExportManifestWriter( OutputStream outputStream,
+                               ExportManifestDto.ExportManifestInformation manifestInformation )
+    throws JAXBException, XMLStreamException, ExportManifestFormatException {
+    if ( manifestInformation.getRootFolder() == null || manifestInformation.getRootFolder().length() == 0 ) {
+      throw new ExportManifestFormatException( "Invalid root Folder for manifest" );
+    }
+    this.rootFolder = manifestInformation.getRootFolder();
+    this.marshaller = ExportManifest.getJAXBContext().createMarshaller();
+    marshaller.setProperty( Marshaller.JAXB_FRAGMENT, Boolean.TRUE );
+
+    writer = OUTPUT_FACTORY.createXMLStreamWriter( outputStream, ENCODING );
+    writer.writeStartDocument( ENCODING, "1.0" );
+    writer.writeStartElement( "ns2", "ExportManifest", ExportManifest.NAMESPACE );
+    writer.writeNamespace( "ns2", ExportManifest.NAMESPACE );
+    marshaller.marshal( new JAXBElement<ExportManifestDto.ExportManifestInformation>( new QName(
+        "ExportManifestInformation" ), ExportManifestDto.ExportManifestInformation.class, manifestInformation ),
+        writer );
+  }
+
+  /**
+   * Writes the entity of a file or folder
+   *
+   * @throws ExportManifestFormatException if the file is not within the manifest's root folder
+   */
+  public void add( RepositoryFile repositoryFile, RepositoryFileAcl repositoryFileAcl ) throws JAXBException,
+    ExportManifestFormatException {
+    ExportManifestEntity exportManifestEntity =
+        new ExportManifestEntity( rootFolder, repositoryFile, repositoryFileAcl );
+    if ( !exportManifestEntity.isValid() ) {
+      throw new ExportManifestFormatException( "Invalid Manifest Entry" );
+    }
+    marshaller.marshal( new JAXBElement<ExportManifestEntityDto>( new QName( "ExportManifestEntity" ),
+        ExportManifestEntityDto.class, exportManifestEntity.getExportManifestEntityDto() ), writer );
+  }
+
+  /**
+   * Writes the end of the manifest. The output stream is flushed but left open.
+   */
+  public void close() throws XMLStreamException {
+    writer.writeEndElement();
+    writer.writeEndDocument();
+    writer.flush();
+    writer.close();
+  }
+
+}
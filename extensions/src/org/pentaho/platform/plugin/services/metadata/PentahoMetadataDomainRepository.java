@@ -32,6 +32,7 @@ import org.pentaho.metadata.util.LocalizationUtil;
 import org.pentaho.metadata.util.XmiParser;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
 import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.plugin.services.messages.Messages;
@@ -46,6 +47,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -53,6 +55,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 
 /**
@@ -112,6 +115,23 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
   // The localization utility class (used to load side-car properties files into a Domain object)
   private LocalizationUtil localizationUtil;
 
+  // Parsed and localized domains by Domain ID, shared by the callers of getSharedDomain
+  private final Map<String, SharedDomain> sharedDomains = new HashMap<String, SharedDomain>();
+
+  /**
+   * A parsed and localized domain, with the versions of the repository files it was loaded from
+   */
+  private static class SharedDomain {
+    private final List<Object> version;
+
+    private final Domain domain;
+
+    SharedDomain( final List<Object> version, final Domain domain ) {
+      this.version = version;
+      this.domain = domain;
+    }
+  }
+
   /**
    * Creates an instance of this class providing the {@link IUnifiedRepository} repository backend.
    * 
@@ -331,6 +351,62 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
     return domain;
   }
 
+  /**
+   * Retrieves a domain like {@link #getDomain(String)}, but parses and localizes every version of the domain files only
+   * once. The same domain is returned to all callers until the domain files change, so it must not be modified.
+   * 
+   * @param domainId
+   *          domain to get from the repository
+   * @return the shared domain object
+   */
+  Domain getSharedDomain( final String domainId ) {
+    if ( StringUtils.isEmpty( domainId ) ) {
+      throw new IllegalArgumentException( messages.getErrorString(
+          "PentahoMetadataDomainRepository.ERROR_0004_DOMAIN_ID_INVALID", domainId ) );
+    }
+    final RepositoryFile file = getMetadataRepositoryFile( domainId );
+    if ( file == null ) {
+      return null;
+    }
+    final List<Object> version = getDomainVersion( domainId, file );
+    synchronized ( sharedDomains ) {
+      final SharedDomain sharedDomain = sharedDomains.get( domainId );
+      if ( sharedDomain != null && sharedDomain.version.equals( version ) ) {
+        return sharedDomain.domain;
+      }
+    }
+    final Domain domain = getDomain( domainId );
+    if ( domain != null ) {
+      synchronized ( sharedDomains ) {
+        sharedDomains.put( domainId, new SharedDomain( version, domain ) );
+      }
+    }
+    return domain;
+  }
+
+  /**
+   * Identifies the version of the domain file and of the locale files of a domain
+   */
+  private List<Object> getDomainVersion( final String domainId, final RepositoryFile domainFile ) {
+    final List<Object> version = new ArrayList<Object>();
+    version.add( domainFile.getId() );
+    version.add( domainFile.getVersionId() );
+    version.add( domainFile.getLastModifiedDate() );
+    synchronized ( metadataMapping ) {
+      final Map<String, RepositoryFile> localeFiles = metadataMapping.getLocaleFiles( domainId );
+      if ( localeFiles != null ) {
+        for ( final Map.Entry<String, RepositoryFile> localeFile : new TreeMap<String, RepositoryFile>( localeFiles )
+            .entrySet() ) {
+          version.add( localeFile.getKey() );
+          version.add( localeFile.getValue().getId() );
+          version.add( localeFile.getValue().getVersionId() );
+          version.add( localeFile.getValue().getLastModifiedDate() );
+        }
+      }
+    }
+    return version;
+  }
+
   /**
    * return a list of all the domain ids in the repository. triggers a call to reloadDomains if necessary.
    * 
@@ -366,6 +442,9 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       domainFiles = metadataMapping.getFiles( domainId );
       metadataMapping.deleteDomain( domainId );
     }
+    synchronized ( sharedDomains ) {
+      sharedDomains.remove( domainId );
+    }
 
     for ( final RepositoryFile file : domainFiles ) {
       if ( logger.isTraceEnabled() ) {
@@ -443,11 +522,13 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
       metadataMapping.reset();
 
       // Reload the metadata about the metadata (that was fun to say)
-      final List<RepositoryFile> children = repository.getChildren( getMetadataDir().getId(), "*" );
+      final Map<RepositoryFile, Map<String, Serializable>> children =
+          repository.getChildrenWithMetadata( new RepositoryRequest( getMetadataDir().getId().toString(), null, -1,
+              "*" ) );
       logger.trace( "\tFound " + children.size() + " files in the repository" );
-      for ( final RepositoryFile child : children ) {
-        // Get the metadata for this file
-        final Map<String, Serializable> fileMetadata = repository.getFileMetadata( child.getId() );
+      for ( final Map.Entry<RepositoryFile, Map<String, Serializable>> entry : children.entrySet() ) {
+        final RepositoryFile child = entry.getKey();
+        final Map<String, Serializable> fileMetadata = entry.getValue();
         if ( fileMetadata == null || StringUtils.isEmpty( (String) fileMetadata.get( PROPERTY_NAME_DOMAIN_ID ) ) ) {
           logger.warn( messages.getString( "PentahoMetadataDomainRepository.WARN_0001_FILE_WITHOUT_METADATA", child
               .getName() ) );
@@ -476,6 +557,9 @@ public class PentahoMetadataDomainRepository implements IMetadataDomainRepositor
   @Override
   public void flushDomains() {
     logger.debug( "flushDomains()" );
+    synchronized ( sharedDomains ) {
+      sharedDomains.clear();
+    }
     internalReloadDomains();
   }
 
@@ -19,8 +19,11 @@ package org.pentaho.platform.plugin.services.metadata;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.pentaho.metadata.model.Category;
 import org.pentaho.metadata.model.Domain;
+import org.pentaho.metadata.model.LogicalColumn;
 import org.pentaho.metadata.model.LogicalModel;
+import org.pentaho.metadata.model.LogicalTable;
 import org.pentaho.metadata.model.concept.IConcept;
 import org.pentaho.metadata.repository.DomainAlreadyExistsException;
 import org.pentaho.metadata.repository.DomainIdNullException;
@@ -35,13 +38,21 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 
 import java.io.InputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * This is the platform implementation which provides session-based caching for an existing
  * {@link IMetadataDomainRepository}.
+ * <p/>
+ * When the existing repository is a {@link PentahoMetadataDomainRepository}, whose domains are the same for every
+ * session, the domains are parsed once and shared, and sessions that may access the same parts of a domain share the
+ * same secure domain. Row level security is applied when a model is queried, so it does not make secure domains
+ * differ. Domains returned by {@link #getDomain(String)} must therefore not be modified.
  * 
  * @author Jordan Ganoff (jganoff@pentaho.com)
  */
@@ -60,6 +71,22 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   private IMetadataDomainRepository delegate;
   private static final String DOMAIN_CACHE_KEY_PREDICATE = "domain-id-cache-for-session:";
 
+  // The secure domains shared by sessions, by domain id
+  private final Map<String, SecureDomains> secureDomains = new HashMap<String, SecureDomains>();
+
+  /**
+   * The secure domains created from a shared domain, by the parts of the domain they contain
+   */
+  private static class SecureDomains {
+    private final Domain sharedDomain;
+
+    private final Map<List<String>, Domain> domains = new HashMap<List<String>, Domain>();
+
+    SecureDomains( final Domain sharedDomain ) {
+      this.sharedDomain = sharedDomain;
+    }
+  }
+
   /**
    * this as a public class so that if necessary someone can get access to a session key and clear the cache in their
    * own way via javascript rule / etc
@@ -225,10 +252,16 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       }
       return domain;
     }
-    domain = delegate.getDomain( id );
+    if ( delegate instanceof PentahoMetadataDomainRepository ) {
+      domain = getSharedSecureDomain( id, ( (PentahoMetadataDomainRepository) delegate ).getSharedDomain( id ) );
+    } else {
+      domain = delegate.getDomain( id );
+      if ( domain != null ) {
+        SecurityHelper helper = new SecurityHelper();
+        domain = helper.createSecureDomain( this, domain );
+      }
+    }
     if ( domain != null ) {
-      SecurityHelper helper = new SecurityHelper();
-      domain = helper.createSecureDomain( this, domain );
       // cache domain with the key we used to look it up, not whatever new id it might have now
       if ( logger.isDebugEnabled() ) {
         logger.debug( "Caching domain by session: " + key ); //$NON-NLS-1$
@@ -238,6 +271,55 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
     return domain;
   }
 
+  /**
+   * Secures a shared domain for the current session, returning the secure domain of another session instead if it
+   * contains the same parts of the domain.
+   */
+  private Domain getSharedSecureDomain( final String domainId, final Domain sharedDomain ) {
+    if ( sharedDomain == null ) {
+      return null;
+    }
+    final Domain domain = new SecurityHelper().createSecureDomain( this, sharedDomain );
+    final List<String> contents = getContents( domain );
+    synchronized ( secureDomains ) {
+      SecureDomains domains = secureDomains.get( domainId );
+      if ( domains == null || domains.sharedDomain != sharedDomain ) {
+        // the domain changed, so the secure domains of the previous version are not shared anymore
+        domains = new SecureDomains( sharedDomain );
+        secureDomains.put( domainId, domains );
+      }
+      final Domain sharedSecureDomain = domains.domains.get( contents );
+      if ( sharedSecureDomain != null ) {
+        return sharedSecureDomain;
+      }
+      domains.domains.put( contents, domain );
+      return domain;
+    }
+  }
+
+  /**
+   * Lists the ids of the models, categories, tables and columns left in a secure domain
+   */
+  private static List<String> getContents( final Domain domain ) {
+    final List<String> contents = new ArrayList<String>();
+    for ( final LogicalModel model : domain.getLogicalModels() ) {
+      contents.add( "M" + model.getId() ); //$NON-NLS-1$
+      for ( final Category category : model.getCategories() ) {
+        contents.add( "C" + category.getId() ); //$NON-NLS-1$
+        for ( final LogicalColumn column : category.getLogicalColumns() ) {
+          contents.add( "c" + column.getId() ); //$NON-NLS-1$
+        }
+      }
+      for ( final LogicalTable table : model.getLogicalTables() ) {
+        contents.add( "T" + table.getId() ); //$NON-NLS-1$
+        for ( final LogicalColumn column : table.getLogicalColumns() ) {
+          contents.add( "t" + column.getId() ); //$NON-NLS-1$
+        }
+      }
+    }
+    return contents;
+  }
+
   /**
    * Remove all cache entries whose domain's id is equal to {@code domainId}.
    * 
@@ -255,11 +337,15 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
       }
     } );
     removeDomainFromIDCache( domainId );
+    synchronized ( secureDomains ) {
+      secureDomains.remove( domainId );
+    }
   }
 
   @Override
   public void reloadDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    clearSecureDomains();
     clearDomainIdsFromCache();
     delegate.reloadDomains();
   }
@@ -267,10 +353,17 @@ public class SessionCachingMetadataDomainRepository implements IMetadataDomainRe
   @Override
   public void flushDomains() {
     forAllKeys( REMOVE_ALL_CALLBACK );
+    clearSecureDomains();
     clearDomainIdsFromCache();
     delegate.flushDomains();
   }
 
+  private void clearSecureDomains() {
+    synchronized ( secureDomains ) {
+      secureDomains.clear();
+    }
+  }
+
   protected void flushDomains( final IPentahoSession session ) {
     forAllKeysInSession( session, REMOVE_ALL_CALLBACK );
     clearDomainIdsFromCache( session );
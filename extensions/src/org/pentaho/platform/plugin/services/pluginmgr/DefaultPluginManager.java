@@ -72,6 +72,13 @@ import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DefaultPluginManager implements IPluginManager {
 
@@ -82,6 +89,9 @@ public class DefaultPluginManager implements IPluginManager {
   // A namespacing prefix is added when registering meta provider objects in the object factory
   private static final String METAPROVIDER_KEY_PREFIX = "METAPROVIDER-"; //$NON-NLS-1$
 
+  // The number of threads starting plugins on reload; 1 starts them one at a time, in the order provided
+  private static final String BOOTSTRAP_THREADS_SETTING = "plugin-manager/bootstrap-threads"; //$NON-NLS-1$
+
   protected Map<String, ClassLoader> classLoaderMap = Collections.synchronizedMap( new HashMap<String, ClassLoader>() );
 
   protected Map<String, GenericApplicationContext> beanFactoryMap = Collections
@@ -94,6 +104,14 @@ public class DefaultPluginManager implements IPluginManager {
 
   protected List<XulOverlay> overlaysCache = Collections.synchronizedList( new ArrayList<XulOverlay>() );
 
+  private Map<ClassLoader, String> pluginIdsByClassLoader = Collections
+    .synchronizedMap( new HashMap<ClassLoader, String>() );
+
+  // rebuilt after the plugins are reloaded, so that requests are routed without locking or scanning every plugin
+  private volatile PluginRequestRouter requestRouter = PluginRequestRouter.EMPTY;
+
+  private List<IPluginManagerListener> listeners = new CopyOnWriteArrayList<IPluginManagerListener>();
+
   @Override
   public Set<String> getContentTypes() {
     // map.keySet returns a set backed by the map, so we cannot allow modification of the set
@@ -116,7 +134,9 @@ public class DefaultPluginManager implements IPluginManager {
    */
   private void unloadPlugins() {
     overlaysCache.clear();
+    requestRouter = PluginRequestRouter.EMPTY;
     classLoaderMap.clear();
+    pluginIdsByClassLoader.clear();
 
     // TODO: can we reset/reload the spring bean factory here?
 
@@ -199,24 +219,27 @@ public class DefaultPluginManager implements IPluginManager {
       }
 
       registeredPlugins.clear();
+      long start = System.currentTimeMillis();
+      int threads = getBootstrapThreads();
+      if ( threads > 1 && providedPlugins.size() > 1 ) {
+        anyErrors |= !startPlugins( providedPlugins, threads, session );
+      } else {
+        threads = 1;
+        for ( IPlatformPlugin plugin : providedPlugins ) {
+          anyErrors |= !startPlugin( plugin );
+        }
+      }
+      PluginMessageLogger.add( Messages.getInstance().getString( "PluginManager.PLUGINS_STARTED", //$NON-NLS-1$
+        Integer.toString( providedPlugins.size() ), Long.toString( System.currentTimeMillis() - start ),
+        Integer.toString( threads ) ) );
+
+      List<IPlatformPlugin> started = new ArrayList<IPlatformPlugin>();
       for ( IPlatformPlugin plugin : providedPlugins ) {
-        try {
-          GenericApplicationContext beanFactory = beanFactoryMap.get( plugin.getId() );
-          if ( beanFactory != null ) {
-            beanFactory.refresh();
-          }
-          registerPlugin( plugin );
-          registeredPlugins.put( plugin.getId(), plugin );
-        } catch ( Throwable t ) {
-          // this has been logged already
-          anyErrors = true;
-          String msg =
-            Messages.getInstance().getErrorString(
-              "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() ); //$NON-NLS-1$
-          Logger.error( getClass().toString(), msg, t );
-          PluginMessageLogger.add( msg );
+        if ( registeredPlugins.get( plugin.getId() ) == plugin ) {
+          started.add( plugin );
         }
       }
+      requestRouter = new PluginRequestRouter( started );
     }
 
     IServiceManager svcManager = PentahoSystem.get( IServiceManager.class, null );
@@ -231,9 +254,99 @@ public class DefaultPluginManager implements IPluginManager {
       }
     }
 
+    for ( IPluginManagerListener listener : listeners ) {
+      try {
+        listener.onReload();
+      } catch ( Throwable t ) {
+        Logger.error( getClass().toString(), t.getMessage(), t );
+      }
+    }
+
     return !anyErrors;
   }
 
+  private static int getBootstrapThreads() {
+    try {
+      return Integer.parseInt( PentahoSystem.getSystemSetting( BOOTSTRAP_THREADS_SETTING, "1" ).trim() ); //$NON-NLS-1$
+    } catch ( NumberFormatException e ) {
+      return 1;
+    }
+  }
+
+  /**
+   * Starts the plugins on a pool of <code>threads</code> threads. A plugin is started once the plugins it depends on
+   * have been; the Spring contexts of plugins which do not depend on one another are refreshed concurrently.
+   *
+   * @return false if any plugin failed to start
+   */
+  private boolean startPlugins( final List<IPlatformPlugin> plugins, final int threads,
+                                final IPentahoSession session ) {
+    final AtomicBoolean succeeded = new AtomicBoolean( true );
+    final AtomicInteger threadCount = new AtomicInteger();
+    ThreadPoolExecutor executor =
+      new ThreadPoolExecutor( threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r, "plugin-bootstrap-" + threadCount.incrementAndGet() ); //$NON-NLS-1$
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+    try {
+      new PluginDependencyGraph( plugins ).run( new PluginDependencyGraph.PluginTask() {
+        public void run( IPlatformPlugin plugin ) {
+          IPentahoSession origSession = PentahoSessionHolder.getSession();
+          PentahoSessionHolder.setSession( session );
+          try {
+            if ( !startPlugin( plugin ) ) {
+              succeeded.set( false );
+            }
+          } finally {
+            PentahoSessionHolder.setSession( origSession );
+          }
+        }
+      }, executor );
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      succeeded.set( false );
+    } finally {
+      executor.shutdown();
+    }
+    return succeeded.get();
+  }
+
+  /**
+   * Refreshes the plugin's Spring context and registers the plugin, logging how long each took.
+   *
+   * @return false if the plugin failed to start
+   */
+  private boolean startPlugin( final IPlatformPlugin plugin ) {
+    try {
+      long start = System.currentTimeMillis();
+      GenericApplicationContext beanFactory = beanFactoryMap.get( plugin.getId() );
+      if ( beanFactory != null ) {
+        beanFactory.refresh();
+      }
+      long refreshed = System.currentTimeMillis();
+      // registration updates state shared by all plugins, so plugins are registered one at a time
+      synchronized ( registeredPlugins ) {
+        registerPlugin( plugin );
+        registeredPlugins.put( plugin.getId(), plugin );
+      }
+      PluginMessageLogger.add( Messages.getInstance().getString( "PluginManager.PLUGIN_STARTED", //$NON-NLS-1$
+        plugin.getId(), Long.toString( refreshed - start ), Long.toString( System.currentTimeMillis() - refreshed ) ) );
+      return true;
+    } catch ( Throwable t ) {
+      // this has been logged already
+      String msg =
+        Messages.getInstance().getErrorString(
+          "PluginManager.ERROR_0011_FAILED_TO_REGISTER_PLUGIN", plugin.getId() ); //$NON-NLS-1$
+      Logger.error( getClass().toString(), msg, t );
+      PluginMessageLogger.add( msg );
+      return false;
+    }
+  }
+
   /**
    * Gets the plugin ready to handle lifecycle events.
    */
@@ -602,6 +715,7 @@ public class DefaultPluginManager implements IPluginManager {
         ( (PluginClassLoader) loader ).setOverrideLoad( true );
       }
       classLoaderMap.put( plugin.getId(), loader );
+      pluginIdsByClassLoader.put( loader, plugin.getId() );
     }
     return loader;
   }
@@ -831,13 +945,7 @@ public class DefaultPluginManager implements IPluginManager {
     if ( classLoader == null ) {
       return null;
     }
-    for ( String pluginId : classLoaderMap.keySet() ) {
-      ClassLoader maybeClassLoader = classLoaderMap.get( pluginId );
-      if ( maybeClassLoader.equals( classLoader ) ) {
-        return pluginId;
-      }
-    }
-    return null;
+    return pluginIdsByClassLoader.get( classLoader );
   }
 
   private String trimLeadingSlash( String path ) {
@@ -871,42 +979,13 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public String getServicePlugin( String path ) {
-    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return pluginId;
-      }
-
-      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
-        String cgId = contentGenerator.getId();
-        if ( isRequested( cgId, path ) ) {
-          return plugin.getId();
-        }
-      }
-    }
-
-    return null;
-  }
-
-  private String getStaticResourcePluginId( IPlatformPlugin plugin, String path ) {
-    Map<String, String> resourceMap = plugin.getStaticResourceMap();
-    for ( String url : resourceMap.keySet() ) {
-      if ( isRequested( url, path ) ) {
-        return plugin.getId();
-      }
-    }
-    return null;
+    PluginRequestRouter.Route route = requestRouter.getRoute( path );
+    return ( route != null ) ? route.getPluginId() : null;
   }
 
   @Deprecated
   public boolean isStaticResource( String path ) {
-    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
-      String pluginId = getStaticResourcePluginId( plugin, path );
-      if ( pluginId != null ) {
-        return true;
-      }
-    }
-    return false;
+    return requestRouter.getStaticResourceRoute( path ) != null;
   }
 
   public boolean isPublic( String pluginId, String path ) {
@@ -928,18 +1007,14 @@ public class DefaultPluginManager implements IPluginManager {
 
   @Deprecated
   public InputStream getStaticResource( String path ) {
-    for ( IPlatformPlugin plugin : registeredPlugins.values() ) {
-      Map<String, String> resourceMap = plugin.getStaticResourceMap();
-      for ( String url : resourceMap.keySet() ) {
-        if ( isRequested( url, path ) ) {
-          IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class, null );
-          ClassLoader classLoader = classLoaderMap.get( plugin.getId() );
-          String resourcePath = path.replace( url, resourceMap.get( url ) );
-          return resLoader.getResourceAsStream( classLoader, resourcePath );
-        }
-      }
+    PluginRequestRouter.Route route = requestRouter.getStaticResourceRoute( path );
+    if ( route == null ) {
+      return null;
     }
-    return null;
+    IPluginResourceLoader resLoader = PentahoSystem.get( IPluginResourceLoader.class, null );
+    ClassLoader classLoader = classLoaderMap.get( route.getPluginId() );
+    String resourcePath = path.replace( route.getUrl(), route.getLocalFolder() );
+    return resLoader.getResourceAsStream( classLoader, resourcePath );
   }
 
   public List<String> getExternalResourcesForContext( String context ) {
@@ -988,6 +1063,6 @@ public class DefaultPluginManager implements IPluginManager {
   }
 
   @Override public void addPluginManagerListener( IPluginManagerListener listener ) {
-
+    listeners.add( listener );
   }
 }
@@ -76,6 +76,8 @@ public class PlatformPlugin implements IPlatformPlugin, IPentahoInitializer {
 
   private Map<String, List<String>> externalResources = new HashMap<String, List<String>>();
 
+  private List<String> dependencies = new ArrayList<String>();
+
   public PlatformPlugin() {
   }
 
@@ -255,4 +257,12 @@ public class PlatformPlugin implements IPlatformPlugin, IPentahoInitializer {
     perspectives.add( perspective );
   }
 
+  public List<String> getDependencies() {
+    return Collections.unmodifiableList( dependencies );
+  }
+
+  public void addDependency( String pluginId ) {
+    dependencies.add( pluginId );
+  }
+
 }
@@ -0,0 +1,162 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+import org.pentaho.platform.plugin.services.messages.Messages;
+import org.pentaho.platform.util.logging.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * The plugins provided to the plugin manager, with the dependencies between them declared in their plugin.xml. A task
+ * is run for every plugin on a pool of threads, a plugin's task starting only once the tasks of the plugins it depends
+ * on have finished. The tasks of plugins which do not depend on one another run concurrently, in no particular order.
+ * <p/>
+ * A plugin provided more than once is treated as depending on its first occurrence. Dependencies on plugins which are
+ * not provided are ignored.
+ */
+class PluginDependencyGraph {
+
+  /**
+   * The work done for a single plugin. Must not throw.
+   */
+  interface PluginTask {
+    void run( IPlatformPlugin plugin );
+  }
+
+  private static class Node {
+    private final IPlatformPlugin plugin;
+
+    private final Set<Node> dependencies = new LinkedHashSet<Node>();
+
+    private final List<Node> dependents = new ArrayList<Node>();
+
+    private int remaining;
+
+    private boolean started;
+
+    Node( IPlatformPlugin plugin ) {
+      this.plugin = plugin;
+    }
+  }
+
+  private final List<Node> nodes = new ArrayList<Node>();
+
+  private final Object lock = new Object();
+
+  private int running;
+
+  PluginDependencyGraph( List<IPlatformPlugin> plugins ) {
+    Map<String, Node> nodesById = new HashMap<String, Node>();
+    for ( IPlatformPlugin plugin : plugins ) {
+      Node node = new Node( plugin );
+      Node first = nodesById.get( plugin.getId() );
+      if ( first != null ) {
+        node.dependencies.add( first );
+      } else {
+        nodesById.put( plugin.getId(), node );
+      }
+      nodes.add( node );
+    }
+    for ( Node node : nodes ) {
+      List<String> dependencies = node.plugin.getDependencies();
+      if ( dependencies == null ) {
+        continue;
+      }
+      for ( String pluginId : dependencies ) {
+        Node dependency = nodesById.get( pluginId );
+        if ( dependency == null ) {
+          Logger.warn( getClass().toString(), Messages.getInstance().getString(
+              "PluginManager.WARN_PLUGIN_DEPENDENCY_NOT_FOUND", node.plugin.getId(), pluginId ) ); //$NON-NLS-1$
+        } else if ( dependency != node ) {
+          node.dependencies.add( dependency );
+        }
+      }
+    }
+    for ( Node node : nodes ) {
+      node.remaining = node.dependencies.size();
+      for ( Node dependency : node.dependencies ) {
+        dependency.dependents.add( node );
+      }
+    }
+  }
+
+  /**
+   * Runs <code>task</code> for every plugin and waits for all of them to finish. Plugins caught in a dependency cycle,
+   * and the plugins depending on them, are run on the calling thread in the order they were provided once every other
+   * plugin has finished.
+   */
+  void run( final PluginTask task, final Executor executor ) throws InterruptedException {
+    synchronized ( lock ) {
+      for ( Node node : nodes ) {
+        if ( node.remaining == 0 ) {
+          start( node, task, executor );
+        }
+      }
+      while ( running > 0 ) {
+        lock.wait();
+      }
+    }
+
+    for ( Node node : nodes ) {
+      if ( !node.started ) {
+        Logger.warn( getClass().toString(), Messages.getInstance().getString(
+            "PluginManager.WARN_PLUGIN_DEPENDENCY_CYCLE", node.plugin.getId() ) ); //$NON-NLS-1$
+        node.started = true;
+        task.run( node.plugin );
+      }
+    }
+  }
+
+  /**
+   * Must be called holding the lock.
+   */
+  private void start( final Node node, final PluginTask task, final Executor executor ) {
+    node.started = true;
+    running++;
+    executor.execute( new Runnable() {
+      public void run() {
+        try {
+          task.run( node.plugin );
+        } finally {
+          finished( node, task, executor );
+        }
+      }
+    } );
+  }
+
+  private void finished( final Node node, final PluginTask task, final Executor executor ) {
+    synchronized ( lock ) {
+      for ( Node dependent : node.dependents ) {
+        if ( --dependent.remaining == 0 ) {
+          start( dependent, task, executor );
+        }
+      }
+      running--;
+      lock.notifyAll();
+    }
+  }
+
+}
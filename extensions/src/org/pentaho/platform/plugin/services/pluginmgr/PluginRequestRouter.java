@@ -0,0 +1,217 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.pentaho.platform.api.engine.IContentGeneratorInfo;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resolves request paths to the static resource paths and content generators of the registered plugins. The paths are
+ * held in a trie of path elements, so a request is resolved by walking its elements once, without splitting it or
+ * comparing it against every plugin.
+ * <p/>
+ * A path is served by a static resource path or content generator id if it starts with all of its elements, as decided
+ * by {@link DefaultPluginManager#isRequested(String, String)}. When several match, the one with the most elements is
+ * used; a static resource path is preferred to a content generator with the same id, and a plugin registered earlier
+ * to one registered later.
+ * <p/>
+ * A router is immutable. The plugin manager builds a new one whenever its plugins are reloaded.
+ */
+class PluginRequestRouter {
+
+  static final PluginRequestRouter EMPTY = new PluginRequestRouter( Collections.<IPlatformPlugin>emptyList() );
+
+  /**
+   * A static resource path or content generator, and the plugin it belongs to.
+   */
+  static class Route {
+    private final String pluginId;
+
+    private final String url;
+
+    private final String localFolder;
+
+    Route( String pluginId, String url, String localFolder ) {
+      this.pluginId = pluginId;
+      this.url = url;
+      this.localFolder = localFolder;
+    }
+
+    String getPluginId() {
+      return pluginId;
+    }
+
+    /**
+     * @return the static resource path or content generator id, as registered
+     */
+    String getUrl() {
+      return url;
+    }
+
+    /**
+     * @return the plugin folder a static resource path maps to, or null for a content generator
+     */
+    String getLocalFolder() {
+      return localFolder;
+    }
+  }
+
+  /**
+   * The children of a node are kept in an open addressing table, so that a child can be found by a region of the
+   * request path rather than by a substring of it.
+   */
+  private static class Node {
+    private String[] keys = new String[ 4 ];
+
+    private Node[] children = new Node[ 4 ];
+
+    private int size;
+
+    private Route staticResource;
+
+    private Route contentGenerator;
+
+    Node getChild( String path, int start, int end ) {
+      int mask = keys.length - 1;
+      for ( int i = hash( path, start, end ) & mask; keys[ i ] != null; i = ( i + 1 ) & mask ) {
+        String key = keys[ i ];
+        if ( key.length() == end - start && path.regionMatches( start, key, 0, key.length() ) ) {
+          return children[ i ];
+        }
+      }
+      return null;
+    }
+
+    Node addChild( String key ) {
+      Node child = getChild( key, 0, key.length() );
+      if ( child != null ) {
+        return child;
+      }
+      if ( ( size + 1 ) * 2 > keys.length ) {
+        String[] oldKeys = keys;
+        Node[] oldChildren = children;
+        keys = new String[ oldKeys.length * 2 ];
+        children = new Node[ oldKeys.length * 2 ];
+        for ( int i = 0; i < oldKeys.length; i++ ) {
+          if ( oldKeys[ i ] != null ) {
+            put( oldKeys[ i ], oldChildren[ i ] );
+          }
+        }
+      }
+      child = new Node();
+      put( key, child );
+      size++;
+      return child;
+    }
+
+    private void put( String key, Node child ) {
+      int mask = keys.length - 1;
+      int i = hash( key, 0, key.length() ) & mask;
+      while ( keys[ i ] != null ) {
+        i = ( i + 1 ) & mask;
+      }
+      keys[ i ] = key;
+      children[ i ] = child;
+    }
+
+    private static int hash( String s, int start, int end ) {
+      int h = 0;
+      for ( int i = start; i < end; i++ ) {
+        h = 31 * h + s.charAt( i );
+      }
+      return h ^ ( h >>> 16 );
+    }
+  }
+
+  private final Node root = new Node();
+
+  PluginRequestRouter( Collection<IPlatformPlugin> plugins ) {
+    for ( IPlatformPlugin plugin : plugins ) {
+      for ( Map.Entry<String, String> entry : plugin.getStaticResourceMap().entrySet() ) {
+        Node node = add( entry.getKey() );
+        if ( node.staticResource == null ) {
+          node.staticResource = new Route( plugin.getId(), entry.getKey(), entry.getValue() );
+        }
+      }
+      for ( IContentGeneratorInfo contentGenerator : plugin.getContentGenerators() ) {
+        Node node = add( contentGenerator.getId() );
+        if ( node.contentGenerator == null ) {
+          node.contentGenerator = new Route( plugin.getId(), contentGenerator.getId(), null );
+        }
+      }
+    }
+  }
+
+  private Node add( String servicePath ) {
+    Node node = root;
+    for ( String element : trimLeadingSlash( servicePath ).split( "/" ) ) { //$NON-NLS-1$
+      node = node.addChild( element );
+    }
+    return node;
+  }
+
+  /**
+   * @return the static resource path or content generator serving <code>path</code>, or null
+   */
+  Route getRoute( String path ) {
+    return find( path, false );
+  }
+
+  /**
+   * @return the static resource path serving <code>path</code>, or null
+   */
+  Route getStaticResourceRoute( String path ) {
+    return find( path, true );
+  }
+
+  private Route find( String path, boolean staticResourcesOnly ) {
+    Route found = null;
+    Node node = root;
+    int start = path.startsWith( "/" ) ? 1 : 0; //$NON-NLS-1$
+    int length = path.length();
+    while ( node != null ) {
+      int end = path.indexOf( '/', start );
+      if ( end < 0 ) {
+        end = length;
+      }
+      node = node.getChild( path, start, end );
+      if ( node == null ) {
+        break;
+      }
+      if ( node.staticResource != null ) {
+        found = node.staticResource;
+      } else if ( node.contentGenerator != null && !staticResourcesOnly ) {
+        found = node.contentGenerator;
+      }
+      if ( end == length ) {
+        break;
+      }
+      start = end + 1;
+    }
+    return found;
+  }
+
+  private static String trimLeadingSlash( String path ) {
+    return ( path.startsWith( "/" ) ) ? path.substring( 1 ) : path; //$NON-NLS-1$
+  }
+
+}
@@ -1,21 +1,45 @@
 package org.pentaho.platform.plugin.services.security.userrole;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.pentaho.platform.api.engine.ICacheManager;
+import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.springframework.security.Authentication;
+import org.springframework.security.context.SecurityContextHolder;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Caching Decorator for an IUserRoleListService. It will use the configured ICacheManager in the PentahoSystem to cache
  * all calls being made to the decorated instance.
  * <p/>
+ * Concurrent misses for the same entry share a single call to the decorated instance. Entries older than
+ * <code>user-role-list-cache/refresh-seconds</code> (300 by default, 0 to never refresh) are still returned, while a
+ * background thread loads them again.
+ * <p/>
  * Created by nbaker on 5/20/14.
  */
 public class CachingUserRoleListServiceDecorator implements IUserRoleListService {
+  private static final Log logger = LogFactory.getLog( CachingUserRoleListServiceDecorator.class );
   private IUserRoleListService delegate;
   private ICacheManager cacheManager = PentahoSystem.getCacheManager( null );
   private static final String REGION = "userRoleListCache";
@@ -23,11 +47,75 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
   private static final String ALL_ROLES = "all roles";
   private static final String SYSTEM_ROLES = "system roles";
   private static final String ROLES_BY_USER = "roles by user";
+  private static final String USERS_IN_ROLE = "users in role";
+  private static final String REFRESH_SECONDS_SETTING = "user-role-list-cache/refresh-seconds"; //$NON-NLS-1$
 
   private static interface DelegateOperation {
     List<String> perform();
   }
 
+  /**
+   * A result of the decorated instance, as stored in the cache region. The list is never modified.
+   */
+  private static class CachedResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> results;
+
+    private final long loadTime;
+
+    CachedResult( List<String> results, long loadTime ) {
+      this.results = Collections.unmodifiableList( new ArrayList<String>( results ) );
+      this.loadTime = loadTime;
+    }
+  }
+
+  /**
+   * Counters for one kind of call to the decorator. Loads include background refreshes.
+   */
+  public static class OperationStatistics {
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong loads = new AtomicLong();
+
+    private final AtomicLong failedLoads = new AtomicLong();
+
+    private final AtomicLong loadMillis = new AtomicLong();
+
+    public long getHits() {
+      return hits.get();
+    }
+
+    public long getMisses() {
+      return misses.get();
+    }
+
+    public long getLoads() {
+      return loads.get();
+    }
+
+    public long getFailedLoads() {
+      return failedLoads.get();
+    }
+
+    public long getTotalLoadMillis() {
+      return loadMillis.get();
+    }
+
+    public long getAverageLoadMillis() {
+      long count = loads.get();
+      return count == 0 ? 0 : loadMillis.get() / count;
+    }
+
+    @Override
+    public String toString() {
+      return "hits=" + getHits() + ", misses=" + getMisses() + ", loads=" + getLoads() + ", failedLoads=" //$NON-NLS-1$
+          + getFailedLoads() + ", averageLoadMillis=" + getAverageLoadMillis(); //$NON-NLS-1$
+    }
+  }
+
   private final DelegateOperation ALL_ROLES_OPERATION = new DelegateOperation() {
     @Override public List<String> perform() {
       return delegate.getAllRoles();
@@ -45,6 +133,17 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
     }
   };
 
+  private final Map<String, OperationStatistics> statistics;
+
+  /**
+   * Key: cache entry; value: the call to the decorated instance currently loading it
+   */
+  private final ConcurrentMap<String, FutureTask<CachedResult>> loads =
+      new ConcurrentHashMap<String, FutureTask<CachedResult>>();
+
+  private final ThreadPoolExecutor refreshExecutor;
+
+  private long refreshMillis;
 
   public CachingUserRoleListServiceDecorator( IUserRoleListService delegate ) {
     if ( delegate == null ) {
@@ -54,35 +153,174 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
     if ( !this.cacheManager.cacheEnabled( REGION ) ) {
       this.cacheManager.addCacheRegion( REGION );
     }
+
+    Map<String, OperationStatistics> statistics = new LinkedHashMap<String, OperationStatistics>();
+    for ( String operation : new String[] { ALL_USERS, ALL_ROLES, SYSTEM_ROLES, ROLES_BY_USER, USERS_IN_ROLE } ) {
+      statistics.put( operation, new OperationStatistics() );
+    }
+    this.statistics = Collections.unmodifiableMap( statistics );
+
+    long refreshSeconds = 300;
+    try {
+      refreshSeconds =
+          Long.parseLong( PentahoSystem.getSystemSetting( REFRESH_SECONDS_SETTING, String.valueOf( refreshSeconds ) )
+              .trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid " + REFRESH_SECONDS_SETTING + " setting", e ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    this.refreshMillis = refreshSeconds * 1000;
+
+    refreshExecutor =
+        new ThreadPoolExecutor( 1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+          @Override public Thread newThread( Runnable r ) {
+            Thread thread = new Thread( r, "user-role-list-refresh" ); //$NON-NLS-1$
+            thread.setDaemon( true );
+            return thread;
+          }
+        } );
+    refreshExecutor.allowCoreThreadTimeOut( true );
+  }
+
+  /**
+   * @return the counters of each kind of call, by its name
+   */
+  public Map<String, OperationStatistics> getStatistics() {
+    return statistics;
+  }
+
+  void setRefreshMillis( long refreshMillis ) {
+    this.refreshMillis = refreshMillis;
+  }
+
+  private List<String> performOperation( String operationName, String cacheEntry, DelegateOperation operation ) {
+    OperationStatistics operationStatistics = statistics.get( operationName );
+    CachedResult cached = getCachedResult( cacheEntry );
+    if ( cached != null ) {
+      operationStatistics.hits.incrementAndGet();
+      if ( refreshMillis > 0 && System.currentTimeMillis() - cached.loadTime >= refreshMillis ) {
+        refresh( cacheEntry, operation, operationStatistics );
+      }
+    } else {
+      operationStatistics.misses.incrementAndGet();
+      cached = load( cacheEntry, operation, operationStatistics );
+    }
+    // callers are free to modify the list they get
+    return new ArrayList<String>( cached.results );
   }
 
-  @SuppressWarnings( "unchecked" )
-  private List<String> performOperation( String cacheEntry, DelegateOperation operation ) {
-      List<String> results = null;
+  private CachedResult getCachedResult( String cacheEntry ) {
     Object fromRegionCache = cacheManager.getFromRegionCache( REGION, cacheEntry );
-    if (fromRegionCache instanceof List ) {
-        results = (List<String>) fromRegionCache;
-    }else{
-        results = operation.perform();
-        cacheManager.putInRegionCache( REGION, cacheEntry, results );
+    return fromRegionCache instanceof CachedResult ? (CachedResult) fromRegionCache : null;
+  }
+
+  /**
+   * Loads an entry which is not in the cache, or waits for the load already in progress.
+   */
+  private CachedResult load( final String cacheEntry, DelegateOperation operation,
+      OperationStatistics operationStatistics ) {
+    FutureTask<CachedResult> load = newLoad( cacheEntry, operation, operationStatistics, false );
+    FutureTask<CachedResult> current = loads.putIfAbsent( cacheEntry, load );
+    if ( current == null ) {
+      current = load;
+      try {
+        load.run();
+      } finally {
+        loads.remove( cacheEntry, load );
+      }
     }
-    return new ArrayList<String>(results);
+    try {
+      return current.get();
+    } catch ( InterruptedException e ) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException( e );
+    } catch ( ExecutionException e ) {
+      if ( e.getCause() instanceof RuntimeException ) {
+        throw (RuntimeException) e.getCause();
+      }
+      if ( e.getCause() instanceof Error ) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException( e.getCause() );
+    }
+  }
+
+  /**
+   * Loads a stale entry again in the background, as the current user, unless it is already being loaded.
+   */
+  private void refresh( final String cacheEntry, DelegateOperation operation,
+      OperationStatistics operationStatistics ) {
+    final FutureTask<CachedResult> load = newLoad( cacheEntry, operation, operationStatistics, true );
+    if ( loads.putIfAbsent( cacheEntry, load ) != null ) {
+      return;
+    }
+    final IPentahoSession session = PentahoSessionHolder.getSession();
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    refreshExecutor.execute( new Runnable() {
+      @Override public void run() {
+        PentahoSessionHolder.setSession( session );
+        SecurityContextHolder.getContext().setAuthentication( authentication );
+        try {
+          load.run();
+          load.get();
+        } catch ( InterruptedException e ) {
+          Thread.currentThread().interrupt();
+        } catch ( ExecutionException e ) {
+          // the stale entry is kept, and loaded again on a later call
+          logger.warn( "Failed to refresh " + cacheEntry, e.getCause() ); //$NON-NLS-1$
+        } finally {
+          loads.remove( cacheEntry, load );
+          SecurityContextHolder.clearContext();
+          PentahoSessionHolder.removeSession();
+        }
+      }
+    } );
+  }
+
+  private FutureTask<CachedResult> newLoad( final String cacheEntry, final DelegateOperation operation,
+      final OperationStatistics operationStatistics, final boolean refresh ) {
+    return new FutureTask<CachedResult>( new Callable<CachedResult>() {
+      @Override public CachedResult call() {
+        if ( !refresh ) {
+          // a load which completed while this one was being registered
+          CachedResult cached = getCachedResult( cacheEntry );
+          if ( cached != null ) {
+            return cached;
+          }
+        }
+        long start = System.currentTimeMillis();
+        CachedResult cached;
+        try {
+          cached = new CachedResult( operation.perform(), start );
+        } catch ( RuntimeException e ) {
+          operationStatistics.failedLoads.incrementAndGet();
+          throw e;
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        cacheManager.putInRegionCache( REGION, cacheEntry, cached );
+        operationStatistics.loads.incrementAndGet();
+        operationStatistics.loadMillis.addAndGet( elapsed );
+        if ( logger.isDebugEnabled() ) {
+          logger.debug( "Loaded " + cacheEntry + " in " + elapsed + " ms" ); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+        return cached;
+      }
+    } );
   }
 
 
   @Override
   public List<String> getAllRoles() {
-    return performOperation( ALL_ROLES, ALL_ROLES_OPERATION );
+    return performOperation( ALL_ROLES, ALL_ROLES, ALL_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getSystemRoles() {
-    return performOperation( SYSTEM_ROLES, SYSTEM_ROLES_OPERATION );
+    return performOperation( SYSTEM_ROLES, SYSTEM_ROLES, SYSTEM_ROLES_OPERATION );
   }
 
   @Override
   public List<String> getRolesForUser( final ITenant tenant, final String username ) {
-    return performOperation( ROLES_BY_USER + getTenantKey( tenant ) + username,
+    return performOperation( ROLES_BY_USER, ROLES_BY_USER + getTenantKey( tenant ) + username,
       new DelegateOperation() {
         @Override public List<String> perform() {
           return delegate.getRolesForUser( tenant, username );
@@ -97,7 +335,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllUsers( final ITenant tenant ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( ALL_USERS, ALL_USERS + getTenantKey( tenant ), new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllUsers( tenant );
       }
@@ -106,7 +344,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getAllRoles( final ITenant tenant ) {
-    return performOperation( ALL_ROLES + getTenantKey( tenant ), new DelegateOperation() {
+    return performOperation( ALL_ROLES, ALL_ROLES + getTenantKey( tenant ), new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getAllRoles( tenant );
       }
@@ -115,7 +353,7 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
 
   @Override
   public List<String> getUsersInRole( final ITenant tenant, final String role ) {
-    return performOperation( ALL_USERS + getTenantKey( tenant ) + role, new DelegateOperation() {
+    return performOperation( USERS_IN_ROLE, USERS_IN_ROLE + getTenantKey( tenant ) + role, new DelegateOperation() {
       @Override public List<String> perform() {
         return delegate.getUsersInRole( tenant, role );
       }
@@ -125,6 +363,6 @@ public class CachingUserRoleListServiceDecorator implements IUserRoleListService
   @Override
   public List<String> getAllUsers() {
 
-    return performOperation( ALL_USERS, ALL_USERS_OPERATION );
+    return performOperation( ALL_USERS, ALL_USERS, ALL_USERS_OPERATION );
   }
 }
@@ -76,6 +76,12 @@ public class DefaultLdapUserRoleListService implements IUserRoleListService, Ini
 
   private IAuthenticationRoleMapper roleMapper;
 
+  /**
+   * Optional. When set, users, roles and, if the index has them, role members are read from this index instead of
+   * being searched for.
+   */
+  private LdapUserRoleIndex userRoleIndex;
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -105,7 +111,8 @@ public class DefaultLdapUserRoleListService implements IUserRoleListService, Ini
 
   @Override
   public List<String> getAllRoles() {
-    List<GrantedAuthority> results = allAuthoritiesSearch.search( new Object[0] );
+    List<GrantedAuthority> results =
+        ( userRoleIndex != null ) ? userRoleIndex.getAllAuthorities() : allAuthoritiesSearch.search( new Object[0] );
     List<String> roles = new ArrayList<String>( results.size() );
     for ( GrantedAuthority role : results ) {
       String roleString =
@@ -123,7 +130,8 @@ public class DefaultLdapUserRoleListService implements IUserRoleListService, Ini
 
   @Override
   public List<String> getAllUsers() {
-    List<String> results = allUsernamesSearch.search( new Object[0] );
+    List<String> results =
+        ( userRoleIndex != null ) ? userRoleIndex.getAllUsernames() : allUsernamesSearch.search( new Object[0] );
     if ( null != usernameComparator ) {
       Collections.sort( results, usernameComparator );
     }
@@ -137,7 +145,10 @@ public class DefaultLdapUserRoleListService implements IUserRoleListService, Ini
     }
     String updateRole = roleNameUtils.getPrincipleName( role );
     // User Role mapper to get the equivalent ldap role
-    List<String> results = usernamesInRoleSearch.search( new Object[] { roleMapper.fromPentahoRole( updateRole ) } );
+    String ldapRole = roleMapper.fromPentahoRole( updateRole );
+    List<String> results =
+        ( userRoleIndex != null && userRoleIndex.isIndexingRoleMembers() ) ? userRoleIndex
+            .getUsernamesInRole( ldapRole ) : usernamesInRoleSearch.search( new Object[] { ldapRole } );
     if ( null != usernameComparator ) {
       Collections.sort( results, usernameComparator );
     }
@@ -174,6 +185,10 @@ public class DefaultLdapUserRoleListService implements IUserRoleListService, Ini
     this.usernamesInRoleSearch = usernamesInRoleSearch;
   }
 
+  public void setUserRoleIndex( final LdapUserRoleIndex userRoleIndex ) {
+    this.userRoleIndex = userRoleIndex;
+  }
+
   public void setUserDetailsService( final UserDetailsService userDetailsService ) {
     this.userDetailsService = userDetailsService;
   }
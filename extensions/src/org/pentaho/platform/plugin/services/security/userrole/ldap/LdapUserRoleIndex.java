@@ -0,0 +1,299 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.security.userrole.ldap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.pentaho.platform.plugin.services.security.userrole.ldap.search.GenericLdapSearch;
+import org.pentaho.platform.plugin.services.security.userrole.ldap.search.LdapSearch;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.security.GrantedAuthority;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory copy of the users, roles and role members of a directory, which is searched again every
+ * <code>refreshIntervalSeconds</code> on a background thread. Set it on a {@link DefaultLdapUserRoleListService} to
+ * answer user and role lists from memory instead of from the directory, which is slow for large directories; combine
+ * it with paged searches (see
+ * {@link org.pentaho.platform.plugin.services.security.userrole.ldap.search.GenericLdapSearch#setPageSize(int)}) to
+ * index directories with more entries than the size limit of the server.
+ * <p/>
+ * Users and roles can also be looked up by a case-insensitive prefix of their names.
+ * <p/>
+ * A refresh which fails keeps the last index. Set <code>failOnError</code> on the searches of the index (see
+ * {@link GenericLdapSearch#setFailOnError(boolean)}), so that a search which fails part way is not taken for a
+ * complete result. As a last resort, a refresh which finds no users or no roles never replaces an index which has
+ * some.
+ */
+public class LdapUserRoleIndex implements InitializingBean, DisposableBean {
+
+  // ~ Static fields/initializers
+  // ======================================================================================
+
+  private static final Log logger = LogFactory.getLog( LdapUserRoleIndex.class );
+
+  private static final Comparator<String> NAME_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+  // ~ Instance fields
+  // =================================================================================================
+
+  private LdapSearch allUsernamesSearch;
+
+  private LdapSearch allAuthoritiesSearch;
+
+  /**
+   * Optional; searched once per role when the index is built. Role members are not indexed without it.
+   */
+  private LdapSearch usernamesInRoleSearch;
+
+  private long refreshIntervalSeconds = 600;
+
+  private volatile Snapshot snapshot;
+
+  private ScheduledExecutorService refreshExecutor;
+
+  // ~ Constructors
+  // ====================================================================================================
+
+  public LdapUserRoleIndex() {
+    super();
+  }
+
+  // ~ Methods
+  // =========================================================================================================
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    Assert.notNull( allUsernamesSearch );
+    Assert.notNull( allAuthoritiesSearch );
+    for ( LdapSearch search : new LdapSearch[] { allUsernamesSearch, allAuthoritiesSearch, usernamesInRoleSearch } ) {
+      if ( search instanceof GenericLdapSearch && !( (GenericLdapSearch) search ).isFailOnError() ) {
+        logger.warn( "An LDAP search of the user role index does not fail on errors; " //$NON-NLS-1$
+            + "a failed refresh may replace the index with incomplete results" ); //$NON-NLS-1$
+      }
+    }
+    if ( refreshIntervalSeconds > 0 ) {
+      refreshExecutor = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+        @Override
+        public Thread newThread( Runnable r ) {
+          Thread thread = new Thread( r, "ldap-user-role-index" ); //$NON-NLS-1$
+          thread.setDaemon( true );
+          return thread;
+        }
+      } );
+      refreshExecutor.scheduleWithFixedDelay( new Runnable() {
+        @Override
+        public void run() {
+          try {
+            refresh();
+          } catch ( RuntimeException e ) {
+            // keep the last index, and try again later
+            logger.error( "Failed to refresh the LDAP user role index", e ); //$NON-NLS-1$
+          }
+        }
+      }, refreshIntervalSeconds, refreshIntervalSeconds, TimeUnit.SECONDS );
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    if ( refreshExecutor != null ) {
+      refreshExecutor.shutdownNow();
+    }
+  }
+
+  /**
+   * Searches the directory for all users, roles and role members, and replaces the index with the results. The index
+   * is kept if a search throws, or if no users or no roles are found while the index has some.
+   */
+  @SuppressWarnings( "unchecked" )
+  public synchronized void refresh() {
+    long start = System.currentTimeMillis();
+    List<String> usernames = allUsernamesSearch.search( new Object[0] );
+    List<GrantedAuthority> authorities = allAuthoritiesSearch.search( new Object[0] );
+    Map<String, String[]> usernamesByAuthority = new HashMap<String, String[]>();
+    if ( usernamesInRoleSearch != null ) {
+      for ( GrantedAuthority authority : authorities ) {
+        List<String> members = usernamesInRoleSearch.search( new Object[] { authority.getAuthority() } );
+        usernamesByAuthority.put( authority.getAuthority(), sorted( members ) );
+      }
+    }
+    Snapshot current = snapshot;
+    if ( current != null && ( ( usernames.isEmpty() && current.usernames.length > 0 )
+        || ( authorities.isEmpty() && !current.authorities.isEmpty() ) ) ) {
+      // most likely a search which failed without throwing
+      logger.warn( "Found no users or no roles in the directory; keeping the last LDAP user role index" ); //$NON-NLS-1$
+      return;
+    }
+    snapshot = new Snapshot( sorted( usernames ), authorities, usernamesByAuthority );
+    if ( logger.isDebugEnabled() ) {
+      logger.debug( "Indexed " + usernames.size() + " users and " + authorities.size() //$NON-NLS-1$ //$NON-NLS-2$
+          + " roles in " + ( System.currentTimeMillis() - start ) + " ms" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * @return all user names, in no particular order
+   */
+  public List<String> getAllUsernames() {
+    return new ArrayList<String>( Arrays.asList( getSnapshot().usernames ) );
+  }
+
+  /**
+   * @return all roles, as returned by the <code>allAuthoritiesSearch</code>
+   */
+  public List<GrantedAuthority> getAllAuthorities() {
+    return new ArrayList<GrantedAuthority>( getSnapshot().authorities );
+  }
+
+  /**
+   * @return true if role members are indexed, i.e. a <code>usernamesInRoleSearch</code> is set
+   */
+  public boolean isIndexingRoleMembers() {
+    return usernamesInRoleSearch != null;
+  }
+
+  /**
+   * @param authority
+   *          the name of a role in the directory
+   * @return the members of the role, or an empty list if role members are not indexed
+   * @see #isIndexingRoleMembers()
+   */
+  public List<String> getUsernamesInRole( final String authority ) {
+    String[] members = getSnapshot().usernamesByAuthority.get( authority );
+    return members != null ? new ArrayList<String>( Arrays.asList( members ) ) : new ArrayList<String>();
+  }
+
+  /**
+   * @param limit
+   *          maximum number of user names to return; 0 for all
+   * @return the user names starting with <code>prefix</code>, ignoring case, in alphabetical order
+   */
+  public List<String> findUsernames( final String prefix, final int limit ) {
+    return findByPrefix( getSnapshot().usernames, prefix, limit );
+  }
+
+  /**
+   * @param limit
+   *          maximum number of role names to return; 0 for all
+   * @return the names of the roles starting with <code>prefix</code>, ignoring case, in alphabetical order
+   */
+  public List<String> findAuthorities( final String prefix, final int limit ) {
+    return findByPrefix( getSnapshot().authorityNames, prefix, limit );
+  }
+
+  private Snapshot getSnapshot() {
+    Snapshot current = snapshot;
+    if ( current == null ) {
+      synchronized ( this ) {
+        if ( snapshot == null ) {
+          refresh();
+        }
+        current = snapshot;
+      }
+    }
+    return current;
+  }
+
+  private static List<String> findByPrefix( final String[] names, String prefix, final int limit ) {
+    if ( prefix == null ) {
+      prefix = ""; //$NON-NLS-1$
+    }
+    List<String> found = new ArrayList<String>();
+    int start = Arrays.binarySearch( names, prefix, NAME_ORDER );
+    if ( start < 0 ) {
+      start = -start - 1;
+    } else {
+      // there may be several names equal to the prefix, ignoring case
+      while ( start > 0 && NAME_ORDER.compare( names[ start - 1 ], prefix ) == 0 ) {
+        start--;
+      }
+    }
+    for ( int i = start; i < names.length && ( limit <= 0 || found.size() < limit ); i++ ) {
+      if ( !names[ i ].regionMatches( true, 0, prefix, 0, prefix.length() ) ) {
+        break;
+      }
+      found.add( names[ i ] );
+    }
+    return found;
+  }
+
+  private static String[] sorted( final List<String> names ) {
+    String[] sorted = names.toArray( new String[ names.size() ] );
+    Arrays.sort( sorted, NAME_ORDER );
+    return sorted;
+  }
+
+  public void setAllUsernamesSearch( final LdapSearch allUsernamesSearch ) {
+    this.allUsernamesSearch = allUsernamesSearch;
+  }
+
+  public void setAllAuthoritiesSearch( final LdapSearch allAuthoritiesSearch ) {
+    this.allAuthoritiesSearch = allAuthoritiesSearch;
+  }
+
+  public void setUsernamesInRoleSearch( final LdapSearch usernamesInRoleSearch ) {
+    this.usernamesInRoleSearch = usernamesInRoleSearch;
+  }
+
+  /**
+   * @param refreshIntervalSeconds
+   *          delay between searches of the directory; 0 to only search it when {@link #refresh()} is called
+   */
+  public void setRefreshIntervalSeconds( final long refreshIntervalSeconds ) {
+    this.refreshIntervalSeconds = refreshIntervalSeconds;
+  }
+
+  /**
+   * The contents of the index at one time. Never modified once built.
+   */
+  private static class Snapshot {
+    private final String[] usernames;
+
+    private final List<GrantedAuthority> authorities;
+
+    private final String[] authorityNames;
+
+    private final Map<String, String[]> usernamesByAuthority;
+
+    Snapshot( String[] usernames, List<GrantedAuthority> authorities, Map<String, String[]> usernamesByAuthority ) {
+      this.usernames = usernames;
+      this.authorities = Collections.unmodifiableList( new ArrayList<GrantedAuthority>( authorities ) );
+      List<String> authorityNames = new ArrayList<String>( authorities.size() );
+      for ( GrantedAuthority authority : authorities ) {
+        authorityNames.add( authority.getAuthority() );
+      }
+      this.authorityNames = sorted( authorityNames );
+      this.usernamesByAuthority = usernamesByAuthority;
+    }
+  }
+
+}
@@ -21,12 +21,20 @@ import org.apache.commons.collections.Transformer;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.ldap.UncategorizedLdapException;
 import org.springframework.ldap.core.ContextSource;
+import org.springframework.ldap.support.LdapUtils;
 import org.springframework.util.Assert;
 
 import javax.naming.NamingEnumeration;
 import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchResult;
+import javax.naming.ldap.Control;
+import javax.naming.ldap.LdapContext;
+import javax.naming.ldap.PagedResultsControl;
+import javax.naming.ldap.PagedResultsResponseControl;
+import java.io.IOException;
 import java.util.*;
 
 public class GenericLdapSearch implements LdapSearch, InitializingBean {
@@ -63,6 +71,20 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
 
   private ContextSource contextSource;
 
+  /**
+   * Number of entries to ask the directory for at a time, with the paged results control of RFC 2696. Paging lets a
+   * search return more entries than the size limit of the directory server. The control is not critical, so servers
+   * which do not support it return all entries at once. 0, the default, does not page.
+   */
+  private int pageSize;
+
+  /**
+   * When true, a failed search throws a <code>org.springframework.ldap.NamingException</code> instead of logging the
+   * failure and returning the entries found so far. Callers which must tell an incomplete result from a complete one,
+   * such as {@link org.pentaho.platform.plugin.services.security.userrole.ldap.LdapUserRoleIndex}, need this.
+   */
+  private boolean failOnError;
+
   // ~ Constructors ==========================================================
 
   public GenericLdapSearch( final ContextSource contextSource, final LdapSearchParamsFactory paramsFactory ) {
@@ -94,36 +116,101 @@ public class GenericLdapSearch implements LdapSearch, InitializingBean {
     LdapSearchParams params = paramsFactory.createParams( transformedArgs );
     // use a set internally to store intermediate results
     Set results = new HashSet();
-    NamingEnumeration matches = null;
+    DirContext context = contextSource.getReadOnlyContext();
     try {
-      matches =
-          contextSource.getReadOnlyContext().search( params.getBase(), params.getFilter(), params.getFilterArgs(),
+      boolean paged = pageSize > 0 && context instanceof LdapContext;
+      byte[] cookie = null;
+      do {
+        if ( paged ) {
+          ( (LdapContext) context ).setRequestControls( new Control[] { new PagedResultsControl( pageSize, cookie,
+              Control.NONCRITICAL ) } );
+        }
+        NamingEnumeration matches = null;
+        try {
+          matches = context.search( params.getBase(), params.getFilter(), params.getFilterArgs(),
               params.getSearchControls() );
-    } catch ( NamingException e1 ) {
+        } catch ( NamingException e1 ) {
+          if ( failOnError ) {
+            throw LdapUtils.convertLdapException( e1 );
+          }
+          if ( GenericLdapSearch.logger.isErrorEnabled() ) {
+            // TODO: Throw an exception here
+            GenericLdapSearch.logger.error( "Directory search failed", e1 ); //$NON-NLS-1$
+          }
+          return new ArrayList( results );
+        }
+        try {
+          while ( matches.hasMore() ) {
+            SearchResult result = (SearchResult) matches.next();
+            if ( null != resultsTransformer ) {
+              results.addAll( (Collection) resultsTransformer.transform( result ) );
+            } else {
+              results.add( result );
+            }
+          }
+        } catch ( NamingException e ) {
+          if ( failOnError ) {
+            throw LdapUtils.convertLdapException( e );
+          }
+          if ( GenericLdapSearch.logger.isErrorEnabled() ) {
+            // TODO: Throw an exception here
+            GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
+          }
+          return new ArrayList( results );
+        }
+        cookie = paged ? getCookie( (LdapContext) context ) : null;
+      } while ( cookie != null && cookie.length > 0 );
+    } catch ( NamingException e ) {
+      if ( failOnError ) {
+        throw LdapUtils.convertLdapException( e );
+      }
       if ( GenericLdapSearch.logger.isErrorEnabled() ) {
-        // TODO: Throw an exception here
-        GenericLdapSearch.logger.error( "Directory search failed", e1 ); //$NON-NLS-1$
+        GenericLdapSearch.logger.error( "Paging directory search results failed", e ); //$NON-NLS-1$
       }
-      return new ArrayList( results );
-    }
-    try {
-      while ( matches.hasMore() ) {
-        SearchResult result = (SearchResult) matches.next();
-        if ( null != resultsTransformer ) {
-          results.addAll( (Collection) resultsTransformer.transform( result ) );
-        } else {
-          results.add( result );
-        }
+    } catch ( IOException e ) {
+      if ( failOnError ) {
+        throw new UncategorizedLdapException( "Paging directory search results failed", e ); //$NON-NLS-1$
       }
-    } catch ( NamingException e ) {
       if ( GenericLdapSearch.logger.isErrorEnabled() ) {
-        // TODO: Throw an exception here
-        GenericLdapSearch.logger.error( "Enumerating directory search results failed", e ); //$NON-NLS-1$
+        GenericLdapSearch.logger.error( "Paging directory search results failed", e ); //$NON-NLS-1$
+      }
+    } finally {
+      try {
+        context.close();
+      } catch ( NamingException e ) {
+        GenericLdapSearch.logger.debug( "Failed to close directory context", e ); //$NON-NLS-1$
       }
     }
     return new ArrayList( results );
   }
 
+  /**
+   * @return the cookie to ask for the next page of results with, or null after the last page
+   */
+  private byte[] getCookie( final LdapContext context ) throws NamingException {
+    Control[] controls = context.getResponseControls();
+    if ( controls != null ) {
+      for ( Control control : controls ) {
+        if ( control instanceof PagedResultsResponseControl ) {
+          return ( (PagedResultsResponseControl) control ).getCookie();
+        }
+      }
+    }
+    return null;
+  }
+
+  public void setPageSize( final int pageSize ) {
+    this.pageSize = pageSize;
+  }
+
+  public boolean isFailOnError() {
+    return failOnError;
+  }
+
+  public void setFailOnError( final boolean failOnError ) {
+    this.failOnError = failOnError;
+  }
+
   public void afterPropertiesSet() throws Exception {
     Assert.notNull( contextSource );
     Assert.notNull( paramsFactory );
@@ -0,0 +1,89 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http;
+
+import org.apache.commons.codec.binary.Hex;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Entity tags for generated scripts, so that browsers can revalidate them with <code>If-None-Match</code> instead of
+ * fetching them again.
+ */
+public class HttpETagHelper {
+
+  private HttpETagHelper() {
+  }
+
+  /**
+   * @return the MD5 digest of the given parts, in order
+   */
+  public static byte[] digest( byte[]... parts ) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "MD5" ); //$NON-NLS-1$
+      for ( byte[] part : parts ) {
+        if ( part != null ) {
+          digest.update( part );
+          // parts are delimited so that moving bytes from one to the next changes the digest
+          digest.update( (byte) 0 );
+        }
+      }
+      return digest.digest();
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  /**
+   * @return a strong entity tag, with its quotes, for content made of the given parts. Large parts which are reused
+   *         across responses may be passed as their {@link #digest(byte[][])} instead.
+   */
+  public static String getETag( byte[]... parts ) {
+    return '"' + new String( Hex.encodeHex( digest( parts ) ) ) + '"';
+  }
+
+  /**
+   * Answers a conditional request with 304 Not Modified when one of its If-None-Match tags equals <code>eTag</code>,
+   * otherwise advertises the tag on the response. Either way the response may be cached by the browser but must be
+   * revalidated, as it is specific to the user.
+   *
+   * @return true if the response has been completed with 304 Not Modified, and no content should be written
+   */
+  public static boolean checkNotModified( HttpServletRequest request, HttpServletResponse response, String eTag ) {
+    response.setHeader( "ETag", eTag ); //$NON-NLS-1$
+    response.setHeader( "Cache-Control", "private, no-cache" ); //$NON-NLS-1$ //$NON-NLS-2$
+    String ifNoneMatch = request.getHeader( "If-None-Match" ); //$NON-NLS-1$
+    if ( ifNoneMatch != null ) {
+      for ( String candidate : ifNoneMatch.split( "," ) ) { //$NON-NLS-1$
+        candidate = candidate.trim();
+        if ( candidate.startsWith( "W/" ) ) { //$NON-NLS-1$
+          candidate = candidate.substring( 2 );
+        }
+        if ( candidate.equals( "*" ) || candidate.equals( eTag ) ) { //$NON-NLS-1$
+          response.setStatus( HttpServletResponse.SC_NOT_MODIFIED );
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+}
@@ -54,6 +54,8 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.EntityTag;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -1483,7 +1485,12 @@ public class FileResource extends AbstractJaxRSResource {
   public RepositoryFileTreeDto doGetRootTree( @QueryParam ( "depth" ) Integer depth,
                                               @QueryParam ( "filter" ) String filter, @QueryParam ( "showHidden" ) Boolean showHidden,
                                               @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls ) {
-    return fileService.doGetTree( FileUtils.PATH_SEPARATOR, depth, filter, showHidden, includeAcls );
+    RepositoryFileTreeDto tree =
+        fileService.doGetTree( FileUtils.PATH_SEPARATOR, depth, filter, showHidden, includeAcls );
+    if ( tree != null ) {
+      evaluateETag( fileService.getETag( tree, getETagVariant() ) );
+    }
+    return tree;
   }
 
   /**
@@ -1547,7 +1554,12 @@ public class FileResource extends AbstractJaxRSResource {
   public List<RepositoryFileDto> doGetRootChildren( @QueryParam ( "filter" ) String filter,
                                                     @QueryParam ( "showHidden" ) Boolean showHidden,
                                                     @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls ) {
-    return fileService.doGetChildren( FileUtils.PATH_SEPARATOR, filter, showHidden, includeAcls );
+    List<RepositoryFileDto> children =
+        fileService.doGetChildren( FileUtils.PATH_SEPARATOR, filter, showHidden, includeAcls );
+    if ( children != null ) {
+      evaluateETag( fileService.getETag( children, getETagVariant() ) );
+    }
+    return children;
   }
 
   /**
@@ -1615,7 +1627,11 @@ public class FileResource extends AbstractJaxRSResource {
   public RepositoryFileTreeDto doGetTree( @PathParam ( "pathId" ) String pathId, @QueryParam ( "depth" ) Integer depth,
                                           @QueryParam ( "filter" ) String filter, @QueryParam ( "showHidden" ) Boolean showHidden,
                                           @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls ) {
-    return fileService.doGetTree( pathId, depth, filter, showHidden, includeAcls );
+    RepositoryFileTreeDto tree = fileService.doGetTree( pathId, depth, filter, showHidden, includeAcls );
+    if ( tree != null ) {
+      evaluateETag( fileService.getETag( tree, getETagVariant() ) );
+    }
+    return tree;
   }
 
   /**
@@ -1682,7 +1698,11 @@ public class FileResource extends AbstractJaxRSResource {
                                                 @QueryParam ( "filter" ) String filter, @QueryParam ( "showHidden" ) Boolean showHidden,
                                                 @DefaultValue ( "false" ) @QueryParam ( "includeAcls" ) Boolean includeAcls ) {
 
-    return fileService.doGetChildren( pathId, filter, showHidden, includeAcls );
+    List<RepositoryFileDto> children = fileService.doGetChildren( pathId, filter, showHidden, includeAcls );
+    if ( children != null ) {
+      evaluateETag( fileService.getETag( children, getETagVariant() ) );
+    }
+    return children;
   }
 
   /**
@@ -2027,6 +2047,35 @@ public class FileResource extends AbstractJaxRSResource {
     this.mimeResolver = mimeResolver;
   }
 
+  /**
+   * Answers a conditional request with 304 Not Modified when one of its If-None-Match tags equals <code>eTag</code>,
+   * otherwise advertises the tag on the response so that clients can revalidate the listing later.
+   */
+  protected void evaluateETag( String eTag ) {
+    if ( eTag == null || httpServletRequest == null || httpServletResponse == null ) {
+      return;
+    }
+    EntityTag tag = new EntityTag( eTag );
+    String ifNoneMatch = httpServletRequest.getHeader( "If-None-Match" );
+    if ( ifNoneMatch != null ) {
+      for ( String candidate : ifNoneMatch.split( "," ) ) {
+        candidate = candidate.trim();
+        if ( candidate.startsWith( "W/" ) ) {
+          candidate = candidate.substring( 2 );
+        }
+        if ( candidate.equals( "*" ) || candidate.equals( tag.toString() ) ) {
+          throw new WebApplicationException( Response.notModified( tag ).build() );
+        }
+      }
+    }
+    httpServletResponse.setHeader( "ETag", tag.toString() );
+    httpServletResponse.setHeader( "Cache-Control", "private, no-cache" );
+  }
+
+  protected String getETagVariant() {
+    return httpServletRequest == null ? null : httpServletRequest.getHeader( "Accept" );
+  }
+
   protected Response buildOkResponse() {
     return Response.ok().build();
   }
@@ -26,6 +26,7 @@ import static javax.ws.rs.core.Response.Status.UNAUTHORIZED;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.Consumes;
@@ -36,6 +37,7 @@ import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
@@ -49,6 +51,8 @@ import org.pentaho.platform.api.repository2.unified.UnifiedRepositoryException;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
 import org.pentaho.platform.web.http.api.resources.proxies.BlockStatusProxy;
@@ -464,6 +468,81 @@ public class SchedulerResource extends AbstractJaxRSResource {
     }
   }
 
+  /**
+   * Retrieve a page of the scheduled jobs visible to the current user. Filtering, sorting and paging are done by the
+   * scheduler, which only reads the jobs of the requested page in full.
+   *
+   * <p><b>Example Request:</b><br />
+   *    GET pentaho/api/scheduler/jobs/query?state=NORMAL&amp;sortBy=NEXT_RUN&amp;offset=0&amp;limit=25
+   * </p>
+   *
+   * @param userName     Only return jobs scheduled by this user (ignored unless the current user is an administrator).
+   * @param states       Only return jobs in one of these states (NORMAL, PAUSED, COMPLETE, ERROR, BLOCKED).
+   * @param action       Only return jobs running this action class or action id.
+   * @param nextRunFrom  Only return jobs running next at or after this time, in milliseconds since the epoch.
+   * @param nextRunTo    Only return jobs running next at or before this time, in milliseconds since the epoch.
+   * @param sortBy       The property to sort by (JOB_NAME, USER_NAME, STATE, NEXT_RUN, LAST_RUN).
+   * @param ascending    Whether to sort in ascending order.
+   * @param offset       The number of matching jobs to skip.
+   * @param limit        The maximum number of jobs to return, -1 for all.
+   *
+   * @return The requested page of jobs, together with the number of matching jobs on all pages.
+   *
+   * <p><b>Example Response:</b></p>
+   * <pre function="syntax.xml">
+   *  &lt;jobPage&gt;
+   *  &lt;jobs&gt;...&lt;/jobs&gt;
+   *  &lt;offset&gt;0&lt;/offset&gt;
+   *  &lt;totalCount&gt;1&lt;/totalCount&gt;
+   *  &lt;/jobPage&gt;
+   * </pre>
+   */
+  @GET
+  @Path ( "/jobs/query" )
+  @Produces ( { APPLICATION_JSON, APPLICATION_XML } )
+  @StatusCodes ( {
+      @ResponseCode ( code = 200, condition = "Jobs retrieved successfully." ),
+      @ResponseCode ( code = 400, condition = "Invalid state or sort property." ),
+      @ResponseCode ( code = 500, condition = "Error while retrieving jobs." )
+  } )
+  public JobPage queryJobs( @QueryParam ( "userName" ) String userName,
+                            @QueryParam ( "state" ) List<String> states,
+                            @QueryParam ( "action" ) String action,
+                            @QueryParam ( "nextRunFrom" ) Long nextRunFrom,
+                            @QueryParam ( "nextRunTo" ) Long nextRunTo,
+                            @QueryParam ( "sortBy" ) String sortBy,
+                            @DefaultValue ( "true" ) @QueryParam ( "ascending" ) Boolean ascending,
+                            @DefaultValue ( "0" ) @QueryParam ( "offset" ) Integer offset,
+                            @DefaultValue ( "-1" ) @QueryParam ( "limit" ) Integer limit ) {
+    JobQuery query = new JobQuery();
+    query.setUserName( userName );
+    query.setAction( action );
+    query.setNextRunFrom( nextRunFrom != null ? new Date( nextRunFrom ) : null );
+    query.setNextRunTo( nextRunTo != null ? new Date( nextRunTo ) : null );
+    query.setOffset( offset );
+    query.setLimit( limit );
+    try {
+      if ( states != null ) {
+        List<JobState> jobStates = new ArrayList<JobState>();
+        for ( String state : states ) {
+          jobStates.add( JobState.valueOf( state ) );
+        }
+        query.setStates( jobStates );
+      }
+      if ( sortBy != null ) {
+        query.setSort( JobQuery.SortField.valueOf( sortBy ), ascending );
+      }
+    } catch ( IllegalArgumentException e ) {
+      throw new WebApplicationException( Status.BAD_REQUEST );
+    }
+
+    try {
+      return schedulerService.queryJobs( query );
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
+    }
+  }
+
   /**
    * Checks whether the current user may schedule a repository file in the platform.
    *
@@ -12,10 +12,13 @@ import java.net.URLEncoder;
 import java.nio.channels.IllegalSelectorException;
 import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -25,8 +28,10 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringEscapeUtils;
 import org.apache.commons.lang.StringUtils;
@@ -1295,14 +1300,11 @@ public class FileService {
 
     RepositoryFile workspaceFolder = getRepository().getFile( userDir );
     if ( workspaceFolder != null ) {
-      List<RepositoryFile> children = getRepository().getChildren( workspaceFolder.getId() );
+      List<RepositoryFile> children =
+          getRepository().getChildrenByMetadata( workspaceFolder.getId(), metadataConstant, targetComparator );
       for ( RepositoryFile child : children ) {
         if ( !child.isFolder() ) {
-          Map<String, Serializable> fileMetadata = getRepository().getFileMetadata( child.getId() );
-          String creatorId = (String) fileMetadata.get( metadataConstant );
-          if ( creatorId != null && creatorId.equals( targetComparator ) ) {
-            content.add( toFileDto( child, null, false ) );
-          }
+          content.add( toFileDto( child, null, false ) );
         }
       }
     } else {
@@ -1496,8 +1498,21 @@ public class FileService {
     return PentahoSystem.get( DefaultExportHandler.class );
   }
 
-  protected StreamingOutput getDownloadStream( RepositoryFile repositoryFile, BaseExportProcessor exportProcessor )
+  protected StreamingOutput getDownloadStream( final RepositoryFile repositoryFile,
+                                              final BaseExportProcessor exportProcessor )
     throws ExportException, IOException {
+    if ( exportProcessor instanceof ZipExportProcessor ) {
+      // write the zip straight to the response as the repository is read
+      return new StreamingOutput() {
+        public void write( OutputStream output ) throws IOException {
+          try {
+            ( (ZipExportProcessor) exportProcessor ).performExport( repositoryFile, output );
+          } catch ( ExportException e ) {
+            throw new WebApplicationException( e );
+          }
+        }
+      };
+    }
     File zipFile = exportProcessor.performExport( repositoryFile );
     final FileInputStream is = new FileInputStream( zipFile );
     // copy streaming output
@@ -1565,6 +1580,110 @@ public class FileService {
     return repositoryFileDtoList;
   }
 
+  /**
+   * Returns a strong entity tag for a tree returned by {@link #doGetTree}. It is derived from the returned members of
+   * every file in the tree, including their modification dates and version ids, so it changes whenever the tree would.
+   *
+   * @param tree    the tree about to be returned
+   * @param variant distinguishes representations of the same tree, e.g. the requested media type
+   * @return the entity tag value, without quotes
+   */
+  public String getETag( RepositoryFileTreeDto tree, String variant ) {
+    MessageDigest digest = getETagDigest( variant );
+    updateETagDigest( digest, tree );
+    return new String( Hex.encodeHex( digest.digest() ) );
+  }
+
+  /**
+   * Returns a strong entity tag for a list of files returned by {@link #doGetChildren}.
+   *
+   * @see #getETag(RepositoryFileTreeDto, String)
+   */
+  public String getETag( List<RepositoryFileDto> files, String variant ) {
+    MessageDigest digest = getETagDigest( variant );
+    for ( RepositoryFileDto file : files ) {
+      updateETagDigest( digest, file );
+    }
+    return new String( Hex.encodeHex( digest.digest() ) );
+  }
+
+  private MessageDigest getETagDigest( String variant ) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance( "MD5" );
+      digest.update( String.valueOf( variant ).getBytes( "UTF-8" ) );
+      return digest;
+    } catch ( NoSuchAlgorithmException e ) {
+      throw new IllegalStateException( e );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
+  private void updateETagDigest( MessageDigest digest, RepositoryFileTreeDto tree ) {
+    updateETagDigest( digest, tree.getFile() );
+    if ( tree.getChildren() != null ) {
+      // children are delimited so that moving a file between levels changes the tag
+      digest.update( (byte) '[' );
+      for ( RepositoryFileTreeDto child : tree.getChildren() ) {
+        updateETagDigest( digest, child );
+      }
+      digest.update( (byte) ']' );
+    }
+  }
+
+  /**
+   * Adds every member of a file that is returned to the client, so that the tag changes whenever the response would.
+   * New members of {@link RepositoryFileDto} must be added here.
+   */
+  private void updateETagDigest( MessageDigest digest, RepositoryFileDto file ) {
+    if ( file == null ) {
+      return;
+    }
+    updateETagDigest( digest, file.getId(), file.getName(), file.getPath(), file.isFolder(), file.getFileSize(),
+        file.getCreatedDate(), file.getCreatorId(), file.getLastModifiedDate(), file.getDeletedDate(),
+        file.getOriginalParentFolderPath(), file.isHidden(), file.isVersioned(), file.getVersionId(), file.isLocked(),
+        file.getLockOwner(), file.getLockMessage(), file.getLockDate(), file.getOwner(), file.getOwnerType(),
+        file.getOwnerTenantPath(), file.getTitle(), file.getDescription(), file.getLocale() );
+    if ( file.getLocalePropertiesMapEntries() != null ) {
+      for ( LocaleMapDto localeMap : file.getLocalePropertiesMapEntries() ) {
+        updateETagDigest( digest, localeMap.getLocale() );
+        if ( localeMap.getProperties() != null ) {
+          for ( StringKeyStringValueDto property : localeMap.getProperties() ) {
+            updateETagDigest( digest, property.getKey(), property.getValue() );
+          }
+        }
+      }
+    }
+    RepositoryFileAclDto acl = file.getRepositoryFileAclDto();
+    if ( acl != null ) {
+      updateETagDigest( digest, acl.getId(), acl.getOwner(), acl.getOwnerType(), acl.getTenantPath(),
+          acl.isEntriesInheriting() );
+      if ( acl.getAces() != null ) {
+        for ( RepositoryFileAclAceDto ace : acl.getAces() ) {
+          updateETagDigest( digest, ace.getRecipient(), ace.getRecipientType(), ace.getTenantPath(),
+              ace.isModifiable(), ace.getPermissions() );
+        }
+      }
+    }
+    // delimits files, so that members cannot shift from one file to the next
+    digest.update( (byte) ';' );
+  }
+
+  private void updateETagDigest( MessageDigest digest, Object... values ) {
+    try {
+      for ( Object value : values ) {
+        if ( value instanceof Date ) {
+          value = ( (Date) value ).getTime();
+        }
+        // null is told apart from "null", and each value is terminated so that adjacent values cannot run together
+        digest.update( value == null ? new byte[0] : String.valueOf( value ).getBytes( "UTF-8" ) );
+        digest.update( value == null ? (byte) 0 : (byte) 1 );
+      }
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+  }
+
   public boolean isShowingTitle( RepositoryRequest repositoryRequest ) {
     if ( repositoryRequest.getExcludeMemberSet() != null && !repositoryRequest.getExcludeMemberSet().isEmpty() ) {
       if ( repositoryRequest.getExcludeMemberSet().contains( "title" ) ) {
@@ -42,6 +42,8 @@ import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
@@ -498,6 +500,20 @@ public class SchedulerService {
     return jobs;
   }
 
+  /**
+   * Returns a page of the jobs visible to the current user. Administrators see all jobs except the block outs, other
+   * users only see their own jobs regardless of the user name in the query.
+   */
+  public JobPage queryJobs( JobQuery query ) throws SchedulerException {
+    IPentahoSession session = getSession();
+    if ( canAdminister( session ) ) {
+      query.setExcludeBlockOuts( true );
+    } else {
+      query.setUserName( session.getName() );
+    }
+    return getScheduler().queryJobs( query );
+  }
+
   protected Boolean canAdminister( IPentahoSession session ) {
     if ( getPolicy().isAllowed( AdministerSecurityAction.NAME ) ) {
       return true;
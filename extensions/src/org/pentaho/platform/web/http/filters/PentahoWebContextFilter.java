@@ -23,12 +23,14 @@ import org.owasp.esapi.ESAPI;
 import org.owasp.esapi.Encoder;
 import org.pentaho.platform.api.engine.IPentahoRequestContext;
 import org.pentaho.platform.api.engine.IPluginManager;
+import org.pentaho.platform.api.engine.IPluginManagerListener;
 import org.pentaho.platform.engine.core.system.PentahoRequestContextHolder;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
 import org.pentaho.platform.util.messages.LocaleHelper;
+import org.pentaho.platform.web.http.HttpETagHelper;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -39,9 +41,11 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -72,9 +76,35 @@ public class PentahoWebContextFilter implements Filter {
   private static final byte[] REQUIRE_JS_CFG_START =
       "var requireCfg = {waitSeconds: 30, paths: {}, shim: {}};\n".getBytes(); //$NON-NLS-1$
   private static final String REQUIRE_JS = "requirejs"; //$NON-NLS-1$
-  // Changed to not do so much work for every request
-  private static final ThreadLocal<byte[]> THREAD_LOCAL_CONTEXT_PATH = new ThreadLocal<byte[]>();
-  private static final ThreadLocal<byte[]> THREAD_LOCAL_REQUIRE_SCRIPT = new ThreadLocal<byte[]>();
+  private static final int MAX_CACHED_SCRIPTS = 200;
+
+  /**
+   * The parts of webcontext.js which are the same for every user: those written before and after the session's
+   * name, locale and home folder.
+   */
+  private static class CachedScript {
+    private final byte[] head;
+
+    private final byte[] tail;
+
+    private final byte[] digest;
+
+    CachedScript( byte[] head, byte[] tail ) {
+      this.head = head;
+      this.tail = tail;
+      this.digest = HttpETagHelper.digest( head, tail );
+    }
+  }
+
+  // by context path and query string, cleared when the plugins are reloaded
+  private final Map<String, CachedScript> cachedScripts = new LinkedHashMap<String, CachedScript>( 16, 0.75f, true ) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry( Map.Entry<String, CachedScript> eldest ) {
+      return size() > MAX_CACHED_SCRIPTS;
+    }
+  };
 
   public void destroy() {
     // TODO Auto-generated method stub
@@ -105,77 +135,46 @@ public class PentahoWebContextFilter implements Filter {
       String contextPath = requestContext.getContextPath();
       try {
         response.setContentType( "text/javascript" ); //$NON-NLS-1$
-        OutputStream out = response.getOutputStream();
-        out.write( initialCommentBytes );
-
-        byte[] contextPathBytes = THREAD_LOCAL_CONTEXT_PATH.get();
-        byte[] requireScriptBytes = THREAD_LOCAL_REQUIRE_SCRIPT.get();
-        if ( contextPathBytes == null ) {
-          String webContext = "var CONTEXT_PATH = '" + contextPath + "';\n\n"; //$NON-NLS-1$ //$NON-NLS-2$
-          contextPathBytes = webContext.getBytes();
-          THREAD_LOCAL_CONTEXT_PATH.set( contextPathBytes );
-          if ( requireScriptBytes == null ) {
-            String requireJsLocation = "content/common-ui/resources/web/require.js";
-            String requireJsConfigLocation = "content/common-ui/resources/web/require-cfg.js";
-            String requireScript =
-                "document.write(\"<script type='text/javascript' src='" + contextPath
-                + requireJsLocation + "'></scr\"+\"ipt>\");\n"
-                + "document.write(\"<script type=\'text/javascript\' src='" + contextPath
-                + requireJsConfigLocation + "'></scr\"+\"ipt>\");\n";
-            requireScriptBytes = requireScript.getBytes();
-            THREAD_LOCAL_REQUIRE_SCRIPT.set( requireScriptBytes );
-          }
-        }
+        CachedScript cachedScript = getCachedScript( contextPath, httpRequest );
 
+        ByteArrayOutputStream userScript = new ByteArrayOutputStream();
         String basicAuthFlag = (String) httpRequest.getSession().getAttribute( "BasicAuth" );
         if ( basicAuthFlag != null && basicAuthFlag.equals( "true" ) ) {
-          out.write( ( "document.write(\"<script type='text/javascript' src='"
+          userScript.write( ( "document.write(\"<script type='text/javascript' src='"
             + contextPath + "js/postAuth.js'></scr\"+\"ipt>\");\n" )
               .getBytes( "UTF-8" ) );
         }
+        byte[] authScriptBytes = userScript.toByteArray();
+        userScript.reset();
 
-        out.write( contextPathBytes );
-        out.write( fullyQualifiedUrl.getBytes() );
-        out.write( serverProtocol.getBytes() );
         // Compute the effective locale and set it in the global scope. Also provide it as a module if the RequireJs
         // system is available.
         Locale effectiveLocale = LocaleHelper.getLocale();
         if ( !StringUtils.isEmpty( request.getParameter( "locale" ) ) ) {
           effectiveLocale = new Locale( request.getParameter( "locale" ) );
         }
+        printSessionName( userScript );
+        printLocale( effectiveLocale, userScript );
+        printHomeFolder( userScript );
+        byte[] userScriptBytes = userScript.toByteArray();
+        userScript.reset();
 
-        // setup the RequireJS config object for plugins to extend
-        out.write( REQUIRE_JS_CFG_START );
-
-        // Let all plugins contribute to the RequireJS config
-        printResourcesForContext( REQUIRE_JS, out, httpRequest, false );
-
-        out.write( requireScriptBytes );
-
-        printSessionName( out );
-        printLocale( effectiveLocale, out );
-        printHomeFolder( out );
-        printReservedChars( out );
-        printReservedCharsDisplay( out );
-        printReservedRegexPattern( out );
-
-        boolean requireJsOnly = "true".equals( request.getParameter( "requireJsOnly" ) );
-
-        if ( !requireJsOnly ) {
-          // print global resources defined in plugins
-          printResourcesForContext( GLOBAL, out, httpRequest, false );
+        // Any subclass can add more information to webcontext.js
+        addCustomInfo( userScript );
+        byte[] customInfoBytes = userScript.toByteArray();
 
-          // print out external-resources defined in plugins if a context has been passed in
-          String contextName = request.getParameter( CONTEXT );
-          boolean cssOnly = "true".equals( request.getParameter( "cssOnly" ) );
-          if ( StringUtils.isNotEmpty( contextName ) ) {
-            printResourcesForContext( contextName, out, httpRequest, cssOnly );
-          }
+        String eTag = HttpETagHelper.getETag( cachedScript.digest, authScriptBytes, userScriptBytes, customInfoBytes );
+        if ( HttpETagHelper.checkNotModified( httpRequest, httpResponse, eTag ) ) {
+          return;
         }
 
-        // Any subclass can add more information to webcontext.js
-        addCustomInfo( out );
-
+        OutputStream out = response.getOutputStream();
+        out.write( initialCommentBytes );
+        out.write( authScriptBytes );
+        out.write( cachedScript.head );
+        out.write( userScriptBytes );
+        out.write( cachedScript.tail );
+        out.write( customInfoBytes );
         out.close();
         return;
       } finally {
@@ -187,6 +186,67 @@ public class PentahoWebContextFilter implements Filter {
     }
   }
 
+  /**
+   * Returns the parts of webcontext.js which are the same for every user, generating them on first use. They depend
+   * only on the context path, the request parameters and the external resources of the plugins.
+   */
+  private CachedScript getCachedScript( String contextPath, HttpServletRequest request ) throws IOException {
+    String key = contextPath + '?' + StringUtils.defaultString( request.getQueryString() );
+    synchronized ( cachedScripts ) {
+      CachedScript cachedScript = cachedScripts.get( key );
+      if ( cachedScript != null ) {
+        return cachedScript;
+      }
+    }
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write( ( "var CONTEXT_PATH = '" + contextPath + "';\n\n" ).getBytes() ); //$NON-NLS-1$ //$NON-NLS-2$
+    out.write( fullyQualifiedUrl.getBytes() );
+    out.write( serverProtocol.getBytes() );
+
+    // setup the RequireJS config object for plugins to extend
+    out.write( REQUIRE_JS_CFG_START );
+
+    // Let all plugins contribute to the RequireJS config
+    printResourcesForContext( REQUIRE_JS, out, request, false );
+
+    String requireJsLocation = "content/common-ui/resources/web/require.js";
+    String requireJsConfigLocation = "content/common-ui/resources/web/require-cfg.js";
+    String requireScript =
+        "document.write(\"<script type='text/javascript' src='" + contextPath
+        + requireJsLocation + "'></scr\"+\"ipt>\");\n"
+        + "document.write(\"<script type=\'text/javascript\' src='" + contextPath
+        + requireJsConfigLocation + "'></scr\"+\"ipt>\");\n";
+    out.write( requireScript.getBytes() );
+    byte[] head = out.toByteArray();
+    out.reset();
+
+    printReservedChars( out );
+    printReservedCharsDisplay( out );
+    printReservedRegexPattern( out );
+
+    boolean requireJsOnly = "true".equals( request.getParameter( "requireJsOnly" ) );
+
+    if ( !requireJsOnly ) {
+      // print global resources defined in plugins
+      printResourcesForContext( GLOBAL, out, request, false );
+
+      // print out external-resources defined in plugins if a context has been passed in
+      String contextName = request.getParameter( CONTEXT );
+      boolean cssOnly = "true".equals( request.getParameter( "cssOnly" ) );
+      if ( StringUtils.isNotEmpty( contextName ) ) {
+        printResourcesForContext( contextName, out, request, cssOnly );
+      }
+    }
+    byte[] tail = out.toByteArray();
+
+    CachedScript cachedScript = new CachedScript( head, tail );
+    synchronized ( cachedScripts ) {
+      cachedScripts.put( key, cachedScript );
+    }
+    return cachedScript;
+  }
+
   private void printHomeFolder( OutputStream out ) throws IOException {
     StringBuilder sb = new StringBuilder( "<!-- Providing home folder location for UI defaults -->\n" );
     if ( PentahoSessionHolder.getSession() != null ) {
@@ -328,6 +388,18 @@ public class PentahoWebContextFilter implements Filter {
   }
 
   public void init( FilterConfig filterConfig ) throws ServletException {
+    IPluginManager pluginManager = PentahoSystem.get( IPluginManager.class );
+    if ( pluginManager != null ) {
+      // the external resources of the plugins are part of the cached scripts
+      pluginManager.addPluginManagerListener( new IPluginManagerListener() {
+        public void onReload() {
+          synchronized ( cachedScripts ) {
+            cachedScripts.clear();
+          }
+        }
+      } );
+    }
+
     // split out a fully qualified url, guaranteed to have a trailing slash
     String fullyQualifiedServerURL = PentahoSystem.getApplicationContext().getFullyQualifiedServerURL();
     String serverProtocolValue;
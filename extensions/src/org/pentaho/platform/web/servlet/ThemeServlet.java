@@ -28,12 +28,17 @@ import org.pentaho.platform.api.ui.Theme;
 import org.pentaho.platform.api.ui.ThemeResource;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.web.http.HttpETagHelper;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Writes out the current Theme Tree out as Javascript. The current system and active module theme information is turned
@@ -48,6 +53,41 @@ public class ThemeServlet extends ServletBase {
   private static final Log logger = LogFactory.getLog( UIServlet.class );
   private IThemeManager themeManager = (IThemeManager) PentahoSystem.get( IThemeManager.class, null );
 
+  // the part of the script which is the same for every user, by module name
+  private final Map<String, CachedThemes> cache = new ConcurrentHashMap<String, CachedThemes>();
+
+  private static class CachedThemes {
+    private final List<Theme> systemThemes;
+
+    private final ModuleThemeInfo moduleThemeInfo;
+
+    private final byte[] script;
+
+    private final byte[] digest;
+
+    CachedThemes( List<Theme> systemThemes, ModuleThemeInfo moduleThemeInfo, byte[] script ) {
+      this.systemThemes = systemThemes;
+      this.moduleThemeInfo = moduleThemeInfo;
+      this.script = script;
+      this.digest = HttpETagHelper.digest( script );
+    }
+
+    /**
+     * The theme manager keeps the themes it collects until it is refreshed, so the same instances mean the same themes.
+     */
+    boolean isCurrent( List<Theme> currentSystemThemes, ModuleThemeInfo currentModuleThemeInfo ) {
+      if ( currentModuleThemeInfo != moduleThemeInfo || currentSystemThemes.size() != systemThemes.size() ) {
+        return false;
+      }
+      for ( int i = 0; i < systemThemes.size(); i++ ) {
+        if ( currentSystemThemes.get( i ) != systemThemes.get( i ) ) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   @Override
   public Log getLogger() {
     return logger;
@@ -62,9 +102,7 @@ public class ThemeServlet extends ServletBase {
     try {
       // look for a passed in theme context (content generator, other named area)
       String moduleName = req.getParameter( "context" );
-      OutputStream out = resp.getOutputStream();
-      resp.setContentType( "text/javascript" ); //$NON-NLS-1$ 
-      resp.setHeader( "Cache-Control", "no-cache" ); //$NON-NLS-1$
+      resp.setContentType( "text/javascript" ); //$NON-NLS-1$
 
       IUserSettingService settingsService = PentahoSystem.get( IUserSettingService.class, getPentahoSession( req ) );
 
@@ -86,63 +124,95 @@ public class ThemeServlet extends ServletBase {
         }
       }
 
+      byte[] activeThemeBytes = ( "var active_theme = \"" + activeTheme + "\";\n\n" ).getBytes();
+      CachedThemes cachedThemes = getCachedThemes( moduleName );
+
+      String eTag = HttpETagHelper.getETag( cachedThemes.digest, activeThemeBytes );
+      if ( HttpETagHelper.checkNotModified( req, resp, eTag ) ) {
+        return;
+      }
+
+      OutputStream out = resp.getOutputStream();
       out.write( ( "\n\n// Theming scripts. This file is generated by (" + getClass().getName()
         + ") and cannot be found on disk\n" )
           .getBytes() );
 
-      out.write( ( "var active_theme = \"" + activeTheme + "\";\n\n" ).getBytes() );
+      out.write( activeThemeBytes );
+      out.write( cachedThemes.script );
 
-      // Build-up JSON graph for system theme.
-      JSONObject root = new JSONObject();
-      JSONObject themeObject;
+    } catch ( IOException e ) {
+      logger.debug( "IO exception creating Theme info", e );
+      throw new ServletException( e );
+    } catch ( JSONException e ) {
+      logger.debug( "JSON exception creating Theme info", e );
+      throw new ServletException( e );
+    }
+
+  }
+
+  /**
+   * Returns the theme trees of the system and of the module, generating them if the theme manager returns themes other
+   * than those they were generated from.
+   */
+  private CachedThemes getCachedThemes( String moduleName ) throws JSONException {
+    List<Theme> systemThemes = new ArrayList<Theme>();
+    for ( String systemThemeName : themeManager.getSystemThemeIds() ) {
+      systemThemes.add( themeManager.getSystemTheme( systemThemeName ) );
+    }
+    ModuleThemeInfo moduleThemeinfo = themeManager.getModuleThemeInfo( moduleName );
+
+    // the script depends on the module only through its themes, so unknown modules share an entry
+    String key = ( moduleThemeinfo != null ) ? moduleName : ""; //$NON-NLS-1$
+    CachedThemes cachedThemes = cache.get( key );
+    if ( cachedThemes != null && cachedThemes.isCurrent( systemThemes, moduleThemeinfo ) ) {
+      return cachedThemes;
+    }
+
+    StringBuilder script = new StringBuilder();
+
+    // Build-up JSON graph for system theme.
+    JSONObject root = new JSONObject();
+    JSONObject themeObject;
+
+    for ( Theme theme : systemThemes ) {
+      themeObject = new JSONObject();
+      root.put( theme.getId(), themeObject );
+      themeObject.put( "rootDir", theme.getThemeRootDir() );
+      for ( ThemeResource res : theme.getResources() ) {
+        themeObject.append( "resources", res.getLocation() );
+      }
+    }
 
-      for ( String systemThemeName : themeManager.getSystemThemeIds() ) {
-        Theme theme = themeManager.getSystemTheme( systemThemeName );
+    script.append( "var core_theme_tree = " + root.toString() + ";\n\n" );
+    script.append( "// Inject the theme script to handle the insertion of requested theme resources\n\n" );
 
+    if ( moduleThemeinfo != null ) {
+      // Build-up JSON graph for module theme.
+      root = new JSONObject();
+      for ( Theme theme : moduleThemeinfo.getModuleThemes() ) {
         themeObject = new JSONObject();
-        root.put( theme.getId(), themeObject );
+        root.put( theme.getName(), themeObject );
         themeObject.put( "rootDir", theme.getThemeRootDir() );
         for ( ThemeResource res : theme.getResources() ) {
           themeObject.append( "resources", res.getLocation() );
         }
       }
 
-      out.write( ( "var core_theme_tree = " + root.toString() + ";\n\n" ).getBytes() );
-      out.write( "// Inject the theme script to handle the insertion of requested theme resources\n\n".getBytes() );
-
-      ModuleThemeInfo moduleThemeinfo = themeManager.getModuleThemeInfo( moduleName );
-      if ( moduleThemeinfo != null ) {
-        // Build-up JSON graph for module theme.
-        root = new JSONObject();
-        for ( Theme theme : moduleThemeinfo.getModuleThemes() ) {
-          themeObject = new JSONObject();
-          root.put( theme.getName(), themeObject );
-          themeObject.put( "rootDir", theme.getThemeRootDir() );
-          for ( ThemeResource res : theme.getResources() ) {
-            themeObject.append( "resources", res.getLocation() );
-          }
-        }
-
-        out.write( ( "var module_theme_tree = " + root.toString() + ";\n\n" ).getBytes() );
-      }
-
-      // createElement & insertBefore
-      out.write( ( "(function() {\n"
-          + "var script = document.createElement('script');\n"
-          + "script.type = 'text/javascript';\n"
-          +
-          // "script.async = false;\n" +
-          "script.src = CONTEXT_PATH + 'js/themeResources.js';\n"
-          + "var existing = document.getElementsByTagName('script')[0];\n"
-          + "existing.parentNode.insertBefore(script, existing);\n" + "}());" ).getBytes() );
-
-    } catch ( IOException e ) {
-      logger.debug( "IO exception creating Theme info", e );
-      throw new ServletException( e );
-    } catch ( JSONException e ) {
-      logger.debug( "JSON exception creating Theme info", e );
-      throw new ServletException( e );
+      script.append( "var module_theme_tree = " + root.toString() + ";\n\n" );
     }
 
+    // createElement & insertBefore
+    script.append( "(function() {\n"
+        + "var script = document.createElement('script');\n"
+        + "script.type = 'text/javascript';\n"
+        +
+        // "script.async = false;\n" +
+        "script.src = CONTEXT_PATH + 'js/themeResources.js';\n"
+        + "var existing = document.getElementsByTagName('script')[0];\n"
+        + "existing.parentNode.insertBefore(script, existing);\n" + "}());" );
+
+    cachedThemes = new CachedThemes( systemThemes, moduleThemeinfo, script.toString().getBytes() );
+    cache.put( key, cachedThemes );
+    return cachedThemes;
   }
 }
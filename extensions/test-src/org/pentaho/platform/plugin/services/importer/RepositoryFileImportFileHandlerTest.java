@@ -0,0 +1,141 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2014 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.pentaho.platform.api.repository2.unified.Converter;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
+import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
+import org.pentaho.platform.plugin.services.importer.mimeType.MimeType;
+import org.pentaho.platform.plugin.services.importexport.ImportSession;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+
+public class RepositoryFileImportFileHandlerTest {
+
+  private static final String MIME_TYPE = "text/xaction";
+
+  private IUnifiedRepository repository;
+
+  private RepositoryFileImportFileHandler handler;
+
+  private ImportSession importSession;
+
+  @Before
+  public void setUp() {
+    MimeType mimeType = new MimeType( MIME_TYPE, "xaction" );
+    Converter converter = mock( Converter.class );
+    when( converter.convert( any( InputStream.class ), anyString(), anyString() ) ).thenReturn(
+        mock( IRepositoryFileData.class ) );
+    mimeType.setConverter( converter );
+    NameBaseMimeResolver mimeResolver = new NameBaseMimeResolver();
+    mimeResolver.addMimeType( mimeType );
+
+    MicroPlatform microPlatform = new MicroPlatform();
+    microPlatform.defineInstance( IPlatformImportMimeResolver.class, mimeResolver );
+    microPlatform.defineInstance( IPlatformImporter.class, mock( IPlatformImporter.class ) );
+
+    repository = mock( IUnifiedRepository.class );
+    when( repository.getFile( "/public" ) ).thenReturn(
+        new RepositoryFile.Builder( "public" ).id( "publicId" ).path( "/public" ).folder( true ).build() );
+
+    handler = new RepositoryFileImportFileHandler( Collections.singletonList( mimeType ) );
+    handler.setRepository( repository );
+
+    importSession = ImportSession.getSession();
+    importSession.setCachingFolders( true );
+  }
+
+  @After
+  public void tearDown() {
+    importSession.setCachingFolders( false );
+    importSession.setAclProperties( false, false, false );
+    importSession.initialize();
+  }
+
+  @Test
+  public void testParentFolderIsLookedUpOnce() throws Exception {
+    handler.importFile( fileBundle( "/public", "a.xaction", null ) );
+    handler.importFile( fileBundle( "/public", "b.xaction", null ) );
+
+    verify( repository, times( 1 ) ).getFile( "/public" );
+    verify( repository, times( 2 ) ).createFile( eq( "publicId" ), any( RepositoryFile.class ),
+        any( IRepositoryFileData.class ), anyString() );
+  }
+
+  @Test
+  public void testFilesBelowCreatedFolderAreNotLookedUp() throws Exception {
+    when( repository.createFolder( eq( "publicId" ), any( RepositoryFile.class ), (String) isNull() ) ).thenReturn(
+        new RepositoryFile.Builder( "new" ).id( "newId" ).path( "/public/new" ).folder( true ).build() );
+
+    handler.importFile( new RepositoryFileImportBundle.Builder().mime( "text/directory" ).file(
+        new RepositoryFile.Builder( "new" ).folder( true ).build() ).name( "new" ).path( "/public" ).build() );
+    handler.importFile( fileBundle( "/public/new", "a.xaction", null ) );
+
+    verify( repository ).getFile( "/public/new" );
+    verify( repository, never() ).getFile( "/public/new/a.xaction" );
+    verify( repository ).createFile( eq( "newId" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+        anyString() );
+  }
+
+  @Test
+  public void testNewFileIsCreatedWithItsFinalAcl() throws Exception {
+    importSession.setAclProperties( true, false, true );
+    RepositoryFileAcl manifestAcl =
+        new RepositoryFileAcl.Builder( "suzy" ).entriesInheriting( false ).ace( "Authenticated",
+            RepositoryFileSid.Type.ROLE, RepositoryFilePermission.READ ).build();
+
+    handler.importFile( fileBundle( "/public", "a.xaction", manifestAcl ) );
+
+    ArgumentCaptor<RepositoryFileAcl> acl = ArgumentCaptor.forClass( RepositoryFileAcl.class );
+    verify( repository ).createFile( eq( "publicId" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+        acl.capture(), anyString() );
+    assertEquals( manifestAcl.getOwner(), acl.getValue().getOwner() );
+    assertEquals( manifestAcl.isEntriesInheriting(), acl.getValue().isEntriesInheriting() );
+    assertEquals( manifestAcl.getAces(), acl.getValue().getAces() );
+    verify( repository, never() ).getAcl( any( Serializable.class ) );
+    verify( repository, never() ).updateAcl( any( RepositoryFileAcl.class ) );
+  }
+
+  private RepositoryFileImportBundle fileBundle( String path, String name, RepositoryFileAcl acl ) {
+    return new RepositoryFileImportBundle.Builder().input( new ByteArrayInputStream( new byte[0] ) ).mime( MIME_TYPE )
+        .charSet( "UTF-8" ).name( name ).path( path ).comment( "import" ).acl( acl ).build();
+  }
+}
@@ -0,0 +1,106 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2014 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.Converter;
+import org.pentaho.platform.plugin.services.importer.mimeType.MimeType;
+import org.pentaho.platform.plugin.services.importexport.ImportSource.IRepositoryFileBundle;
+import org.pentaho.test.platform.engine.core.MicroPlatform;
+
+public class SolutionImportHandlerTest {
+
+  private SolutionImportHandler handler;
+
+  @Before
+  public void setUp() {
+    MimeType mimeType = new MimeType( "text/xaction", "xaction" );
+    mimeType.setConverter( mock( Converter.class ) );
+    NameBaseMimeResolver mimeResolver = new NameBaseMimeResolver();
+    mimeResolver.addMimeType( mimeType );
+
+    MicroPlatform microPlatform = new MicroPlatform();
+    microPlatform.defineInstance( IPlatformImportMimeResolver.class, mimeResolver );
+
+    handler = new SolutionImportHandler( Collections.singletonList( mimeType ) );
+  }
+
+  @Test
+  public void testFoldersAreImportedFirst() throws Exception {
+    SolutionImportHandler.SolutionRepositoryImportSource importSource =
+        handler.new SolutionRepositoryImportSource( createArchive( "public/a.xaction", "public/sub/",
+            "public/sub/b.xaction", "public/", "c.xaction" ) );
+    try {
+      List<String> names = new ArrayList<String>();
+      for ( IRepositoryFileBundle file : importSource.getFiles() ) {
+        names.add( file.getFile().getName() );
+      }
+      // Parent folders before their children, files in archive order
+      assertEquals( Arrays.asList( "public", "sub", "a.xaction", "b.xaction", "c.xaction" ), names );
+    } finally {
+      importSource.deleteTempFiles();
+    }
+  }
+
+  @Test
+  public void testTempFilesAreDeleted() throws Exception {
+    SolutionImportHandler.SolutionRepositoryImportSource importSource =
+        handler.new SolutionRepositoryImportSource( createArchive( "public/", "public/a.xaction" ) );
+    IRepositoryFileBundle file = importSource.getFiles().get( 1 );
+    file.getInputStream().close();
+
+    importSource.deleteTempFiles();
+
+    try {
+      file.getInputStream();
+      fail( "the content of the file should have been deleted" );
+    } catch ( IOException e ) {
+      // expected
+    }
+  }
+
+  private ZipInputStream createArchive( String... entryNames ) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream( out );
+    for ( String entryName : entryNames ) {
+      zip.putNextEntry( new ZipEntry( entryName ) );
+      if ( !entryName.endsWith( "/" ) ) {
+        zip.write( entryName.getBytes( "UTF-8" ) );
+      }
+      zip.closeEntry();
+    }
+    zip.close();
+    return new ZipInputStream( new ByteArrayInputStream( out.toByteArray() ) );
+  }
+}
@@ -35,6 +35,7 @@ import org.pentaho.platform.web.http.api.resources.JobScheduleRequest;
 
 import javax.xml.bind.JAXBException;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Date;
@@ -197,6 +198,24 @@ public class ExportManifestTest extends TestCase {
 
   }
 
+  @Test
+  public void testStreamedManifest() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ExportManifestWriter manifestWriter = new ExportManifestWriter( out, exportManifest.getManifestInformation() );
+    manifestWriter.add( repoDir2, repoDir2Acl );
+    manifestWriter.add( repoFile3, null );
+    manifestWriter.close();
+
+    ExportManifest streamedManifest = ExportManifest.fromXml( new ByteArrayInputStream( out.toByteArray() ) );
+    assertNotNull( streamedManifest );
+    assertEquals( "MickeyMouse", streamedManifest.getManifestInformation().getExportBy() );
+    assertEquals( "/dir1/", streamedManifest.getManifestInformation().getRootFolder() );
+    assertEquals( 2, streamedManifest.getExportManifestEntities().size() );
+    assertTrue( streamedManifest.getExportManifestEntity( "dir2" ).getEntityMetaData().isIsFolder() );
+    assertNotNull( streamedManifest.getExportManifestEntity( "dir2" ).getRepositoryFileAcl().getAces() );
+    assertFalse( streamedManifest.getExportManifestEntity( "dir2/file1" ).getEntityMetaData().isIsFolder() );
+  }
+
   @Test
   public void testXmlToString() {
     String s = XmlToString();
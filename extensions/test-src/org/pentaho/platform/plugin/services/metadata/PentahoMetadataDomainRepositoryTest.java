@@ -306,6 +306,26 @@ public class PentahoMetadataDomainRepositoryTest extends TestCase {
    * assertEquals(newTestDescription, hrModel.getDescription("ru")); assertEquals(testDescription,
    * hrModel.getDescription("pl")); } }
    */
+  public void testGetSharedDomain() throws Exception {
+    assertNull( domainRepository.getSharedDomain( SAMPLE_DOMAIN_ID ) );
+
+    final MockDomain originalDomain = new MockDomain( SAMPLE_DOMAIN_ID );
+    domainRepository.storeDomain( originalDomain, false );
+    final Domain sharedDomain1 = domainRepository.getSharedDomain( SAMPLE_DOMAIN_ID );
+    assertNotNull( sharedDomain1 );
+    assertSame( sharedDomain1, domainRepository.getSharedDomain( SAMPLE_DOMAIN_ID ) );
+    assertNotSame( sharedDomain1, domainRepository.getDomain( SAMPLE_DOMAIN_ID ) );
+
+    originalDomain.addLogicalModel( "MODEL 1" );
+    domainRepository.storeDomain( originalDomain, true );
+    final Domain sharedDomain2 = domainRepository.getSharedDomain( SAMPLE_DOMAIN_ID );
+    assertNotSame( sharedDomain1, sharedDomain2 );
+    assertEquals( 1, sharedDomain2.getLogicalModels().size() );
+
+    domainRepository.removeDomain( SAMPLE_DOMAIN_ID );
+    assertNull( domainRepository.getSharedDomain( SAMPLE_DOMAIN_ID ) );
+  }
+
   public void testGetDomainIds() throws Exception {
     final Set<String> emptyDomainList = domainRepository.getDomainIds();
     assertNotNull( emptyDomainList );
@@ -18,10 +18,17 @@ import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.PrintWriter;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import mondrian.olap.MondrianServer;
 import mondrian.rolap.RolapConnection;
@@ -36,10 +43,12 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.plugin.action.olap.IOlapService;
 import org.pentaho.platform.plugin.action.olap.IOlapServiceException;
 import org.pentaho.platform.plugin.action.olap.impl.OlapServiceImpl;
+import org.pentaho.platform.plugin.services.importexport.legacy.MondrianCatalogRepositoryHelper;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.platform.util.messages.LocaleHelper;
 
@@ -852,6 +861,147 @@ public class OlapServiceImplTest {
     }
   }
 
+  /**
+   * Makes the catalogs of {@link #makeLoadingService}.
+   */
+  interface CatalogMaker {
+    IOlapService.Catalog makeCatalog( String catalogName ) throws Exception;
+  }
+
+  /**
+   * Creates a service with the given hosted catalogs, which are made by
+   * the given maker instead of by connecting to them.
+   */
+  private OlapServiceImpl makeLoadingService(
+    final long timeoutSeconds, final CatalogMaker maker, String... catalogNames ) {
+    PentahoSystem.getCacheManager( session ).clearRegionCache( OlapServiceImpl.CATALOG_CACHE_REGION );
+    final MondrianCatalogRepositoryHelper helper = mock( MondrianCatalogRepositoryHelper.class );
+    when( helper.getHostedCatalogs() ).thenReturn( Arrays.asList( catalogNames ) );
+    when( helper.getOlap4jServers() ).thenReturn( Collections.<String>emptyList() );
+    final OlapServiceImpl service = new OlapServiceImpl( repository, server ) {
+      public boolean hasAccess(
+        String path,
+        EnumSet<RepositoryFilePermission> perms,
+        IPentahoSession session ) {
+        return true;
+      }
+
+      @Override
+      protected Catalog makeCatalog( IPentahoSession session, String catalogName ) {
+        try {
+          return maker.makeCatalog( catalogName );
+        } catch ( Exception e ) {
+          return null;
+        }
+      }
+
+      @Override
+      protected long getCatalogLoadTimeout() {
+        return timeoutSeconds;
+      }
+    };
+    service.setHelper( helper );
+    return service;
+  }
+
+  private static IOlapService.Catalog makeCatalog( String catalogName ) {
+    return new IOlapService.Catalog( catalogName, new ArrayList<IOlapService.Schema>() );
+  }
+
+  /**
+   * Verifies that catalogs are loaded at the same time. Each load waits
+   * for all three to have started.
+   */
+  @Test
+  public void testCatalogsLoadConcurrently() throws Exception {
+    final CyclicBarrier started = new CyclicBarrier( 3 );
+    final OlapServiceImpl service = makeLoadingService(
+      30,
+      new CatalogMaker() {
+        public IOlapService.Catalog makeCatalog( String catalogName ) throws Exception {
+          started.await( 10, TimeUnit.SECONDS );
+          return OlapServiceImplTest.makeCatalog( catalogName );
+        }
+      },
+      "a", "b", "c" );
+
+    final List<IOlapService.Catalog> catalogs = service.getCatalogs( session );
+
+    assertEquals( 3, catalogs.size() );
+    assertEquals( "a", catalogs.get( 0 ).name );
+    assertEquals( "b", catalogs.get( 1 ).name );
+    assertEquals( "c", catalogs.get( 2 ).name );
+  }
+
+  /**
+   * Verifies that slow catalogs share a single wait, and are added to the
+   * cache once they finish loading.
+   */
+  @Test
+  public void testSlowCatalogsShareOneTimeout() throws Exception {
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final OlapServiceImpl service = makeLoadingService(
+      1,
+      new CatalogMaker() {
+        public IOlapService.Catalog makeCatalog( String catalogName ) throws Exception {
+          release.await( 10, TimeUnit.SECONDS );
+          return OlapServiceImplTest.makeCatalog( catalogName );
+        }
+      },
+      "a", "b", "c" );
+
+    final long start = System.currentTimeMillis();
+    assertEquals( 0, service.getCatalogs( session ).size() );
+    final long elapsed = System.currentTimeMillis() - start;
+    // One timeout of a second, not one per catalog.
+    assertTrue( "waited " + elapsed + " ms", elapsed < 2500 );
+
+    release.countDown();
+    assertEquals( 3, service.getCatalogs( session ).size() );
+  }
+
+  /**
+   * Verifies that a catalog which was being loaded while the cache was
+   * flushed does not replace the catalog loaded after the flush.
+   */
+  @Test
+  public void testFlushDuringLoadDropsStaleCatalog() throws Exception {
+    final IOlapService.Catalog staleCatalog = makeCatalog( "a" );
+    final IOlapService.Catalog freshCatalog = makeCatalog( "a" );
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final CountDownLatch staleMade = new CountDownLatch( 1 );
+    final OlapServiceImpl service = makeLoadingService(
+      1,
+      new CatalogMaker() {
+        public IOlapService.Catalog makeCatalog( String catalogName ) throws Exception {
+          if ( loads.incrementAndGet() > 1 ) {
+            return freshCatalog;
+          }
+          release.await( 10, TimeUnit.SECONDS );
+          staleMade.countDown();
+          return staleCatalog;
+        }
+      },
+      "a" );
+
+    // The first load times out, and is still running during the flush.
+    assertEquals( 0, service.getCatalogs( session ).size() );
+    service.flushAll( session );
+    release.countDown();
+    assertTrue( staleMade.await( 10, TimeUnit.SECONDS ) );
+
+    List<IOlapService.Catalog> catalogs = service.getCatalogs( session );
+    assertEquals( 1, catalogs.size() );
+    assertSame( freshCatalog, catalogs.get( 0 ) );
+
+    // Give the stale load time to finish; it must not replace the catalog.
+    Thread.sleep( 200 );
+    catalogs = service.getCatalogs( session );
+    assertEquals( 1, catalogs.size() );
+    assertSame( freshCatalog, catalogs.get( 0 ) );
+  }
+
   private static Locale getLocale() {
     final Locale locale = LocaleHelper.getLocale();
     if ( locale != null ) {
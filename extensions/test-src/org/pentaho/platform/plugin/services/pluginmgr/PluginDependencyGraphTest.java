@@ -0,0 +1,116 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings( "nls" )
+public class PluginDependencyGraphTest {
+
+  private ExecutorService executor;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newFixedThreadPool( 4 );
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private static PlatformPlugin plugin( String id, String... dependencies ) {
+    PlatformPlugin plugin = new PlatformPlugin();
+    plugin.setId( id );
+    for ( String dependency : dependencies ) {
+      plugin.addDependency( dependency );
+    }
+    return plugin;
+  }
+
+  private List<String> run( IPlatformPlugin... plugins ) throws InterruptedException {
+    final List<String> started = Collections.synchronizedList( new ArrayList<String>() );
+    new PluginDependencyGraph( Arrays.asList( plugins ) ).run( new PluginDependencyGraph.PluginTask() {
+      public void run( IPlatformPlugin plugin ) {
+        started.add( plugin.getId() );
+      }
+    }, executor );
+    return started;
+  }
+
+  @Test
+  public void testDependenciesRunFirst() throws InterruptedException {
+    List<String> started =
+        run( plugin( "c", "b" ), plugin( "b", "a" ), plugin( "d" ), plugin( "a" ), plugin( "e", "a", "d" ) );
+
+    assertEquals( 5, started.size() );
+    assertTrue( started.indexOf( "a" ) < started.indexOf( "b" ) );
+    assertTrue( started.indexOf( "b" ) < started.indexOf( "c" ) );
+    assertTrue( started.indexOf( "a" ) < started.indexOf( "e" ) );
+    assertTrue( started.indexOf( "d" ) < started.indexOf( "e" ) );
+  }
+
+  @Test
+  public void testMissingDependencyIsIgnored() throws InterruptedException {
+    List<String> started = run( plugin( "a", "missing" ), plugin( "b", "a" ) );
+
+    assertEquals( Arrays.asList( "a", "b" ), started );
+  }
+
+  @Test
+  public void testCycleRunsLast() throws InterruptedException {
+    List<String> started = run( plugin( "a", "b" ), plugin( "b", "a" ), plugin( "c", "b" ), plugin( "d" ) );
+
+    assertEquals( Arrays.asList( "d", "a", "b", "c" ), started );
+  }
+
+  @Test
+  public void testIndependentPluginsRunConcurrently() throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch( 2 );
+    final List<Boolean> bothRunning = Collections.synchronizedList( new ArrayList<Boolean>() );
+    new PluginDependencyGraph( Arrays.asList( (IPlatformPlugin) plugin( "a" ), plugin( "b" ) ) ).run(
+        new PluginDependencyGraph.PluginTask() {
+          public void run( IPlatformPlugin plugin ) {
+            latch.countDown();
+            try {
+              bothRunning.add( latch.await( 10, TimeUnit.SECONDS ) );
+            } catch ( InterruptedException e ) {
+              bothRunning.add( false );
+            }
+          }
+        }, executor );
+
+    assertEquals( Arrays.asList( true, true ), bothRunning );
+  }
+
+}
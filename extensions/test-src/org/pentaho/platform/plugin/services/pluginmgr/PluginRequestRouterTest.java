@@ -0,0 +1,98 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.pluginmgr;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPlatformPlugin;
+import org.pentaho.platform.engine.core.solution.ContentGeneratorInfo;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@SuppressWarnings( "nls" )
+public class PluginRequestRouterTest {
+
+  private PluginRequestRouter router;
+
+  @Before
+  public void setUp() {
+    PlatformPlugin reports = new PlatformPlugin();
+    reports.setId( "reports" );
+    reports.addStaticResourcePath( "/reports/static", "resources/static" );
+    ContentGeneratorInfo viewer = new ContentGeneratorInfo();
+    viewer.setId( "reports" );
+    reports.addContentGenerator( viewer );
+
+    PlatformPlugin charts = new PlatformPlugin();
+    charts.setId( "charts" );
+    charts.addStaticResourcePath( "/reports/static/charts", "charts" );
+    charts.addStaticResourcePath( "/reports-ext/static", "ext" );
+
+    PlatformPlugin duplicate = new PlatformPlugin();
+    duplicate.setId( "duplicate" );
+    duplicate.addStaticResourcePath( "/reports/static", "other" );
+
+    router = new PluginRequestRouter( Arrays.asList( (IPlatformPlugin) reports, charts, duplicate ) );
+  }
+
+  @Test
+  public void testGetRoute() {
+    assertEquals( "reports", router.getRoute( "reports" ).getPluginId() );
+    assertEquals( "reports", router.getRoute( "/reports/viewer" ).getPluginId() );
+    assertEquals( "reports", router.getRoute( "/reports/static/js/app.js" ).getPluginId() );
+    assertEquals( "charts", router.getRoute( "/reports/static/charts/line.js" ).getPluginId() );
+    assertEquals( "charts", router.getRoute( "/reports-ext/static/a.css" ).getPluginId() );
+    assertNull( router.getRoute( "/report/static" ) );
+    assertNull( router.getRoute( "/reports-ext" ) );
+    assertNull( router.getRoute( "" ) );
+  }
+
+  @Test
+  public void testGetStaticResourceRoute() {
+    PluginRequestRouter.Route route = router.getStaticResourceRoute( "/reports/static/js/app.js" );
+    assertEquals( "reports", route.getPluginId() );
+    assertEquals( "/reports/static", route.getUrl() );
+    assertEquals( "resources/static", route.getLocalFolder() );
+
+    route = router.getStaticResourceRoute( "reports/static/charts/" );
+    assertEquals( "charts", route.getPluginId() );
+    assertEquals( "charts", route.getLocalFolder() );
+
+    assertNull( router.getStaticResourceRoute( "/reports/viewer" ) );
+    assertNull( router.getStaticResourceRoute( "/reports/statics" ) );
+  }
+
+  @Test
+  public void testManyChildren() {
+    PlatformPlugin plugin = new PlatformPlugin();
+    plugin.setId( "many" );
+    for ( int i = 0; i < 100; i++ ) {
+      plugin.addStaticResourcePath( "/many/" + i, "folder" + i );
+    }
+    PluginRequestRouter many = new PluginRequestRouter( Arrays.asList( (IPlatformPlugin) plugin ) );
+
+    for ( int i = 0; i < 100; i++ ) {
+      assertEquals( "folder" + i, many.getStaticResourceRoute( "/many/" + i + "/file" ).getLocalFolder() );
+    }
+    assertNull( many.getStaticResourceRoute( "/many/100" ) );
+  }
+
+}
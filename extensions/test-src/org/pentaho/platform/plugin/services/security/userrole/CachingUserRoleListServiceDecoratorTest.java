@@ -1,11 +1,19 @@
 package org.pentaho.platform.plugin.services.security.userrole;
 
+import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.mt.ITenant;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.*;
 
@@ -13,6 +21,11 @@ import static org.mockito.Mockito.*;
 
 public class CachingUserRoleListServiceDecoratorTest {
 
+  @Before
+  public void setUp() {
+    PentahoSystem.getCacheManager( null ).clearRegionCache( "userRoleListCache" );
+  }
+
   @Test
   public void testGetAllRoles() throws Exception {
     IUserRoleListService mockService = mock( IUserRoleListService.class );
@@ -146,4 +159,84 @@ public class CachingUserRoleListServiceDecoratorTest {
 
     verify( mockService, times( 1 ) ).getAllUsers( tenant );
   }
+
+  @Test
+  public void testConcurrentMissesShareOneLoad() throws Exception {
+    final CountDownLatch loading = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getAllRoles() ).thenAnswer( new Answer<List<String>>() {
+      @Override public List<String> answer( InvocationOnMock invocation ) throws Throwable {
+        loading.countDown();
+        release.await( 10, TimeUnit.SECONDS );
+        return Arrays.asList( "foo", "bar" );
+      }
+    } );
+
+    final CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    final List<List<String>> results = Collections.synchronizedList( new ArrayList<List<String>>() );
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( int i = 0; i < 5; i++ ) {
+      Thread thread = new Thread() {
+        @Override public void run() {
+          results.add( decorator.getAllRoles() );
+        }
+      };
+      threads.add( thread );
+      thread.start();
+    }
+    assertTrue( loading.await( 10, TimeUnit.SECONDS ) );
+    // let the other callers reach the load in progress
+    Thread.sleep( 100 );
+    release.countDown();
+    for ( Thread thread : threads ) {
+      thread.join( 10000 );
+    }
+
+    assertEquals( 5, results.size() );
+    for ( List<String> result : results ) {
+      assertEquals( Arrays.asList( "foo", "bar" ), result );
+    }
+    verify( mockService, times( 1 ) ).getAllRoles();
+    CachingUserRoleListServiceDecorator.OperationStatistics statistics = decorator.getStatistics().get( "all roles" );
+    assertEquals( 1, statistics.getLoads() );
+    assertEquals( 5, statistics.getHits() + statistics.getMisses() );
+  }
+
+  @Test
+  public void testResultsCanBeModified() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getAllUsers() ).thenReturn( Arrays.asList( "foo", "bar" ) );
+
+    CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    decorator.getAllUsers().add( "baz" );
+    decorator.getAllUsers().remove( "foo" );
+
+    assertEquals( Arrays.asList( "foo", "bar" ), decorator.getAllUsers() );
+  }
+
+  @Test
+  public void testStaleEntriesAreRefreshedInBackground() throws Exception {
+    IUserRoleListService mockService = mock( IUserRoleListService.class );
+    when( mockService.getSystemRoles() ).thenReturn( Arrays.asList( "foo" ), Arrays.asList( "foo", "bar" ) );
+
+    CachingUserRoleListServiceDecorator decorator = new CachingUserRoleListServiceDecorator( mockService );
+    assertEquals( Arrays.asList( "foo" ), decorator.getSystemRoles() );
+
+    decorator.setRefreshMillis( 1 );
+    Thread.sleep( 10 );
+    // the stale entry is returned while it is loaded again
+    assertEquals( Arrays.asList( "foo" ), decorator.getSystemRoles() );
+
+    CachingUserRoleListServiceDecorator.OperationStatistics statistics =
+        decorator.getStatistics().get( "system roles" );
+    for ( int i = 0; i < 100 && statistics.getLoads() < 2; i++ ) {
+      Thread.sleep( 50 );
+    }
+    decorator.setRefreshMillis( 0 );
+    assertEquals( Arrays.asList( "foo", "bar" ), decorator.getSystemRoles() );
+    assertEquals( 2, statistics.getLoads() );
+    assertEquals( 1, statistics.getMisses() );
+    assertEquals( 2, statistics.getHits() );
+  }
 }
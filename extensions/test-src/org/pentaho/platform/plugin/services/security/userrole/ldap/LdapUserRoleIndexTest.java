@@ -0,0 +1,145 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.plugin.services.security.userrole.ldap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.plugin.services.security.userrole.ldap.search.LdapSearch;
+import org.springframework.ldap.UncategorizedLdapException;
+import org.springframework.security.GrantedAuthority;
+import org.springframework.security.GrantedAuthorityImpl;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings( "nls" )
+public class LdapUserRoleIndexTest {
+
+  private LdapSearch allUsernamesSearch;
+
+  private LdapSearch allAuthoritiesSearch;
+
+  private LdapSearch usernamesInRoleSearch;
+
+  private LdapUserRoleIndex index;
+
+  @Before
+  public void setUp() throws Exception {
+    allUsernamesSearch = mock( LdapSearch.class );
+    when( allUsernamesSearch.search( any( Object[].class ) ) ).thenReturn(
+        Arrays.asList( "suzy", "Pat", "patrick", "admin", "tiffany", "pa" ) );
+    allAuthoritiesSearch = mock( LdapSearch.class );
+    when( allAuthoritiesSearch.search( any( Object[].class ) ) ).thenReturn(
+        Arrays.asList( (GrantedAuthority) new GrantedAuthorityImpl( "ROLE_DEV" ), new GrantedAuthorityImpl(
+            "ROLE_DEVMGR" ), new GrantedAuthorityImpl( "ROLE_CEO" ) ) );
+    usernamesInRoleSearch = mock( LdapSearch.class );
+    when( usernamesInRoleSearch.search( any( Object[].class ) ) ).thenReturn( Collections.emptyList() );
+    when( usernamesInRoleSearch.search( new Object[] { "ROLE_DEV" } ) ).thenReturn( Arrays.asList( "pat", "tiffany" ) );
+
+    index = new LdapUserRoleIndex();
+    index.setAllUsernamesSearch( allUsernamesSearch );
+    index.setAllAuthoritiesSearch( allAuthoritiesSearch );
+    index.setUsernamesInRoleSearch( usernamesInRoleSearch );
+    index.setRefreshIntervalSeconds( 0 );
+    index.afterPropertiesSet();
+  }
+
+  @Test
+  public void testGetAll() {
+    assertEquals( 6, index.getAllUsernames().size() );
+    assertTrue( index.getAllUsernames().contains( "suzy" ) );
+    assertEquals( 3, index.getAllAuthorities().size() );
+    assertEquals( Arrays.asList( "pat", "tiffany" ), index.getUsernamesInRole( "ROLE_DEV" ) );
+    assertEquals( 0, index.getUsernamesInRole( "ROLE_CEO" ).size() );
+    assertEquals( 0, index.getUsernamesInRole( "ROLE_UNKNOWN" ).size() );
+
+    // the directory is searched only once
+    verify( allUsernamesSearch, times( 1 ) ).search( any( Object[].class ) );
+    verify( allAuthoritiesSearch, times( 1 ) ).search( any( Object[].class ) );
+  }
+
+  @Test
+  public void testFindByPrefix() {
+    assertEquals( Arrays.asList( "pa", "Pat", "patrick" ), index.findUsernames( "pa", 0 ) );
+    assertEquals( Arrays.asList( "Pat", "patrick" ), index.findUsernames( "PAT", 0 ) );
+    assertEquals( Arrays.asList( "pa", "Pat" ), index.findUsernames( "p", 2 ) );
+    assertEquals( 0, index.findUsernames( "z", 0 ).size() );
+    assertEquals( 6, index.findUsernames( "", 0 ).size() );
+    assertEquals( Arrays.asList( "ROLE_DEV", "ROLE_DEVMGR" ), index.findAuthorities( "role_dev", 0 ) );
+  }
+
+  @Test
+  public void testRefresh() {
+    assertEquals( 0, index.findUsernames( "joe", 0 ).size() );
+
+    when( allUsernamesSearch.search( any( Object[].class ) ) ).thenReturn( Arrays.asList( "joe" ) );
+    index.refresh();
+
+    assertEquals( Arrays.asList( "joe" ), index.findUsernames( "joe", 0 ) );
+    assertEquals( Arrays.asList( "joe" ), index.getAllUsernames() );
+  }
+
+  @Test
+  public void testFailedRefreshKeepsIndex() {
+    assertEquals( 6, index.getAllUsernames().size() );
+
+    when( allAuthoritiesSearch.search( any( Object[].class ) ) ).thenThrow(
+        new UncategorizedLdapException( "directory unavailable" ) );
+    try {
+      index.refresh();
+      fail();
+    } catch ( UncategorizedLdapException e ) {
+      // expected
+    }
+
+    assertEquals( 6, index.getAllUsernames().size() );
+    assertEquals( 3, index.getAllAuthorities().size() );
+    assertEquals( Arrays.asList( "pat", "tiffany" ), index.getUsernamesInRole( "ROLE_DEV" ) );
+  }
+
+  @Test
+  public void testEmptyRefreshKeepsIndex() {
+    assertEquals( 6, index.getAllUsernames().size() );
+
+    when( allUsernamesSearch.search( any( Object[].class ) ) ).thenReturn( Collections.emptyList() );
+    index.refresh();
+
+    assertEquals( 6, index.getAllUsernames().size() );
+  }
+
+  @Test
+  public void testIndexingRoleMembers() {
+    assertTrue( index.isIndexingRoleMembers() );
+
+    LdapUserRoleIndex withoutMembers = new LdapUserRoleIndex();
+    withoutMembers.setAllUsernamesSearch( allUsernamesSearch );
+    withoutMembers.setAllAuthoritiesSearch( allAuthoritiesSearch );
+    assertFalse( withoutMembers.isIndexingRoleMembers() );
+  }
+
+}
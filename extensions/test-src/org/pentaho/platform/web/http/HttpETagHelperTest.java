@@ -0,0 +1,62 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.web.http;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@SuppressWarnings( "nls" )
+public class HttpETagHelperTest {
+
+  @Test
+  public void testGetETag() {
+    String eTag = HttpETagHelper.getETag( "ab".getBytes(), "c".getBytes() );
+    assertTrue( eTag.startsWith( "\"" ) && eTag.endsWith( "\"" ) );
+    assertEquals( eTag, HttpETagHelper.getETag( "ab".getBytes(), "c".getBytes() ) );
+    assertFalse( eTag.equals( HttpETagHelper.getETag( "a".getBytes(), "bc".getBytes() ) ) );
+  }
+
+  @Test
+  public void testCheckNotModified() {
+    String eTag = HttpETagHelper.getETag( "script".getBytes() );
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    assertFalse( HttpETagHelper.checkNotModified( new MockHttpServletRequest(), response, eTag ) );
+    assertEquals( eTag, response.getHeader( "ETag" ) );
+    assertEquals( HttpServletResponse.SC_OK, response.getStatus() );
+
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.addHeader( "If-None-Match", "\"other\", W/" + eTag );
+    response = new MockHttpServletResponse();
+    assertTrue( HttpETagHelper.checkNotModified( request, response, eTag ) );
+    assertEquals( HttpServletResponse.SC_NOT_MODIFIED, response.getStatus() );
+
+    request = new MockHttpServletRequest();
+    request.addHeader( "If-None-Match", "\"other\"" );
+    response = new MockHttpServletResponse();
+    assertFalse( HttpETagHelper.checkNotModified( request, response, eTag ) );
+  }
+
+}
@@ -39,6 +39,8 @@ import org.pentaho.platform.web.http.messages.Messages;
 import org.springframework.beans.factory.NoSuchBeanDefinitionException;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import java.io.ByteArrayOutputStream;
@@ -55,6 +57,7 @@ import java.util.List;
 import static javax.ws.rs.core.Response.Status.*;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class FileResourceTest {
@@ -1414,4 +1417,46 @@ public class FileResourceTest {
     verify( mockThrowable, times( 1 ) ).getMessage();
     verify( fileResource, times( 1 ) ).buildServerErrorResponse( errMsg );
   }
+
+  @Test
+  public void testEvaluateETag() throws Exception {
+    fileResource.httpServletResponse = mock( HttpServletResponse.class );
+
+    fileResource.evaluateETag( "abc" );
+    verify( fileResource.httpServletResponse ).setHeader( "ETag", "\"abc\"" );
+
+    doReturn( "\"xyz\", \"abd\"" ).when( fileResource.httpServletRequest ).getHeader( "If-None-Match" );
+    fileResource.evaluateETag( "abc" );
+    verify( fileResource.httpServletResponse, times( 2 ) ).setHeader( "ETag", "\"abc\"" );
+
+    for ( String ifNoneMatch : new String[] { "\"abc\"", "\"xyz\", \"abc\"", "W/\"abc\"", "*" } ) {
+      doReturn( ifNoneMatch ).when( fileResource.httpServletRequest ).getHeader( "If-None-Match" );
+      try {
+        fileResource.evaluateETag( "abc" );
+        fail( ifNoneMatch );
+      } catch ( WebApplicationException e ) {
+        assertEquals( NOT_MODIFIED.getStatusCode(), e.getResponse().getStatus() );
+      }
+    }
+    verify( fileResource.httpServletResponse, times( 2 ) ).setHeader( "ETag", "\"abc\"" );
+  }
+
+  @Test
+  public void testDoGetRootTreeNotModified() throws Exception {
+    fileResource.httpServletResponse = mock( HttpServletResponse.class );
+    RepositoryFileTreeDto tree = mock( RepositoryFileTreeDto.class );
+    doReturn( tree ).when( fileResource.fileService ).doGetTree( FileUtils.PATH_SEPARATOR, 1, "*", false, false );
+    doReturn( "application/json" ).when( fileResource.httpServletRequest ).getHeader( "Accept" );
+    doReturn( "abc" ).when( fileResource.fileService ).getETag( tree, "application/json" );
+
+    assertEquals( tree, fileResource.doGetRootTree( 1, "*", false, false ) );
+
+    doReturn( "\"abc\"" ).when( fileResource.httpServletRequest ).getHeader( "If-None-Match" );
+    try {
+      fileResource.doGetRootTree( 1, "*", false, false );
+      fail();
+    } catch ( WebApplicationException e ) {
+      assertEquals( NOT_MODIFIED.getStatusCode(), e.getResponse().getStatus() );
+    }
+  }
 }
@@ -29,6 +29,7 @@ import java.security.GeneralSecurityException;
 import java.security.InvalidParameterException;
 import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -1102,15 +1103,12 @@ public class FileServiceTest {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetCurrentUserDir();
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+        .getChildrenByMetadata( userFolder, PentahoJcrConstants.PHO_CONTENTCREATOR, pathId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -1161,15 +1159,12 @@ public class FileServiceTest {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( pathId ).when( mockedFileMetadata ).get( PentahoJcrConstants.PHO_CONTENTCREATOR );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetUserDir( user );
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+        .getChildrenByMetadata( userFolder, PentahoJcrConstants.PHO_CONTENTCREATOR, pathId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -1221,15 +1216,12 @@ public class FileServiceTest {
     doReturn( false ).when( mockedChild ).isFolder();
     children.add( mockedChild );
 
-    Map<String, Serializable> mockedFileMetadata = mock( Map.class );
-    doReturn( lineageId ).when( mockedFileMetadata ).get( QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID );
-    when( fileService.repository.getFileMetadata( mockedChild.getId() ) ).thenReturn( mockedFileMetadata );
-
     doReturn( pathId ).when( fileDetailsMock ).getId();
     doReturn( userFolder ).when( sessionResource ).doGetCurrentUserDir();
     doReturn( workspaceFolder ).when( fileService.repository ).getFile( userFolder );
     doReturn( sessionResource ).when( fileService ).getSessionResource();
-    doReturn( children ).when( fileService.repository ).getChildren( userFolder );
+    doReturn( children ).when( fileService.repository )
+        .getChildrenByMetadata( userFolder, QuartzScheduler.RESERVEDMAPKEY_LINEAGE_ID, lineageId );
 
     RepositoryFileDto mockedRepositoryFileDto = mock( RepositoryFileDto.class );
     doReturn( mockedRepositoryFileDto ).when( fileService ).toFileDto( mockedChild, null, false );
@@ -1861,4 +1853,66 @@ public class FileServiceTest {
       assertEquals( e.getMessage(), "negativetest" );
     }
   }
+
+  @Test
+  public void testGetETagOfTree() {
+    RepositoryFileTreeDto tree = createTree( "/home/suzy", "/home/suzy/a.prpt" );
+    String eTag = fileService.getETag( tree, "application/json" );
+
+    assertEquals( eTag, fileService.getETag( createTree( "/home/suzy", "/home/suzy/a.prpt" ), "application/json" ) );
+    assertFalse( eTag.equals( fileService.getETag( tree, "application/xml" ) ) );
+
+    tree.getChildren().get( 0 ).getFile().setLastModifiedDate( new Date( 2 ) );
+    assertFalse( eTag.equals( fileService.getETag( tree, "application/json" ) ) );
+
+    tree = createTree( "/home/suzy", "/home/suzy/a.prpt" );
+    tree.getChildren().get( 0 ).getFile().setOwnerTenantPath( "/pentaho/tenant1" );
+    assertFalse( eTag.equals( fileService.getETag( tree, "application/json" ) ) );
+
+    tree = createTree( "/home/suzy", "/home/suzy/a.prpt" );
+    tree.getChildren().get( 0 ).setChildren( new ArrayList<RepositoryFileTreeDto>() );
+    assertFalse( eTag.equals( fileService.getETag( tree, "application/json" ) ) );
+  }
+
+  @Test
+  public void testGetETagOfChildren() {
+    List<RepositoryFileDto> children = new ArrayList<RepositoryFileDto>();
+    children.add( createFileDto( "/home/suzy/a.prpt" ) );
+    children.add( createFileDto( "/home/suzy/b.prpt" ) );
+    String eTag = fileService.getETag( children, null );
+
+    children.get( 1 ).setTitle( null );
+    assertFalse( eTag.equals( fileService.getETag( children, null ) ) );
+    children.get( 1 ).setTitle( "null" );
+    assertFalse( eTag.equals( fileService.getETag( children, null ) ) );
+    children.get( 1 ).setTitle( "b.prpt" );
+    assertEquals( eTag, fileService.getETag( children, null ) );
+
+    children.get( 1 ).setRepositoryFileAclDto( new RepositoryFileAclDto() );
+    assertFalse( eTag.equals( fileService.getETag( children, null ) ) );
+  }
+
+  private RepositoryFileTreeDto createTree( String folderPath, String filePath ) {
+    RepositoryFileTreeDto child = new RepositoryFileTreeDto();
+    child.setFile( createFileDto( filePath ) );
+    RepositoryFileTreeDto tree = new RepositoryFileTreeDto();
+    tree.setFile( createFileDto( folderPath ) );
+    tree.getFile().setFolder( true );
+    List<RepositoryFileTreeDto> children = new ArrayList<RepositoryFileTreeDto>();
+    children.add( child );
+    tree.setChildren( children );
+    return tree;
+  }
+
+  private RepositoryFileDto createFileDto( String path ) {
+    RepositoryFileDto file = new RepositoryFileDto();
+    file.setId( path );
+    file.setPath( path );
+    file.setName( path.substring( path.lastIndexOf( '/' ) + 1 ) );
+    file.setTitle( file.getName() );
+    file.setLastModifiedDate( new Date( 1 ) );
+    file.setVersionId( "1.0" );
+    file.setOwnerTenantPath( "/pentaho/tenant0" );
+    return file;
+  }
 }
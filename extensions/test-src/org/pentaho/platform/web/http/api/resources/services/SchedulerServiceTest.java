@@ -36,6 +36,8 @@ import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
@@ -626,6 +628,32 @@ public class SchedulerServiceTest {
     verify( schedulerService.scheduler, times( 1 ) ).getJobs( any( IJobFilter.class ) );
   }
 
+  @Test
+  public void testQueryJobs() throws Exception {
+    IPentahoSession mockPentahoSession = mock( IPentahoSession.class );
+    doReturn( mockPentahoSession ).when( schedulerService ).getSession();
+    doReturn( "suzy" ).when( mockPentahoSession ).getName();
+    JobPage mockPage = new JobPage();
+    doReturn( mockPage ).when( schedulerService.scheduler ).queryJobs( any( JobQuery.class ) );
+
+    // administrators see the jobs of every user, except the block outs
+    doReturn( true ).when( schedulerService ).canAdminister( mockPentahoSession );
+    JobQuery query = new JobQuery();
+    query.setUserName( "pat" );
+    assertEquals( mockPage, schedulerService.queryJobs( query ) );
+    assertEquals( "pat", query.getUserName() );
+    assertTrue( query.isExcludeBlockOuts() );
+
+    // other users only see their own
+    doReturn( false ).when( schedulerService ).canAdminister( mockPentahoSession );
+    query = new JobQuery();
+    query.setUserName( "pat" );
+    assertEquals( mockPage, schedulerService.queryJobs( query ) );
+    assertEquals( "suzy", query.getUserName() );
+
+    verify( schedulerService.scheduler, times( 2 ) ).queryJobs( any( JobQuery.class ) );
+  }
+
   @Test
   public void testDoGetGeneratedContentForSchedule() throws Exception {
     String lineageId = "test.prpt";
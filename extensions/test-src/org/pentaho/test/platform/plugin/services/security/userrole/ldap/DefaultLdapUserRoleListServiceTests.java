@@ -30,6 +30,7 @@ import org.pentaho.platform.engine.core.system.StandaloneSession;
 import org.pentaho.platform.engine.security.DefaultRoleComparator;
 import org.pentaho.platform.engine.security.DefaultUsernameComparator;
 import org.pentaho.platform.plugin.services.security.userrole.ldap.DefaultLdapUserRoleListService;
+import org.pentaho.platform.plugin.services.security.userrole.ldap.LdapUserRoleIndex;
 import org.pentaho.platform.plugin.services.security.userrole.ldap.NoOpLdapAuthoritiesPopulator;
 import org.pentaho.platform.plugin.services.security.userrole.ldap.RolePreprocessingMapper;
 import org.pentaho.platform.plugin.services.security.userrole.ldap.search.GenericLdapSearch;
@@ -54,12 +55,16 @@ import org.springframework.security.userdetails.ldap.LdapUserDetailsService;
 
 import javax.naming.directory.SearchControls;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 //import org.pentaho.platform.engine.core.audit.NullAuditEntry;
 
@@ -809,6 +814,92 @@ public class DefaultLdapUserRoleListServiceTests extends AbstractPentahoLdapInte
 
   }
 
+  /**
+   * Same as <code>testGetAllUserNames1</code> and <code>testGetAllAuthorities1</code>, but reading one entry at a time
+   * into an index.
+   */
+  @Test
+  public void testGetAllFromPagedIndex() throws Exception {
+    SearchControls con1 = new SearchControls();
+    con1.setReturningAttributes( new String[] { "uniqueMember" } ); //$NON-NLS-1$
+    LdapSearchParamsFactoryImpl usersParamFactory = new LdapSearchParamsFactoryImpl( "ou=groups", //$NON-NLS-1$
+        "(objectClass=groupOfUniqueNames)", con1 ); //$NON-NLS-1$
+    usersParamFactory.afterPropertiesSet();
+    GenericLdapSearch allUsernamesSearch =
+        new GenericLdapSearch( getContextSource(), usersParamFactory, new SearchResultToAttrValueList( "uniqueMember",
+            "uid" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    allUsernamesSearch.setPageSize( 1 );
+    allUsernamesSearch.setFailOnError( true );
+
+    SearchControls con2 = new SearchControls();
+    con2.setReturningAttributes( new String[] { "cn" } ); //$NON-NLS-1$
+    LdapSearchParamsFactory rolesParamsFactory = new LdapSearchParamsFactoryImpl( "ou=roles", //$NON-NLS-1$
+        "(objectClass=organizationalRole)", con2 ); //$NON-NLS-1$
+    Transformer[] transformers =
+        { new SearchResultToAttrValueList( "cn" ), new StringToGrantedAuthority() }; //$NON-NLS-1$
+    GenericLdapSearch rolesSearch =
+        new GenericLdapSearch( getContextSource(), rolesParamsFactory, new ChainedTransformer( transformers ) );
+    rolesSearch.setPageSize( 1 );
+    rolesSearch.setFailOnError( true );
+
+    LdapUserRoleIndex index = new LdapUserRoleIndex();
+    index.setAllUsernamesSearch( allUsernamesSearch );
+    index.setAllAuthoritiesSearch( rolesSearch );
+    index.setRefreshIntervalSeconds( 0 );
+    index.afterPropertiesSet();
+
+    DefaultLdapUserRoleListService userRoleListService = new DefaultLdapUserRoleListService();
+    userRoleListService.setUserRoleIndex( index );
+    userRoleListService.setExtraRoles( new ArrayList<String>() );
+
+    List<String> users = userRoleListService.getAllUsers();
+    assertTrue( users.contains( "pat" ) ); //$NON-NLS-1$
+    assertTrue( users.contains( "admin" ) ); //$NON-NLS-1$
+
+    List<String> roles = userRoleListService.getAllRoles();
+    assertTrue( roles.contains( "ROLE_CTO" ) ); //$NON-NLS-1$
+    assertTrue( roles.contains( "ROLE_CEO" ) ); //$NON-NLS-1$
+
+    assertTrue( index.findUsernames( "PA", 0 ).contains( "pat" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+    assertTrue( index.findAuthorities( "role_c", 0 ).contains( "ROLE_CEO" ) ); //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * Same as <code>testGetUsernamesInRole1</code>, with an index which does not index role members: the members are
+   * searched for.
+   */
+  @Test
+  public void testGetUsernamesInRoleNotIndexed() throws Exception {
+    LdapSearch allUsernamesSearch = mock( LdapSearch.class );
+    when( allUsernamesSearch.search( any( Object[].class ) ) ).thenReturn( Arrays.asList( "pat" ) ); //$NON-NLS-1$
+    LdapSearch allAuthoritiesSearch = mock( LdapSearch.class );
+    when( allAuthoritiesSearch.search( any( Object[].class ) ) ).thenReturn(
+        Arrays.asList( new GrantedAuthorityImpl( "DEV" ) ) ); //$NON-NLS-1$
+
+    LdapUserRoleIndex index = new LdapUserRoleIndex();
+    index.setAllUsernamesSearch( allUsernamesSearch );
+    index.setAllAuthoritiesSearch( allAuthoritiesSearch );
+    index.setRefreshIntervalSeconds( 0 );
+    index.afterPropertiesSet();
+
+    SearchControls con1 = new SearchControls();
+    con1.setReturningAttributes( new String[] { "uid" } ); //$NON-NLS-1$
+    LdapSearchParamsFactory paramFactory =
+        new LdapSearchParamsFactoryImpl( "ou=users", "(businessCategory=cn={0}*)", con1 ); //$NON-NLS-1$//$NON-NLS-2$
+    LdapSearch usernamesInRoleSearch =
+        new GenericLdapSearch( getContextSource(), paramFactory, new SearchResultToAttrValueList( "uid" ), //$NON-NLS-1$
+            new GrantedAuthorityToString() );
+
+    DefaultLdapUserRoleListService userRoleListService = new DefaultLdapUserRoleListService();
+    userRoleListService.setUserRoleIndex( index );
+    userRoleListService.setUsernamesInRoleSearch( usernamesInRoleSearch );
+
+    List<String> res = userRoleListService.getUsersInRole( null, "DEV" ); //$NON-NLS-1$
+
+    assertTrue( res.contains( "pat" ) ); //$NON-NLS-1$
+    assertTrue( res.contains( "tiffany" ) ); //$NON-NLS-1$
+  }
+
   /**
    * Logs in with given username.
    * 
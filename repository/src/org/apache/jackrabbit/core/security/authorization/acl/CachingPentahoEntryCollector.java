@@ -16,8 +16,11 @@
  */
 package org.apache.jackrabbit.core.security.authorization.acl;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -28,11 +31,12 @@ import org.apache.jackrabbit.core.SessionImpl;
 import org.apache.jackrabbit.core.cache.GrowingLRUMap;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
-import org.codehaus.jackson.map.util.LRUMap;
 import org.pentaho.platform.api.engine.ILogoutListener;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
+import org.pentaho.platform.security.policy.rolebased.IVersionedRoleBindingDao;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +46,13 @@ import org.slf4j.LoggerFactory;
  * 
  * This class is a copy of the one in trunk of Jackrabbit. Backported here for performance reasons.
  * 
+ * <p>
+ * The cache is shared by all sessions. The only session-dependent part of the entries of a node are the magic ACEs, so
+ * each cached node holds one {@code Entries} per magic ACE context (see
+ * {@link PentahoEntryCollector#getMagicAceContextKey()}); sessions with the same context share them. The context key
+ * of a session is computed once, and again after role bindings are set; it is forgotten on logout.
+ * </p>
+ * 
  */
 public class CachingPentahoEntryCollector extends PentahoEntryCollector {
 
@@ -50,15 +61,20 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    */
   private static final Logger log = LoggerFactory.getLogger( CachingEntryCollector.class );
 
+  private static final String VERSION_STORAGE_PATH = "/jcr:system/jcr:versionStorage"; //$NON-NLS-1$
+
   /**
    * Cache to look up the list of access control entries defined at a given nodeID (key). The map only contains an entry
    * if the corresponding Node is access controlled.
    */
-  private final Map<IPentahoSession, EntryCache> cacheBySession = Collections
-      .synchronizedMap( new LRUMap<IPentahoSession, EntryCache>( 128, 512 ) );
+  private final EntryCache cache;
+
+  private final ConcurrentMap<EntryKey, FutureEntries> futures = new ConcurrentHashMap<EntryKey, FutureEntries>();
+
+  private final Map<IPentahoSession, ContextKey> contextKeyBySession = Collections
+      .synchronizedMap( new WeakHashMap<IPentahoSession, ContextKey>() );
 
-  private final Map<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>> futuresBySession = Collections
-      .synchronizedMap( new LRUMap<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>>( 128, 512 ) );
+  private volatile IVersionedRoleBindingDao versionedRoleBindingDao;
 
   /**
    * Create a new instance.
@@ -73,14 +89,15 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
   public CachingPentahoEntryCollector( SessionImpl systemSession, NodeId rootID, final Map configuration )
     throws RepositoryException {
     super( systemSession, rootID, configuration );
+    cache = new EntryCache();
 
-    // Flush caches of session on logout
+    // Forget the magic ACE context of a session on logout
     PentahoSystem.addLogoutListener( new ILogoutListener() {
       @Override
       public void onLogout( IPentahoSession iPentahoSession ) {
 
-        log.debug( "Flushing ACL Entries due to logout for session: " + iPentahoSession.getName() );
-        flushCachesOfSession( iPentahoSession );
+        log.debug( "Forgetting ACL context due to logout for session: " + iPentahoSession.getName() );
+        contextKeyBySession.remove( iPentahoSession );
       }
     } );
 
@@ -93,62 +110,47 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
      */
   }
 
-  private void flushCachesOfSession( IPentahoSession iPentahoSession ) {
-
-    synchronized ( cacheBySession ) {
-      if ( cacheBySession.containsKey( iPentahoSession ) ) {
-        cacheBySession.get( iPentahoSession ).clear();
-        cacheBySession.remove( iPentahoSession );
-      }
-    }
-
-    synchronized ( futuresBySession ) {
-      if ( futuresBySession.containsKey( iPentahoSession ) ) {
-        futuresBySession.get( iPentahoSession ).clear();
-        futuresBySession.remove( iPentahoSession );
-      }
+  /**
+   * Returns the magic ACE context key of the current session, computing it on first use and whenever role bindings
+   * have been set since.
+   */
+  private String getContextKey() throws RepositoryException {
+    if ( !hasPentahoSession() ) {
+      return getMagicAceContextKey();
     }
-  }
-
-  private EntryCache getCache() {
     IPentahoSession session = PentahoSessionHolder.getSession();
-    synchronized ( cacheBySession ) {
-      if ( cacheBySession.containsKey( session ) ) {
-        return cacheBySession.get( session );
-      }
-      EntryCache newCache = new EntryCache();
-      cacheBySession.put( session, newCache );
-      return newCache;
+    long version = getRoleBindingsVersion();
+    ContextKey key = contextKeyBySession.get( session );
+    if ( key == null || key.version != version ) {
+      key = new ContextKey( getMagicAceContextKey(), version );
+      contextKeyBySession.put( session, key );
     }
+    return key.key;
   }
 
-  private ConcurrentMap<NodeId, FutureEntries> getFutures() {
-    IPentahoSession session = PentahoSessionHolder.getSession();
-    if ( futuresBySession.containsKey( session ) ) {
-      return futuresBySession.get( session );
+  /**
+   * @return the version of the role bindings the magic ACE context keys are computed from, or 0 if the role binding
+   *         DAO does not report changes
+   */
+  private long getRoleBindingsVersion() {
+    IVersionedRoleBindingDao roleBindingDao = versionedRoleBindingDao;
+    if ( roleBindingDao == null ) {
+      IRoleAuthorizationPolicyRoleBindingDao magicAceRoleBindingDao = getMagicAceRoleBindingDao();
+      if ( !( magicAceRoleBindingDao instanceof IVersionedRoleBindingDao ) ) {
+        return 0;
+      }
+      roleBindingDao = (IVersionedRoleBindingDao) magicAceRoleBindingDao;
+      versionedRoleBindingDao = roleBindingDao;
     }
-    ConcurrentMap<NodeId, FutureEntries> futures = new ConcurrentHashMap<NodeId, FutureEntries>();
-    futuresBySession.put( session, futures );
-    return futures;
+    return roleBindingDao.getRoleBindingsVersion();
   }
 
   @Override
   protected void close() {
     super.close();
-
-    synchronized ( cacheBySession ) {
-      for ( Map.Entry<IPentahoSession, EntryCache> entry : this.cacheBySession.entrySet() ) {
-        entry.getValue().clear();
-      }
-      cacheBySession.clear();
-    }
-
-    synchronized ( futuresBySession ) {
-      for ( Map.Entry<IPentahoSession, ConcurrentMap<NodeId, FutureEntries>> entry : this.futuresBySession.entrySet() ) {
-        entry.getValue().clear();
-      }
-      futuresBySession.clear();
-    }
+    cache.clear();
+    futures.clear();
+    contextKeyBySession.clear();
   }
 
   // -----------------------------------------------------< EntryCollector >---
@@ -158,10 +160,11 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
   @Override
   protected Entries getEntries( NodeImpl node ) throws RepositoryException {
     NodeId nodeId = node.getNodeId();
-    Entries entries = getCache().get( nodeId );
+    String contextKey = getContextKey();
+    Entries entries = cache.get( nodeId, contextKey );
     if ( entries == null ) {
       // fetch entries and update the cache
-      entries = updateCache( node );
+      entries = updateCache( node, contextKey );
     }
     return entries;
   }
@@ -171,11 +174,12 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    */
   @Override
   protected Entries getEntries( NodeId nodeId ) throws RepositoryException {
-    Entries entries = getCache().get( nodeId );
+    String contextKey = getContextKey();
+    Entries entries = cache.get( nodeId, contextKey );
     if ( entries == null ) {
       // fetch entries and update the cache
       NodeImpl n = getNodeById( nodeId );
-      entries = updateCache( n );
+      entries = updateCache( n, contextKey );
     }
     return entries;
   }
@@ -185,44 +189,57 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
    * 
    * @param node
    *          The target node
+   * @param contextKey
+   *          The magic ACE context the entries are read for.
    * @return The list of entries present on the specified node or an empty list.
    * @throws RepositoryException
    *           If an error occurs.
    */
-  private Entries internalUpdateCache( NodeImpl node ) throws RepositoryException {
-    Entries entries = super.getEntries( node );
-    if ( ( isRootId( node.getNodeId() ) && getCache().specialCasesRoot() ) || !entries.isEmpty() ) {
+  private Entries internalUpdateCache( NodeImpl node, String contextKey ) throws RepositoryException {
+    // entries read while an invalidation happens may already be stale; they are returned but not cached
+    long generation = cache.getGeneration();
+    Entries entries = readEntries( node );
+    if ( ( isRootId( node.getNodeId() ) && cache.specialCasesRoot() ) || !entries.isEmpty() ) {
       // adjust the 'nextId' to point to the next access controlled
       // ancestor node instead of the parent and remember the entries.
       // entries.setNextId(getNextID(node));
-      getCache().put( node.getNodeId(), entries );
+      cache.put( node.getNodeId(), node.getPath(), contextKey, entries, generation );
     } // else: not access controlled -> ignore.
     return entries;
   }
 
+  /**
+   * Reads the entries of a node, bypassing the cache.
+   */
+  protected Entries readEntries( NodeImpl node ) throws RepositoryException {
+    return super.getEntries( node );
+  }
+
   /**
    * Update cache for the given node id
    * 
    * @param node
    *          The target node
+   * @param contextKey
+   *          The magic ACE context the entries are read for.
    * @return The list of entries present on the specified node or an empty list.
    * @throws RepositoryException
    */
-  private Entries updateCache( NodeImpl node ) throws RepositoryException {
-    return throttledUpdateCache( node );
+  private Entries updateCache( NodeImpl node, String contextKey ) throws RepositoryException {
+    return throttledUpdateCache( node, contextKey );
   }
 
   /**
    * See {@link CachingEntryCollector#updateCache(NodeImpl)} ; this variant blocks the current thread if a concurrent
-   * update for the same node id takes place
+   * update for the same node id and magic ACE context takes place
    */
-  private Entries throttledUpdateCache( NodeImpl node ) throws RepositoryException {
-    NodeId id = node.getNodeId();
+  private Entries throttledUpdateCache( NodeImpl node, String contextKey ) throws RepositoryException {
+    EntryKey id = new EntryKey( node.getNodeId(), contextKey );
     FutureEntries fe = null;
     FutureEntries nfe = new FutureEntries();
     boolean found = true;
 
-    fe = getFutures().putIfAbsent( id, nfe );
+    fe = futures.putIfAbsent( id, nfe );
     if ( fe == null ) {
       found = false;
       fe = nfe;
@@ -234,12 +251,12 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
     } else {
       // otherwise obtain result and when done notify waiting FutureEntries
       try {
-        Entries e = internalUpdateCache( node );
-        getFutures().remove( id );
+        Entries e = internalUpdateCache( node, contextKey );
+        futures.remove( id );
         fe.setResult( e );
         return e;
       } catch ( Throwable problem ) {
-        getFutures().remove( id );
+        futures.remove( id );
         fe.setProblem( problem );
         if ( problem instanceof RepositoryException ) {
           throw (RepositoryException) problem;
@@ -262,7 +279,7 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
     NodeId nextId = null;
     while ( nextId == null && !isRootId( n.getNodeId() ) ) {
       NodeId parentId = n.getParentId();
-      if ( getCache().containsKey( parentId ) ) {
+      if ( cache.containsKey( parentId ) ) {
         nextId = parentId;
       } else {
         NodeImpl parent = (NodeImpl) n.getParent();
@@ -321,45 +338,40 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
       }
       NodeId nodeId = (NodeId) key;
       int type = modifications.getType( nodeId );
-      if ( ( type & POLICY_ADDED ) == POLICY_ADDED ) {
-        // clear the complete cache since the nextAcNodeId may
-        // have changed due to the added ACL.
-        log.debug( "Policy added, clearing the cache" );
-        synchronized ( cacheBySession ) {
-          for ( Map.Entry<IPentahoSession, EntryCache> entry : this.cacheBySession.entrySet() ) {
-            entry.getValue().clear();
-          }
-        }
-        break; // no need for further processing.
-      } else if ( ( type & POLICY_REMOVED ) == POLICY_REMOVED ) {
-        // clear the entry and change the entries having a nextID
-        // pointing to this node.
-        synchronized ( cacheBySession ) {
-          for ( Map.Entry<IPentahoSession, EntryCache> entry : this.cacheBySession.entrySet() ) {
-            entry.getValue().remove( nodeId, true );
-          }
-        }
-      } else if ( ( type & POLICY_MODIFIED ) == POLICY_MODIFIED ) {
-        // simply clear the cache entry -> reload upon next access.
-        synchronized ( cacheBySession ) {
-          for ( Map.Entry<IPentahoSession, EntryCache> entry : this.cacheBySession.entrySet() ) {
-            entry.getValue().remove( nodeId, false );
-          }
-        }
-      } else if ( ( type & MOVE ) == MOVE ) {
+      if ( ( type & MOVE ) == MOVE ) {
         // some sort of move operation that may affect the cache
         log.debug( "Move operation, clearing the cache" );
-        synchronized ( cacheBySession ) {
-          for ( Map.Entry<IPentahoSession, EntryCache> entry : this.cacheBySession.entrySet() ) {
-            entry.getValue().clear();
-          }
-        }
+        cache.clear();
         break; // no need for further processing.
+      } else if ( ( type & ( POLICY_ADDED | POLICY_REMOVED | POLICY_MODIFIED ) ) != 0 ) {
+        // entries of descendants are derived from the ACLs they inherit from, so the whole subtree is affected
+        String path = getPath( nodeId );
+        if ( path == null ) {
+          log.debug( "Path of modified node {} is unknown, clearing the cache", nodeId );
+          cache.clear();
+          break; // no need for further processing.
+        }
+        cache.removeSubtree( path );
       }
     }
     super.notifyListeners( modifications );
   }
 
+  /**
+   * Returns the path of the given node, or {@code null} if it cannot be determined (e.g. the node has been removed).
+   */
+  private String getPath( NodeId nodeId ) {
+    String path = cache.getPath( nodeId );
+    if ( path == null ) {
+      try {
+        path = getNodeById( nodeId ).getPath();
+      } catch ( RepositoryException e ) {
+        log.debug( "Unable to resolve path of node " + nodeId, e );
+      }
+    }
+    return path;
+  }
+
   /**
    * A place holder for a yet to be computed {@link Entries} result
    */
@@ -400,17 +412,88 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
     }
   }
 
+  /**
+   * The magic ACE context key of a session, and the version of the role bindings it was computed from.
+   */
+  private static class ContextKey {
+
+    private final String key;
+    private final long version;
+
+    public ContextKey( String key, long version ) {
+      this.key = key;
+      this.version = version;
+    }
+  }
+
+  /**
+   * Identifies the entries of a node as seen from a magic ACE context.
+   */
+  private static class EntryKey {
+
+    private final NodeId nodeId;
+    private final String contextKey;
+
+    public EntryKey( NodeId nodeId, String contextKey ) {
+      this.nodeId = nodeId;
+      this.contextKey = contextKey;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * nodeId.hashCode() + contextKey.hashCode();
+    }
+
+    @Override
+    public boolean equals( Object obj ) {
+      if ( this == obj ) {
+        return true;
+      }
+      if ( !( obj instanceof EntryKey ) ) {
+        return false;
+      }
+      EntryKey other = (EntryKey) obj;
+      return nodeId.equals( other.nodeId ) && contextKey.equals( other.contextKey );
+    }
+  }
+
+  /**
+   * The cached entries of a single node: its path (needed for subtree invalidation) and its {@code Entries} per magic
+   * ACE context.
+   */
+  private static class CachedNode {
+
+    private final String path;
+    private final ConcurrentMap<String, Entries> entriesByContext = new ConcurrentHashMap<String, Entries>();
+
+    public CachedNode( String path ) {
+      this.path = path;
+    }
+
+    public boolean isInSubtree( String subtreePath ) {
+      // entries of version histories are governed by the ACL of their versionable node, wherever that is
+      String prefix = subtreePath.endsWith( "/" ) ? subtreePath : subtreePath + "/"; //$NON-NLS-1$ //$NON-NLS-2$
+      return path.equals( subtreePath ) || path.startsWith( prefix ) || path.startsWith( VERSION_STORAGE_PATH );
+    }
+  }
+
   /**
    * A cache to lookup the ACEs defined on a given (access controlled) node. The internal map uses the ID of the node as
-   * key while the value consists of {@Entries} objects that not only provide the ACEs defined for that node
-   * but also the ID of the next access controlled parent node.
+   * key while the value holds the {@link Entries} of that node for each magic ACE context. Since Pentaho entries never
+   * point to a next access controlled node, invalidating a node and all of its descendants is sufficient to keep the
+   * cache consistent.
    */
   private class EntryCache {
 
-    private final Map<NodeId, Entries> cache;
-    private Entries rootEntries;
+    private final Map<NodeId, CachedNode> cache;
+    private volatile CachedNode rootEntries;
     private boolean specialCaseRoot = true;
 
+    /**
+     * Incremented on every invalidation; see {@link #put}.
+     */
+    private volatile long generation;
+
     @SuppressWarnings( "unchecked" )
     public EntryCache() {
       int maxsize = 5000;
@@ -435,33 +518,40 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
       return specialCaseRoot;
     }
 
-    public boolean containsKey( NodeId id ) {
+    public long getGeneration() {
+      return generation;
+    }
+
+    private CachedNode getCachedNode( NodeId id ) {
       if ( specialCaseRoot && isRootId( id ) ) {
-        return rootEntries != null;
+        return rootEntries;
       } else {
         synchronized ( cache ) {
-          return cache.containsKey( id );
+          return cache.get( id );
         }
       }
     }
 
+    public boolean containsKey( NodeId id ) {
+      return getCachedNode( id ) != null;
+    }
+
+    public String getPath( NodeId id ) {
+      CachedNode cachedNode = getCachedNode( id );
+      return cachedNode == null ? null : cachedNode.path;
+    }
+
     public void clear() {
-      rootEntries = null;
       synchronized ( cache ) {
+        generation++;
+        rootEntries = null;
         cache.clear();
       }
     }
 
-    public Entries get( NodeId id ) {
-      Entries result;
-
-      if ( specialCaseRoot && isRootId( id ) ) {
-        result = rootEntries;
-      } else {
-        synchronized ( cache ) {
-          result = cache.get( id );
-        }
-      }
+    public Entries get( NodeId id, String contextKey ) {
+      CachedNode cachedNode = getCachedNode( id );
+      Entries result = cachedNode == null ? null : cachedNode.entriesByContext.get( contextKey );
 
       if ( result != null ) {
         log.debug( "Cache hit for nodeId {}", id );
@@ -472,7 +562,11 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
       return result;
     }
 
-    public void put( NodeId id, Entries entries ) {
+    /**
+     * Caches the entries of a node, unless the cache has been invalidated since {@code readGeneration}, when the
+     * entries were read.
+     */
+    public void put( NodeId id, String path, String contextKey, Entries entries, long readGeneration ) {
       log.debug( "Updating cache for nodeId {}", id );
 
       // fail early on potential cache corruption
@@ -480,39 +574,47 @@ public class CachingPentahoEntryCollector extends PentahoEntryCollector {
         throw new IllegalArgumentException( "Trying to update cache entry for " + id + " with a circular reference" );
       }
 
-      if ( specialCaseRoot && isRootId( id ) ) {
-        rootEntries = entries;
-      } else {
-        synchronized ( cache ) {
-          cache.put( id, entries );
+      synchronized ( cache ) {
+        if ( readGeneration != generation ) {
+          log.debug( "Cache invalidated while reading entries for nodeId {}, not caching them", id );
+          return;
         }
+        CachedNode cachedNode;
+        if ( specialCaseRoot && isRootId( id ) ) {
+          if ( rootEntries == null ) {
+            rootEntries = new CachedNode( path );
+          }
+          cachedNode = rootEntries;
+        } else {
+          cachedNode = cache.get( id );
+          if ( cachedNode == null ) {
+            cachedNode = new CachedNode( path );
+            cache.put( id, cachedNode );
+          }
+        }
+        cachedNode.entriesByContext.put( contextKey, entries );
       }
     }
 
-    public void remove( NodeId id, boolean adjustNextIds ) {
-      log.debug( "Removing nodeId {} from cache", id );
-      Entries result;
+    /**
+     * Removes the entries of the node at {@code path} and of all of its descendants.
+     */
+    public void removeSubtree( String path ) {
+      log.debug( "Removing subtree {} from cache", path );
       synchronized ( cache ) {
-        if ( specialCaseRoot && isRootId( id ) ) {
-          result = rootEntries;
+        generation++;
+        if ( rootEntries != null && rootEntries.isInSubtree( path ) ) {
           rootEntries = null;
-        } else {
-          result = cache.remove( id );
         }
-
-        if ( adjustNextIds && result != null ) {
-          NodeId nextId = result.getNextId();
-          for ( Entries entry : cache.values() ) {
-            if ( id.equals( entry.getNextId() ) ) {
-              // fail early on potential cache corruption
-              if ( id.equals( nextId ) ) {
-                throw new IllegalArgumentException( "Trying to update cache entry for " + id
-                    + " with a circular reference" );
-              }
-              entry.setNextId( nextId );
-            }
+        List<NodeId> removed = new ArrayList<NodeId>();
+        for ( Map.Entry<NodeId, CachedNode> entry : cache.entrySet() ) {
+          if ( entry.getValue().isInSubtree( path ) ) {
+            removed.add( entry.getKey() );
           }
         }
+        for ( NodeId id : removed ) {
+          cache.remove( id );
+        }
       }
     }
   }
@@ -22,7 +22,6 @@ import org.apache.jackrabbit.core.ItemImpl;
 import org.apache.jackrabbit.core.ItemManager;
 import org.apache.jackrabbit.core.NodeImpl;
 import org.apache.jackrabbit.core.SessionImpl;
-import org.apache.jackrabbit.core.cache.GrowingLRUMap;
 import org.apache.jackrabbit.core.id.ItemId;
 import org.apache.jackrabbit.core.id.NodeId;
 import org.apache.jackrabbit.core.id.PropertyId;
@@ -30,6 +29,7 @@ import org.apache.jackrabbit.core.security.authorization.AbstractCompiledPermiss
 import org.apache.jackrabbit.core.security.authorization.AccessControlConstants;
 import org.apache.jackrabbit.core.security.authorization.AccessControlListener;
 import org.apache.jackrabbit.core.security.authorization.AccessControlModifications;
+import org.apache.jackrabbit.core.security.authorization.AccessControlObserver;
 import org.apache.jackrabbit.core.security.authorization.AccessControlUtils;
 import org.apache.jackrabbit.core.security.authorization.Permission;
 import org.apache.jackrabbit.core.security.authorization.PrivilegeBits;
@@ -43,6 +43,8 @@ import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileAclUtils;
 import org.pentaho.platform.repository2.unified.jcr.JcrRepositoryFileUtils;
 import org.pentaho.platform.repository2.unified.jcr.PentahoJcrConstants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javax.jcr.ItemNotFoundException;
 import javax.jcr.RepositoryException;
@@ -51,7 +53,6 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 /**
@@ -60,23 +61,36 @@ import java.util.Set;
  * href="http://jira.pentaho.com/browse/BISERVER-8382">BISERVER-8382</a><br/>
  * This shouldn't differ from {@code CompiledPermissionsImpl} except for the extra lock and the
  * <code>synchronized</code> changes within {@link #canRead(Path, ItemId)}
+ * <p/>
+ * Permission results and read decisions are kept in lock-striped caches of our own rather than the single
+ * synchronized cache of {@code AbstractCompiledPermissions}, so that an ACL modification only invalidates the items in
+ * the subtree of the modified node instead of everything.
  * 
  * @see CompiledPermissionsImpl
  */
 public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions implements AccessControlListener {
 
+  private static final Logger log = LoggerFactory.getLogger( PentahoCompiledPermissionsImpl.class );
+
+  private static final String PROP_PREFIX =
+      "org.apache.jackrabbit.core.security.authorization.acl.PentahoCompiledPermissionsImpl."; //$NON-NLS-1$
+
+  private static final int CACHE_SIZE = getIntProperty( PROP_PREFIX + "cacheSize", 20000 ); //$NON-NLS-1$
+
+  private static final int CACHE_STRIPES = getIntProperty( PROP_PREFIX + "cacheStripes", 16 ); //$NON-NLS-1$
+
   private final List<String> principalNames;
   private final SessionImpl session;
   private final EntryCollector entryCollector;
   private final AccessControlUtils util;
 
   /*
-   * Start with initial map size of 1024 and grow up to 5000 before removing LRU items.
+   * Sizes default to 20000 entries in 16 stripes; see PROP_PREFIX for the system properties overriding them.
    */
-  @SuppressWarnings( "unchecked" )
-  private final Map<ItemId, Boolean> readCache = new GrowingLRUMap( 1024, 5000 );
-  private final Object monitor = new Object();
-  private final Object readMonitor = new Object();
+  private final StripedPermissionCache<ItemId, Boolean> readCache = new StripedPermissionCache<ItemId, Boolean>(
+      CACHE_SIZE, CACHE_STRIPES );
+  private final StripedPermissionCache<Path, Result> resultCache = new StripedPermissionCache<Path, Result>(
+      CACHE_SIZE, CACHE_STRIPES );
 
   PentahoCompiledPermissionsImpl( Set<Principal> principals, SessionImpl session, EntryCollector entryCollector,
       AccessControlUtils util, boolean listenToEvents ) throws RepositoryException {
@@ -213,14 +227,37 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
     return (PrivilegeManagerImpl) ( (JackrabbitWorkspace) session.getWorkspace() ).getPrivilegeManager();
   }
 
+  /**
+   * Uses {@code resultCache} instead of the cache of {@code AbstractCompiledPermissions}, which can only be cleared as
+   * a whole. Repository level results are still cached by the super class.
+   * 
+   * @see AbstractCompiledPermissions#getResult(org.apache.jackrabbit.spi.Path)
+   */
+  @Override
+  public Result getResult( Path absPath ) throws RepositoryException {
+    if ( absPath == null ) {
+      return super.getResult( absPath );
+    }
+    Result result = resultCache.get( absPath );
+    if ( result == null ) {
+      long generation = resultCache.getGeneration();
+      result = buildResult( absPath );
+      resultCache.put( absPath, session.getJCRPath( absPath ), result, generation );
+    }
+    return result;
+  }
+
   /**
    * @see AbstractCompiledPermissions#clearCache()
    */
   @Override
   protected void clearCache() {
-    synchronized ( monitor ) {
-      readCache.clear();
+    if ( log.isDebugEnabled() ) {
+      log.debug( "Clearing caches; read cache: " + readCache + ", result cache: " //$NON-NLS-1$ //$NON-NLS-2$
+          + resultCache );
     }
+    readCache.clear();
+    resultCache.clear();
     super.clearCache();
   }
 
@@ -246,14 +283,12 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
     // no extra check for existence as method may only be called for existing items.
     boolean isExistingNode = id.denotesNode();
     boolean canRead = false;
-    // emulates behavior of CompiledPermissionsImpl with two locks
-    // synchronized (readMonitor) {
-    synchronized ( monitor ) {
-      if ( readCache.containsKey( id ) ) {
-        return readCache.get( id );
-      }
+    Boolean cached = readCache.get( id );
+    if ( cached != null ) {
+      return cached;
     }
 
+    long generation = readCache.getGeneration();
     ItemManager itemMgr = session.getItemManager();
     NodeId nodeId = ( isExistingNode ) ? (NodeId) id : ( (PropertyId) id ).getParentId();
     NodeImpl node = (NodeImpl) itemMgr.getItem( nodeId );
@@ -284,10 +319,7 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
         }
       }
     }
-    synchronized ( monitor ) {
-      readCache.put( id, canRead );
-    }
-    // } // readMonitor
+    readCache.put( id, node.getPath(), canRead, generation );
     return canRead;
   }
 
@@ -297,8 +329,51 @@ public class PentahoCompiledPermissionsImpl extends AbstractCompiledPermissions
    *      acModified(org.apache.jackrabbit.core.security.authorization.AccessControlModifications)
    */
   public void acModified( AccessControlModifications modifications ) {
-    // ignore the details of the modifications and clear all caches.
-    clearCache();
+    for ( Object key : modifications.getNodeIdentifiers() ) {
+      String path = null;
+      if ( key instanceof NodeId
+          && ( modifications.getType( key ) & AccessControlObserver.MOVE ) != AccessControlObserver.MOVE ) {
+        path = getPath( (NodeId) key );
+      }
+      if ( path == null ) {
+        // moved or unknown node: the affected items cannot be determined
+        clearCache();
+        return;
+      }
+      // permissions of descendants are derived from the ACLs they inherit from
+      readCache.removeSubtree( path );
+      resultCache.removeSubtree( path );
+    }
+    // repository level results are cheap to rebuild
+    super.clearCache();
+    if ( log.isDebugEnabled() ) {
+      log.debug( "Invalidated modified subtrees; read cache: " + readCache //$NON-NLS-1$
+          + ", result cache: " + resultCache ); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Returns the path of the given node or {@code null} if it cannot be found (e.g. it has been removed).
+   */
+  private String getPath( final NodeId nodeId ) {
+    try {
+      return session.getItemManager().getItem( nodeId ).getPath();
+    } catch ( RepositoryException e ) {
+      log.debug( "Unable to resolve path of node " + nodeId, e ); //$NON-NLS-1$
+      return null;
+    }
+  }
+
+  private static int getIntProperty( final String name, final int defaultValue ) {
+    String value = System.getProperty( name );
+    if ( value != null ) {
+      try {
+        return Integer.parseInt( value );
+      } catch ( NumberFormatException ex ) {
+        log.debug( "Parsing system property " + name + " with value: " + value, ex ); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    return defaultValue;
   }
 
   /**
@@ -274,8 +274,7 @@ public class PentahoEntryCollector extends EntryCollector {
   protected List<AccessControlEntry> getAcesIncludingMagicAces( final String path, final String owner,
                                                                 final ACLTemplate ancestorAcl, final ACLTemplate acl )
     throws RepositoryException {
-    if ( PentahoSessionHolder.getSession() == null || PentahoSessionHolder.getSession().getId() == null
-        || PentahoSessionHolder.getSession().getId().trim().equals( "" ) ) { //$NON-NLS-1$
+    if ( !hasPentahoSession() ) {
       if ( log.isDebugEnabled() ) {
         log.debug( "no PentahoSession so no magic ACEs" ); //$NON-NLS-1$
       }
@@ -285,15 +284,9 @@ public class PentahoEntryCollector extends EntryCollector {
       addOwnerAce( owner, acl );
     }
 
+    ACLTemplate sessionAcl = null;
     boolean match = false;
-    IRoleAuthorizationPolicyRoleBindingDao roleBindingDao = null;
-    try {
-      roleBindingDao =
-        PentahoSystem.getObjectFactory().get( IRoleAuthorizationPolicyRoleBindingDao.class,
-          "roleAuthorizationPolicyRoleBindingDaoTarget", PentahoSessionHolder.getSession() );
-    } catch ( ObjectFactoryException e ) {
-      e.printStackTrace();
-    }
+    IRoleAuthorizationPolicyRoleBindingDao roleBindingDao = getMagicAceRoleBindingDao();
 
     ITenant tenant = JcrTenantUtils.getTenant();
     for ( final MagicAceDefinition def : magicAceDefinitions ) {
@@ -322,21 +315,82 @@ public class PentahoEntryCollector extends EntryCollector {
         }
       }
       if ( match ) {
+        // resolves to the current session user at evaluation time so that these entries can be shared by every
+        // session with the same magic ACE context (see getMagicAceContextKey)
         Principal principal =
-            new MagicPrincipal( JcrTenantUtils.getTenantedUser( PentahoSessionHolder.getSession().getName() ) );
+            new SessionMagicPrincipal( JcrTenantUtils.getTenantedUser( PentahoSessionHolder.getSession().getName() ) );
         // unfortunately, we need the ACLTemplate because it alone can create ACEs that can be cast successfully
         // later;
         // changed never persisted
-        acl.addAccessControlEntry( principal, def.privileges );
+        if ( sessionAcl == null ) {
+          sessionAcl = createEmptyAcl( acl );
+        }
+        sessionAcl.addAccessControlEntry( principal, def.privileges );
       }
     }
 
     List<AccessControlEntry> acEntries = new ArrayList<AccessControlEntry>();
     acEntries.addAll( acl.getEntries() ); // leaf ACEs go first so ACL metadata ACE stays first
+    if ( sessionAcl != null ) {
+      acEntries.addAll( sessionAcl.getEntries() );
+    }
     acEntries.addAll( getRelevantAncestorAces( ancestorAcl ) );
     return acEntries;
   }
 
+  /**
+   * Returns an ACL of the same node as {@code acl}, without any entries. ACEs of {@link SessionMagicPrincipal}s are
+   * kept in such an ACL, apart from those of other principals: {@code ACLTemplate} merges the ACEs of principals with
+   * the same name, and the name of a {@code SessionMagicPrincipal} is that of whichever user reads the entries. Merged
+   * with the owner or an explicitly granted user, they would either hand that user's privileges to every session
+   * sharing the entries, or lose the magic ACE.
+   * <p/>
+   * <p> Modifications to this ACL are not persisted. </p>
+   */
+  protected ACLTemplate createEmptyAcl( final ACLTemplate acl ) throws RepositoryException {
+    NodeImpl node = (NodeImpl) systemSession.getNode( acl.getPath() );
+    ACLTemplate emptyAcl = new ACLTemplate( node.getNode( N_POLICY ) );
+    for ( AccessControlEntry entry : new ArrayList<AccessControlEntry>( emptyAcl.getEntries() ) ) {
+      emptyAcl.removeAccessControlEntry( entry );
+    }
+    return emptyAcl;
+  }
+
+  /**
+   * Returns a key identifying the magic ACEs that the current session is entitled to: its tenant and the magic ACE
+   * definitions granted by its logical roles. Sessions with equal keys get identical {@code Entries} for any given
+   * node, which is what allows {@link CachingPentahoEntryCollector} to share cached entries between them.
+   */
+  protected String getMagicAceContextKey() throws RepositoryException {
+    if ( !hasPentahoSession() ) {
+      return ""; //$NON-NLS-1$
+    }
+    IRoleAuthorizationPolicyRoleBindingDao roleBindingDao = getMagicAceRoleBindingDao();
+    StringBuilder key = new StringBuilder( JcrTenantUtils.getTenant().getRootFolderAbsolutePath() ).append( '|' );
+    for ( final MagicAceDefinition def : magicAceDefinitions ) {
+      key.append( isAllowed( roleBindingDao, def.logicalRole ) ? '1' : '0' );
+    }
+    return key.toString();
+  }
+
+  protected boolean hasPentahoSession() {
+    IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    return pentahoSession != null && pentahoSession.getId() != null
+        && !pentahoSession.getId().trim().equals( "" ); //$NON-NLS-1$
+  }
+
+  protected IRoleAuthorizationPolicyRoleBindingDao getMagicAceRoleBindingDao() {
+    IRoleAuthorizationPolicyRoleBindingDao roleBindingDao = null;
+    try {
+      roleBindingDao =
+        PentahoSystem.getObjectFactory().get( IRoleAuthorizationPolicyRoleBindingDao.class,
+          "roleAuthorizationPolicyRoleBindingDaoTarget", PentahoSessionHolder.getSession() );
+    } catch ( ObjectFactoryException e ) {
+      e.printStackTrace();
+    }
+    return roleBindingDao;
+  }
+
   /**
    * Selects (and modifies) ACEs containing JCR_ADD_CHILD_NODES or JCR_REMOVE_CHILD_NODES privileges from the given
    * ACL.
@@ -357,6 +411,8 @@ public class PentahoEntryCollector extends EntryCollector {
     Privilege removeChildNodesPrivilege =
         systemSession.getAccessControlManager().privilegeFromName( Privilege.JCR_REMOVE_CHILD_NODES );
 
+    // ACEs of the session user are kept apart, see createEmptyAcl
+    ACLTemplate sessionAcl = null;
     for ( AccessControlEntry entry : fullEntriesIncludingMagicACEs.getACEs() ) {
       List<Privilege> privs = new ArrayList<Privilege>( 2 );
       Privilege[] expandedPrivileges = JcrRepositoryFileAclUtils.expandPrivileges( entry.getPrivileges(), false );
@@ -366,6 +422,15 @@ public class PentahoEntryCollector extends EntryCollector {
       if ( ArrayUtils.contains( expandedPrivileges, removeChildNodesPrivilege ) ) {
         privs.add( removeChildNodesPrivilege );
       }
+      if ( entry.getPrincipal() instanceof SessionMagicPrincipal ) {
+        if ( !privs.isEmpty() ) {
+          if ( sessionAcl == null ) {
+            sessionAcl = createEmptyAcl( ancestorAcl );
+          }
+          sessionAcl.addAccessControlEntry( entry.getPrincipal(), privs.toArray( new Privilege[ privs.size() ] ) );
+        }
+        continue;
+      }
       // remove all physical entries from the ACL. MagicAces will not be present in the ACL Entries, so we check
       // before
       // trying to remove
@@ -379,20 +444,40 @@ public class PentahoEntryCollector extends EntryCollector {
         // clone to new list to allow concurrent modification
         List<AccessControlEntry> entries = new LinkedList<AccessControlEntry>( ancestorAcl.getEntries() );
         for ( AccessControlEntry accessControlEntry : entries ) {
-          if ( accessControlEntry.getPrincipal().getName().equals( entry.getPrincipal().getName() ) ) {
+          if ( isSamePrincipal( accessControlEntry.getPrincipal(), entry.getPrincipal() ) ) {
             ancestorAcl.removeAccessControlEntry( accessControlEntry );
           }
         }
-        if ( !ancestorAcl.addAccessControlEntry( entry.getPrincipal() instanceof Group ? new MagicGroup( entry
-            .getPrincipal().getName() ) : new MagicPrincipal( entry.getPrincipal().getName() ), privs
-            .toArray( new Privilege[ privs.size() ] ) ) ) {
+        Principal magicPrincipal;
+        if ( entry.getPrincipal() instanceof Group ) {
+          magicPrincipal = new MagicGroup( entry.getPrincipal().getName() );
+        } else {
+          magicPrincipal = new MagicPrincipal( entry.getPrincipal().getName() );
+        }
+        if ( !ancestorAcl.addAccessControlEntry( magicPrincipal, privs.toArray( new Privilege[ privs.size() ] ) ) ) {
           // we can never fail to add this entry because it means we may be giving more permission than the above
           // two
           throw new RuntimeException();
         }
       }
     }
-    return ancestorAcl.getEntries();
+    if ( sessionAcl == null ) {
+      return ancestorAcl.getEntries();
+    }
+    List<AccessControlEntry> acEntries = new ArrayList<AccessControlEntry>( ancestorAcl.getEntries() );
+    acEntries.addAll( sessionAcl.getEntries() );
+    return acEntries;
+  }
+
+  /**
+   * Principals are matched by name, except that a {@link SessionMagicPrincipal} only ever matches another one: its name
+   * depends on the session evaluating it and must not be compared with fixed principal names.
+   */
+  private boolean isSamePrincipal( final Principal principal, final Principal other ) {
+    if ( principal instanceof SessionMagicPrincipal || other instanceof SessionMagicPrincipal ) {
+      return principal.equals( other );
+    }
+    return principal.getName().equals( other.getName() );
   }
 
   /**
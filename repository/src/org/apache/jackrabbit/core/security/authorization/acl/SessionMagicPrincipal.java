@@ -0,0 +1,70 @@
+/*!
+ * Copyright 2010 - 2014 Pentaho Corporation.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.repository2.unified.jcr.JcrTenantUtils;
+
+/**
+ * {@code MagicPrincipal} standing for "the user of the current session" in magic ACEs granted by magic ACE
+ * definitions.
+ * 
+ * <p>
+ * Its name is resolved against {@link PentahoSessionHolder} each time it is read, so the same ACE evaluates correctly
+ * for every session that was granted it. This is what allows {@link CachingPentahoEntryCollector} to share entries
+ * between sessions. The name given at construction is only used when no session is available.
+ * </p>
+ * 
+ * <p>
+ * Since its name changes with the session, it is not compared by name: all instances stand for the same principal.
+ * </p>
+ */
+public class SessionMagicPrincipal extends MagicPrincipal {
+
+  private static final long serialVersionUID = 2571863024551270358L;
+
+  public SessionMagicPrincipal( final String name ) {
+    super( name );
+  }
+
+  @Override
+  public String getName() {
+    IPentahoSession pentahoSession = PentahoSessionHolder.getSession();
+    if ( pentahoSession == null || pentahoSession.getName() == null ) {
+      return super.getName();
+    }
+    return JcrTenantUtils.getTenantedUser( pentahoSession.getName() );
+  }
+
+  @Override
+  public int hashCode() {
+    return SessionMagicPrincipal.class.hashCode();
+  }
+
+  @Override
+  public boolean equals( Object obj ) {
+    return obj != null && getClass() == obj.getClass();
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "SessionMagicPrincipal [name=" + getName() + "]";
+  }
+
+}
@@ -0,0 +1,188 @@
+/*!
+ * Copyright 2010 - 2014 Pentaho Corporation.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.jackrabbit.core.cache.GrowingLRUMap;
+
+/**
+ * Bounded LRU cache of permission evaluations used by {@link PentahoCompiledPermissionsImpl}.
+ * 
+ * <p>
+ * Keys are spread over a number of independently locked stripes so that concurrent readers of a shared compiled
+ * permissions instance do not contend on a single monitor. Each value remembers the path of the item it was evaluated
+ * for, which allows {@link #removeSubtree(String)} to invalidate only the items below a modified ACL, and those in
+ * version storage.
+ * </p>
+ * 
+ * @param <K>
+ *          key type
+ * @param <V>
+ *          value type
+ */
+class StripedPermissionCache<K, V> {
+
+  private static final String VERSION_STORAGE_PATH = "/jcr:system/jcr:versionStorage"; //$NON-NLS-1$
+
+  private final Map<K, PathValue<V>>[] stripes;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Incremented on every invalidation; see {@link #put(Object, String, Object, long)}.
+   */
+  private final AtomicLong generation = new AtomicLong();
+
+  /**
+   * @param maxSize
+   *          maximum number of cached values, divided evenly between stripes
+   * @param stripeCount
+   *          number of independently locked stripes
+   */
+  @SuppressWarnings( "unchecked" )
+  StripedPermissionCache( final int maxSize, final int stripeCount ) {
+    if ( maxSize < 1 || stripeCount < 1 ) {
+      throw new IllegalArgumentException( "maxSize and stripeCount must be positive" ); //$NON-NLS-1$
+    }
+    int stripeSize = Math.max( 1, maxSize / stripeCount );
+    stripes = new Map[stripeCount];
+    for ( int i = 0; i < stripeCount; i++ ) {
+      stripes[i] = new GrowingLRUMap( Math.min( 1024, stripeSize ), stripeSize );
+    }
+  }
+
+  private Map<K, PathValue<V>> getStripe( final Object key ) {
+    int h = key.hashCode();
+    h ^= ( h >>> 16 );
+    return stripes[( h & 0x7fffffff ) % stripes.length];
+  }
+
+  /**
+   * Returns the cached value or {@code null}; counts a hit or a miss.
+   */
+  V get( final K key ) {
+    Map<K, PathValue<V>> stripe = getStripe( key );
+    PathValue<V> pathValue;
+    synchronized ( stripe ) {
+      pathValue = stripe.get( key );
+    }
+    if ( pathValue == null ) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return pathValue.value;
+  }
+
+  /**
+   * Returns the current generation, to be passed to {@link #put(Object, String, Object, long)} once the value has been
+   * computed.
+   */
+  long getGeneration() {
+    return generation.get();
+  }
+
+  /**
+   * Caches a value computed for the item at {@code path}, unless the cache has been invalidated since
+   * {@code readGeneration} in which case the value may already be stale.
+   */
+  void put( final K key, final String path, final V value, final long readGeneration ) {
+    Map<K, PathValue<V>> stripe = getStripe( key );
+    synchronized ( stripe ) {
+      if ( readGeneration == generation.get() ) {
+        stripe.put( key, new PathValue<V>( path, value ) );
+      }
+    }
+  }
+
+  /**
+   * Removes all values evaluated for the item at {@code path} or any of its descendants. Values evaluated for items in
+   * version storage are removed as well, as their permissions come from the ACL of their versionable node, wherever
+   * that is.
+   */
+  void removeSubtree( final String path ) {
+    generation.incrementAndGet();
+    String prefix = path.endsWith( "/" ) ? path : path + "/"; //$NON-NLS-1$ //$NON-NLS-2$
+    for ( Map<K, PathValue<V>> stripe : stripes ) {
+      synchronized ( stripe ) {
+        List<K> removed = new ArrayList<K>();
+        for ( Map.Entry<K, PathValue<V>> entry : stripe.entrySet() ) {
+          String valuePath = entry.getValue().path;
+          if ( valuePath == null || valuePath.equals( path ) || valuePath.startsWith( prefix )
+              || valuePath.startsWith( VERSION_STORAGE_PATH ) ) {
+            removed.add( entry.getKey() );
+          }
+        }
+        for ( K key : removed ) {
+          stripe.remove( key );
+        }
+      }
+    }
+  }
+
+  void clear() {
+    generation.incrementAndGet();
+    for ( Map<K, PathValue<V>> stripe : stripes ) {
+      synchronized ( stripe ) {
+        stripe.clear();
+      }
+    }
+  }
+
+  int size() {
+    int size = 0;
+    for ( Map<K, PathValue<V>> stripe : stripes ) {
+      synchronized ( stripe ) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  long getHitCount() {
+    return hits.get();
+  }
+
+  long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public String toString() {
+    return "StripedPermissionCache [size=" + size() + ", hits=" + hits.get() //$NON-NLS-1$ //$NON-NLS-2$
+        + ", misses=" + misses.get() + "]"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  private static class PathValue<V> {
+
+    private final String path;
+
+    private final V value;
+
+    PathValue( final String path, final V value ) {
+      this.path = path;
+      this.value = value;
+    }
+  }
+}
@@ -23,6 +23,7 @@ import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.usersettings.IUserSettingService;
 import org.pentaho.platform.api.usersettings.pojo.IUserSetting;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.repository.usersettings.pojo.UserSetting;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
@@ -31,11 +32,26 @@ import org.slf4j.LoggerFactory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stores user settings in the metadata of the user's home folder, and global settings in that of the etc folder.
+ * <p/>
+ * The settings of each user, and the global settings, are read from the repository once and then served from memory.
+ * They are reloaded after being changed through this service, and otherwise after
+ * <code>user-settings-cache/ttl-seconds</code> (60 by default), to pick up metadata written by other means. The
+ * settings of at most <code>user-settings-cache/max-entries</code> (1000 by default) users are kept.
+ */
 public class UserSettingService implements IUserSettingService {
 
   public static final String SETTING_PREFIX = "_USERSETTING"; //$NON-NLS-1$
@@ -45,8 +61,67 @@ public class UserSettingService implements IUserSettingService {
   protected IUnifiedRepository repository;
   private Logger log = LoggerFactory.getLogger( getClass() );
 
+  private static final int VERSION_STRIPES = 256;
+
+  private final long ttl;
+
+  private final int maxEntries;
+
+  // settings by user name
+  private final ConcurrentMap<String, CachedSettings> userSettingsCache =
+      new ConcurrentHashMap<String, CachedSettings>();
+
+  // versions of the user settings, by a hash of the user name; incremented by every change to the settings of a user,
+  // so that settings of that user loaded while the change was being made are not used
+  private final AtomicLongArray userSettingsVersions = new AtomicLongArray( VERSION_STRIPES );
+
+  private volatile CachedSettings globalSettingsCache;
+
+  // incremented by every change to the global settings
+  private final AtomicLong globalSettingsVersion = new AtomicLong();
+
+  /**
+   * The settings stored in the metadata of a folder, by name without the prefix.
+   */
+  private static class CachedSettings {
+    private final Map<String, String> settings;
+
+    private final long version;
+
+    private final long loaded = System.currentTimeMillis();
+
+    CachedSettings( Map<String, Serializable> metadata, long version ) {
+      Map<String, String> settings = new LinkedHashMap<String, String>();
+      for ( Map.Entry<String, Serializable> entry : metadata.entrySet() ) {
+        if ( entry.getKey().startsWith( SETTING_PREFIX ) ) {
+          settings.put( entry.getKey().substring( SETTING_PREFIX.length() ), entry.getValue().toString() );
+        }
+      }
+      this.settings = Collections.unmodifiableMap( settings );
+      this.version = version;
+    }
+
+    boolean isCurrent( long currentVersion, long ttl ) {
+      return version == currentVersion && loaded + ttl > System.currentTimeMillis();
+    }
+  }
+
   public UserSettingService( IUnifiedRepository repository ) {
     this.repository = repository;
+    long ttlSeconds = 60;
+    int maxEntries = 1000;
+    try {
+      ttlSeconds =
+          Long.parseLong( PentahoSystem.getSystemSetting( "user-settings-cache/ttl-seconds", //$NON-NLS-1$
+              String.valueOf( ttlSeconds ) ).trim() );
+      maxEntries =
+          Integer.parseInt( PentahoSystem.getSystemSetting( "user-settings-cache/max-entries", //$NON-NLS-1$
+              String.valueOf( maxEntries ) ).trim() );
+    } catch ( NumberFormatException e ) {
+      log.warn( "Invalid user-settings-cache setting", e ); //$NON-NLS-1$
+    }
+    this.ttl = ttlSeconds * 1000;
+    this.maxEntries = maxEntries;
   }
 
   public void init( IPentahoSession session ) {
@@ -70,6 +145,7 @@ public class UserSettingService implements IUserSettingService {
       }
     }
     repository.setFileMetadata( id, finalMetadata );
+    invalidateUserSettings( PentahoSessionHolder.getSession().getName() );
   }
 
   // ////////////////////////////////////////////////////////////////////////////////////////////////
@@ -81,34 +157,18 @@ public class UserSettingService implements IUserSettingService {
     // merge unseen global settings into the user settings list
     List<IUserSetting> userSettings = new ArrayList<IUserSetting>();
 
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    for ( String key : tenantMetadata.keySet() ) {
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = new UserSetting();
-        setting.setSettingName( key.substring( SETTING_PREFIX.length() ) );
-        setting.setSettingValue( tenantMetadata.get( key ).toString() );
-        userSettings.add( setting );
-      }
+    for ( Map.Entry<String, String> entry : getGlobalSettings().entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
 
-    String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-    Serializable userHomeId = repository.getFile( homePath ).getId();
-    Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-    for ( String key : userMetadata.keySet() ) {
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = new UserSetting();
-        setting.setSettingName( key.substring( SETTING_PREFIX.length() ) );
-        setting.setSettingValue( userMetadata.get( key ).toString() );
-        // see if a global setting exists which will be overridden
-        if ( userSettings.contains( setting ) ) {
-          userSettings.remove( setting );
-        }
-        userSettings.add( setting );
+    for ( Map.Entry<String, String> entry : getUserSettings( PentahoSessionHolder.getSession().getName() )
+        .entrySet() ) {
+      UserSetting setting = createSetting( entry.getKey(), entry.getValue() );
+      // see if a global setting exists which will be overridden
+      if ( userSettings.contains( setting ) ) {
+        userSettings.remove( setting );
       }
+      userSettings.add( setting );
     }
     return userSettings;
   }
@@ -118,35 +178,12 @@ public class UserSettingService implements IUserSettingService {
     boolean hasAuth = PentahoSessionHolder.getSession().getAttribute( "SPRING_SECURITY_CONTEXT" ) != null;
     if ( hasAuth ) {
       try {
-        String homePath = ClientRepositoryPaths.getUserHomeFolderPath( PentahoSessionHolder.getSession().getName() );
-
-        Serializable userHomeId = repository.getFile( homePath ).getId();
-        Map<String, Serializable> userMetadata = repository.getFileMetadata( userHomeId );
-
-        for ( String key : userMetadata.keySet() ) {
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            UserSetting setting = new UserSetting();
-            setting.setSettingName( key.substring( SETTING_PREFIX.length() ) );
-            setting.setSettingValue( userMetadata.get( key ).toString() );
-            if ( setting.getSettingName().equals( settingName ) ) {
-              return setting;
-            }
-          }
+        String value = getUserSettings( PentahoSessionHolder.getSession().getName() ).get( settingName );
+        if ( value == null ) {
+          value = getGlobalSettings().get( settingName );
         }
-
-        String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-        Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-        Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-        for ( String key : tenantMetadata.keySet() ) {
-          if ( key.startsWith( SETTING_PREFIX ) ) {
-            UserSetting setting = new UserSetting();
-            setting.setSettingName( key.substring( SETTING_PREFIX.length() ) );
-            setting.setSettingValue( tenantMetadata.get( key ).toString() );
-            if ( setting.getSettingName().equals( settingName ) ) {
-              return setting;
-            }
-          }
+        if ( value != null ) {
+          return createSetting( settingName, value );
         }
       } catch ( Throwable ignored ) {
         // if anything goes wrong with authentication (anonymous user) or permissions
@@ -154,10 +191,7 @@ public class UserSettingService implements IUserSettingService {
         // we'll see *many* errors in the logs which are not helpful
       }
     }
-    UserSetting defaultSetting = new UserSetting();
-    defaultSetting.setSettingName( settingName );
-    defaultSetting.setSettingValue( defaultValue );
-    return defaultSetting;
+    return createSetting( settingName, defaultValue );
   }
 
   public void setUserSetting( String settingName, String settingValue ) {
@@ -187,6 +221,7 @@ public class UserSettingService implements IUserSettingService {
             + settingValue, e );
         log.error( "Error storing user setting", e );
       }
+      invalidateUserSettings( name );
     }
   }
 
@@ -195,37 +230,14 @@ public class UserSettingService implements IUserSettingService {
   // ////////////////////////////////////////////////////////////////////////////////////////////////
 
   public IUserSetting getGlobalUserSetting( String settingName, String defaultValue ) {
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    if ( tenantMetadata.containsKey( SETTING_PREFIX + settingName ) ) {
-      UserSetting setting = new UserSetting();
-      setting.setSettingName( settingName );
-      setting.setSettingValue( tenantMetadata.get( SETTING_PREFIX + settingName ).toString() );
-      return setting;
-    }
-
-    UserSetting defaultSetting = new UserSetting();
-    defaultSetting.setSettingName( settingName );
-    defaultSetting.setSettingValue( defaultValue );
-    return defaultSetting;
+    String value = getGlobalSettings().get( settingName );
+    return createSetting( settingName, value != null ? value : defaultValue );
   }
 
   public List<IUserSetting> getGlobalUserSettings() {
     List<IUserSetting> userSettings = new ArrayList<IUserSetting>();
-
-    String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
-    Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
-    Map<String, Serializable> tenantMetadata = repository.getFileMetadata( tenantHomeId );
-
-    for ( String key : tenantMetadata.keySet() ) {
-      if ( key.startsWith( SETTING_PREFIX ) ) {
-        UserSetting setting = new UserSetting();
-        setting.setSettingName( key.substring( SETTING_PREFIX.length() ) );
-        setting.setSettingValue( tenantMetadata.get( key ).toString() );
-        userSettings.add( setting );
-      }
+    for ( Map.Entry<String, String> entry : getGlobalSettings().entrySet() ) {
+      userSettings.add( createSetting( entry.getKey(), entry.getValue() ) );
     }
     return userSettings;
   }
@@ -240,7 +252,74 @@ public class UserSettingService implements IUserSettingService {
       }
       tenantMetadata.put( SETTING_PREFIX + settingName, settingValue );
       repository.setFileMetadata( tenantHomeId, tenantMetadata );
+      globalSettingsVersion.incrementAndGet();
+      globalSettingsCache = null;
+    }
+  }
+
+  // ////////////////////////////////////////////////////////////////////////////////////////////////
+  // CACHE
+  // ////////////////////////////////////////////////////////////////////////////////////////////////
+
+  private Map<String, String> getUserSettings( String userName ) {
+    long currentVersion = userSettingsVersions.get( getVersionStripe( userName ) );
+    CachedSettings cached = userSettingsCache.get( userName );
+    if ( cached == null || !cached.isCurrent( currentVersion, ttl ) ) {
+      String homePath = ClientRepositoryPaths.getUserHomeFolderPath( userName );
+      Serializable userHomeId = repository.getFile( homePath ).getId();
+      cached = new CachedSettings( repository.getFileMetadata( userHomeId ), currentVersion );
+      userSettingsCache.put( userName, cached );
+      if ( userSettingsCache.size() > maxEntries ) {
+        evictUserSettings();
+      }
     }
+    return cached.settings;
+  }
+
+  private Map<String, String> getGlobalSettings() {
+    long currentVersion = globalSettingsVersion.get();
+    CachedSettings cached = globalSettingsCache;
+    if ( cached == null || !cached.isCurrent( currentVersion, ttl ) ) {
+      String tentantHomePath = ClientRepositoryPaths.getEtcFolderPath();
+      Serializable tenantHomeId = repository.getFile( tentantHomePath ).getId();
+      cached = new CachedSettings( repository.getFileMetadata( tenantHomeId ), currentVersion );
+      globalSettingsCache = cached;
+    }
+    return cached.settings;
+  }
+
+  private void invalidateUserSettings( String userName ) {
+    userSettingsVersions.incrementAndGet( getVersionStripe( userName ) );
+    userSettingsCache.remove( userName );
+  }
+
+  /**
+   * Removes the expired user settings, then as many others as needed to keep at most <code>maxEntries</code>.
+   */
+  private void evictUserSettings() {
+    Iterator<Map.Entry<String, CachedSettings>> entries = userSettingsCache.entrySet().iterator();
+    while ( entries.hasNext() ) {
+      Map.Entry<String, CachedSettings> entry = entries.next();
+      if ( !entry.getValue().isCurrent( userSettingsVersions.get( getVersionStripe( entry.getKey() ) ), ttl ) ) {
+        entries.remove();
+      }
+    }
+    entries = userSettingsCache.entrySet().iterator();
+    while ( userSettingsCache.size() > maxEntries && entries.hasNext() ) {
+      entries.next();
+      entries.remove();
+    }
+  }
+
+  private static int getVersionStripe( String userName ) {
+    return ( userName.hashCode() & Integer.MAX_VALUE ) % VERSION_STRIPES;
+  }
+
+  private static UserSetting createSetting( String settingName, String settingValue ) {
+    UserSetting setting = new UserSetting();
+    setting.setSettingName( settingName );
+    setting.setSettingValue( settingValue );
+    return setting;
   }
 
 }
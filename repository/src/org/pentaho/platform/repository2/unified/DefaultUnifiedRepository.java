@@ -534,6 +534,23 @@ public class DefaultUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    Assert.notNull( files );
+    return repositoryFileDao.getFileMetadataInBatch( files );
+  }
+
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    Assert.notNull( repositoryRequest );
+    return repositoryFileDao.getChildrenWithMetadata( repositoryRequest );
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    Assert.notNull( folderId );
+    return repositoryFileDao.getChildrenByMetadata( folderId, metadataKey, metadataValue );
+  }
+
   public List<Character> getReservedChars() {
     return repositoryFileDao.getReservedChars();
   }
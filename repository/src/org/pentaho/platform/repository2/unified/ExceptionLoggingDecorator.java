@@ -540,6 +540,33 @@ public class ExceptionLoggingDecorator implements IUnifiedRepository {
     }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadata", fileId ) ); //$NON-NLS-1$
   }
 
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    return callLogThrow( new Callable<List<Map<String, Serializable>>>() {
+      public List<Map<String, Serializable>> call() throws Exception {
+        return delegatee.getFileMetadataInBatch( files );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getFileMetadataInBatch" ) ); //$NON-NLS-1$
+  }
+
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    return callLogThrow( new Callable<Map<RepositoryFile, Map<String, Serializable>>>() {
+      public Map<RepositoryFile, Map<String, Serializable>> call() throws Exception {
+        return delegatee.getChildrenWithMetadata( repositoryRequest );
+      }
+    }, Messages.getInstance().getString(
+        "ExceptionLoggingDecorator.getChildren", repositoryRequest.getPath() ) ); //$NON-NLS-1$
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    return callLogThrow( new Callable<List<RepositoryFile>>() {
+      public List<RepositoryFile> call() throws Exception {
+        return delegatee.getChildrenByMetadata( folderId, metadataKey, metadataValue );
+      }
+    }, Messages.getInstance().getString( "ExceptionLoggingDecorator.getChildren", folderId ) ); //$NON-NLS-1$
+  }
+
   public List<Character> getReservedChars() {
     return callLogThrow( new Callable<List<Character>>() {
       public List<Character> call() throws Exception {
@@ -119,6 +119,13 @@ public interface IRepositoryFileDao {
 
   Map<String, Serializable> getFileMetadata( final Serializable fileId );
 
+  List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files );
+
+  Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata( RepositoryRequest repositoryRequest );
+
+  List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue );
+
   List<Character> getReservedChars();
 
   List<Locale> getAvailableLocalesForFileById( final Serializable fileId );
@@ -53,6 +53,14 @@ public class RepositoryAccessVoterManagerInst implements IRepositoryAccessVoterM
     voters.add( voter );
   }
 
+  /**
+   * Returns {@code false} if {@link #hasAccess} is known to grant access to any file for the current user, in which
+   * case callers evaluating many files may skip loading their ACLs.
+   */
+  public boolean isVotingRequired() {
+    return voters != null && !voters.isEmpty() && !authorizationPolicy.isAllowed( AdministerSecurityAction.NAME );
+  }
+
   @Override
   public boolean hasAccess( RepositoryFile file, RepositoryFilePermission operation,
       RepositoryFileAcl repositoryFileAcl, IPentahoSession session ) {
@@ -18,6 +18,7 @@
 
 package org.pentaho.platform.repository2.unified.fileio;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.pentaho.platform.api.repository2.unified.ISourcesStreamEvents;
 import org.pentaho.platform.api.repository2.unified.IStreamListener;
@@ -28,18 +29,33 @@ import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.repository.RepositoryFilenameUtils;
 import org.pentaho.platform.util.web.MimeHelper;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Writes a file to the repository when flushed or closed. Content is buffered in memory until it exceeds the spill
+ * threshold (the <code>repository-file-output-stream/spill-threshold</code> system setting, in bytes), after which it
+ * is written to a temporary file so that large outputs are streamed to the repository from disk instead of being held
+ * in, and copied on, the heap.
+ */
 public class RepositoryFileOutputStream extends ByteArrayOutputStream implements ISourcesStreamEvents {
 
+  public static final int DEFAULT_SPILL_THRESHOLD = 4 * 1024 * 1024;
+
   protected boolean hidden = false;
   protected String path = null;
   protected IUnifiedRepository repository;
@@ -49,6 +65,10 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
   protected boolean closed = false;
   protected boolean flushed = false;
   protected ArrayList<IStreamListener> listeners = new ArrayList<IStreamListener>();
+  protected int spillThreshold = getDefaultSpillThreshold();
+  protected File spillFile = null;
+  protected OutputStream spillStream = null;
+  protected long spilledCount = 0;
 
   public RepositoryFileOutputStream( final String path, final boolean autoCreateUniqueFileName,
       final boolean autoCreateDirStructure, final IUnifiedRepository repository, final boolean hidden ) {
@@ -143,12 +163,163 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     return repository.getFile( parentPath );
   }
 
+  private static int getDefaultSpillThreshold() {
+    try {
+      String threshold =
+          PentahoSystem.getSystemSetting( "repository-file-output-stream/spill-threshold", //$NON-NLS-1$
+              String.valueOf( DEFAULT_SPILL_THRESHOLD ) );
+      return Integer.parseInt( threshold.trim() );
+    } catch ( NumberFormatException e ) {
+      return DEFAULT_SPILL_THRESHOLD;
+    }
+  }
+
+  @Override
+  public synchronized void write( int b ) {
+    if ( spillStream == null && count + 1 > spillThreshold ) {
+      spill();
+    }
+    if ( spillStream != null ) {
+      try {
+        spillStream.write( b );
+        spilledCount++;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    } else {
+      super.write( b );
+    }
+  }
+
+  @Override
+  public synchronized void write( byte[] b, int off, int len ) {
+    if ( spillStream == null && count + len > spillThreshold ) {
+      spill();
+    }
+    if ( spillStream != null ) {
+      try {
+        spillStream.write( b, off, len );
+        spilledCount += len;
+      } catch ( IOException e ) {
+        throw new IllegalStateException( e );
+      }
+    } else {
+      super.write( b, off, len );
+    }
+  }
+
+  /**
+   * Moves the content buffered so far to a temporary file, to which the rest of the content is then written.
+   */
+  protected void spill() {
+    try {
+      spillFile = File.createTempFile( "repositoryfile", ".tmp" ); //$NON-NLS-1$ //$NON-NLS-2$
+      spillStream = new BufferedOutputStream( new FileOutputStream( spillFile ) );
+      spillStream.write( buf, 0, count );
+      spilledCount = count;
+    } catch ( IOException e ) {
+      discardSpillFile();
+      throw new IllegalStateException( e );
+    }
+    // release the memory buffer
+    count = 0;
+    buf = new byte[32];
+  }
+
+  protected void discardSpillFile() {
+    if ( spillStream != null ) {
+      try {
+        spillStream.close();
+      } catch ( IOException e ) {
+        // nothing more can be done with it
+      }
+      spillStream = null;
+    }
+    if ( spillFile != null ) {
+      spillFile.delete();
+      spillFile = null;
+    }
+    spilledCount = 0;
+  }
+
+  /**
+   * @return true if the content has been moved to a temporary file
+   */
+  public boolean isSpilled() {
+    return spillFile != null;
+  }
+
+  public int getSpillThreshold() {
+    return spillThreshold;
+  }
+
+  /**
+   * Sets the number of bytes buffered in memory before content is written to a temporary file instead.
+   */
+  public void setSpillThreshold( int spillThreshold ) {
+    this.spillThreshold = spillThreshold;
+  }
+
+  @Override
+  public synchronized int size() {
+    return spillFile != null ? (int) Math.min( Integer.MAX_VALUE, spilledCount ) : super.size();
+  }
+
+  @Override
+  public synchronized byte[] toByteArray() {
+    if ( spillFile == null ) {
+      return super.toByteArray();
+    }
+    ByteArrayOutputStream copy = new ByteArrayOutputStream();
+    try {
+      writeTo( copy );
+    } catch ( IOException e ) {
+      throw new IllegalStateException( e );
+    }
+    return copy.toByteArray();
+  }
+
+  @Override
+  public synchronized void writeTo( OutputStream out ) throws IOException {
+    if ( spillFile == null ) {
+      super.writeTo( out );
+      return;
+    }
+    spillStream.flush();
+    InputStream in = new FileInputStream( spillFile );
+    try {
+      IOUtils.copy( in, out );
+    } finally {
+      in.close();
+    }
+  }
+
+  @Override
+  public synchronized void reset() {
+    discardSpillFile();
+    super.reset();
+  }
+
+  /**
+   * @return the content written so far, without copying it if it is held in memory
+   */
+  protected InputStream getContentStream() throws IOException {
+    if ( spillFile != null ) {
+      spillStream.flush();
+      return new BufferedInputStream( new FileInputStream( spillFile ) );
+    }
+    return new ByteArrayInputStream( buf, 0, count );
+  }
+
   @Override
   public void close() throws IOException {
     if ( !closed ) {
-      flush();
-      closed = true;
-      reset();
+      try {
+        flush();
+      } finally {
+        closed = true;
+        reset();
+      }
     }
   }
 
@@ -159,7 +330,15 @@ public class RepositoryFileOutputStream extends ByteArrayOutputStream implements
     }
     super.flush();
 
-    ByteArrayInputStream bis = new ByteArrayInputStream( toByteArray() );
+    InputStream bis = getContentStream();
+    try {
+      writeToRepository( bis );
+    } finally {
+      bis.close();
+    }
+  }
+
+  protected void writeToRepository( InputStream bis ) throws IOException {
 
     // make an effort to determine the correct mime type, default to application/octet-stream
     String ext = RepositoryFilenameUtils.getExtension( path );
@@ -298,6 +298,20 @@ public class FileSystemBackedUnifiedRepository implements IUnifiedRepository {
     return repositoryFileDao.getFileMetadata( fileId );
   }
 
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    return repositoryFileDao.getFileMetadataInBatch( files );
+  }
+
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    return repositoryFileDao.getChildrenWithMetadata( repositoryRequest );
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    return repositoryFileDao.getChildrenByMetadata( folderId, metadataKey, metadataValue );
+  }
+
   public void copyFile( Serializable fileId, String destAbsPath, String versionMessage ) {
     throw new UnsupportedOperationException();
   }
@@ -35,6 +35,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -468,6 +469,35 @@ public class FileSystemRepositoryFileDao implements IRepositoryFileDao {
     return metadata;
   }
 
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+    for ( RepositoryFile file : files ) {
+      metadata.add( getFileMetadata( file.getId() ) );
+    }
+    return metadata;
+  }
+
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    Map<RepositoryFile, Map<String, Serializable>> children =
+        new LinkedHashMap<RepositoryFile, Map<String, Serializable>>();
+    for ( RepositoryFile child : getChildren( repositoryRequest ) ) {
+      children.put( child, getFileMetadata( child.getId() ) );
+    }
+    return children;
+  }
+
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile child : getChildren( folderId ) ) {
+      if ( metadataValue.equals( getFileMetadata( child.getId() ).get( metadataKey ) ) ) {
+        children.add( child );
+      }
+    }
+    return children;
+  }
+
   public void copyFile( Serializable fileId, String destAbsPath, String versionMessage ) {
     throw new UnsupportedOperationException( "This operation is not support by this repository" );
   }
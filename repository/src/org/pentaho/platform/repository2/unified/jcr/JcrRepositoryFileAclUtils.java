@@ -45,6 +45,7 @@ import javax.jcr.security.Privilege;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashSet;
@@ -263,8 +264,26 @@ public class JcrRepositoryFileAclUtils {
       throw new RepositoryException( Messages.getInstance().getString(
           "JackrabbitRepositoryFileAclDao.ERROR_0001_NODE_NOT_FOUND", id.toString() ) ); //$NON-NLS-1$
     }
-    String absPath = node.getPath();
+    return getAcl( session, session.getAccessControlManager(), id, node.getPath() );
+  }
+
+  /**
+   * Returns the ACLs of the given nodes, in the same order. Equivalent to calling
+   * {@link #getAcl(Session, PentahoJcrConstants, Serializable)} for each node, but the nodes are not looked up again by
+   * id and the access control manager is only obtained once.
+   */
+  public static List<RepositoryFileAcl> getAcls( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final List<Node> nodes ) throws RepositoryException {
     AccessControlManager acMgr = session.getAccessControlManager();
+    List<RepositoryFileAcl> acls = new ArrayList<RepositoryFileAcl>( nodes.size() );
+    for ( Node node : nodes ) {
+      acls.add( getAcl( session, acMgr, node.getIdentifier(), node.getPath() ) );
+    }
+    return acls;
+  }
+
+  private static RepositoryFileAcl getAcl( final Session session, final AccessControlManager acMgr,
+      final Serializable id, final String absPath ) throws RepositoryException {
     AccessControlList acList = getAccessControlList( acMgr, absPath );
 
     RepositoryFileSid owner = null;
@@ -34,7 +34,9 @@ import org.springframework.util.Assert;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -203,6 +205,56 @@ public class JcrRepositoryFileDaoFacade implements IRepositoryFileDao {
     } );
   }
 
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    Assert.notNull( files );
+    return (List<Map<String, Serializable>>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( Session session ) throws IOException, RepositoryException {
+        List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( files.size() );
+        for ( RepositoryFile file : files ) {
+          Assert.notNull( file );
+          metadata.add( JcrRepositoryFileUtils.getFileMetadata( session, file.getId() ) );
+        }
+        return metadata;
+      }
+    } );
+  }
+
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    Assert.notNull( repositoryRequest.getPath() );
+    return (Map<RepositoryFile, Map<String, Serializable>>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        Map<RepositoryFile, Map<String, Serializable>> children =
+            new LinkedHashMap<RepositoryFile, Map<String, Serializable>>();
+        for ( RepositoryFile child : jcrRepositoryFileDao.getChildren( session, repositoryRequest ) ) {
+          children.put( child, JcrRepositoryFileUtils.getFileMetadata( session, child.getId() ) );
+        }
+        return children;
+      }
+    } );
+  }
+
+  @Override
+  @SuppressWarnings( "unchecked" )
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    Assert.notNull( folderId );
+    Assert.hasText( metadataKey );
+    Assert.notNull( metadataValue );
+    return (List<RepositoryFile>) jcrTemplate.execute( new JcrCallback() {
+      @Override
+      public Object doInJcr( final Session session ) throws RepositoryException, IOException {
+        return jcrRepositoryFileDao.getChildrenByMetadata( session, folderId, metadataKey, metadataValue );
+      }
+    } );
+  }
+
   @Override
   public List<Locale> getAvailableLocalesForFileById( Serializable fileId ) {
     return getAvailableLocalesForFile( getFileById( fileId, true ) );
@@ -319,6 +319,13 @@ public class JcrRepositoryFileDaoInst {
             repositoryRequest );
       }
 
+  public List<RepositoryFile> getChildrenByMetadata( final Session session, final Serializable folderId,
+      final String metadataKey, final String metadataValue ) throws RepositoryException {
+    PentahoJcrConstants pentahoJcrConstants = new PentahoJcrConstants( session );
+    return JcrRepositoryFileUtils.getChildrenByMetadata( session, pentahoJcrConstants, pathConversionHelper,
+        lockHelper, folderId, metadataKey, metadataValue );
+  }
+
   @SuppressWarnings( "deprecation" )
   public List<RepositoryFile> getChildren( final Session session, final Serializable folderId, final String filter,
       final Boolean showHiddenFiles ) throws RepositoryException, IOException {
@@ -0,0 +1,202 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2014 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.NodeIterator;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import org.apache.commons.lang.mutable.MutableBoolean;
+import org.apache.jackrabbit.util.ChildrenCollectorFilter;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManager;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManagerInst;
+
+/**
+ * Builds the {@link RepositoryFileTree} of a {@link RepositoryRequest} folder by folder.
+ * <p>
+ * For each folder the children are read in a single pass, filtered on name, type, node type and visibility, and only
+ * then checked for access as one batch: the ACLs of the whole batch are loaded together, and not at all when the
+ * access voters are known to grant access anyway (no voters registered or an administrator). Each child is converted
+ * to a {@link RepositoryFile} and checked only once.
+ * <p>
+ * The childNodeFilter is a filter on node names. Since JCR does not know a folder from a file (that is our construct),
+ * it is not capable of filtering out filenames but not folder names. Therefore, when a filter is given, folders that do
+ * not satisfy it are still traversed and reported if a file satisfying the filter is found somewhere below them.
+ * <p>
+ * Instances are not thread safe; they share the JCR session of the request, which must not be used concurrently.
+ */
+class JcrRepositoryFileTreeBuilder {
+
+  private final Session session;
+
+  private final PentahoJcrConstants pentahoJcrConstants;
+
+  private final IPathConversionHelper pathConversionHelper;
+
+  private final ILockHelper lockHelper;
+
+  private final IRepositoryAccessVoterManager accessVoterManager;
+
+  private final IPentahoSession pentahoSession;
+
+  private final String childNodeFilter;
+
+  private final boolean filtered;
+
+  private final boolean showHidden;
+
+  private final RepositoryRequest.FILES_TYPE_FILTER types;
+
+  private final boolean votingRequired;
+
+  JcrRepositoryFileTreeBuilder( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+      final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper,
+      final IRepositoryAccessVoterManager accessVoterManager, final RepositoryRequest repositoryRequest ) {
+    this.session = session;
+    this.pentahoJcrConstants = pentahoJcrConstants;
+    this.pathConversionHelper = pathConversionHelper;
+    this.lockHelper = lockHelper;
+    this.accessVoterManager = accessVoterManager;
+    this.pentahoSession = PentahoSessionHolder.getSession();
+    this.childNodeFilter = repositoryRequest.getChildNodeFilter();
+    this.filtered = childNodeFilter != null && !childNodeFilter.equals( "*" ); //$NON-NLS-1$
+    this.showHidden = repositoryRequest.isShowHidden();
+    this.types = repositoryRequest.getTypes();
+    this.votingRequired =
+        !( accessVoterManager instanceof RepositoryAccessVoterManagerInst )
+            || ( (RepositoryAccessVoterManagerInst) accessVoterManager ).isVotingRequired();
+  }
+
+  /**
+   * Returns the tree rooted at {@code rootNode} or {@code null} if the root itself is hidden or not readable.
+   */
+  RepositoryFileTree build( final Node rootNode, final int depth ) throws RepositoryException {
+    RepositoryFile rootFile =
+        JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, rootNode,
+            false, null );
+    if ( ( !showHidden && rootFile.isHidden() )
+        || !hasAccess( Collections.singletonList( rootNode ), Collections.singletonList( rootFile ) ).get( 0 ) ) {
+      return null;
+    }
+    return buildTree( rootNode, rootFile, depth, new MutableBoolean( false ) );
+  }
+
+  /**
+   * Returns the tree of an already accessible node. {@code foundFiltered} tells the caller if a file satisfying the
+   * childNodeFilter was encountered at any level up to the depth.
+   */
+  private RepositoryFileTree buildTree( final Node fileNode, final RepositoryFile file, final int depth,
+      final MutableBoolean foundFiltered ) throws RepositoryException {
+    // if depth is neither negative (indicating unlimited depth) nor positive (indicating at least one more level
+    // to go)
+    if ( depth == 0 ) {
+      return new RepositoryFileTree( file, null );
+    }
+
+    // single pass over the children: those satisfying the filter, and (if filtering) all other folders which may
+    // contain files satisfying it
+    boolean traverseAllFolders = filtered && JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, fileNode );
+    List<Node> childNodes = new ArrayList<Node>();
+    List<RepositoryFile> childFiles = new ArrayList<RepositoryFile>();
+    List<Boolean> childMatches = new ArrayList<Boolean>();
+    NodeIterator nodes = fileNode.getNodes();
+    while ( nodes.hasNext() ) {
+      Node childNode = nodes.nextNode();
+      boolean pentahoFolder = JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode );
+      boolean matches = matchesFilter( childNode ) && matchesTypes( pentahoFolder );
+      if ( matches ) {
+        foundFiltered.setValue( true );
+      } else if ( !( traverseAllFolders && pentahoFolder ) ) {
+        continue;
+      }
+      if ( !JcrRepositoryFileUtils.isSupportedNodeType( pentahoJcrConstants, childNode ) ) {
+        continue;
+      }
+      RepositoryFile childFile =
+          JcrRepositoryFileUtils.nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+              childNode );
+      if ( !showHidden && childFile.isHidden() ) {
+        continue;
+      }
+      childNodes.add( childNode );
+      childFiles.add( childFile );
+      childMatches.add( matches );
+    }
+
+    List<Boolean> access = hasAccess( childNodes, childFiles );
+    List<RepositoryFileTree> children = new ArrayList<RepositoryFileTree>( childNodes.size() );
+    for ( int i = 0; i < childNodes.size(); i++ ) {
+      if ( !access.get( i ) ) {
+        continue;
+      }
+      Node childNode = childNodes.get( i );
+      MutableBoolean childFoundFiltered =
+          new MutableBoolean( !JcrRepositoryFileUtils.isPentahoFolder( pentahoJcrConstants, childNode ) );
+      RepositoryFileTree childTree = buildTree( childNode, childFiles.get( i ), depth - 1, childFoundFiltered );
+      // folders not satisfying the filter themselves are only reported if they contain a file that does
+      if ( childFoundFiltered.booleanValue() || childMatches.get( i ) ) {
+        foundFiltered.setValue( true );
+        children.add( childTree );
+      }
+    }
+    Collections.sort( children );
+    return new RepositoryFileTree( file, children );
+  }
+
+  private boolean matchesFilter( final Node node ) throws RepositoryException {
+    return !filtered || ChildrenCollectorFilter.matches( node.getName(), childNodeFilter );
+  }
+
+  private boolean matchesTypes( final boolean pentahoFolder ) {
+    return !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS || pentahoFolder
+        && types == RepositoryRequest.FILES_TYPE_FILTER.FILES );
+  }
+
+  /**
+   * Evaluates READ access for a batch of files, loading their ACLs only if the voters may need them.
+   */
+  private List<Boolean> hasAccess( final List<Node> nodes, final List<RepositoryFile> files )
+    throws RepositoryException {
+    List<Boolean> access = new ArrayList<Boolean>( files.size() );
+    if ( !votingRequired ) {
+      for ( int i = 0; i < files.size(); i++ ) {
+        access.add( Boolean.TRUE );
+      }
+      return access;
+    }
+    List<RepositoryFileAcl> acls = JcrRepositoryFileAclUtils.getAcls( session, pentahoJcrConstants, nodes );
+    for ( int i = 0; i < files.size(); i++ ) {
+      access.add( accessVoterManager.hasAccess( files.get( i ), RepositoryFilePermission.READ, acls.get( i ),
+          pentahoSession ) );
+    }
+    return access;
+  }
+}
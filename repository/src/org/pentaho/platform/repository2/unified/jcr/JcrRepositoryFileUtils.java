@@ -25,7 +25,6 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -44,11 +43,16 @@ import javax.jcr.RepositoryException;
 import javax.jcr.Session;
 import javax.jcr.UnsupportedRepositoryOperationException;
 import javax.jcr.lock.Lock;
+import javax.jcr.query.Query;
+import javax.jcr.query.QueryResult;
+import javax.jcr.query.qom.Constraint;
+import javax.jcr.query.qom.QueryObjectModelConstants;
+import javax.jcr.query.qom.QueryObjectModelFactory;
+import javax.jcr.query.qom.Selector;
 import javax.jcr.version.Version;
 import javax.jcr.version.VersionHistory;
 import javax.jcr.version.VersionManager;
 
-import org.apache.commons.lang.mutable.MutableBoolean;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.jackrabbit.JcrConstants;
@@ -59,7 +63,6 @@ import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoterManage
 import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
-import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileSid;
 import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
 import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
@@ -81,7 +84,6 @@ import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -770,6 +772,52 @@ public class JcrRepositoryFileUtils {
 
   }
 
+  /**
+   * Returns the non-hidden immediate children of a folder whose metadata item <code>metadataKey</code> equals
+   * <code>metadataValue</code>. The children are found with a query on the metadata property rather than by reading
+   * the metadata of every child, so the cost depends on the number of matches rather than the size of the folder.
+   */
+  public static List<RepositoryFile> getChildrenByMetadata( final Session session,
+      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
+      final ILockHelper lockHelper, final Serializable folderId, final String metadataKey,
+      final String metadataValue ) throws RepositoryException {
+    checkName( metadataKey );
+    Node folderNode = session.getNodeByIdentifier( folderId.toString() );
+    Assert.isTrue( isPentahoFolder( pentahoJcrConstants, folderNode ) );
+
+    QueryObjectModelFactory fac = session.getWorkspace().getQueryManager().getQOMFactory();
+    final String selectorName = "selector"; //$NON-NLS-1$
+    final Selector selector = fac.selector( "nt:base", selectorName ); //$NON-NLS-1$
+    String prefix = session.getNamespacePrefix( PentahoJcrConstants.PHO_NS );
+    Constraint metadataConstraint =
+        fac.comparison( fac.propertyValue( selectorName, prefix + ":" + metadataKey ), //$NON-NLS-1$
+            QueryObjectModelConstants.JCR_OPERATOR_EQUAL_TO, fac.literal( session.getValueFactory().createValue(
+                metadataValue ) ) );
+    Constraint descendantNodeConstraint = fac.descendantNode( selectorName, folderNode.getPath() );
+    Query query = fac.createQuery( selector, fac.and( descendantNodeConstraint, metadataConstraint ), null, null );
+    QueryResult result =
+        session.getWorkspace().getQueryManager().createQuery( query.getStatement(), Query.JCR_JQOM ).execute();
+
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    NodeIterator nodeIterator = result.getNodes();
+    while ( nodeIterator.hasNext() ) {
+      Node metadataNode = nodeIterator.nextNode();
+      if ( !metadataNode.getName().equals( pentahoJcrConstants.getPHO_METADATA() ) ) {
+        continue;
+      }
+      // the matches are metadata nodes anywhere below the folder; keep those of its immediate children
+      Node fileNode = metadataNode.getParent();
+      if ( fileNode.getDepth() == folderNode.getDepth() + 1 && isSupportedNodeType( pentahoJcrConstants, fileNode ) ) {
+        RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode );
+        if ( !file.isHidden() ) {
+          children.add( file );
+        }
+      }
+    }
+    Collections.sort( children );
+    return children;
+  }
+
   @Deprecated
   public static List<RepositoryFile> getChildren( final Session session, final PentahoJcrConstants pentahoJcrConstants,
       final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Serializable folderId,
@@ -1184,149 +1232,8 @@ public class JcrRepositoryFileUtils {
     Assert.isTrue( fileItem.isNode() );
     Node fileNode = (Node) fileItem;
 
-    return getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, repositoryRequest
-        .getDepth(), repositoryRequest.getChildNodeFilter(), repositoryRequest.isShowHidden(), accessVoterManager,
-        repositoryRequest.getTypes(), new MutableBoolean( false ) );
-
-  }
-
-  /**
-   * Returns a RepositoryFileTree for a given node. This method will be called recursively for each folder it processes.
-   * The childNodeFilter is a filter used directly by the JCR jar to filter node names. Since JCR does not know a folder
-   * from a file (that is our construct), it is not capable of filtering out filenames but not folder names. Therefore,
-   * this logic will create two sets of children nodes. The <code>filteredChildrenSet</code> keeps the child nodes that
-   * satisfied the childNodeFilter. The <code> childrenFolderSet</code> keeps a set of all child folder nodes regardless
-   * of the value of the filter. We use the <code>childrenFolderSet</code> to know what folders to traverse, but we use
-   * the <code>filteredChildrenSet </code> to determine what actual files to include in the returned tree.
-   * <p>
-   * Just because we process a folder node does not necessarily mean the folder will be reported in the tree. It must
-   * first find a file that satisfies the criteria of the <code>childNodeFilter</code> mask. A file meeting the criteria
-   * may be any number of folders down the repository structure, so the <code>foundFiltered</code> MutableBoolean tells
-   * the caller if a file was found, at any level, meeting that criteria.
-   * 
-   * @param session
-   *          The current session in progress
-   * @param pentahoJcrConstants
-   * @param pathConversionHelper
-   * @param lockHelper
-   * @param fileNode
-   *          The node which will serve as the root of the tree
-   * @param depth
-   *          how many levels do we go down.
-   * @param childNodeFilter
-   *          The filter sent to JCR to retrieve defining which files are in scope
-   * @param showHidden
-   *          Whether to return hidden files
-   * @param accessVoterManager
-   *          See IRepositoryAccessVoterManager
-   * @param types
-   *          <code>FILE_TYPE_FILTERS</code> Types of files to return including FILES, FOLDERS, FILES_FOLDERS
-   * @param foundFiltered
-   *          This <code>MutableBoolean</code> will tell the caller if there was a file encountered, (at any level up to
-   *          the depth), that was compliant with the childNodeFilter. This will determine if this node, (and its
-   *          children), should be discarded because there are no relevant files.
-   * @return A RepositoryFileTree representing the entire tree at and below the given node that complies with file
-   *         filtering and other parameters of the tree request.
-   * @throws RepositoryException
-   */
-  private static RepositoryFileTree getTreeByNode( final Session session,
-      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
-      final ILockHelper lockHelper, final Node fileNode, final int depth, final String childNodeFilter,
-      final boolean showHidden, IRepositoryAccessVoterManager accessVoterManager,
-      RepositoryRequest.FILES_TYPE_FILTER types, MutableBoolean foundFiltered ) throws RepositoryException {
-
-    RepositoryFile rootFile =
-        nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, fileNode, false, null );
-    if ( ( !showHidden && rootFile.isHidden() )
-        || ( !accessVoterManager.hasAccess( rootFile, RepositoryFilePermission.READ, JcrRepositoryFileAclUtils.getAcl(
-            session, pentahoJcrConstants, rootFile.getId() ), PentahoSessionHolder.getSession() ) ) ) {
-      return null;
-    }
-    List<RepositoryFileTree> children;
-    HashSet<Node> childrenFolderSet;
-    // if depth is neither negative (indicating unlimited depth) nor positive (indicating at least one more level
-    // to go)
-    if ( depth != 0 ) {
-      children = new ArrayList<RepositoryFileTree>();
-      int numberOfPasses = childNodeFilter != null && !childNodeFilter.equals( "*" ) ? 2 : 1;
-
-      // get Filtered Children set
-      HashSet<Node> filteredChildrenSet;
-      filteredChildrenSet = new HashSet<Node>();
-      NodeIterator childNodes = fileNode.getNodes( childNodeFilter );
-      while ( childNodes.hasNext() ) {
-        Node childNode = childNodes.nextNode();
-
-        boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-        if ( !( !pentahoFolder && types == RepositoryRequest.FILES_TYPE_FILTER.FOLDERS || pentahoFolder
-            && types == RepositoryRequest.FILES_TYPE_FILTER.FILES ) ) {
-          filteredChildrenSet.add( childNode );
-        }
-      }
-
-      // Now get the unfiltered folder set not already in Filtered Set
-      childrenFolderSet = new HashSet<Node>();
-      if ( numberOfPasses == 2 ) {
-        if ( isPentahoFolder( pentahoJcrConstants, fileNode ) ) {
-          childNodes = fileNode.getNodes();
-          while ( childNodes.hasNext() ) {
-            Node childNode = childNodes.nextNode();
-            boolean pentahoFolder = isPentahoFolder( pentahoJcrConstants, childNode );
-            if ( pentahoFolder ) {
-              childrenFolderSet.add( childNode );
-            }
-          }
-        }
-      }
-
-      // Now work on the unfiltered set of folders, if any, add them only if file have been found somewhere down the
-      // tree
-      for ( Node childNode : childrenFolderSet ) {
-        checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, false );
-      }
-
-      // And finally, add Children in filtered
-      for ( Node childNode : filteredChildrenSet ) {
-        foundFiltered.setValue( true );
-        checkNodeForTree( childNode, children, session, pentahoJcrConstants, pathConversionHelper, childNodeFilter,
-            lockHelper, depth, showHidden, accessVoterManager, types, foundFiltered, true );
-      }
-
-      Collections.sort( children );
-    } else {
-      children = null;
-    }
-    return new RepositoryFileTree( rootFile, children );
-  }
-
-  /**
-   * This method is called twice by <code>getTreeNode</code>. It's job is to determine whether the current child node
-   * should be added to the list of children for the node being processed. It is a separate method simply because it is
-   * too much code to appear twice in the above <code>getTreeNode</code> method. It also makes the recursive call back
-   * getTreeByNode to process the next lower level of folder node (it must process the lower levels to know if the
-   * folder should be added). Finally, it returns the foundFiltered boolean to let the caller know if a file was found
-   * that satisfied the childNodeFilter.
-   */
-  private static void checkNodeForTree( final Node childNode, List<RepositoryFileTree> children, final Session session,
-      final PentahoJcrConstants pentahoJcrConstants, final IPathConversionHelper pathConversionHelper,
-      final String childNodeFilter, final ILockHelper lockHelper, final int depth, final boolean showHidden,
-      final IRepositoryAccessVoterManager accessVoterManager, RepositoryRequest.FILES_TYPE_FILTER types,
-      MutableBoolean foundFiltered, boolean isRootFiltered ) throws RepositoryException {
-
-    RepositoryFile file = nodeToFile( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode );
-    if ( isSupportedNodeType( pentahoJcrConstants, childNode )
-        && ( accessVoterManager.hasAccess( file, RepositoryFilePermission.READ, JcrRepositoryFileAclUtils.getAcl(
-            session, pentahoJcrConstants, file.getId() ), PentahoSessionHolder.getSession() ) ) ) {
-      MutableBoolean foundFilteredAtomic = new MutableBoolean( !isPentahoFolder( pentahoJcrConstants, childNode ) );
-      RepositoryFileTree repositoryFileTree =
-          getTreeByNode( session, pentahoJcrConstants, pathConversionHelper, lockHelper, childNode, depth - 1,
-              childNodeFilter, showHidden, accessVoterManager, types, foundFilteredAtomic );
-      if ( repositoryFileTree != null && ( foundFilteredAtomic.booleanValue() || isRootFiltered ) ) {
-        foundFiltered.setValue( true );
-        children.add( repositoryFileTree );
-      }
-    }
+    return new JcrRepositoryFileTreeBuilder( session, pentahoJcrConstants, pathConversionHelper, lockHelper,
+        accessVoterManager, repositoryRequest ).build( fileNode, repositoryRequest.getDepth() );
   }
 
   public static Node updateFileLocaleProperties( final Session session, final Serializable fileId, String locale,
@@ -164,15 +164,23 @@ public class DefaultUnifiedRepositoryWebService implements IUnifiedRepositoryWeb
     List<RepositoryFileTree> files = new ArrayList<RepositoryFileTree>();
     IAuthorizationPolicy policy = PentahoSystem.get( IAuthorizationPolicy.class );
     boolean isAdmin = policy.isAllowed( AdministerSecurityAction.NAME );
-    for ( RepositoryFileTree file : tree.getChildren() ) {
-      Map<String, Serializable> fileMeta = repo.getFileMetadata( file.getFile().getId() );
-      boolean isSystemFolder =
-          fileMeta.containsKey( IUnifiedRepository.SYSTEM_FOLDER ) ? (Boolean) fileMeta
-              .get( IUnifiedRepository.SYSTEM_FOLDER ) : false;
-      if ( !isAdmin && isSystemFolder ) {
-        continue;
+    if ( isAdmin ) {
+      files.addAll( tree.getChildren() );
+    } else {
+      List<RepositoryFile> childFiles = new ArrayList<RepositoryFile>( tree.getChildren().size() );
+      for ( RepositoryFileTree file : tree.getChildren() ) {
+        childFiles.add( file.getFile() );
+      }
+      List<Map<String, Serializable>> filesMeta = repo.getFileMetadataInBatch( childFiles );
+      for ( int i = 0; i < childFiles.size(); i++ ) {
+        Map<String, Serializable> fileMeta = filesMeta.get( i );
+        boolean isSystemFolder =
+            fileMeta.containsKey( IUnifiedRepository.SYSTEM_FOLDER ) ? (Boolean) fileMeta
+                .get( IUnifiedRepository.SYSTEM_FOLDER ) : false;
+        if ( !isSystemFolder ) {
+          files.add( tree.getChildren().get( i ) );
+        }
       }
-      files.add( file );
     }
     tree = new RepositoryFileTree( tree.getFile(), files );
     if ( tree == null ) {
@@ -19,14 +19,18 @@
 package org.pentaho.platform.repository2.unified.webservices.jaxws;
 
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
 import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository2.unified.webservices.DefaultUnifiedRepositoryWebService;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileAclDto;
 import org.pentaho.platform.repository2.unified.webservices.RepositoryFileDto;
+import org.pentaho.platform.repository2.unified.webservices.StringKeyStringValueDto;
 
 import javax.jws.WebService;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @WebService(
     endpointInterface = "org.pentaho.platform.repository2.unified.webservices.jaxws.IUnifiedRepositoryJaxwsWebService",
@@ -94,4 +98,22 @@ public class DefaultUnifiedRepositoryJaxwsWebService extends DefaultUnifiedRepos
     }
     return data;
   }
+
+  public List<FileMetadataDto> getFileMetadataInBatch( final List<RepositoryFileDto> files ) {
+    List<RepositoryFile> repoFiles = new ArrayList<RepositoryFile>( files.size() );
+    for ( RepositoryFileDto f : files ) {
+      repoFiles.add( repositoryFileAdapter.unmarshal( f ) );
+    }
+    List<Map<String, Serializable>> metadata = repo.getFileMetadataInBatch( repoFiles );
+    List<FileMetadataDto> dtos = new ArrayList<FileMetadataDto>( metadata.size() );
+    for ( int i = 0; i < metadata.size(); i++ ) {
+      Map<String, Serializable> metadataMap = metadata.get( i );
+      List<StringKeyStringValueDto> entries = new ArrayList<StringKeyStringValueDto>( metadataMap.size() );
+      for ( Map.Entry<String, Serializable> entry : metadataMap.entrySet() ) {
+        entries.add( new StringKeyStringValueDto( entry.getKey(), entry.getValue().toString() ) );
+      }
+      dtos.add( new FileMetadataDto( files.get( i ).getId(), entries ) );
+    }
+    return dtos;
+  }
 }
@@ -0,0 +1,67 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified.webservices.jaxws;
+
+import org.pentaho.platform.repository2.unified.webservices.StringKeyStringValueDto;
+
+import javax.xml.bind.annotation.XmlRootElement;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The metadata of one file, as returned by
+ * {@link IUnifiedRepositoryJaxwsWebService#getFileMetadataInBatch(List)}.
+ */
+@XmlRootElement
+public class FileMetadataDto implements Serializable {
+  private static final long serialVersionUID = 4385620941874516832L;
+  private String fileId;
+  private List<StringKeyStringValueDto> metadata;
+
+  public FileMetadataDto() {
+    super();
+  }
+
+  public FileMetadataDto( final String fileId, final List<StringKeyStringValueDto> metadata ) {
+    this.fileId = fileId;
+    this.metadata = metadata;
+  }
+
+  public String getFileId() {
+    return fileId;
+  }
+
+  public void setFileId( String fileId ) {
+    this.fileId = fileId;
+  }
+
+  public List<StringKeyStringValueDto> getMetadata() {
+    return metadata;
+  }
+
+  public void setMetadata( List<StringKeyStringValueDto> metadata ) {
+    this.metadata = metadata;
+  }
+
+  @SuppressWarnings( "nls" )
+  @Override
+  public String toString() {
+    return "FileMetadataDto [fileId=" + fileId + ", metadata=" + metadata + "]";
+  }
+}
@@ -42,4 +42,6 @@ public interface IUnifiedRepositoryJaxwsWebService extends IUnifiedRepositoryWeb
   SimpleRepositoryFileDataDto getDataAsBinaryForReadAtVersion( final String fileId, final String versionId );
 
   List<SimpleRepositoryFileDataDto> getDataAsBinaryForReadInBatch( final List<RepositoryFileDto> files );
+
+  List<FileMetadataDto> getFileMetadataInBatch( final List<RepositoryFileDto> files );
 }
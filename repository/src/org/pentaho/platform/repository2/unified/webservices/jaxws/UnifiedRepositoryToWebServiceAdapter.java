@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -477,6 +478,52 @@ public class UnifiedRepositoryToWebServiceAdapter implements IUnifiedRepository
     return repoFileMetadata;
   }
 
+  @Override
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    List<RepositoryFileDto> fileDtos = new ArrayList<RepositoryFileDto>( files.size() );
+    for ( RepositoryFile file : files ) {
+      fileDtos.add( repositoryFileAdapter.marshal( file ) );
+    }
+    List<FileMetadataDto> fileMetadata = repoWebService.getFileMetadataInBatch( fileDtos );
+    List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>( fileMetadata.size() );
+    for ( FileMetadataDto dto : fileMetadata ) {
+      Map<String, Serializable> repoFileMetadata = new HashMap<String, Serializable>();
+      if ( dto.getMetadata() != null ) {
+        for ( StringKeyStringValueDto entry : dto.getMetadata() ) {
+          repoFileMetadata.put( entry.getKey(), entry.getValue() );
+        }
+      }
+      metadata.add( repoFileMetadata );
+    }
+    return metadata;
+  }
+
+  @Override
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    List<RepositoryFile> children = getChildren( repositoryRequest );
+    List<Map<String, Serializable>> metadata = getFileMetadataInBatch( children );
+    Map<RepositoryFile, Map<String, Serializable>> childrenWithMetadata =
+        new LinkedHashMap<RepositoryFile, Map<String, Serializable>>();
+    for ( int i = 0; i < children.size(); i++ ) {
+      childrenWithMetadata.put( children.get( i ), metadata.get( i ) );
+    }
+    return childrenWithMetadata;
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    for ( Map.Entry<RepositoryFile, Map<String, Serializable>> entry : getChildrenWithMetadata(
+        new RepositoryRequest( folderId.toString(), false, -1, null ) ).entrySet() ) {
+      if ( metadataValue.equals( entry.getValue().get( metadataKey ) ) ) {
+        children.add( entry.getKey() );
+      }
+    }
+    return children;
+  }
+
   @Override
   public List<Character> getReservedChars() {
     // no need for synchronization here as value to be written will always be the same
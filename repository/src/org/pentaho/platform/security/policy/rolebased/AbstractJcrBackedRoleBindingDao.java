@@ -53,8 +53,10 @@ import java.util.Map.Entry;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 
-public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizationPolicyRoleBindingDao {
+public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizationPolicyRoleBindingDao,
+    IVersionedRoleBindingDao {
 
   protected ITenantedPrincipleNameResolver tenantedRoleNameUtils;
 
@@ -78,6 +80,11 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
   @SuppressWarnings( "unchecked" )
   protected Map boundLogicalRoleNamesCache = Collections.synchronizedMap( new LRUMap() );
 
+  /**
+   * Incremented whenever bindings are set, so that results derived from them can be recognized as stale
+   */
+  private final AtomicLong roleBindingsVersion = new AtomicLong();
+
   public AbstractJcrBackedRoleBindingDao(final Map<String, List<IAuthorizationAction>> immutableRoleBindings,
       final Map<String, List<String>> bootstrapRoleBindings, final String superAdminRoleName,
       final ITenantedPrincipleNameResolver tenantedRoleNameUtils, final List<IAuthorizationAction> authorizationActions ) {
@@ -254,6 +261,11 @@ public abstract class AbstractJcrBackedRoleBindingDao implements IRoleAuthorizat
     // update cache
     String roleId = tenantedRoleNameUtils.getPrincipleId( tenant, runtimeRoleName );
     boundLogicalRoleNamesCache.put( roleId, logicalRoleNames );
+    roleBindingsVersion.incrementAndGet();
+  }
+
+  public long getRoleBindingsVersion() {
+    return roleBindingsVersion.get();
   }
 
   private String getPrincipalName( String principalId ) {
@@ -0,0 +1,36 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2014 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+/**
+ * A role binding DAO that reports changes to its bindings, so that results derived from them can be cached.
+ * <p/>
+ * This is an interface, rather than a method of {@link AbstractJcrBackedRoleBindingDao}, so that it is also available
+ * through the Spring AOP proxies the DAO is wired as.
+ */
+public interface IVersionedRoleBindingDao {
+
+  /**
+   * @return a number which changes whenever bindings are set through this DAO. Callers caching the result of
+   *         {@link IRoleAuthorizationPolicyRoleBindingDao#getBoundLogicalRoleNames(java.util.List)} should discard it
+   *         when the version they read before computing it no longer matches.
+   */
+  long getRoleBindingsVersion();
+
+}
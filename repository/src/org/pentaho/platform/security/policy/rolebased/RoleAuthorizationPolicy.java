@@ -19,12 +19,19 @@
 package org.pentaho.platform.security.policy.rolebased;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.pentaho.platform.api.engine.IAuthorizationPolicy;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.engine.ISecurityHelper;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.TenantUtils;
 import org.springframework.security.Authentication;
 import org.springframework.security.GrantedAuthority;
 import org.springframework.security.context.SecurityContextHolder;
@@ -32,6 +39,12 @@ import org.springframework.util.Assert;
 
 /**
  * An authorization policy based on roles.
+ * <p/>
+ * When the role binding DAO can report changes to its bindings (see {@link IVersionedRoleBindingDao}), the actions
+ * allowed for a set of runtime roles are compiled once into an immutable {@link PermissionSnapshot}, shared by every
+ * user with the same roles in the same tenant, and remembered per session for the current {@link Authentication}.
+ * Repeated checks within a request are then answered without asking the DAO. Snapshots are discarded as soon as
+ * bindings are set.
  * 
  * @author mlowery
  */
@@ -45,6 +58,25 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
 
   private IRoleAuthorizationPolicyRoleBindingDao roleBindingDao;
 
+  /**
+   * Key: action name; value: its bit in the snapshots. Ids are never reused, so snapshots compiled at different times
+   * agree on them.
+   */
+  private final ConcurrentMap<String, Integer> actionIds = new ConcurrentHashMap<String, Integer>();
+
+  /**
+   * Key: tenant id and runtime role names; value: the snapshot compiled for them
+   */
+  private final ConcurrentMap<List<String>, PermissionSnapshot> snapshots =
+      new ConcurrentHashMap<List<String>, PermissionSnapshot>();
+
+  /**
+   * Key: session; value: the snapshot last used in it. Kept here rather than in session attributes, which end up in the
+   * HTTP session and must be serializable.
+   */
+  private final Map<IPentahoSession, SessionSnapshot> sessionSnapshots = Collections
+      .synchronizedMap( new WeakHashMap<IPentahoSession, SessionSnapshot>() );
+
   // ~ Constructors
   // ====================================================================================================
 
@@ -61,14 +93,15 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    * {@inheritDoc}
    */
   public List<String> getAllowedActions( String actionNamespace ) {
+    List<String> boundLogicalRoleNames = getBoundLogicalRoleNames();
     List<String> assignedRolesInNamespace = new ArrayList<String>();
     if ( actionNamespace == null ) {
-      assignedRolesInNamespace.addAll( roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) );
+      assignedRolesInNamespace.addAll( boundLogicalRoleNames );
     } else {
       if ( !actionNamespace.endsWith( "." ) ) {
         actionNamespace += ".";
       }
-      for ( String assignedRole : roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ) ) {
+      for ( String assignedRole : boundLogicalRoleNames ) {
         if ( assignedRole.startsWith( actionNamespace ) ) {
           assignedRolesInNamespace.add( assignedRole );
         }
@@ -81,7 +114,12 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
    * {@inheritDoc}
    */
   public boolean isAllowed( String actionName ) {
-    return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ).contains( actionName );
+    PermissionSnapshot snapshot = getPermissionSnapshot();
+    if ( snapshot == null ) {
+      return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() ).contains( actionName );
+    }
+    Integer actionId = actionName != null ? actionIds.get( actionName ) : null;
+    return actionId != null && snapshot.isAllowed( actionId );
   }
 
   protected List<String> getRuntimeRoleNames() {
@@ -95,4 +133,114 @@ public class RoleAuthorizationPolicy implements IAuthorizationPolicy {
     return runtimeRoles;
   }
 
+  private List<String> getBoundLogicalRoleNames() {
+    PermissionSnapshot snapshot = getPermissionSnapshot();
+    if ( snapshot == null ) {
+      return roleBindingDao.getBoundLogicalRoleNames( getRuntimeRoleNames() );
+    }
+    return snapshot.getActionNames();
+  }
+
+  /**
+   * @return the snapshot for the current authentication, or null if bindings cannot be cached
+   */
+  private PermissionSnapshot getPermissionSnapshot() {
+    if ( !( roleBindingDao instanceof IVersionedRoleBindingDao ) ) {
+      return null;
+    }
+    IPentahoSession session = PentahoSessionHolder.getSession();
+    if ( session == null ) {
+      return null;
+    }
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    Assert.state( authentication != null );
+    long version = ( (IVersionedRoleBindingDao) roleBindingDao ).getRoleBindingsVersion();
+
+    SessionSnapshot sessionSnapshot = sessionSnapshots.get( session );
+    if ( sessionSnapshot != null && sessionSnapshot.authentication == authentication
+        && sessionSnapshot.snapshot.version == version ) {
+      return sessionSnapshot.snapshot;
+    }
+
+    List<String> runtimeRoleNames = getRuntimeRoleNames();
+    List<String> key = new ArrayList<String>( runtimeRoleNames.size() + 1 );
+    // role names without a tenant are resolved against the tenant of the session
+    key.add( TenantUtils.getCurrentTenant().getId() );
+    key.addAll( runtimeRoleNames );
+    PermissionSnapshot snapshot = snapshots.get( key );
+    if ( snapshot == null || snapshot.version != version ) {
+      if ( snapshot != null ) {
+        // bindings have been set since; snapshots for other roles are stale too
+        snapshots.clear();
+      }
+      snapshot = compile( roleBindingDao.getBoundLogicalRoleNames( runtimeRoleNames ), version );
+      snapshots.put( key, snapshot );
+    }
+    sessionSnapshots.put( session, new SessionSnapshot( authentication, snapshot ) );
+    return snapshot;
+  }
+
+  private PermissionSnapshot compile( List<String> actionNames, long version ) {
+    BitSet allowed = new BitSet();
+    for ( String actionName : actionNames ) {
+      allowed.set( getActionId( actionName ) );
+    }
+    return new PermissionSnapshot( Collections.unmodifiableList( new ArrayList<String>( actionNames ) ), allowed,
+        version );
+  }
+
+  private int getActionId( String actionName ) {
+    Integer actionId = actionIds.get( actionName );
+    if ( actionId == null ) {
+      synchronized ( actionIds ) {
+        actionId = actionIds.get( actionName );
+        if ( actionId == null ) {
+          actionId = actionIds.size();
+          actionIds.put( actionName, actionId );
+        }
+      }
+    }
+    return actionId;
+  }
+
+  /**
+   * The actions bound to a set of runtime roles, as of a version of the role bindings. Never modified once compiled.
+   */
+  private static class PermissionSnapshot {
+    private final List<String> actionNames;
+
+    private final BitSet allowed;
+
+    private final long version;
+
+    PermissionSnapshot( List<String> actionNames, BitSet allowed, long version ) {
+      this.actionNames = actionNames;
+      this.allowed = allowed;
+      this.version = version;
+    }
+
+    List<String> getActionNames() {
+      return actionNames;
+    }
+
+    boolean isAllowed( int actionId ) {
+      return allowed.get( actionId );
+    }
+  }
+
+  /**
+   * The snapshot last used in a session, and the authentication it was compiled for; a session may run as another
+   * user, e.g. through {@link ISecurityHelper#runAsUser}, which replaces the authentication.
+   */
+  private static class SessionSnapshot {
+    private final Authentication authentication;
+
+    private final PermissionSnapshot snapshot;
+
+    SessionSnapshot( Authentication authentication, PermissionSnapshot snapshot ) {
+      this.authentication = authentication;
+      this.snapshot = snapshot;
+    }
+  }
+
 }
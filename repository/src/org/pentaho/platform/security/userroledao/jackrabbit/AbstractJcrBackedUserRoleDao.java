@@ -49,6 +49,7 @@ import org.apache.jackrabbit.core.security.user.UserManagerImpl;
 import org.apache.jackrabbit.spi.Name;
 import org.apache.jackrabbit.spi.NameFactory;
 import org.apache.jackrabbit.spi.commons.name.NameFactoryImpl;
+import org.pentaho.platform.api.engine.ISecurityHelper;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoRole;
 import org.pentaho.platform.api.engine.security.userroledao.IPentahoUser;
 import org.pentaho.platform.api.engine.security.userroledao.IUserRoleDao;
@@ -65,6 +66,7 @@ import org.pentaho.platform.api.repository2.unified.RepositoryFileSid.Type;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.core.system.TenantUtils;
+import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.repository2.unified.IRepositoryFileAclDao;
 import org.pentaho.platform.repository2.unified.IRepositoryFileDao;
 import org.pentaho.platform.repository2.unified.ServerRepositoryPaths;
@@ -245,7 +247,13 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
   }
 
   private void purgeUserFromCache( String userName ) {
-    userDetailsCache.removeUserFromCache( getTenantedUserNameUtils().getPrincipleName( userName ) );
+    String principalName = getTenantedUserNameUtils().getPrincipleName( userName );
+    userDetailsCache.removeUserFromCache( principalName );
+    // and the roles looked up when running as this user
+    ISecurityHelper securityHelper = SecurityHelper.getInstance();
+    if ( securityHelper instanceof SecurityHelper ) {
+      ( (SecurityHelper) securityHelper ).invalidateAuthentication( principalName );
+    }
   }
 
   private boolean oneOfUserIsMySelf( String[] users ) {
@@ -394,7 +402,7 @@ public abstract class AbstractJcrBackedUserRoleDao implements IUserRoleDao {
     session.save();
     createUserHomeFolder( tenant, user, session );
     session.save();
-    this.userDetailsCache.removeUserFromCache( userName );
+    purgeUserFromCache( userName );
     return getUser( session, tenant, userName );
   }
 
@@ -0,0 +1,173 @@
+/*!
+ * Copyright 2010 - 2014 Pentaho Corporation.  All rights reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.jcr.observation.ObservationManager;
+import javax.jcr.security.AccessControlEntry;
+
+import org.apache.jackrabbit.core.NodeImpl;
+import org.apache.jackrabbit.core.SessionImpl;
+import org.apache.jackrabbit.core.WorkspaceImpl;
+import org.apache.jackrabbit.core.id.NodeId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.pentaho.platform.security.policy.rolebased.AbstractJcrBackedRoleBindingDao;
+import org.pentaho.platform.security.policy.rolebased.IRoleAuthorizationPolicyRoleBindingDao;
+
+@SuppressWarnings( "nls" )
+public class CachingPentahoEntryCollectorTest {
+
+  /**
+   * Reads fresh entries for every uncached node and gives each session the magic ACE context key mapped to its name.
+   */
+  private static class TestEntryCollector extends CachingPentahoEntryCollector {
+
+    private final Map<String, String> contextKeys = new HashMap<String, String>();
+
+    private final AbstractJcrBackedRoleBindingDao roleBindingDao = mock( AbstractJcrBackedRoleBindingDao.class );
+
+    private int reads;
+
+    TestEntryCollector( SessionImpl systemSession, NodeId rootID ) throws Exception {
+      super( systemSession, rootID, Collections.emptyMap() );
+    }
+
+    @Override
+    protected Entries readEntries( NodeImpl node ) {
+      reads++;
+      return new Entries( Collections.singletonList( mock( AccessControlEntry.class ) ), null );
+    }
+
+    @Override
+    protected String getMagicAceContextKey() {
+      return contextKeys.get( PentahoSessionHolder.getSession().getName() );
+    }
+
+    @Override
+    protected boolean hasPentahoSession() {
+      return true;
+    }
+
+    @Override
+    protected IRoleAuthorizationPolicyRoleBindingDao getMagicAceRoleBindingDao() {
+      return roleBindingDao;
+    }
+  }
+
+  private TestEntryCollector collector;
+
+  private NodeImpl node;
+
+  @Before
+  public void setUp() throws Exception {
+    SessionImpl systemSession = mock( SessionImpl.class );
+    WorkspaceImpl workspace = mock( WorkspaceImpl.class );
+    NodeImpl rootNode = mock( NodeImpl.class );
+    when( systemSession.getWorkspace() ).thenReturn( workspace );
+    when( workspace.getObservationManager() ).thenReturn( mock( ObservationManager.class ) );
+    when( systemSession.getRootNode() ).thenReturn( rootNode );
+    when( rootNode.getPath() ).thenReturn( "/" );
+
+    collector = new TestEntryCollector( systemSession, NodeId.randomId() );
+    collector.contextKeys.put( "suzy", "/pentaho/tenant0|01" );
+    collector.contextKeys.put( "tiffany", "/pentaho/tenant0|01" );
+    collector.contextKeys.put( "admin", "/pentaho/tenant0|11" );
+
+    node = mock( NodeImpl.class );
+    when( node.getNodeId() ).thenReturn( NodeId.randomId() );
+    when( node.getPath() ).thenReturn( "/pentaho/tenant0/home/suzy" );
+  }
+
+  @After
+  public void tearDown() {
+    PentahoSessionHolder.removeSession();
+  }
+
+  @Test
+  public void testSessionsWithSameContextShareEntries() throws Exception {
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy" ) );
+    Entries suzyEntries = collector.getEntries( node );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "tiffany" ) );
+    assertSame( suzyEntries, collector.getEntries( node ) );
+    assertEquals( 1, collector.reads );
+  }
+
+  @Test
+  public void testSessionsWithDifferentContextsDoNotShareEntries() throws Exception {
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy" ) );
+    Entries suzyEntries = collector.getEntries( node );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin" ) );
+    Entries adminEntries = collector.getEntries( node );
+    assertNotSame( suzyEntries, adminEntries );
+    assertEquals( 2, collector.reads );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy" ) );
+    assertSame( suzyEntries, collector.getEntries( node ) );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin" ) );
+    assertSame( adminEntries, collector.getEntries( node ) );
+    assertEquals( 2, collector.reads );
+  }
+
+  @Test
+  public void testContextKeyIsRecomputedWhenRoleBindingsAreSet() throws Exception {
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy" ) );
+    Entries entries = collector.getEntries( node );
+
+    // the context key of a session is remembered...
+    collector.contextKeys.put( "suzy", "/pentaho/tenant0|11" );
+    assertSame( entries, collector.getEntries( node ) );
+    assertEquals( 1, collector.reads );
+
+    // ...until role bindings are set
+    when( collector.roleBindingDao.getRoleBindingsVersion() ).thenReturn( 1L );
+    assertNotSame( entries, collector.getEntries( node ) );
+    assertEquals( 2, collector.reads );
+  }
+
+  @Test
+  public void testSessionMagicPrincipalEqualityDoesNotDependOnSession() {
+    SessionMagicPrincipal suzy = new SessionMagicPrincipal( "suzy" );
+    SessionMagicPrincipal tiffany = new SessionMagicPrincipal( "tiffany" );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "suzy" ) );
+    int hashCode = suzy.hashCode();
+    assertEquals( suzy, tiffany );
+
+    PentahoSessionHolder.setSession( new StandaloneSession( "admin" ) );
+    assertEquals( hashCode, suzy.hashCode() );
+    assertEquals( suzy, tiffany );
+    assertEquals( tiffany.hashCode(), suzy.hashCode() );
+  }
+
+}
@@ -0,0 +1,118 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2014 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.apache.jackrabbit.core.security.authorization.acl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StripedPermissionCacheTest {
+
+  @Test
+  public void testHitsAndMisses() {
+    StripedPermissionCache<String, Boolean> cache = new StripedPermissionCache<String, Boolean>( 100, 4 );
+    assertNull( cache.get( "a" ) );
+    cache.put( "a", "/a", Boolean.TRUE, cache.getGeneration() );
+    assertEquals( Boolean.TRUE, cache.get( "a" ) );
+    assertEquals( 1, cache.getHitCount() );
+    assertEquals( 1, cache.getMissCount() );
+  }
+
+  @Test
+  public void testRemoveSubtree() {
+    StripedPermissionCache<String, Boolean> cache = new StripedPermissionCache<String, Boolean>( 100, 4 );
+    long generation = cache.getGeneration();
+    cache.put( "home", "/home", Boolean.TRUE, generation );
+    cache.put( "x", "/home/x", Boolean.TRUE, generation );
+    cache.put( "xfile", "/home/x/file", Boolean.TRUE, generation );
+    cache.put( "xy", "/home/xy", Boolean.TRUE, generation );
+    cache.put( "public", "/public", Boolean.TRUE, generation );
+
+    cache.removeSubtree( "/home/x" );
+
+    assertEquals( Boolean.TRUE, cache.get( "home" ) );
+    assertNull( cache.get( "x" ) );
+    assertNull( cache.get( "xfile" ) );
+    assertEquals( Boolean.TRUE, cache.get( "xy" ) );
+    assertEquals( Boolean.TRUE, cache.get( "public" ) );
+    assertEquals( 3, cache.size() );
+
+    cache.removeSubtree( "/" );
+    assertEquals( 0, cache.size() );
+  }
+
+  @Test
+  public void testRemoveSubtreeRemovesVersionStorage() {
+    StripedPermissionCache<String, Boolean> cache = new StripedPermissionCache<String, Boolean>( 100, 4 );
+    long generation = cache.getGeneration();
+    cache.put( "version", "/jcr:system/jcr:versionStorage/aa/bb/cc/history/1.0", Boolean.TRUE, generation );
+    cache.put( "public", "/public", Boolean.TRUE, generation );
+
+    // versions get their permissions from the ACL of their versionable node, wherever that is
+    cache.removeSubtree( "/home/x" );
+
+    assertNull( cache.get( "version" ) );
+    assertEquals( Boolean.TRUE, cache.get( "public" ) );
+  }
+
+  @Test
+  public void testStalePutIsIgnored() {
+    StripedPermissionCache<String, Boolean> cache = new StripedPermissionCache<String, Boolean>( 100, 4 );
+    long generation = cache.getGeneration();
+    cache.removeSubtree( "/public" );
+    cache.put( "a", "/home/a", Boolean.TRUE, generation );
+    assertNull( cache.get( "a" ) );
+  }
+
+  @Test
+  public void testConcurrentInvalidationsAreCounted() throws Exception {
+    final StripedPermissionCache<String, Boolean> cache = new StripedPermissionCache<String, Boolean>( 100, 4 );
+    long generation = cache.getGeneration();
+    List<Thread> threads = new ArrayList<Thread>();
+    for ( int i = 0; i < 8; i++ ) {
+      threads.add( new Thread() {
+        @Override
+        public void run() {
+          for ( int j = 0; j < 1000; j++ ) {
+            cache.removeSubtree( "/home" );
+          }
+        }
+      } );
+    }
+    for ( Thread thread : threads ) {
+      thread.start();
+    }
+    for ( Thread thread : threads ) {
+      thread.join();
+    }
+    assertEquals( generation + 8000, cache.getGeneration() );
+  }
+
+  @Test
+  public void testBounded() {
+    StripedPermissionCache<Integer, Boolean> cache = new StripedPermissionCache<Integer, Boolean>( 64, 4 );
+    for ( int i = 0; i < 1000; i++ ) {
+      cache.put( i, "/" + i, Boolean.TRUE, cache.getGeneration() );
+    }
+    assertEquals( true, cache.size() <= 64 );
+  }
+}
@@ -201,6 +201,37 @@ public class UserSettingServiceTest {
     assertEquals( USER_SETTING_VALUE_3, userSetting.getSettingValue() );
   }
 
+  @Test
+  public void testGetUserSettingCached() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+
+    assertEquals( USER_SETTING_VALUE_3, userSettingService.getUserSetting( USER_SETTING_NAME_3, null )
+        .getSettingValue() );
+    assertEquals( GLOBAL_SETTING_VALUE_3, userSettingService.getUserSetting( GLOBAL_SETTING_NAME_3, null )
+        .getSettingValue() );
+    assertEquals( COMMON_USER_SETTING_VALUE, userSettingService.getUserSetting( COMMON_SETTING_NAME, null )
+        .getSettingValue() );
+    verify( repository, times( 1 ) ).getFileMetadata( eq( USER_FOLDER_ID ) );
+    verify( repository, times( 1 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+
+    userSettingService.setUserSetting( USER_SETTING_NAME_3, "changed" );
+    assertEquals( "changed", userSettingService.getUserSetting( USER_SETTING_NAME_3, null ).getSettingValue() );
+  }
+
+  @Test
+  public void testSetUserSettingKeepsGlobalSettingsCached() throws Exception {
+    when( session.getAttribute( eq( "SPRING_SECURITY_CONTEXT" ) ) ).thenReturn( 1 );
+
+    assertEquals( GLOBAL_SETTING_VALUE_3, userSettingService.getUserSetting( GLOBAL_SETTING_NAME_3, null )
+        .getSettingValue() );
+    userSettingService.setUserSetting( USER_SETTING_NAME_3, "changed" );
+    assertEquals( GLOBAL_SETTING_VALUE_3, userSettingService.getUserSetting( GLOBAL_SETTING_NAME_3, null )
+        .getSettingValue() );
+
+    // only the settings of the user who changed a setting are read again
+    verify( repository, times( 1 ) ).getFileMetadata( eq( TENANT_FOLDER_ID ) );
+  }
+
   @Test
   public void testGetUserSettingOnlyGlobalExist() throws Exception {
     final String settingName = GLOBAL_SETTING_NAME_3;
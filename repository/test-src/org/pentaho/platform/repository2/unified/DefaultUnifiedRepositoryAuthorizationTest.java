@@ -432,6 +432,48 @@ public class DefaultUnifiedRepositoryAuthorizationTest extends DefaultUnifiedRep
     assertNull( repo.getFile( testFolderPath ) );
   }
 
+  /**
+   * Magic ACEs are granted to whichever user evaluates them, and the entries holding them are shared by all users with
+   * the same roles. They must not be merged with the ACEs of the user who happened to evaluate them first.
+   */
+  @Test
+  public void testMagicAcesOfOwnerAreNotShared() throws Exception {
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+    userRoleDao.createUser( tenantAcme, USERNAME_TIFFANY, PASSWORD, "", null );
+
+    // authenticated users can read the tenant root folder through a magic ACE only; make suzy its owner
+    final String tenantRootFolderPath = ServerRepositoryPaths.getTenantRootFolderPath();
+    RepositoryFile tenantRootFolder = repo.getFile( ClientRepositoryPaths.getRootFolderPath() );
+    RepositoryFileSid suzySid = new RepositoryFileSid( userNameUtils.getPrincipleId( tenantAcme, USERNAME_SUZY ) );
+    repo.updateAcl( new RepositoryFileAcl.Builder( repo.getAcl( tenantRootFolder.getId() ) ).owner( suzySid )
+        .build() );
+
+    // the owner first
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    assertTrue( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_ALL ) );
+    login( USERNAME_TIFFANY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    assertTrue( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_READ ) );
+    assertFalse( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_WRITE ) );
+
+    // changing the ACL discards the cached entries
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    repo.updateAcl( repo.getAcl( tenantRootFolder.getId() ) );
+
+    // the other user first
+    login( USERNAME_TIFFANY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    assertTrue( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_READ ) );
+    assertFalse( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_WRITE ) );
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+    assertTrue( SimpleJcrTestUtils.hasPrivileges( testJcrTemplate, tenantRootFolderPath, Privilege.JCR_ALL ) );
+  }
+
   @Test
   public void testGetAcl() throws Exception {
     loginAsSysTenantAdmin();
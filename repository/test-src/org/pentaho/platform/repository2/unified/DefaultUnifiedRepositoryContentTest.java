@@ -1881,6 +1881,55 @@ public class DefaultUnifiedRepositoryContentTest extends DefaultUnifiedRepositor
     assertEquals( value5, savedMap.get( key5 ) );
   }
 
+  @Test
+  public void testGetChildrenByMetadata() throws Exception {
+    final String key = "lineageId";
+    loginAsSysTenantAdmin();
+    ITenant tenantAcme =
+        tenantManager.createTenant( systemTenant, TENANT_ID_ACME, tenantAdminRoleName, tenantAuthenticatedRoleName,
+            ANONYMOUS_ROLE_NAME );
+    userRoleDao.createUser( tenantAcme, USERNAME_ADMIN, PASSWORD, "", new String[] { tenantAdminRoleName } );
+
+    login( USERNAME_ADMIN, tenantAcme, new String[] { tenantAdminRoleName, tenantAuthenticatedRoleName } );
+    userRoleDao.createUser( tenantAcme, USERNAME_SUZY, PASSWORD, "", null );
+
+    login( USERNAME_SUZY, tenantAcme, new String[] { tenantAuthenticatedRoleName } );
+
+    RepositoryFile parentFolder = repo.getFile( ClientRepositoryPaths.getUserHomeFolderPath( USERNAME_SUZY ) );
+    RepositoryFile subFolder =
+        repo.createFolder( parentFolder.getId(), new RepositoryFile.Builder( "sub" ).folder( true ).build(), null );
+    RepositoryFile match = createSimpleFile( parentFolder.getId(), "match.txt" );
+    RepositoryFile other = createSimpleFile( parentFolder.getId(), "other.txt" );
+    RepositoryFile nested = createSimpleFile( subFolder.getId(), "nested.txt" );
+    final SimpleRepositoryFileData content =
+        new SimpleRepositoryFileData( new ByteArrayInputStream( "Hello World!".getBytes( "UTF-8" ) ), "UTF-8",
+            "text/plain" );
+    RepositoryFile hidden =
+        repo.createFile( parentFolder.getId(), new RepositoryFile.Builder( "hidden.txt" ).hidden( true ).build(),
+            content, null );
+
+    Map<String, Serializable> metadataMap = new HashMap<String, Serializable>();
+    metadataMap.put( key, "abc" );
+    repo.setFileMetadata( match.getId(), metadataMap );
+    repo.setFileMetadata( nested.getId(), metadataMap );
+    repo.setFileMetadata( hidden.getId(), metadataMap );
+    metadataMap.put( key, "xyz" );
+    repo.setFileMetadata( other.getId(), metadataMap );
+
+    // only the immediate, non-hidden children match
+    List<RepositoryFile> children = repo.getChildrenByMetadata( parentFolder.getId(), key, "abc" );
+    assertEquals( 1, children.size() );
+    assertEquals( match.getId(), children.get( 0 ).getId() );
+
+    children = repo.getChildrenByMetadata( subFolder.getId(), key, "abc" );
+    assertEquals( 1, children.size() );
+    assertEquals( nested.getId(), children.get( 0 ).getId() );
+
+    children = repo.getChildrenByMetadata( parentFolder.getId(), key, "none" );
+    assertNotNull( children );
+    assertTrue( children.isEmpty() );
+  }
+
   @Test
   public void testFileCreator() throws Exception {
     loginAsSysTenantAdmin();
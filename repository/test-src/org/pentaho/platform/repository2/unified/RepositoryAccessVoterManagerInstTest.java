@@ -0,0 +1,84 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2014 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoter;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
+
+public class RepositoryAccessVoterManagerInstTest {
+
+  private IAuthorizationPolicy authorizationPolicy;
+
+  private IRepositoryAccessVoter voter;
+
+  private RepositoryFile file;
+
+  @Before
+  public void setUp() {
+    authorizationPolicy = mock( IAuthorizationPolicy.class );
+    voter = mock( IRepositoryAccessVoter.class );
+    file = new RepositoryFile.Builder( "file" ).build();
+  }
+
+  @Test
+  public void testVotingIsNotRequiredWithoutVoters() {
+    assertFalse( new RepositoryAccessVoterManagerInst( authorizationPolicy ).isVotingRequired() );
+    assertFalse( new RepositoryAccessVoterManagerInst( Collections.<IRepositoryAccessVoter>emptyList(),
+        authorizationPolicy ).isVotingRequired() );
+  }
+
+  @Test
+  public void testVotingIsNotRequiredForAdministrators() {
+    when( authorizationPolicy.isAllowed( AdministerSecurityAction.NAME ) ).thenReturn( true );
+    RepositoryAccessVoterManagerInst manager =
+        new RepositoryAccessVoterManagerInst( Collections.singletonList( voter ), authorizationPolicy );
+
+    assertFalse( manager.isVotingRequired() );
+    assertTrue( manager.hasAccess( file, RepositoryFilePermission.READ, null, null ) );
+    verifyZeroInteractions( voter );
+  }
+
+  @Test
+  public void testVotersAreConsultedOtherwise() {
+    RepositoryAccessVoterManagerInst manager =
+        new RepositoryAccessVoterManagerInst( Collections.singletonList( voter ), authorizationPolicy );
+
+    assertTrue( manager.isVotingRequired() );
+    assertFalse( manager.hasAccess( file, RepositoryFilePermission.READ, null, null ) );
+    verify( voter ).hasAccess( any( RepositoryFile.class ), any( RepositoryFilePermission.class ),
+        any( RepositoryFileAcl.class ), any( IPentahoSession.class ) );
+  }
+}
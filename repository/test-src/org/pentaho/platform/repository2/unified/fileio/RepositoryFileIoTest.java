@@ -22,14 +22,24 @@ import org.apache.commons.io.IOUtils;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.pentaho.platform.api.repository2.unified.IRepositoryFileData;
 import org.pentaho.platform.api.repository2.unified.IUnifiedRepository;
 import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.data.simple.SimpleRepositoryFileData;
 import org.pentaho.platform.repository2.ClientRepositoryPaths;
 import org.pentaho.test.platform.engine.core.MicroPlatform;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Matchers.eq;
@@ -131,6 +141,38 @@ public class RepositoryFileIoTest {
         argThat( hasData( expectedPayload, "application/octet-stream" ) ), anyString() );
   }
 
+  @Test
+  public void testWriteBinarySpilledToDisk() throws IOException {
+    final String fileName = "test.bin";
+    final String filePath = publicDirPath + "/" + fileName;
+    IUnifiedRepository repo = mock( IUnifiedRepository.class );
+    // simulate request for publicDir
+    RepositoryFile publicDir =
+        new RepositoryFile.Builder( "123", ClientRepositoryPaths.getPublicFolderName() ).folder( true ).build();
+    doReturn( publicDir ).when( repo ).getFile( publicDirPath );
+    // the data stream is only readable during the call
+    final ByteArrayOutputStream written = new ByteArrayOutputStream();
+    doAnswer( new Answer<RepositoryFile>() {
+      public RepositoryFile answer( InvocationOnMock invocation ) throws Throwable {
+        IOUtils.copy( ( (SimpleRepositoryFileData) invocation.getArguments()[2] ).getStream(), written );
+        return null;
+      }
+    } ).when( repo ).createFile( eq( "123" ), any( RepositoryFile.class ), any( IRepositoryFileData.class ),
+        anyString() );
+    mp.defineInstance( IUnifiedRepository.class, repo );
+
+    final byte[] expectedPayload = "binary string larger than the threshold".getBytes();
+    RepositoryFileOutputStream rfos = new RepositoryFileOutputStream( filePath );
+    rfos.setSpillThreshold( 10 );
+    IOUtils.write( expectedPayload, rfos );
+    assertTrue( rfos.isSpilled() );
+    assertEquals( expectedPayload.length, rfos.size() );
+    rfos.close();
+
+    assertFalse( rfos.isSpilled() );
+    assertArrayEquals( expectedPayload, written.toByteArray() );
+  }
+
   @Test( expected = FileNotFoundException.class )
   public void testReadNonExistentPath() throws IOException {
     final String filePath = ClientRepositoryPaths.getPublicFolderPath() + "/doesnotexist";
@@ -18,9 +18,20 @@
 
 package org.pentaho.platform.repository2.unified.fs;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Test;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * User: kwalker Date: 8/23/13 Time: 8:44 AM
@@ -43,4 +54,63 @@ public class FileSystemRepositoryFileDaoTest {
     assertEquals( "/home/pentaho/design-tools/data-integration/Unsaved Report.xanalyzer", FileSystemRepositoryFileDao
         .idToPath( ":home:pentaho:design-tools:data-integration/Unsaved Report.xanalyzer" ) );
   }
+
+  @Test
+  public void testGetChildrenWithMetadata() throws Exception {
+    File root = File.createTempFile( "fsrepo", "" );
+    root.delete();
+    root.mkdir();
+    try {
+      File report = new File( root, "report.prpt" );
+      File other = new File( root, "other.txt" );
+      report.createNewFile();
+      other.createNewFile();
+      FileSystemRepositoryFileDao dao = new FileSystemRepositoryFileDao( root );
+      dao.setFileMetadata( report.getPath(), Collections.<String, Serializable> singletonMap( "creator", "abc" ) );
+
+      Map<RepositoryFile, Map<String, Serializable>> children =
+          dao.getChildrenWithMetadata( new RepositoryRequest( root.getAbsolutePath(), false, -1, "*" ) );
+      assertEquals( 2, children.size() );
+      List<RepositoryFile> files = new ArrayList<RepositoryFile>();
+      for ( Map.Entry<RepositoryFile, Map<String, Serializable>> entry : children.entrySet() ) {
+        files.add( entry.getKey() );
+        if ( entry.getKey().getName().equals( "report.prpt" ) ) {
+          assertEquals( "abc", entry.getValue().get( "creator" ) );
+        } else {
+          assertTrue( entry.getValue().isEmpty() );
+        }
+      }
+
+      List<Map<String, Serializable>> metadata = dao.getFileMetadataInBatch( files );
+      assertEquals( files.size(), metadata.size() );
+      for ( int i = 0; i < files.size(); i++ ) {
+        assertEquals( children.get( files.get( i ) ), metadata.get( i ) );
+      }
+    } finally {
+      FileUtils.deleteDirectory( root );
+    }
+  }
+
+  @Test
+  public void testGetChildrenByMetadata() throws Exception {
+    File root = File.createTempFile( "fsrepo", "" );
+    root.delete();
+    root.mkdir();
+    try {
+      File output = new File( root, "output.pdf" );
+      File other = new File( root, "other.pdf" );
+      output.createNewFile();
+      other.createNewFile();
+      FileSystemRepositoryFileDao dao = new FileSystemRepositoryFileDao( root );
+      dao.setFileMetadata( output.getPath(), Collections.<String, Serializable> singletonMap( "creator", "abc" ) );
+      dao.setFileMetadata( other.getPath(), Collections.<String, Serializable> singletonMap( "creator", "def" ) );
+
+      List<RepositoryFile> children = dao.getChildrenByMetadata( root.getAbsolutePath(), "creator", "abc" );
+      assertEquals( 1, children.size() );
+      assertEquals( "output.pdf", children.get( 0 ).getName() );
+      assertTrue( dao.getChildrenByMetadata( root.getAbsolutePath(), "creator", "xyz" ).isEmpty() );
+    } finally {
+      FileUtils.deleteDirectory( root );
+    }
+  }
 }
@@ -0,0 +1,163 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2014 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.repository2.unified.jcr;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jcr.Node;
+import javax.jcr.RepositoryException;
+import javax.jcr.Session;
+
+import mockit.Mock;
+import mockit.MockUp;
+
+import org.apache.jackrabbit.commons.iterator.NodeIteratorAdapter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IAuthorizationPolicy;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.api.locale.IPentahoLocale;
+import org.pentaho.platform.api.repository2.unified.IRepositoryAccessVoter;
+import org.pentaho.platform.api.repository2.unified.RepositoryFile;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileAcl;
+import org.pentaho.platform.api.repository2.unified.RepositoryFilePermission;
+import org.pentaho.platform.api.repository2.unified.RepositoryFileTree;
+import org.pentaho.platform.api.repository2.unified.RepositoryRequest;
+import org.pentaho.platform.repository2.unified.RepositoryAccessVoterManagerInst;
+import org.pentaho.platform.security.policy.rolebased.actions.AdministerSecurityAction;
+
+public class JcrRepositoryFileTreeBuilderTest {
+
+  private Node rootNode;
+
+  private IAuthorizationPolicy authorizationPolicy;
+
+  private int aclBatches;
+
+  private final List<String> votedOn = new ArrayList<String>();
+
+  private final IRepositoryAccessVoter voter = new IRepositoryAccessVoter() {
+    public boolean hasAccess( final RepositoryFile file, final RepositoryFilePermission operation,
+        final RepositoryFileAcl acl, final IPentahoSession session ) {
+      votedOn.add( file.getName() );
+      return !file.getName().equals( "denied" );
+    }
+  };
+
+  private MockUp<?> jcrRepositoryFileUtilsMockUp;
+
+  private MockUp<?> jcrRepositoryFileAclUtilsMockUp;
+
+  @Before
+  public void setUp() throws RepositoryException {
+    rootNode = mockNode( "root" );
+    Node allowedNode = mockNode( "allowed" );
+    Node deniedNode = mockNode( "denied" );
+    when( rootNode.getNodes() ).thenReturn( new NodeIteratorAdapter( Arrays.asList( allowedNode, deniedNode ) ) );
+    authorizationPolicy = mock( IAuthorizationPolicy.class );
+
+    jcrRepositoryFileUtilsMockUp = new MockUp<JcrRepositoryFileUtils>() {
+      @Mock
+      public RepositoryFile nodeToFile( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+          final IPathConversionHelper pathConversionHelper, final ILockHelper lockHelper, final Node node,
+          final boolean loadMaps, IPentahoLocale pentahoLocale ) throws RepositoryException {
+        return new RepositoryFile.Builder( node.getName(), node.getName() ).title( node.getName() ).folder(
+            node == rootNode ).build();
+      }
+
+      @Mock
+      public boolean isPentahoFolder( final PentahoJcrConstants pentahoJcrConstants, final Node node ) {
+        return node == rootNode;
+      }
+
+      @Mock
+      public boolean isSupportedNodeType( final PentahoJcrConstants pentahoJcrConstants, final Node node ) {
+        return true;
+      }
+    };
+    jcrRepositoryFileAclUtilsMockUp = new MockUp<JcrRepositoryFileAclUtils>() {
+      @Mock
+      public List<RepositoryFileAcl> getAcls( final Session session, final PentahoJcrConstants pentahoJcrConstants,
+          final List<Node> nodes ) {
+        aclBatches++;
+        return new ArrayList<RepositoryFileAcl>( Collections.<RepositoryFileAcl>nCopies( nodes.size(), null ) );
+      }
+    };
+  }
+
+  @After
+  public void tearDown() {
+    jcrRepositoryFileUtilsMockUp.tearDown();
+    jcrRepositoryFileAclUtilsMockUp.tearDown();
+  }
+
+  @Test
+  public void testAclsAreNotLoadedWithoutVoters() throws Exception {
+    RepositoryFileTree tree =
+        build( new RepositoryAccessVoterManagerInst( Collections.<IRepositoryAccessVoter>emptyList(),
+            authorizationPolicy ) );
+
+    assertEquals( 2, tree.getChildren().size() );
+    assertEquals( 0, aclBatches );
+  }
+
+  @Test
+  public void testAclsAreNotLoadedForAdministrators() throws Exception {
+    when( authorizationPolicy.isAllowed( AdministerSecurityAction.NAME ) ).thenReturn( true );
+
+    RepositoryFileTree tree =
+        build( new RepositoryAccessVoterManagerInst( Collections.singletonList( voter ), authorizationPolicy ) );
+
+    assertEquals( 2, tree.getChildren().size() );
+    assertEquals( 0, aclBatches );
+    assertEquals( Collections.<String>emptyList(), votedOn );
+  }
+
+  @Test
+  public void testVotersAreConsultedOtherwise() throws Exception {
+    RepositoryFileTree tree =
+        build( new RepositoryAccessVoterManagerInst( Collections.singletonList( voter ), authorizationPolicy ) );
+
+    assertEquals( 1, tree.getChildren().size() );
+    assertEquals( "allowed", tree.getChildren().get( 0 ).getFile().getName() );
+    // one batch for the root, one for its children
+    assertEquals( 2, aclBatches );
+    assertEquals( Arrays.asList( "root", "allowed", "denied" ), votedOn );
+  }
+
+  private RepositoryFileTree build( final RepositoryAccessVoterManagerInst accessVoterManager )
+    throws RepositoryException {
+    return new JcrRepositoryFileTreeBuilder( null, null, null, null, accessVoterManager, new RepositoryRequest( "/",
+        false, 1, null ) ).build( rootNode, 1 );
+  }
+
+  private static Node mockNode( final String name ) throws RepositoryException {
+    Node node = mock( Node.class );
+    when( node.getName() ).thenReturn( name );
+    return node;
+  }
+}
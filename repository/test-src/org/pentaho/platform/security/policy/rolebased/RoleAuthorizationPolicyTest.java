@@ -0,0 +1,165 @@
+/*
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU General Public License, version 2 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/gpl-2.0.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details.
+ *
+ *
+ * Copyright 2006 - 2013 Pentaho Corporation.  All rights reserved.
+ */
+
+package org.pentaho.platform.security.policy.rolebased;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.pentaho.platform.api.engine.IPentahoSession;
+import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.StandaloneSession;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.security.GrantedAuthority;
+import org.springframework.security.GrantedAuthorityImpl;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.security.providers.UsernamePasswordAuthenticationToken;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings( { "nls", "unchecked" } )
+public class RoleAuthorizationPolicyTest {
+
+  private AbstractJcrBackedRoleBindingDao roleBindingDao;
+
+  private IRoleAuthorizationPolicyRoleBindingDao proxiedRoleBindingDao;
+
+  private RoleAuthorizationPolicy policy;
+
+  private StandaloneSession session;
+
+  @Before
+  public void setUp() {
+    roleBindingDao = mock( AbstractJcrBackedRoleBindingDao.class );
+    when( roleBindingDao.getBoundLogicalRoleNames( anyList() ) ).thenReturn(
+        Arrays.asList( "org.pentaho.repository.read", "org.pentaho.repository.create" ) );
+    // the policy is given an interface-based proxy of the DAO, as in repository.spring.xml
+    proxiedRoleBindingDao = (IRoleAuthorizationPolicyRoleBindingDao) new ProxyFactory( roleBindingDao ).getProxy();
+    policy = new RoleAuthorizationPolicy( proxiedRoleBindingDao );
+
+    session = new StandaloneSession( "joe" );
+    session.setAttribute( IPentahoSession.TENANT_ID_KEY, "tenant0" );
+    PentahoSessionHolder.setSession( session );
+    login( "joe", "Authenticated" );
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+    PentahoSessionHolder.removeSession();
+  }
+
+  private void login( String userName, String... roleNames ) {
+    GrantedAuthority[] authorities = new GrantedAuthority[ roleNames.length ];
+    for ( int i = 0; i < roleNames.length; i++ ) {
+      authorities[ i ] = new GrantedAuthorityImpl( roleNames[ i ] );
+    }
+    SecurityContextHolder.getContext().setAuthentication(
+        new UsernamePasswordAuthenticationToken( userName, "password", authorities ) );
+  }
+
+  @Test
+  public void testIsAllowed() {
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+    assertTrue( policy.isAllowed( "org.pentaho.repository.create" ) );
+    assertFalse( policy.isAllowed( "org.pentaho.security.administerSecurity" ) );
+    assertFalse( policy.isAllowed( null ) );
+
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) );
+  }
+
+  @Test
+  public void testProxiedDaoIsCached() {
+    assertFalse( proxiedRoleBindingDao instanceof AbstractJcrBackedRoleBindingDao );
+    assertTrue( proxiedRoleBindingDao instanceof IVersionedRoleBindingDao );
+
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) );
+  }
+
+  @Test
+  public void testSnapshotIsNotStoredInSession() {
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+
+    // session attributes end up in the HTTP session and must be serializable
+    for ( Iterator names = session.getAttributeNames(); names.hasNext(); ) {
+      assertEquals( IPentahoSession.TENANT_ID_KEY, names.next() );
+    }
+  }
+
+  @Test
+  public void testGetAllowedActions() {
+    List<String> allowed = policy.getAllowedActions( "org.pentaho.repository" );
+    assertEquals( 2, allowed.size() );
+    assertTrue( allowed.contains( "org.pentaho.repository.read" ) );
+    assertEquals( 0, policy.getAllowedActions( "org.pentaho.security" ).size() );
+    assertEquals( 2, policy.getAllowedActions( null ).size() );
+  }
+
+  @Test
+  public void testSnapshotIsSharedByRoles() {
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+    login( "suzy", "Authenticated" );
+    assertTrue( policy.isAllowed( "org.pentaho.repository.read" ) );
+
+    verify( roleBindingDao, times( 1 ) ).getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) );
+
+    login( "admin", "Authenticated", "Administrator" );
+    when( roleBindingDao.getBoundLogicalRoleNames( Arrays.asList( "Authenticated", "Administrator" ) ) ).thenReturn(
+        Arrays.asList( "org.pentaho.security.administerSecurity" ) );
+    assertTrue( policy.isAllowed( "org.pentaho.security.administerSecurity" ) );
+    assertFalse( policy.isAllowed( "org.pentaho.repository.read" ) );
+  }
+
+  @Test
+  public void testSnapshotIsDiscardedWhenBindingsAreSet() {
+    assertFalse( policy.isAllowed( "org.pentaho.security.administerSecurity" ) );
+
+    when( roleBindingDao.getRoleBindingsVersion() ).thenReturn( 1L );
+    when( roleBindingDao.getBoundLogicalRoleNames( anyList() ) ).thenReturn(
+        Arrays.asList( "org.pentaho.security.administerSecurity" ) );
+    assertTrue( policy.isAllowed( "org.pentaho.security.administerSecurity" ) );
+    assertFalse( policy.isAllowed( "org.pentaho.repository.read" ) );
+  }
+
+  @Test
+  public void testOtherDaosAreNotCached() {
+    IRoleAuthorizationPolicyRoleBindingDao otherDao = mock( IRoleAuthorizationPolicyRoleBindingDao.class );
+    when( otherDao.getBoundLogicalRoleNames( anyList() ) ).thenReturn(
+        Arrays.asList( "org.pentaho.repository.read" ) );
+    RoleAuthorizationPolicy otherPolicy = new RoleAuthorizationPolicy( otherDao );
+
+    assertTrue( otherPolicy.isAllowed( "org.pentaho.repository.read" ) );
+    assertTrue( otherPolicy.isAllowed( "org.pentaho.repository.read" ) );
+
+    verify( otherDao, times( 2 ) ).getBoundLogicalRoleNames( Arrays.asList( "Authenticated" ) );
+  }
+
+}
@@ -18,6 +18,7 @@
 package org.pentaho.test.platform.repository2.unified;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
@@ -264,6 +265,23 @@ public class EmptyUnifiedRepository implements IUnifiedRepository {
     return null;
   }
 
+  @Override
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    return null;
+  }
+
+  @Override
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    return null;
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    return Collections.emptyList();
+  }
+
   @Override
   public List<Character> getReservedChars() {
     throw new UnsupportedOperationException();
@@ -34,6 +34,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -782,6 +783,38 @@ public class MockUnifiedRepository implements IUnifiedRepository {
     return r.getMetadata();
   }
 
+  @Override
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    List<Map<String, Serializable>> metadata = new ArrayList<Map<String, Serializable>>();
+    for ( RepositoryFile file : files ) {
+      metadata.add( getFileMetadata( file.getId() ) );
+    }
+    return metadata;
+  }
+
+  @Override
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    Map<RepositoryFile, Map<String, Serializable>> children =
+        new LinkedHashMap<RepositoryFile, Map<String, Serializable>>();
+    for ( RepositoryFile child : getChildren( repositoryRequest ) ) {
+      children.put( child, getFileMetadata( child.getId() ) );
+    }
+    return children;
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    List<RepositoryFile> children = new ArrayList<RepositoryFile>();
+    for ( RepositoryFile child : getChildren( folderId ) ) {
+      if ( metadataValue.equals( getFileMetadata( child.getId() ).get( metadataKey ) ) ) {
+        children.add( child );
+      }
+    }
+    return children;
+  }
+
   // ~ Helper classes
   // ==================================================================================================
 
@@ -751,6 +751,23 @@ public class UnmodifiableRepository implements IUnifiedRepository {
     return repository.getFileMetadata( fileId );
   }
 
+  @Override
+  public List<Map<String, Serializable>> getFileMetadataInBatch( final List<RepositoryFile> files ) {
+    return repository.getFileMetadataInBatch( files );
+  }
+
+  @Override
+  public Map<RepositoryFile, Map<String, Serializable>> getChildrenWithMetadata(
+      final RepositoryRequest repositoryRequest ) {
+    return repository.getChildrenWithMetadata( repositoryRequest );
+  }
+
+  @Override
+  public List<RepositoryFile> getChildrenByMetadata( final Serializable folderId, final String metadataKey,
+      final String metadataValue ) {
+    return repository.getChildrenByMetadata( folderId, metadataKey, metadataValue );
+  }
+
   /**
    * Exception which indicates an operation is trying to modify the content of this unmodifiable repository
    */
@@ -248,6 +248,16 @@ public interface IScheduler {
    */
   public List<Job> getJobs( IJobFilter filter ) throws SchedulerException;
 
+  /**
+   * Lists a page of the currently scheduled jobs. Prefer this to {@link #getJobs(IJobFilter)} when there may be many
+   * jobs, as the criteria of the query can be applied before the jobs are read in full.
+   * 
+   * @param query
+   *          the criteria, order and range of the jobs to return
+   * @return the requested page of jobs, and the number of jobs matching the query in total
+   */
+  public JobPage queryJobs( JobQuery query ) throws SchedulerException;
+
   /**
    * Returns a history of the runs for a particular job.
    * 
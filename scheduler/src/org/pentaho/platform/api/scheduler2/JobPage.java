@@ -0,0 +1,79 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * A page of the jobs matching a {@link JobQuery}, together with the number of jobs matching it in total.
+ */
+@XmlRootElement
+public class JobPage {
+
+  List<Job> jobs = new ArrayList<Job>();
+
+  int offset;
+
+  int totalCount;
+
+  public JobPage() {
+  }
+
+  public JobPage( List<Job> jobs, int offset, int totalCount ) {
+    this.jobs = jobs;
+    this.offset = offset;
+    this.totalCount = totalCount;
+  }
+
+  /**
+   * @return the jobs of this page
+   */
+  public List<Job> getJobs() {
+    return jobs;
+  }
+
+  public void setJobs( List<Job> jobs ) {
+    this.jobs = jobs;
+  }
+
+  /**
+   * @return the position of the first job of this page among all matching jobs
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  /**
+   * @return the number of jobs matching the query, on all pages
+   */
+  public int getTotalCount() {
+    return totalCount;
+  }
+
+  public void setTotalCount( int totalCount ) {
+    this.totalCount = totalCount;
+  }
+
+}
@@ -0,0 +1,200 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.api.scheduler2;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+
+/**
+ * Describes a page of jobs to be returned by {@link IScheduler#queryJobs(JobQuery)}. Unlike an {@link IJobFilter}, the
+ * criteria of a query are known to the scheduler, which can apply them before it reads the jobs from its job store, and
+ * only reads the jobs of the requested page in full.
+ * <p>
+ * All criteria are optional; a new query returns all jobs in no particular order.
+ * 
+ * @see JobPage
+ */
+public class JobQuery {
+
+  /**
+   * The properties jobs can be sorted by.
+   */
+  public enum SortField {
+    JOB_NAME, USER_NAME, STATE, NEXT_RUN, LAST_RUN
+  };
+
+  private String userName;
+
+  private List<JobState> states = new ArrayList<JobState>();
+
+  private String action;
+
+  private Date nextRunFrom;
+
+  private Date nextRunTo;
+
+  private boolean excludeBlockOuts;
+
+  private IJobFilter filter;
+
+  private SortField sortField;
+
+  private boolean ascending = true;
+
+  private int offset;
+
+  private int limit = -1;
+
+  /**
+   * @return the user whose jobs are returned, or null for the jobs of all users
+   */
+  public String getUserName() {
+    return userName;
+  }
+
+  public void setUserName( String userName ) {
+    this.userName = userName;
+  }
+
+  /**
+   * @return the states of the jobs returned, all states if empty
+   */
+  public List<JobState> getStates() {
+    return states;
+  }
+
+  public void setStates( List<JobState> states ) {
+    this.states = states != null ? states : new ArrayList<JobState>();
+  }
+
+  /**
+   * @return the action class or action id of the jobs returned, or null for jobs running any action
+   */
+  public String getAction() {
+    return action;
+  }
+
+  public void setAction( String action ) {
+    this.action = action;
+  }
+
+  /**
+   * @return the earliest next run of the jobs returned (inclusive), or null
+   */
+  public Date getNextRunFrom() {
+    return nextRunFrom;
+  }
+
+  public void setNextRunFrom( Date nextRunFrom ) {
+    this.nextRunFrom = nextRunFrom;
+  }
+
+  /**
+   * @return the latest next run of the jobs returned (inclusive), or null
+   */
+  public Date getNextRunTo() {
+    return nextRunTo;
+  }
+
+  public void setNextRunTo( Date nextRunTo ) {
+    this.nextRunTo = nextRunTo;
+  }
+
+  /**
+   * @return whether block out jobs are left out of the result
+   */
+  public boolean isExcludeBlockOuts() {
+    return excludeBlockOuts;
+  }
+
+  public void setExcludeBlockOuts( boolean excludeBlockOuts ) {
+    this.excludeBlockOuts = excludeBlockOuts;
+  }
+
+  /**
+   * @return a filter applied to the jobs matching all other criteria, or null. A filter can only be applied once a job
+   *         has been read in full, so it should be used for criteria that can not be expressed otherwise.
+   */
+  public IJobFilter getFilter() {
+    return filter;
+  }
+
+  public void setFilter( IJobFilter filter ) {
+    this.filter = filter;
+  }
+
+  /**
+   * @return the property the jobs are sorted by, or null if they are not sorted
+   */
+  public SortField getSortField() {
+    return sortField;
+  }
+
+  public boolean isAscending() {
+    return ascending;
+  }
+
+  public void setSort( SortField sortField, boolean ascending ) {
+    this.sortField = sortField;
+    this.ascending = ascending;
+  }
+
+  /**
+   * @return the number of matching jobs skipped before the first one returned
+   */
+  public int getOffset() {
+    return offset;
+  }
+
+  public void setOffset( int offset ) {
+    this.offset = offset;
+  }
+
+  /**
+   * @return the maximum number of jobs returned, or a negative number for no limit
+   */
+  public int getLimit() {
+    return limit;
+  }
+
+  public void setLimit( int limit ) {
+    this.limit = limit;
+  }
+
+  /**
+   * @return <code>true</code> if a job running next at <code>nextRun</code> satisfies the next run range
+   */
+  public boolean acceptsNextRun( Date nextRun ) {
+    if ( nextRunFrom == null && nextRunTo == null ) {
+      return true;
+    }
+    return nextRun != null && ( nextRunFrom == null || !nextRun.before( nextRunFrom ) )
+        && ( nextRunTo == null || !nextRun.after( nextRunTo ) );
+  }
+
+  /**
+   * @return <code>true</code> if a job in the given state satisfies the state criterion
+   */
+  public boolean acceptsState( JobState state ) {
+    return states.isEmpty() || states.contains( state );
+  }
+
+}
@@ -36,6 +36,11 @@ import org.quartz.Trigger;
 
 public class BlockoutManagerUtil {
 
+  /**
+   * Determines the maximum amount of fire times allowed to be calculated
+   */
+  public static final int MAX_FIRE_TIMES = 1000;
+
   /**
    * Standard Units of Time
    */
@@ -301,52 +306,65 @@ public class BlockoutManagerUtil {
   }
 
   public static List<Date> getFireTimes( IJobTrigger jobTrigger, IScheduler scheduler ) {
-    // Determines the maximum amount of fire times allowed to be calculated
-    int n = 1000;
-
-    Date startDate = new Date( System.currentTimeMillis() );
-    Date endDate = new Date( startDate.getTime() + 4 * TIME.YEAR.time );
-
     // Quartz Triggers
     if ( scheduler instanceof QuartzScheduler ) {
-      try {
-
-        List<Date> dates = new ArrayList<Date>();
-        boolean endDateIsNull = jobTrigger.getEndTime() == null;
-        Trigger trigger = QuartzScheduler.createQuartzTrigger( jobTrigger, new QuartzJobKey( "test", "test" ) ); //$NON-NLS-1$ //$NON-NLS-2$
-
-        // add previous trigger (it might be currently active)
-        IBlockoutManager manager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$;
-        if ( manager != null ) {
-          List<Job> blockouts = manager.getBlockOutJobs();
-          for ( Job blockout : blockouts ) {
-            if ( blockout.getLastRun() != null ) {
-              dates.add( blockout.getLastRun() );
-            }
+      // the fire times of block outs are precomputed by the scheduler
+      List<Date> blockOutFireTimes = ( (QuartzScheduler) scheduler ).getBlockOutFireTimes( jobTrigger );
+      if ( blockOutFireTimes != null ) {
+        return blockOutFireTimes;
+      }
+
+      List<Date> dates = new ArrayList<Date>();
+
+      // add previous trigger (it might be currently active)
+      IBlockoutManager manager = PentahoSystem.get( IBlockoutManager.class, "IBlockoutManager", null ); //$NON-NLS-1$;
+      if ( manager != null ) {
+        List<Job> blockouts = manager.getBlockOutJobs();
+        for ( Job blockout : blockouts ) {
+          if ( blockout.getLastRun() != null ) {
+            dates.add( blockout.getLastRun() );
           }
         }
-          
-        for ( int i = 0; i < n; i++ ) {
-          Date nextFireTime = trigger.getFireTimeAfter( startDate );
+      }
 
-          if ( ( nextFireTime == null )
-              || ( nextFireTime.after( endDate ) || ( !endDateIsNull
-                  && nextFireTime.after( jobTrigger.getEndTime() ) ) ) ) {
-            break;
-          }
+      dates.addAll( getFireTimesAfter( jobTrigger, new Date( System.currentTimeMillis() ) ) );
+      return dates;
+    }
+    throw new RuntimeException( "Can not calculate fire times for unsupported Scheduler Type: " //$NON-NLS-1$
+        + scheduler.getClass().getSimpleName() );
+  }
 
-          dates.add( nextFireTime );
-          startDate = nextFireTime;
-        }
+  /**
+   * @return up to {@link #MAX_FIRE_TIMES} fire times of <code>jobTrigger</code> after <code>startDate</code>, within
+   *         the next four years
+   */
+  public static List<Date> getFireTimesAfter( IJobTrigger jobTrigger, Date startDate ) {
+    Date endDate = new Date( startDate.getTime() + 4 * TIME.YEAR.time );
+
+    try {
+
+      List<Date> dates = new ArrayList<Date>();
+      boolean endDateIsNull = jobTrigger.getEndTime() == null;
+      Trigger trigger = QuartzScheduler.createQuartzTrigger( jobTrigger, new QuartzJobKey( "test", "test" ) ); //$NON-NLS-1$ //$NON-NLS-2$
 
-        return dates;
+      for ( int i = 0; i < MAX_FIRE_TIMES; i++ ) {
+        Date nextFireTime = trigger.getFireTimeAfter( startDate );
 
-      } catch ( SchedulerException e ) {
-        throw new RuntimeException( e );
+        if ( ( nextFireTime == null )
+            || ( nextFireTime.after( endDate ) || ( !endDateIsNull
+                && nextFireTime.after( jobTrigger.getEndTime() ) ) ) ) {
+          break;
+        }
+
+        dates.add( nextFireTime );
+        startDate = nextFireTime;
       }
+
+      return dates;
+
+    } catch ( SchedulerException e ) {
+      throw new RuntimeException( e );
     }
-    throw new RuntimeException( "Can not calculate fire times for unsupported Scheduler Type: " //$NON-NLS-1$
-        + scheduler.getClass().getSimpleName() );
   }
 
   public static boolean shouldFireNow( List<IJobTrigger> blockOutJobTriggers, IScheduler scheduler ) {
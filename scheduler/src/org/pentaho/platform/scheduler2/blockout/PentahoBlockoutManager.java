@@ -27,6 +27,7 @@ import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
+import org.pentaho.platform.scheduler2.quartz.QuartzScheduler;
 
 public class PentahoBlockoutManager implements IBlockoutManager {
 
@@ -51,6 +52,11 @@ public class PentahoBlockoutManager implements IBlockoutManager {
   @Override
   public List<Job> getBlockOutJobs() {
     try {
+      if ( scheduler instanceof QuartzScheduler ) {
+        // indexed by the scheduler, avoids reading every job from the job store
+        return ( (QuartzScheduler) scheduler ).getBlockOutJobs();
+      }
+
       List<Job> jobs = scheduler.getJobs( new IJobFilter() {
         public boolean accept( Job job ) {
           if ( BLOCK_OUT_JOB_NAME.equals( job.getJobName() ) ) {
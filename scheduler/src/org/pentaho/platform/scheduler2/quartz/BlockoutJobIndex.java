@@ -0,0 +1,250 @@
+/*!
+ * This program is free software; you can redistribute it and/or modify it under the
+ * terms of the GNU Lesser General Public License, version 2.1 as published by the Free Software
+ * Foundation.
+ *
+ * You should have received a copy of the GNU Lesser General Public License along with this
+ * program; if not, you can obtain a copy at http://www.gnu.org/licenses/old-licenses/lgpl-2.1.html
+ * or from the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU Lesser General Public License for more details.
+ *
+ * Copyright (c) 2002-2013 Pentaho Corporation..  All rights reserved.
+ */
+
+package org.pentaho.platform.scheduler2.quartz;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
+import org.pentaho.platform.api.scheduler2.IJobTrigger;
+import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.JobTrigger;
+import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil;
+import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
+
+/**
+ * The block out jobs of a Quartz scheduler together with their upcoming fire times, so that deciding whether a job may
+ * fire does not require reading every job in the job store. The index is loaded from the job store on first use and is
+ * then kept current by {@link QuartzScheduler} as jobs are created, updated, paused, resumed and removed. Since block
+ * outs may also be changed by other servers sharing the job store, the index is loaded again once it is older than its
+ * time to live.
+ *
+ * @see QuartzScheduler#getBlockOutJobs()
+ */
+class BlockoutJobIndex {
+
+  /**
+   * How long computed fire times are reused before they are recomputed, which keeps their horizon from shrinking.
+   */
+  private static final long FIRE_TIMES_TTL = TIME.DAY.time;
+
+  private final Map<String, Job> jobs = new LinkedHashMap<String, Job>();
+
+  private final Map<String, FireTimes> fireTimes = new HashMap<String, FireTimes>();
+
+  /**
+   * The indexed job each trigger handed out by {@link #getJobs()} was copied from. Triggers do not override equals, so
+   * they are matched by identity.
+   */
+  private final Map<IJobTrigger, Job> issuedTriggers = new WeakHashMap<IJobTrigger, Job>();
+
+  private final long ttl;
+
+  private boolean loaded = false;
+
+  private long loadTime;
+
+  /**
+   * @param ttl
+   *          how long, in milliseconds, the index is used before it is loaded again from the job store
+   */
+  BlockoutJobIndex( long ttl ) {
+    this.ttl = ttl;
+  }
+
+  private static class FireTimes {
+    private final List<Date> dates;
+
+    private final long computed;
+
+    FireTimes( List<Date> dates, long computed ) {
+      this.dates = dates;
+      this.computed = computed;
+    }
+  }
+
+  synchronized boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * @return true if the index has not been loaded yet or was loaded longer than its time to live ago
+   */
+  synchronized boolean isStale() {
+    return !loaded || loadTime + ttl <= System.currentTimeMillis();
+  }
+
+  synchronized void load( List<Job> blockOutJobs ) {
+    jobs.clear();
+    fireTimes.clear();
+    for ( Job job : blockOutJobs ) {
+      put( job );
+    }
+    loaded = true;
+    loadTime = System.currentTimeMillis();
+  }
+
+  synchronized void put( Job job ) {
+    if ( job.getJobParams() != null && job.getJobParams().get( IBlockoutManager.DURATION_PARAM ) instanceof Number ) {
+      job.getJobTrigger().setDuration(
+          ( (Number) job.getJobParams().get( IBlockoutManager.DURATION_PARAM ) ).longValue() );
+    }
+    jobs.put( job.getJobId(), job );
+    fireTimes.remove( job.getJobId() );
+  }
+
+  synchronized void remove( String jobId ) {
+    jobs.remove( jobId );
+    fireTimes.remove( jobId );
+  }
+
+  synchronized void clear() {
+    jobs.clear();
+    fireTimes.clear();
+    loaded = false;
+  }
+
+  /**
+   * Returns copies of the indexed jobs, so that callers changing them do not change the index.
+   */
+  synchronized List<Job> getJobs() {
+    List<Job> copies = new ArrayList<Job>( jobs.size() );
+    for ( Job job : jobs.values() ) {
+      Job copy = copy( job );
+      if ( copy.getJobTrigger() != null ) {
+        issuedTriggers.put( copy.getJobTrigger(), job );
+      }
+      copies.add( copy );
+    }
+    return copies;
+  }
+
+  /**
+   * Returns the fire times of the block out owning <code>blockOutTrigger</code>, in the form returned by
+   * {@link BlockoutManagerUtil#getFireTimes(IJobTrigger, org.pentaho.platform.api.scheduler2.IScheduler)}: the last
+   * run of every block out, followed by the upcoming fire times of this one.
+   *
+   * @return the fire times, or null if the trigger was not handed out by {@link #getJobs()} or its block out has
+   *         since been updated or removed
+   */
+  synchronized List<Date> getFireTimes( IJobTrigger blockOutTrigger ) {
+    Job issuedFrom = issuedTriggers.get( blockOutTrigger );
+    if ( issuedFrom == null ) {
+      return null;
+    }
+    String blockOutJobId = issuedFrom.getJobId();
+    if ( jobs.get( blockOutJobId ) != issuedFrom ) {
+      // the caller holds the trigger of a former version of the block out
+      return null;
+    }
+
+    long now = System.currentTimeMillis();
+    List<Date> dates = new ArrayList<Date>();
+    for ( Job job : jobs.values() ) {
+      // a block out which fired since the index was loaded may still be active
+      Date lastRun = getLastRun( job, now );
+      if ( lastRun != null ) {
+        dates.add( lastRun );
+      }
+    }
+    for ( Date date : getFireTimes( jobs.get( blockOutJobId ), now ).dates ) {
+      if ( date.getTime() > now ) {
+        dates.add( date );
+      }
+    }
+    return dates;
+  }
+
+  private static Job copy( Job job ) {
+    Job copy = new Job();
+    copy.setJobId( job.getJobId() );
+    copy.setJobName( job.getJobName() );
+    copy.setUserName( job.getUserName() );
+    copy.setGroupName( job.getGroupName() );
+    copy.setSchedulableClass( job.getSchedulableClass() );
+    copy.setState( job.getState() );
+    copy.setLastRun( copy( job.getLastRun() ) );
+    copy.setNextRun( copy( job.getNextRun() ) );
+    copy.setJobParams( job.getJobParams() );
+    if ( job.getJobTrigger() != null ) {
+      copy.setJobTrigger( copy( job.getJobTrigger() ) );
+    }
+    return copy;
+  }
+
+  /**
+   * Copies a trigger as read from the job store by {@link QuartzScheduler}, which is either simple or complex.
+   */
+  private static JobTrigger copy( JobTrigger trigger ) {
+    JobTrigger copy;
+    if ( trigger instanceof SimpleJobTrigger ) {
+      SimpleJobTrigger simpleTrigger = (SimpleJobTrigger) trigger;
+      copy = new SimpleJobTrigger( null, null, simpleTrigger.getRepeatCount(), simpleTrigger.getRepeatInterval() );
+    } else {
+      copy = QuartzScheduler.createComplexTrigger( trigger.getCronString() );
+    }
+    copy.setStartTime( copy( trigger.getStartTime() ) );
+    copy.setEndTime( copy( trigger.getEndTime() ) );
+    copy.setUiPassParam( trigger.getUiPassParam() );
+    copy.setCronString( trigger.getCronString() );
+    copy.setDuration( trigger.getDuration() );
+    return copy;
+  }
+
+  private static Date copy( Date date ) {
+    return date == null ? null : new Date( date.getTime() );
+  }
+
+  private Date getLastRun( Job job, long now ) {
+    Date lastRun = job.getLastRun();
+    for ( Date date : getFireTimes( job, now ).dates ) {
+      if ( date.getTime() > now ) {
+        break;
+      }
+      if ( lastRun == null || date.after( lastRun ) ) {
+        lastRun = date;
+      }
+    }
+    return lastRun;
+  }
+
+  private FireTimes getFireTimes( Job job, long now ) {
+    FireTimes cached = fireTimes.get( job.getJobId() );
+    if ( cached == null || cached.computed + FIRE_TIMES_TTL < now || isMostlyElapsed( cached, now ) ) {
+      cached = new FireTimes( BlockoutManagerUtil.getFireTimesAfter( job.getJobTrigger(), new Date( now ) ), now );
+      fireTimes.put( job.getJobId(), cached );
+    }
+    return cached;
+  }
+
+  /**
+   * The number of fire times computed is capped, so for frequent block outs the remaining ones may not reach far
+   * enough ahead.
+   */
+  private boolean isMostlyElapsed( FireTimes cached, long now ) {
+    int size = cached.dates.size();
+    return size >= BlockoutManagerUtil.MAX_FIRE_TIMES && cached.dates.get( size / 2 ).getTime() <= now;
+  }
+
+}
@@ -23,11 +23,14 @@ import java.text.MessageFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
@@ -37,6 +40,7 @@ import org.pentaho.platform.api.action.IAction;
 import org.pentaho.platform.api.engine.IPentahoSession;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
 import org.pentaho.platform.api.scheduler2.IBackgroundExecutionStreamProvider;
+import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.IJobResult;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
@@ -45,11 +49,14 @@ import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.ISchedulerListener;
 import org.pentaho.platform.api.scheduler2.Job;
 import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.api.scheduler2.recur.ITimeRecurrence;
 import org.pentaho.platform.engine.core.system.PentahoSessionHolder;
+import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.engine.security.SecurityHelper;
 import org.pentaho.platform.scheduler2.messsages.Messages;
 import org.pentaho.platform.scheduler2.recur.IncrementalRecurrence;
@@ -98,6 +105,13 @@ public class QuartzScheduler implements IScheduler {
 
   private ArrayList<ISchedulerListener> listeners = new ArrayList<ISchedulerListener>();
 
+  /**
+   * Block out indexes by Quartz scheduler. Quartz hands the same scheduler to every factory, so the index is shared by
+   * all instances of this class working against it.
+   */
+  private static final Map<Scheduler, BlockoutJobIndex> blockOutIndexes =
+      new WeakHashMap<Scheduler, BlockoutJobIndex>();
+
   private static final Pattern listPattern = Pattern.compile( "\\d+" ); //$NON-NLS-1$
 
   private static final Pattern dayOfWeekRangePattern = Pattern.compile( ".*\\-.*" ); //$NON-NLS-1$
@@ -305,6 +319,10 @@ public class QuartzScheduler implements IScheduler {
     job.setUserName( curUser );
     job.setState( JobState.NORMAL );
 
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobName ) ) {
+      updateBlockOutIndex( jobId.toString(), false );
+    }
+
     return job;
   }
 
@@ -362,6 +380,10 @@ public class QuartzScheduler implements IScheduler {
       throw new SchedulerException( Messages.getInstance().getString(
           "QuartzScheduler.ERROR_0001_FAILED_TO_SCHEDULE_JOB", jobKey.getJobName() ), e ); //$NON-NLS-1$
     }
+
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobKey.getJobName() ) ) {
+      updateBlockOutIndex( jobId, false );
+    }
   }
 
   /** {@inheritDoc} */
@@ -438,23 +460,7 @@ public class QuartzScheduler implements IScheduler {
       for ( String groupName : scheduler.getJobGroupNames() ) {
         for ( String jobId : scheduler.getJobNames( groupName ) ) {
           for ( Trigger trigger : scheduler.getTriggersOfJob( jobId, groupName ) ) {
-            Job job = new Job();
-            job.setGroupName( groupName );
-            JobDetail jobDetail = scheduler.getJobDetail( jobId, groupName );
-            if ( jobDetail != null ) {
-              job.setUserName( jobDetail.getGroup() );
-              JobDataMap jobDataMap = jobDetail.getJobDataMap();
-              if ( jobDataMap != null ) {
-                Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
-                job.setJobParams( wrappedMap );
-              }
-            }
-
-            job.setJobId( jobId );
-            setJobTrigger( scheduler, job, trigger );
-            job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
-            job.setNextRun( trigger.getNextFireTime() );
-            job.setLastRun( trigger.getPreviousFireTime() );
+            Job job = toJob( scheduler, groupName, jobId, trigger, scheduler.getJobDetail( jobId, groupName ) );
             if ( ( filter == null ) || filter.accept( job ) ) {
               jobs.add( job );
             }
@@ -468,6 +474,189 @@ public class QuartzScheduler implements IScheduler {
     return jobs;
   }
 
+  /** {@inheritDoc} */
+  public JobPage queryJobs( JobQuery query ) throws SchedulerException {
+    try {
+      Scheduler scheduler = getQuartzScheduler();
+      // jobs are grouped by the user who scheduled them
+      String[] groupNames =
+          query.getUserName() != null ? new String[] { query.getUserName() } : scheduler.getJobGroupNames();
+
+      // apply the criteria known from the job names and triggers first, and only read the job details when needed
+      List<JobCandidate> candidates = new ArrayList<JobCandidate>();
+      for ( String groupName : groupNames ) {
+        for ( String jobId : scheduler.getJobNames( groupName ) ) {
+          String jobName = QuartzJobKey.parse( jobId ).getJobName();
+          if ( query.isExcludeBlockOuts() && IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( jobName ) ) {
+            continue;
+          }
+          JobDetail jobDetail = null;
+          for ( Trigger trigger : scheduler.getTriggersOfJob( jobId, groupName ) ) {
+            if ( !query.acceptsNextRun( trigger.getNextFireTime() ) ) {
+              continue;
+            }
+            JobState state = toJobState( scheduler.getTriggerState( trigger.getName(), trigger.getGroup() ) );
+            if ( !query.acceptsState( state ) ) {
+              continue;
+            }
+            JobCandidate candidate = new JobCandidate( groupName, jobId, jobName, trigger, state );
+            if ( query.getAction() != null ) {
+              if ( jobDetail == null ) {
+                jobDetail = scheduler.getJobDetail( jobId, groupName );
+              }
+              if ( jobDetail == null || !isRunningAction( jobDetail, query.getAction() ) ) {
+                continue;
+              }
+              candidate.jobDetail = jobDetail;
+            }
+            if ( query.getFilter() != null ) {
+              candidate.toJob( this, scheduler );
+              if ( !query.getFilter().accept( candidate.job ) ) {
+                continue;
+              }
+            }
+            candidates.add( candidate );
+          }
+        }
+      }
+
+      if ( query.getSortField() != null ) {
+        Collections.sort( candidates, new JobCandidateComparator( query.getSortField(), query.isAscending() ) );
+      }
+
+      int offset = Math.max( 0, Math.min( query.getOffset(), candidates.size() ) );
+      int end = query.getLimit() < 0 ? candidates.size() : Math.min( candidates.size(), offset + query.getLimit() );
+      List<Job> jobs = new ArrayList<Job>( end - offset );
+      for ( JobCandidate candidate : candidates.subList( offset, end ) ) {
+        jobs.add( candidate.toJob( this, scheduler ) );
+      }
+      return new JobPage( jobs, offset, candidates.size() );
+    } catch ( org.quartz.SchedulerException e ) {
+      throw new SchedulerException(
+          Messages.getInstance().getString( "QuartzScheduler.ERROR_0004_FAILED_TO_LIST_JOBS" ), e ); //$NON-NLS-1$
+    }
+  }
+
+  private static boolean isRunningAction( JobDetail jobDetail, String action ) {
+    JobDataMap jobDataMap = jobDetail.getJobDataMap();
+    return jobDataMap != null
+        && ( action.equals( jobDataMap.get( RESERVEDMAPKEY_ACTIONCLASS ) ) || action.equals( jobDataMap
+            .get( RESERVEDMAPKEY_ACTIONID ) ) );
+  }
+
+  @SuppressWarnings( "unchecked" )
+  private Job toJob( Scheduler scheduler, String groupName, String jobId, Trigger trigger, JobDetail jobDetail )
+    throws org.quartz.SchedulerException {
+    Job job = new Job();
+    job.setGroupName( groupName );
+    if ( jobDetail != null ) {
+      job.setUserName( jobDetail.getGroup() );
+      JobDataMap jobDataMap = jobDetail.getJobDataMap();
+      if ( jobDataMap != null ) {
+        Map<String, Serializable> wrappedMap = jobDataMap.getWrappedMap();
+        job.setJobParams( wrappedMap );
+      }
+    }
+
+    job.setJobId( jobId );
+    setJobTrigger( scheduler, job, trigger );
+    job.setJobName( QuartzJobKey.parse( jobId ).getJobName() );
+    job.setNextRun( trigger.getNextFireTime() );
+    job.setLastRun( trigger.getPreviousFireTime() );
+    return job;
+  }
+
+  /**
+   * A trigger of a job matching the criteria of a {@link JobQuery} evaluated so far, holding what is needed to sort it.
+   * The job itself is only read when it is part of the requested page, or when needed to apply a filter.
+   */
+  private static class JobCandidate {
+    private final String groupName;
+
+    private final String jobId;
+
+    private final String jobName;
+
+    private final Trigger trigger;
+
+    private final JobState state;
+
+    private JobDetail jobDetail;
+
+    private Job job;
+
+    JobCandidate( String groupName, String jobId, String jobName, Trigger trigger, JobState state ) {
+      this.groupName = groupName;
+      this.jobId = jobId;
+      this.jobName = jobName;
+      this.trigger = trigger;
+      this.state = state;
+    }
+
+    Job toJob( QuartzScheduler quartzScheduler, Scheduler scheduler ) throws org.quartz.SchedulerException {
+      if ( job == null ) {
+        if ( jobDetail == null ) {
+          jobDetail = scheduler.getJobDetail( jobId, groupName );
+        }
+        job = quartzScheduler.toJob( scheduler, groupName, jobId, trigger, jobDetail );
+      }
+      return job;
+    }
+  }
+
+  private static class JobCandidateComparator implements Comparator<JobCandidate> {
+    private final JobQuery.SortField sortField;
+
+    private final boolean ascending;
+
+    JobCandidateComparator( JobQuery.SortField sortField, boolean ascending ) {
+      this.sortField = sortField;
+      this.ascending = ascending;
+    }
+
+    public int compare( JobCandidate c1, JobCandidate c2 ) {
+      int result;
+      switch ( sortField ) {
+        case JOB_NAME:
+          result = compareNullsLast( c1.jobName, c2.jobName );
+          break;
+        case USER_NAME:
+          result = compareNullsLast( c1.groupName, c2.groupName );
+          break;
+        case STATE:
+          result = compareNullsLast( c1.state, c2.state );
+          break;
+        case NEXT_RUN:
+          result = compareNullsLast( c1.trigger.getNextFireTime(), c2.trigger.getNextFireTime() );
+          break;
+        case LAST_RUN:
+          result = compareNullsLast( c1.trigger.getPreviousFireTime(), c2.trigger.getPreviousFireTime() );
+          break;
+        default:
+          result = 0;
+          break;
+      }
+      if ( result == 0 ) {
+        // keep pages stable
+        result = compareNullsLast( c1.jobId, c2.jobId );
+      }
+      return result;
+    }
+
+    /**
+     * Orders the values by the sort direction, and null values last in either direction.
+     */
+    private <T extends Comparable<? super T>> int compareNullsLast( T o1, T o2 ) {
+      if ( o1 == null ) {
+        return o2 == null ? 0 : 1;
+      }
+      if ( o2 == null ) {
+        return -1;
+      }
+      return ascending ? o1.compareTo( o2 ) : o2.compareTo( o1 );
+    }
+  }
+
   private void setJobTrigger( Scheduler scheduler, Job job, Trigger trigger ) throws SchedulerException,
     org.quartz.SchedulerException {
     QuartzJobKey jobKey = QuartzJobKey.parse( job.getJobId() );
@@ -503,32 +692,29 @@ public class QuartzScheduler implements IScheduler {
       complexJobTrigger.setCronString( ( (CronTrigger) trigger ).getCronExpression() );
     }
 
-    int triggerState = scheduler.getTriggerState( job.getJobId(), groupName );
+    job.setState( toJobState( scheduler.getTriggerState( job.getJobId(), groupName ) ) );
+
+    job.setJobName( QuartzJobKey.parse( job.getJobId() ).getJobName() );
+    job.setNextRun( trigger.getNextFireTime() );
+    job.setLastRun( trigger.getPreviousFireTime() );
+
+  }
+
+  private static JobState toJobState( int triggerState ) {
     switch ( triggerState ) {
       case Trigger.STATE_NORMAL:
-        job.setState( JobState.NORMAL );
-        break;
+        return JobState.NORMAL;
       case Trigger.STATE_BLOCKED:
-        job.setState( JobState.BLOCKED );
-        break;
+        return JobState.BLOCKED;
       case Trigger.STATE_COMPLETE:
-        job.setState( JobState.COMPLETE );
-        break;
+        return JobState.COMPLETE;
       case Trigger.STATE_ERROR:
-        job.setState( JobState.ERROR );
-        break;
+        return JobState.ERROR;
       case Trigger.STATE_PAUSED:
-        job.setState( JobState.PAUSED );
-        break;
+        return JobState.PAUSED;
       default:
-        job.setState( JobState.UNKNOWN );
-        break;
+        return JobState.UNKNOWN;
     }
-
-    job.setJobName( QuartzJobKey.parse( job.getJobId() ).getJobName() );
-    job.setNextRun( trigger.getNextFireTime() );
-    job.setLastRun( trigger.getPreviousFireTime() );
-
   }
 
   /** {@inheritDoc} */
@@ -561,6 +747,9 @@ public class QuartzScheduler implements IScheduler {
       throw new SchedulerException( Messages.getInstance()
           .getString( "QuartzScheduler.ERROR_0005_FAILED_TO_PAUSE_JOBS" ), e ); //$NON-NLS-1$
     }
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( QuartzJobKey.parse( jobId ).getJobName() ) ) {
+      updateBlockOutIndex( jobId, false );
+    }
   }
 
   /** {@inheritDoc} */
@@ -572,6 +761,85 @@ public class QuartzScheduler implements IScheduler {
       throw new SchedulerException( Messages.getInstance()
           .getString( "QuartzScheduler.ERROR_0005_FAILED_TO_PAUSE_JOBS" ), e ); //$NON-NLS-1$
     }
+    updateBlockOutIndex( jobId, true );
+  }
+
+  /**
+   * Returns copies of the block out jobs, with the duration set on their triggers. Unlike filtering
+   * {@link #getJobs(IJobFilter)} this only reads every job from the job store when the block out index is first used
+   * and once it is older than <code>scheduler/blockout-index/ttl-seconds</code>.
+   */
+  public List<Job> getBlockOutJobs() throws SchedulerException {
+    BlockoutJobIndex index = getBlockOutIndex();
+    synchronized ( index ) {
+      if ( index.isStale() ) {
+        index.load( getJobs( new IJobFilter() {
+          public boolean accept( Job job ) {
+            return IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( job.getJobName() );
+          }
+        } ) );
+      }
+      return index.getJobs();
+    }
+  }
+
+  /**
+   * Returns the precomputed fire times of a block out trigger returned by {@link #getBlockOutJobs()}.
+   *
+   * @return the fire times, or null if <code>blockOutTrigger</code> is not the trigger of a known block out
+   */
+  public List<Date> getBlockOutFireTimes( IJobTrigger blockOutTrigger ) {
+    try {
+      return getBlockOutIndex().getFireTimes( blockOutTrigger );
+    } catch ( SchedulerException e ) {
+      logger.warn( e.getMessage(), e );
+      return null;
+    }
+  }
+
+  private BlockoutJobIndex getBlockOutIndex() throws SchedulerException {
+    Scheduler scheduler;
+    try {
+      scheduler = getQuartzScheduler();
+    } catch ( org.quartz.SchedulerException e ) {
+      throw new SchedulerException( e );
+    }
+    synchronized ( blockOutIndexes ) {
+      BlockoutJobIndex index = blockOutIndexes.get( scheduler );
+      if ( index == null ) {
+        index = new BlockoutJobIndex( getBlockOutIndexTtl() );
+        blockOutIndexes.put( scheduler, index );
+      }
+      return index;
+    }
+  }
+
+  private static long getBlockOutIndexTtl() {
+    long ttlSeconds = 60;
+    try {
+      ttlSeconds =
+          Long.parseLong( PentahoSystem.getSystemSetting( "scheduler/blockout-index/ttl-seconds", //$NON-NLS-1$
+              String.valueOf( ttlSeconds ) ).trim() );
+    } catch ( NumberFormatException e ) {
+      logger.warn( "Invalid scheduler/blockout-index/ttl-seconds setting", e ); //$NON-NLS-1$
+    }
+    return ttlSeconds * 1000;
+  }
+
+  private void updateBlockOutIndex( String jobId, boolean removed ) throws SchedulerException {
+    BlockoutJobIndex index = getBlockOutIndex();
+    synchronized ( index ) {
+      // until the index is loaded there is nothing to keep current
+      if ( !index.isLoaded() ) {
+        return;
+      }
+      Job job = removed ? null : getJob( jobId );
+      if ( job == null ) {
+        index.remove( jobId );
+      } else {
+        index.put( job );
+      }
+    }
   }
 
   /** {@inheritDoc} */
@@ -592,6 +860,9 @@ public class QuartzScheduler implements IScheduler {
       throw new SchedulerException( Messages.getInstance().getString(
           "QuartzScheduler.ERROR_0005_FAILED_TO_RESUME_JOBS" ), e ); //$NON-NLS-1$
     }
+    if ( IBlockoutManager.BLOCK_OUT_JOB_NAME.equals( QuartzJobKey.parse( jobId ).getJobName() ) ) {
+      updateBlockOutIndex( jobId, false );
+    }
   }
 
   /** {@inheritDoc} */
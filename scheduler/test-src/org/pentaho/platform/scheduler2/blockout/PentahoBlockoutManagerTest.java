@@ -38,6 +38,7 @@ import org.pentaho.platform.api.scheduler2.IBlockoutManager;
 import org.pentaho.platform.api.scheduler2.IJobTrigger;
 import org.pentaho.platform.api.scheduler2.IScheduler;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
 import org.pentaho.platform.engine.core.system.PentahoSystem;
 import org.pentaho.platform.scheduler2.blockout.BlockoutManagerUtil.TIME;
@@ -125,6 +126,25 @@ public class PentahoBlockoutManagerTest {
     assertEquals( 2, this.blockOutManager.getBlockOutJobs().size() );
   }
 
+  @Test
+  public void testGetBlockoutsReflectsChanges() throws Exception {
+    IJobTrigger trigger1 = new SimpleJobTrigger( new Date(), null, -1, 1000000 );
+    trigger1.setDuration( duration );
+    Job blockOutJob1 = addBlockOutJob( trigger1 );
+    assertEquals( 1, this.blockOutManager.getBlockOutJobs().size() );
+
+    // changes made after the block outs were first read must be visible
+    IJobTrigger trigger2 = new SimpleJobTrigger( new Date(), null, -1, 1000000 );
+    trigger2.setDuration( duration );
+    Job blockOutJob2 = addBlockOutJob( trigger2 );
+    assertEquals( 2, this.blockOutManager.getBlockOutJobs().size() );
+
+    deleteJob( blockOutJob1.getJobId() );
+    assertEquals( 1, this.blockOutManager.getBlockOutJobs().size() );
+    assertEquals( blockOutJob2.getJobId(), this.blockOutManager.getBlockOutJobs().get( 0 ).getJobId() );
+    assertEquals( duration, this.blockOutManager.getBlockOutJobs().get( 0 ).getJobTrigger().getDuration() );
+  }
+
   /**
    * Test method for
    * {@link org.pentaho.platform.scheduler2.blockout.PentahoBlockoutManager#willFire(org.quartz.IJobTrigger)}.
@@ -267,6 +287,98 @@ public class PentahoBlockoutManagerTest {
     assertTrue( this.blockOutManager.shouldFireNow() );
   }
 
+  @Test
+  public void testShouldFireNowReflectsChanges() throws Exception {
+    assertTrue( this.blockOutManager.shouldFireNow() );
+
+    IJobTrigger blockOutJobTrigger =
+        new SimpleJobTrigger( new Date( System.currentTimeMillis() ), null, -1, TIME.WEEK.time * 2 / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    Job blockOutJob = addBlockOutJob( blockOutJobTrigger );
+    assertFalse( this.blockOutManager.shouldFireNow() );
+
+    blockOutJobTrigger =
+        new SimpleJobTrigger( new Date( System.currentTimeMillis() + TIME.HOUR.time ), null, -1,
+            TIME.WEEK.time * 2 / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    updateBlockOutJob( blockOutJob.getJobId(), blockOutJobTrigger );
+    assertTrue( this.blockOutManager.shouldFireNow() );
+
+    blockOutJobTrigger =
+        new SimpleJobTrigger( new Date( System.currentTimeMillis() ), null, -1, TIME.WEEK.time * 2 / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    updateBlockOutJob( blockOutJob.getJobId(), blockOutJobTrigger );
+    assertFalse( this.blockOutManager.shouldFireNow() );
+
+    deleteJob( blockOutJob.getJobId() );
+    assertTrue( this.blockOutManager.shouldFireNow() );
+  }
+
+  @Test
+  public void testWillFireReflectsChanges() throws Exception {
+    Calendar scheduleStartDate = new GregorianCalendar( 2013, Calendar.JANUARY, 7, 1, 0, 0 );
+    IJobTrigger scheduleTrigger = new SimpleJobTrigger( scheduleStartDate.getTime(), null, -1, TIME.WEEK.time / 1000 );
+    assertTrue( this.blockOutManager.willFire( scheduleTrigger ) );
+
+    // blocks every Monday from midnight, when the schedule fires
+    IJobTrigger blockOutJobTrigger =
+        new SimpleJobTrigger( new GregorianCalendar( 2013, Calendar.JANUARY, 7 ).getTime(), null, -1,
+            TIME.WEEK.time / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    Job blockOutJob = addBlockOutJob( blockOutJobTrigger );
+    assertFalse( this.blockOutManager.willFire( scheduleTrigger ) );
+
+    // moved to Wednesdays
+    blockOutJobTrigger =
+        new SimpleJobTrigger( new GregorianCalendar( 2013, Calendar.JANUARY, 9 ).getTime(), null, -1,
+            TIME.WEEK.time / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    updateBlockOutJob( blockOutJob.getJobId(), blockOutJobTrigger );
+    assertTrue( this.blockOutManager.willFire( scheduleTrigger ) );
+
+    // moved back to Mondays
+    blockOutJobTrigger =
+        new SimpleJobTrigger( new GregorianCalendar( 2013, Calendar.JANUARY, 7 ).getTime(), null, -1,
+            TIME.WEEK.time / 1000 );
+    blockOutJobTrigger.setDuration( duration );
+    updateBlockOutJob( blockOutJob.getJobId(), blockOutJobTrigger );
+    assertFalse( this.blockOutManager.willFire( scheduleTrigger ) );
+
+    deleteJob( blockOutJob.getJobId() );
+    assertTrue( this.blockOutManager.willFire( scheduleTrigger ) );
+  }
+
+  @Test
+  public void testGetBlockoutsReflectsPauseAndResume() throws Exception {
+    IJobTrigger blockOutJobTrigger = new SimpleJobTrigger( new Date(), null, -1, 1000000 );
+    blockOutJobTrigger.setDuration( duration );
+    Job blockOutJob = addBlockOutJob( blockOutJobTrigger );
+    assertEquals( JobState.NORMAL, this.blockOutManager.getBlockOutJobs().get( 0 ).getState() );
+
+    this.scheduler.pauseJob( blockOutJob.getJobId() );
+    assertEquals( JobState.PAUSED, this.blockOutManager.getBlockOutJobs().get( 0 ).getState() );
+
+    this.scheduler.resumeJob( blockOutJob.getJobId() );
+    assertEquals( JobState.NORMAL, this.blockOutManager.getBlockOutJobs().get( 0 ).getState() );
+  }
+
+  @Test
+  public void testGetBlockoutsReturnsCopies() throws Exception {
+    IJobTrigger blockOutJobTrigger = new SimpleJobTrigger( new Date(), null, -1, 1000000 );
+    blockOutJobTrigger.setDuration( duration );
+    addBlockOutJob( blockOutJobTrigger );
+
+    Job blockOutJob = this.blockOutManager.getBlockOutJobs().get( 0 );
+    blockOutJob.getJobTrigger().setDuration( 1 );
+    blockOutJob.getJobTrigger().getStartTime().setTime( 0 );
+    blockOutJob.getJobParams().clear();
+
+    blockOutJob = this.blockOutManager.getBlockOutJobs().get( 0 );
+    assertEquals( duration, blockOutJob.getJobTrigger().getDuration() );
+    assertTrue( blockOutJob.getJobTrigger().getStartTime().getTime() > 0 );
+    assertEquals( duration, blockOutJob.getJobParams().get( IBlockoutManager.DURATION_PARAM ) );
+  }
+
   /**
    * Test method for
    * {@link org.pentaho.platform.scheduler2.blockout.PentahoBlockoutManager#willBlockSchedules
@@ -341,6 +453,13 @@ public class PentahoBlockoutManagerTest {
     return addJob( blockOutJobTrigger, IBlockoutManager.BLOCK_OUT_JOB_NAME, new BlockoutAction(), jobParams );
   }
 
+  private void updateBlockOutJob( String jobId, IJobTrigger blockOutJobTrigger ) throws Exception {
+    Map<String, Serializable> jobParams = new HashMap<String, Serializable>();
+    jobParams.put( IBlockoutManager.DURATION_PARAM, blockOutJobTrigger.getDuration() );
+
+    this.scheduler.updateJob( jobId, jobParams, blockOutJobTrigger );
+  }
+
   private Job addJob( IJobTrigger jobTrigger, String jobName ) throws Exception {
     return addJob( jobTrigger, jobName, new IAction() {
       @Override
@@ -19,6 +19,7 @@ package org.pentaho.platform.scheduler2.quartz.test;
 
 import java.io.Serializable;
 import java.security.Principal;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
@@ -34,7 +35,11 @@ import org.pentaho.platform.api.action.IAction;
 import org.pentaho.platform.api.engine.IAuditEntry;
 import org.pentaho.platform.api.engine.IUserRoleListService;
 import org.pentaho.platform.api.scheduler2.ComplexJobTrigger;
+import org.pentaho.platform.api.scheduler2.IJobFilter;
 import org.pentaho.platform.api.scheduler2.Job;
+import org.pentaho.platform.api.scheduler2.Job.JobState;
+import org.pentaho.platform.api.scheduler2.JobPage;
+import org.pentaho.platform.api.scheduler2.JobQuery;
 import org.pentaho.platform.api.scheduler2.JobTrigger;
 import org.pentaho.platform.api.scheduler2.SchedulerException;
 import org.pentaho.platform.api.scheduler2.SimpleJobTrigger;
@@ -266,6 +271,48 @@ public class QuartzSchedulerTest {
     Assert.assertEquals( 0, jobs.size() );
   }
 
+  @Test
+  public void testQueryJobs() throws SchedulerException {
+    Date now = new Date();
+    for ( int i = 0; i < 5; i++ ) {
+      SimpleJobTrigger trigger = new SimpleJobTrigger();
+      // far enough in the future not to run during the test
+      trigger.setStartTime( new Date( now.getTime() + ( i + 1 ) * 3600000L ) );
+      scheduler.createJob( "queryJob" + i, TestAction.class, new HashMap<String, Serializable>(), trigger );
+    }
+    Job paused = scheduler.getJobs( new IJobFilter() {
+      public boolean accept( Job job ) {
+        return "queryJob3".equals( job.getJobName() );
+      }
+    } ).get( 0 );
+    scheduler.pauseJob( paused.getJobId() );
+
+    JobQuery query = new JobQuery();
+    query.setSort( JobQuery.SortField.NEXT_RUN, false );
+    query.setOffset( 1 );
+    query.setLimit( 2 );
+    JobPage page = scheduler.queryJobs( query );
+    Assert.assertEquals( 5, page.getTotalCount() );
+    Assert.assertEquals( 2, page.getJobs().size() );
+    Assert.assertEquals( "queryJob3", page.getJobs().get( 0 ).getJobName() );
+    Assert.assertEquals( "queryJob2", page.getJobs().get( 1 ).getJobName() );
+
+    query = new JobQuery();
+    query.setStates( Arrays.asList( JobState.PAUSED ) );
+    page = scheduler.queryJobs( query );
+    Assert.assertEquals( 1, page.getTotalCount() );
+    Assert.assertEquals( paused.getJobId(), page.getJobs().get( 0 ).getJobId() );
+
+    query = new JobQuery();
+    query.setNextRunTo( new Date( now.getTime() + 2 * 3600000L ) );
+    query.setAction( TestAction.class.getName() );
+    Assert.assertEquals( 2, scheduler.queryJobs( query ).getTotalCount() );
+
+    query = new JobQuery();
+    query.setUserName( "Ima Wronguser" );
+    Assert.assertEquals( 0, scheduler.queryJobs( query ).getTotalCount() );
+  }
+
   @Test
   public void testPauseAndResumeJob() throws SchedulerException {
     String jobName = "complexJob1";
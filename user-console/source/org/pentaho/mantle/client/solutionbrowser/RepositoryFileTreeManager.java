@@ -28,13 +28,26 @@ import com.google.gwt.user.client.rpc.AsyncCallback;
 import org.pentaho.gwt.widgets.client.filechooser.JsonToRepositoryFileTreeConverter;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFile;
 import org.pentaho.gwt.widgets.client.filechooser.RepositoryFileTree;
+import org.pentaho.gwt.widgets.client.utils.NameUtils;
+import org.pentaho.mantle.client.usersettings.MantleSettingsManager;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class RepositoryFileTreeManager {
   public static final String SEPARATOR = "/"; //$NON-NLS-1$
   public static final String FOLDER_HOME = "home"; //$NON-NLS-1$
+  public static final String LAZY_REPOSITORY_TREE = "lazy-repository-tree"; //$NON-NLS-1$
+
+  /**
+   * Number of levels requested at a time when the tree is loaded lazily: the folder itself, its children and their
+   * children, so that it is known which of the children can be expanded.
+   */
+  private static final int LAZY_DEPTH = 2;
   private ArrayList<IRepositoryFileTreeListener> listeners = new ArrayList<IRepositoryFileTreeListener>();
 
   private RepositoryFileTree fileTree;
@@ -43,6 +56,17 @@ public class RepositoryFileTreeManager {
 
   private static boolean fetching = false;
 
+  private boolean lazyLoading = false;
+
+  // paths of the folders whose children have been fetched, only maintained when loading lazily
+  private Set<String> loadedFolders = new HashSet<String>();
+
+  // last entity tag and body received for each url, sent back in If-None-Match to revalidate the listing
+  private Map<String, String[]> responseCache = new HashMap<String, String[]>();
+
+  // filter the tree was last fetched with, also applied to the folders fetched when loading lazily
+  private String treeFilter = "*"; //$NON-NLS-1$
+
   private RepositoryFileTreeManager() {
     flagRepositoryFileTreeLoaded( false );
   }
@@ -65,7 +89,7 @@ public class RepositoryFileTreeManager {
     synchronized ( RepositoryFileTreeManager.class ) {
       if ( !fetching && fileTree == null ) {
         fetching = true;
-        fetchRepositoryFileTree( true, depth, filter, showHidden );
+        fetchRepositoryFileTreeWithSettings( depth, filter, showHidden );
       } else {
         listener.beforeFetchRepositoryFileTree();
         listener.onFetchRepositoryFileTree( fileTree, trashItems );
@@ -73,6 +97,33 @@ public class RepositoryFileTreeManager {
     }
   }
 
+  private void fetchRepositoryFileTreeWithSettings( final Integer depth, final String filter,
+      final Boolean showHidden ) {
+    MantleSettingsManager.getInstance().getMantleSettings( new AsyncCallback<HashMap<String, String>>() {
+
+      public void onSuccess( HashMap<String, String> settings ) {
+        lazyLoading = "true".equalsIgnoreCase( settings.get( LAZY_REPOSITORY_TREE ) ); //$NON-NLS-1$
+        fetchRepositoryFileTree( true, depth, filter, showHidden );
+      }
+
+      public void onFailure( Throwable caught ) {
+        fetchRepositoryFileTree( true, depth, filter, showHidden );
+      }
+    }, false );
+  }
+
+  public boolean isLazyLoading() {
+    return lazyLoading;
+  }
+
+  /**
+   * Returns true if the children of the folder at <code>path</code> are present in the fetched tree. This is always
+   * the case unless the tree is loaded lazily.
+   */
+  public boolean isFolderLoaded( String path ) {
+    return !lazyLoading || loadedFolders.contains( path );
+  }
+
   public void removeRepositoryFileTreeListener( IRepositoryFileTreeListener listener ) {
     listeners.remove( listener );
   }
@@ -115,20 +166,19 @@ public class RepositoryFileTreeManager {
     RequestBuilder builder = null;
     String url = GWT.getHostPageBaseURL() + "api/repo/files/:/tree?"; //$NON-NLS-1$
     if ( depth == null ) {
-      depth = -1;
+      depth = lazyLoading ? LAZY_DEPTH : -1;
     }
     if ( filter == null ) {
       filter = "*"; //$NON-NLS-1$
     }
+    treeFilter = filter;
     if ( showHidden == null ) {
       showHidden = Boolean.FALSE;
     }
-    url =
-        url
-            + "depth=" + depth + "&filter=" + filter + "&showHidden=" + showHidden + "&ts=" + System.currentTimeMillis(); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-    builder = new RequestBuilder( RequestBuilder.GET, url );
-    builder.setHeader( "Accept", "application/json" );
-    builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" );
+    url = url + "depth=" + depth + "&filter=" + filter + "&showHidden=" + showHidden; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    builder = createConditionalRequest( url );
+    final String requestUrl = url;
+    final int requestDepth = depth;
 
     RequestCallback innerCallback = new RequestCallback() {
 
@@ -137,13 +187,12 @@ public class RepositoryFileTreeManager {
       }
 
       public void onResponseReceived( Request request, Response response ) {
-        if ( response.getStatusCode() == Response.SC_OK ) {
-          String json = response.getText();
-          System.out.println( json );
-
-          final JsonToRepositoryFileTreeConverter converter =
-              new JsonToRepositoryFileTreeConverter( response.getText() );
+        String json = getResponseText( requestUrl, response );
+        if ( json != null ) {
+          final JsonToRepositoryFileTreeConverter converter = new JsonToRepositoryFileTreeConverter( json );
           fileTree = converter.getTree();
+          loadedFolders.clear();
+          markFoldersLoaded( fileTree, requestDepth );
 
           String deletedFilesUrl = GWT.getHostPageBaseURL() + "api/repo/files/deleted?ts=" + System.currentTimeMillis();
           RequestBuilder deletedFilesRequestBuilder = new RequestBuilder( RequestBuilder.GET, deletedFilesUrl );
@@ -195,4 +244,92 @@ public class RepositoryFileTreeManager {
     }
   }
 
+  /**
+   * Fetches the folder at <code>path</code> together with its children and grandchildren, for expanding a folder of a
+   * lazily loaded tree. The caller is responsible for attaching the children to its tree. A <code>filter</code> of
+   * null stands for the filter the tree was fetched with, so that the folder lists the same kind of files.
+   */
+  public void fetchRepositoryFolder( String path, String filter, Boolean showHidden,
+      final AsyncCallback<RepositoryFileTree> callback ) {
+    if ( filter == null ) {
+      filter = treeFilter;
+    }
+    if ( showHidden == null ) {
+      showHidden = Boolean.FALSE;
+    }
+    final String url =
+        GWT.getHostPageBaseURL() + "api/repo/files/" + NameUtils.URLEncode( NameUtils.encodeRepositoryPath( path ) ) //$NON-NLS-1$
+            + "/tree?depth=" + LAZY_DEPTH + "&filter=" + filter + "&showHidden=" + showHidden; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    RequestBuilder builder = createConditionalRequest( url );
+    try {
+      builder.sendRequest( null, new RequestCallback() {
+
+        public void onError( Request request, Throwable exception ) {
+          callback.onFailure( exception );
+        }
+
+        public void onResponseReceived( Request request, Response response ) {
+          String json = getResponseText( url, response );
+          if ( json != null ) {
+            RepositoryFileTree folderTree = new JsonToRepositoryFileTreeConverter( json ).getTree();
+            markFoldersLoaded( folderTree, LAZY_DEPTH );
+            callback.onSuccess( folderTree );
+          } else {
+            callback.onFailure( new RequestException( response.getStatusText() ) );
+          }
+        }
+      } );
+    } catch ( RequestException e ) {
+      callback.onFailure( e );
+    }
+  }
+
+  private void markFoldersLoaded( RepositoryFileTree tree, int depth ) {
+    // a folder fetched with at least one more level to go has all of its children in the tree
+    if ( depth == 0 || tree == null || tree.getFile() == null ) {
+      return;
+    }
+    loadedFolders.add( tree.getFile().getPath() );
+    if ( tree.getChildren() != null ) {
+      for ( RepositoryFileTree child : tree.getChildren() ) {
+        if ( child.getFile() != null && child.getFile().isFolder() ) {
+          markFoldersLoaded( child, depth - 1 );
+        }
+      }
+    }
+  }
+
+  private RequestBuilder createConditionalRequest( String url ) {
+    RequestBuilder builder = new RequestBuilder( RequestBuilder.GET, url );
+    builder.setHeader( "Accept", "application/json" ); //$NON-NLS-1$ //$NON-NLS-2$
+    String[] cached = responseCache.get( url );
+    if ( cached != null ) {
+      builder.setHeader( "If-None-Match", cached[0] ); //$NON-NLS-1$
+    } else {
+      // no validator yet, make sure a stale copy is not served from the browser cache
+      builder.setHeader( "If-Modified-Since", "01 Jan 1970 00:00:00 GMT" ); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return builder;
+  }
+
+  /**
+   * Returns the body of a response to a request built by {@link #createConditionalRequest(String)}, substituting the
+   * cached body when the server answered 304 Not Modified, or null if the request failed.
+   */
+  private String getResponseText( String url, Response response ) {
+    if ( response.getStatusCode() == Response.SC_NOT_MODIFIED && responseCache.containsKey( url ) ) {
+      return responseCache.get( url )[1];
+    }
+    if ( response.getStatusCode() != Response.SC_OK ) {
+      return null;
+    }
+    String eTag = response.getHeader( "ETag" ); //$NON-NLS-1$
+    if ( eTag != null && eTag.length() > 0 ) {
+      responseCache.put( url, new String[] { eTag, response.getText() } );
+    } else {
+      responseCache.remove( url );
+    }
+    return response.getText();
+  }
+
 }
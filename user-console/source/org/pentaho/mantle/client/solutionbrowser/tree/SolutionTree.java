@@ -133,6 +133,9 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
       public void onOpen( OpenEvent<TreeItem> event ) {
         SolutionTree.this.setSelectedItem( event.getTarget() );
         selectedItem.addStyleName( "open" );
+        if ( event.getTarget() instanceof FileTreeItem ) {
+          loadFolder( (FileTreeItem) event.getTarget() );
+        }
       }
     } );
 
@@ -326,6 +329,44 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
     WaitPopup.getInstance().setVisible( false );
   }
 
+  /**
+   * Fetches the children of a folder of a lazily loaded tree the first time it is expanded, and replaces the
+   * placeholder item with them.
+   */
+  private void loadFolder( final FileTreeItem folderItem ) {
+    final RepositoryFileTree folderTree = (RepositoryFileTree) folderItem.getUserObject();
+    if ( folderTree == null || folderTree.getFile() == null ) {
+      return;
+    }
+    final RepositoryFileTreeManager manager = RepositoryFileTreeManager.getInstance();
+    if ( manager.isFolderLoaded( folderTree.getFile().getPath() ) ) {
+      return;
+    }
+    manager.fetchRepositoryFolder( folderTree.getFile().getPath(), null, showHiddenFiles,
+        new AsyncCallback<RepositoryFileTree>() {
+
+          public void onSuccess( RepositoryFileTree fetchedTree ) {
+            // attach the children to the shared tree so that other listeners see them too
+            folderTree.setChildren( fetchedTree.getChildren() != null ? fetchedTree.getChildren()
+                : new ArrayList<RepositoryFileTree>() );
+            folderItem.removeItems();
+            buildSolutionTree( folderItem, folderTree );
+            fixLeafNodes();
+            folderItem.setState( true, false );
+          }
+
+          public void onFailure( Throwable caught ) {
+            folderItem.removeItems();
+            fixLeafNodes();
+          }
+        } );
+  }
+
+  private boolean isFolderLoaded( RepositoryFileTree treeItem ) {
+    return treeItem.getFile() == null
+        || RepositoryFileTreeManager.getInstance().isFolderLoaded( treeItem.getFile().getPath() );
+  }
+
   /**
    * 
    */
@@ -333,8 +374,12 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
     List<FileTreeItem> allNodes = getAllNodes();
     for ( FileTreeItem treeItem : allNodes ) {
       RepositoryFileTree userObject = (RepositoryFileTree) treeItem.getUserObject();
-      if ( userObject != null && userObject.getChildren().size() == 0 ) { // This is a leaf node so change the
-                                                                          // widget
+      if ( userObject == null && treeItem.getRepositoryFile() == null ) {
+        // placeholder of a folder which has not been loaded yet
+        continue;
+      }
+      if ( userObject != null && userObject.getChildren().size() == 0 && isFolderLoaded( userObject ) ) {
+        // This is a leaf node so change the widget
         treeItem
             .setWidget( new LeafItemWidget( treeItem.getText(), "icon-tree-node", "icon-tree-leaf", "icon-folder" ) ); //$NON-NLS-1$
       } else {
@@ -533,6 +578,9 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
             }
           }
         }
+        if ( isDirectory && !isFolderLoaded( treeItem ) ) {
+          childTreeItem.addStyleName( "parent-widget" );
+        }
 
         ElementUtils.killAllTextSelection( childTreeItem.getElement() );
         childTreeItem.setURL( fileName );
@@ -568,7 +616,12 @@ public class SolutionTree extends Tree implements IRepositoryFileTreeListener, U
          * (ArrayList<FileChooserRepositoryFile>) parentTreeItem.getUserObject(); if (files == null) { files = new
          * ArrayList<FileChooserRepositoryFile>(); parentTreeItem.setUserObject(files); } files.add(file); }
          */
-        if ( isDirectory ) {
+        if ( isDirectory && !isFolderLoaded( treeItem ) ) {
+          // the children are fetched when the folder is first expanded, until then it only holds a placeholder
+          FileTreeItem placeholder = new FileTreeItem( Messages.getString( "loadingEllipsis" ) ); //$NON-NLS-1$
+          placeholder.setFileName( "" ); //$NON-NLS-1$
+          childTreeItem.addItem( placeholder );
+        } else if ( isDirectory ) {
           buildSolutionTree( childTreeItem, treeItem );
         } else {
           if ( parentTreeItem != null ) {